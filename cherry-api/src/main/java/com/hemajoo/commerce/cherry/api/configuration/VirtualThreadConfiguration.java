@@ -0,0 +1,132 @@
+/*
+ * Copyright(c) 2021 Hemajoo Digital Systems Inc.
+ * --------------------------------------------------------------------------------------
+ * This file is part of Hemajoo Systems Inc. projects which is licensed
+ * under the Apache license version 2 and use is subject to license terms.
+ * You should have received a copy of the license with the project's artifact
+ * binaries and/or sources.
+ *
+ * License can be consulted at http://www.apache.org/licenses/LICENSE-2.0
+ * --------------------------------------------------------------------------------------
+ */
+package com.hemajoo.commerce.cherry.api.configuration;
+
+import com.hemajoo.commerce.cherry.persistence.base.concurrent.BulkheadExecutors;
+import com.hemajoo.commerce.cherry.persistence.base.concurrent.PinningGuardDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.concurrent.ConcurrentTaskExecutor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import javax.sql.DataSource;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Configuration of the virtual threads execution mode of the web tier.
+ * <p>
+ * When the {@code hemajoo.commerce.cherry.web.virtual-threads} property is enabled and the {@code JVM} supports virtual
+ * threads ({@code Java 21+}), the requests (including the asynchronous ones) are handled on virtual threads instead of
+ * the bounded {@code Tomcat} thread pool, so clients slowly uploading or downloading contents do not exhaust the
+ * request threads anymore. The content store I/O runs on virtual threads through the
+ * {@code hemajoo.commerce.cherry.store.io.virtual-threads} property.
+ * <p>
+ * The {@code JDBC} driver and {@code Hibernate} block inside {@code synchronized} sections which pin the virtual threads
+ * to their carrier threads, the data source is therefore guarded (see {@link PinningGuardDataSource}) so the number of
+ * connections held at the same time is bounded ({@code hemajoo.commerce.cherry.web.jdbc-concurrency} property, below
+ * the number of carrier threads and at most the size of the connection pool by default). Pinning can be traced by running the {@code JVM} with the
+ * {@code -Djdk.tracePinnedThreads=short} option.
+ * @author <a href="mailto:christophe.resse@gmail.com">Christophe Resse</a>
+ * @version 1.0.0
+ */
+@Slf4j
+@Configuration
+@ConditionalOnProperty(name = "hemajoo.commerce.cherry.web.virtual-threads", havingValue = "true")
+public class VirtualThreadConfiguration implements WebMvcConfigurer, DisposableBean
+{
+    /**
+     * Executor handling the requests on virtual threads (null if virtual threads are not supported).
+     */
+    private final ExecutorService webVirtualThreadExecutor = BulkheadExecutors.newVirtualThreadPerTaskExecutor("cherry-web-");
+
+    /**
+     * Creates a new virtual thread configuration.
+     */
+    public VirtualThreadConfiguration()
+    {
+        if (webVirtualThreadExecutor == null)
+        {
+            log.warn("Virtual threads are not supported by this JVM (Java 21+ is required), the requests are handled by the platform thread pool!");
+        }
+        else
+        {
+            log.info("Requests are handled on virtual threads");
+        }
+    }
+
+    /**
+     * Returns the customizer of the {@code Tomcat} connector handling the requests on virtual threads.
+     * @return Protocol handler customizer.
+     */
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadProtocolHandlerCustomizer()
+    {
+        return protocolHandler -> {
+            if (webVirtualThreadExecutor != null)
+            {
+                protocolHandler.setExecutor(webVirtualThreadExecutor);
+            }
+        };
+    }
+
+    @Override
+    public void destroy()
+    {
+        if (webVirtualThreadExecutor != null)
+        {
+            webVirtualThreadExecutor.shutdown();
+        }
+    }
+
+    @Override
+    public void configureAsyncSupport(final AsyncSupportConfigurer configurer)
+    {
+        if (webVirtualThreadExecutor != null)
+        {
+            configurer.setTaskExecutor(new ConcurrentTaskExecutor(webVirtualThreadExecutor));
+        }
+    }
+
+    /**
+     * Returns the post processor guarding the data sources against the pinning of the carrier threads.
+     * @param environment Environment.
+     * @return Bean post processor.
+     */
+    @Bean
+    public static BeanPostProcessor pinningGuardDataSourcePostProcessor(final Environment environment)
+    {
+        return new BeanPostProcessor()
+        {
+            @Override
+            public Object postProcessAfterInitialization(final Object bean, final String beanName)
+            {
+                if (bean instanceof DataSource && !(bean instanceof PinningGuardDataSource) && BulkheadExecutors.isVirtualThreadSupported())
+                {
+                    int concurrency = environment.getProperty("hemajoo.commerce.cherry.web.jdbc-concurrency", Integer.class, PinningGuardDataSource.getDefaultConcurrency((DataSource) bean));
+                    long timeout = environment.getProperty("hemajoo.commerce.cherry.web.jdbc-timeout", Long.class, 30_000L);
+                    log.info("Data source: '{}' is guarded against the pinning of the carrier threads (concurrency: {})", beanName, concurrency);
+
+                    return new PinningGuardDataSource((DataSource) bean, concurrency, timeout);
+                }
+
+                return bean;
+            }
+        };
+    }
+}
@@ -0,0 +1,421 @@
+/*
+ * Copyright(c) 2021 Hemajoo Digital Systems Inc.
+ * --------------------------------------------------------------------------------------
+ * This file is part of Hemajoo Systems Inc. projects which is licensed
+ * under the Apache license version 2 and use is subject to license terms.
+ * You should have received a copy of the license with the project's artifact
+ * binaries and/or sources.
+ *
+ * License can be consulted at http://www.apache.org/licenses/LICENSE-2.0
+ * --------------------------------------------------------------------------------------
+ */
+package com.hemajoo.commerce.cherry.api.controller;
+
+import com.hemajoo.commerce.cherry.commons.exception.ContentStoreException;
+import com.hemajoo.commerce.cherry.model.entity.document.DocumentException;
+import com.hemajoo.commerce.cherry.persistence.content.DocumentContentReader;
+import com.hemajoo.commerce.cherry.persistence.content.DocumentService;
+import com.hemajoo.commerce.cherry.persistence.content.DocumentStoreLayout;
+import com.hemajoo.commerce.cherry.persistence.model.entity.document.DocumentEntity;
+import lombok.NonNull;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * REST controller serving the content (media file) of the documents.
+ * <p>
+ * The content of a document can be replaced conditionally ({@code If-Match}), the concurrent updates of a document
+ * being checked against its version (optimistic locking) instead of being serialized.
+ * <p>
+ * Supports conditional requests ({@code If-None-Match}, {@code If-Modified-Since}) and partial requests
+ * ({@code Range}, {@code If-Range}) so large media files can be resumed. When the servlet container supports
+ * {@code sendfile}, the bytes are sent by the container straight from the content store to the socket, without being
+ * copied through the heap. Otherwise they are transferred with a
+ * {@link FileChannel#transferTo(long, long, WritableByteChannel)} to a channel wrapping the response output stream,
+ * which copies them through a buffer.
+ * <p>
+ * When the contents are verified on read ({@code hemajoo.commerce.cherry.store.io.verify-on-read} property), a whole
+ * content is streamed through a verifying stream instead and its last bytes are only sent once its digest has been
+ * verified, so a corrupted content is never received whole. The ranges are not verified.
+ * @author <a href="mailto:christophe.resse@gmail.com">Christophe Resse</a>
+ * @version 1.0.0
+ */
+@RestController
+@RequestMapping("/api/v1/document")
+public class DocumentContentController
+{
+    /**
+     * Size of the buffers used to stream a verified content.
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Request attribute set by {@code Tomcat} when the {@code sendfile} support is available.
+     */
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+
+    /**
+     * Request attribute giving the file to send to {@code Tomcat}.
+     */
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+
+    /**
+     * Request attribute giving the start position (inclusive) of the file to send to {@code Tomcat}.
+     */
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+
+    /**
+     * Request attribute giving the end position (exclusive) of the file to send to {@code Tomcat}.
+     */
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    /**
+     * Document persistence service.
+     */
+    @Autowired
+    private DocumentService documentService;
+
+    /**
+     * Content store layout.
+     */
+    @Autowired
+    private DocumentStoreLayout documentStoreLayout;
+
+    /**
+     * Document content reader.
+     */
+    @Autowired
+    private DocumentContentReader documentContentReader;
+
+    /**
+     * Downloads the content of a document, or a range of it.
+     * @param id Document identifier.
+     * @param request Http request.
+     * @param response Http response.
+     * @throws DocumentException Raised if the document or its content cannot be found.
+     * @throws ContentStoreException Raised if the content cannot be opened.
+     * @throws IOException Thrown in case an error occurred while transferring the content or if the content is
+     * corrupted.
+     */
+    @GetMapping("/{id}/content")
+    public void download(final @PathVariable("id") UUID id, final HttpServletRequest request, final HttpServletResponse response) throws DocumentException, ContentStoreException, IOException
+    {
+        DocumentEntity document = documentService.findById(id);
+        if (document == null || document.getContentId() == null)
+        {
+            throw new DocumentException(String.format("Cannot find content of document id: '%s'", id), HttpStatus.NOT_FOUND);
+        }
+
+        Path path = documentStoreLayout.resolve(document.getContentId());
+        if (!Files.isRegularFile(path))
+        {
+            throw new DocumentException(String.format("Cannot find content id: '%s' of document id: '%s'", document.getContentId(), id), HttpStatus.NOT_FOUND);
+        }
+
+        long lastModified = getLastModified(document, path);
+        String etag = getETag(document, lastModified);
+
+        // Sets the ETag and Last-Modified headers, answers 304 if the client already has the content.
+        if (new ServletWebRequest(request, response).checkNotModified(etag, lastModified))
+        {
+            return;
+        }
+
+        long length = Files.size(path);
+        long start = 0;
+        long end = length - 1;
+
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setContentType(document.getMimeType());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.builder("inline")
+                .filename(document.getFilename() != null ? document.getFilename() : document.getContentId(), StandardCharsets.UTF_8)
+                .build()
+                .toString());
+
+        HttpRange range = getRange(request, etag, lastModified);
+        if (range != null)
+        {
+            if (length == 0 || !isSatisfiable(range, length))
+            {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+                return;
+            }
+
+            start = range.getRangeStart(length);
+            end = range.getRangeEnd(length);
+            response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+            response.setHeader(HttpHeaders.CONTENT_RANGE, String.format("bytes %d-%d/%d", start, end, length));
+        }
+
+        response.setContentLengthLong(end - start + 1);
+        if (range == null && documentContentReader.isVerifyOnRead() && document.getContentDigest() != null)
+        {
+            transferVerified(document, response);
+        }
+        else if (length > 0)
+        {
+            transfer(path, start, end - start + 1, request, response);
+        }
+    }
+
+    /**
+     * Replaces the content of a document.
+     * <p>
+     * With an {@code If-Match} header, the content is only replaced if the document has not changed since the client
+     * got the given entity tag: a stale request fails fast with a {@code 412} before its body is read. An
+     * {@code If-Match: *} header matches any existing document, even one without content yet. A request losing a race
+     * with a concurrent update fails with a {@code 409} (see {@link DocumentService#save(DocumentEntity)}).
+     * @param id Document identifier.
+     * @param request Http request whose body is the new content.
+     * @param response Http response.
+     * @throws DocumentException Raised if the document cannot be found, if the precondition fails or if the document
+     * cannot be saved.
+     * @throws IOException Thrown in case an error occurred while reading the content.
+     */
+    @PutMapping("/{id}/content")
+    public void upload(final @PathVariable("id") UUID id, final HttpServletRequest request, final HttpServletResponse response) throws DocumentException, IOException
+    {
+        // Not read from the cache: both the precondition and the version checked on save need the last committed one.
+        DocumentEntity document = documentService.findCurrentById(id);
+        if (document == null)
+        {
+            throw new DocumentException(String.format("Cannot find document id: '%s'", id), HttpStatus.NOT_FOUND);
+        }
+
+        String ifMatch = request.getHeader(HttpHeaders.IF_MATCH);
+        if (ifMatch != null)
+        {
+            Path path = document.getContentId() != null ? documentStoreLayout.resolve(document.getContentId()) : null;
+            String etag = path != null && Files.isRegularFile(path) ? getETag(document, getLastModified(document, path)) : null;
+            if (!matches(ifMatch, etag))
+            {
+                throw new DocumentException(String.format("Document id: '%s' has been modified (version: %s)", id, document.getVersion()), HttpStatus.PRECONDITION_FAILED);
+            }
+        }
+
+        try (InputStream content = request.getInputStream())
+        {
+            document.setContent(content);
+            document = documentService.save(document);
+        }
+
+        response.setHeader(HttpHeaders.ETAG, getETag(document, getLastModified(document, documentStoreLayout.resolve(document.getContentId()))));
+        response.setStatus(HttpStatus.NO_CONTENT.value());
+    }
+
+    /**
+     * Returns the entity tag of a document content.
+     * <p>
+     * The document version is part of the tag, so it changes with every update of the document, even one made within
+     * the same millisecond.
+     * @param document Document.
+     * @param lastModified Last modification time of the document (in milliseconds).
+     * @return Entity tag.
+     */
+    static String getETag(final @NonNull DocumentEntity document, final long lastModified)
+    {
+        return String.format("\"%s-%s-%d\"", document.getContentId(), document.getVersion(), lastModified);
+    }
+
+    /**
+     * Returns the last modification time of a document content.
+     * @param document Document.
+     * @param path Content file.
+     * @return Last modification time (in milliseconds).
+     * @throws IOException Thrown in case an error occurred while accessing the content file.
+     */
+    private long getLastModified(final DocumentEntity document, final Path path) throws IOException
+    {
+        return document.getModifiedDate() != null
+                ? document.getModifiedDate().getTime()
+                : Files.getLastModifiedTime(path).toMillis();
+    }
+
+    /**
+     * Checks if an {@code If-Match} header matches the current entity tag of an existing document content (strong
+     * comparison).
+     * @param header {@code If-Match} header.
+     * @param etag Current entity tag or null if the document has no content.
+     * @return {@code True} if the header matches, {@code false} otherwise.
+     */
+    private boolean matches(final String header, final String etag)
+    {
+        for (String tag : header.split(","))
+        {
+            String value = tag.trim();
+            if (value.equals("*") || value.equals(etag))
+            {
+                return true; // The document exists, with or without content.
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Returns the range requested by the client, if any and still valid.
+     * <p>
+     * Only single range requests are served partially, a multiple ranges request is served with the whole content.
+     * @param request Http request.
+     * @param etag Current entity tag of the content.
+     * @param lastModified Current last modification time of the content (in milliseconds).
+     * @return Requested range or null if the whole content must be served.
+     */
+    private HttpRange getRange(final HttpServletRequest request, final String etag, final long lastModified)
+    {
+        String header = request.getHeader(HttpHeaders.RANGE);
+        if (header == null)
+        {
+            return null;
+        }
+
+        // If-Range: the range is only served if the content has not changed, otherwise the whole content is served.
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange != null)
+        {
+            if (ifRange.startsWith("\"") || ifRange.startsWith("W/"))
+            {
+                if (!ifRange.equals(etag))
+                {
+                    return null;
+                }
+            }
+            else
+            {
+                long date = request.getDateHeader(HttpHeaders.IF_RANGE);
+                if (date == -1 || lastModified / 1000 > date / 1000)
+                {
+                    return null;
+                }
+            }
+        }
+
+        try
+        {
+            List<HttpRange> ranges = HttpRange.parseRanges(header);
+            return ranges.size() == 1 ? ranges.get(0) : null;
+        }
+        catch (IllegalArgumentException e)
+        {
+            return null; // Invalid range header is ignored.
+        }
+    }
+
+    /**
+     * Checks if a range can be served for a content.
+     * @param range Range.
+     * @param length Content length.
+     * @return {@code True} if the range is satisfiable, {@code false} otherwise.
+     */
+    private boolean isSatisfiable(final HttpRange range, final long length)
+    {
+        try
+        {
+            return range.getRangeStart(length) <= range.getRangeEnd(length);
+        }
+        catch (IllegalArgumentException e)
+        {
+            return false;
+        }
+    }
+
+    /**
+     * Transfers a portion of a file to the client.
+     * @param path File path.
+     * @param start Start position.
+     * @param count Number of bytes to transfer.
+     * @param request Http request.
+     * @param response Http response.
+     * @throws IOException Thrown in case an error occurred while transferring the file.
+     */
+    private void transfer(final Path path, final long start, final long count, final HttpServletRequest request, final HttpServletResponse response) throws IOException
+    {
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT)))
+        {
+            // The servlet container sends the file itself, straight from the page cache to the socket.
+            request.setAttribute(SENDFILE_FILENAME, path.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, start + count);
+            return;
+        }
+
+        // Not a zero copy: the channel wrapping the output stream copies the bytes through a heap buffer.
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ))
+        {
+            WritableByteChannel target = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            long remaining = count;
+            while (remaining > 0)
+            {
+                long transferred = channel.transferTo(position, remaining, target);
+                if (transferred <= 0)
+                {
+                    break; // File has been truncated meanwhile.
+                }
+                position += transferred;
+                remaining -= transferred;
+            }
+        }
+    }
+
+    /**
+     * Transfers the whole content of a document to the client, verified against its digest.
+     * <p>
+     * A buffer is held back until the next one is read, so the last bytes are only sent once the end of the content has
+     * been reached and its digest verified: a corrupted content fails the response before being sent whole.
+     * @param document Document.
+     * @param response Http response.
+     * @throws ContentStoreException Raised if the content cannot be opened.
+     * @throws IOException Thrown in case an error occurred while transferring the content or if the content is
+     * corrupted.
+     */
+    private void transferVerified(final DocumentEntity document, final HttpServletResponse response) throws ContentStoreException, IOException
+    {
+        try (InputStream input = documentContentReader.getContent(document, true))
+        {
+            OutputStream output = response.getOutputStream();
+            byte[] pending = new byte[BUFFER_SIZE];
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int pendingCount = 0;
+            int count;
+
+            // The loop only ends once the end of the content has been read, hence its digest verified.
+            while ((count = input.readNBytes(buffer, 0, buffer.length)) > 0)
+            {
+                output.write(pending, 0, pendingCount);
+
+                byte[] swap = pending;
+                pending = buffer;
+                buffer = swap;
+                pendingCount = count;
+            }
+
+            output.write(pending, 0, pendingCount);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright(c) 2021 Hemajoo Digital Systems Inc.
+ * --------------------------------------------------------------------------------------
+ * This file is part of Hemajoo Systems Inc. projects which is licensed
+ * under the Apache license version 2 and use is subject to license terms.
+ * You should have received a copy of the license with the project's artifact
+ * binaries and/or sources.
+ *
+ * License can be consulted at http://www.apache.org/licenses/LICENSE-2.0
+ * --------------------------------------------------------------------------------------
+ */
+package com.hemajoo.commerce.cherry.api.controller;
+
+import com.hemajoo.commerce.cherry.commons.type.StatusType;
+import com.hemajoo.commerce.cherry.model.entity.document.Document;
+import com.hemajoo.commerce.cherry.model.entity.document.DocumentException;
+import com.hemajoo.commerce.cherry.model.entity.document.DocumentType;
+import com.hemajoo.commerce.cherry.persistence.content.DocumentService;
+import com.hemajoo.commerce.cherry.persistence.model.entity.document.DocumentCursor;
+import com.hemajoo.commerce.cherry.persistence.model.entity.document.DocumentMapper;
+import com.hemajoo.commerce.cherry.persistence.model.entity.document.DocumentSummary;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * REST controller listing the documents of an owner.
+ * <p>
+ * The documents are listed by slices, ordered by creation date then identifier, using a keyset pagination: when more
+ * documents follow, the response carries a {@code Next-Cursor} header whose (opaque) value is to be passed as the
+ * {@code cursor} parameter of the next request.
+ * @author <a href="mailto:christophe.resse@gmail.com">Christophe Resse</a>
+ * @version 1.0.0
+ */
+@RestController
+@RequestMapping("/api/v1/document")
+public class DocumentOwnerController
+{
+    /**
+     * Header giving the cursor of the following slice of documents.
+     */
+    public static final String NEXT_CURSOR = "Next-Cursor";
+
+    /**
+     * Default number of documents of a slice.
+     */
+    public static final int DEFAULT_LIMIT = 50;
+
+    /**
+     * Maximum number of documents of a slice.
+     */
+    public static final int MAX_LIMIT = 500;
+
+    /**
+     * Document persistence service.
+     */
+    @Autowired
+    private DocumentService documentService;
+
+    /**
+     * Lists a slice of the documents of an owner.
+     * @param ownerId Owner identifier.
+     * @param documentType Document type (optional).
+     * @param statusType Status type (optional).
+     * @param cursor Cursor returned with the previous slice (optional, none to get the first slice).
+     * @param limit Maximum number of documents to return.
+     * @return Documents (without their content).
+     * @throws DocumentException Raised if the cursor or the limit is invalid.
+     */
+    @GetMapping("/owner/{ownerId}")
+    public ResponseEntity<List<Document>> findByOwnerId(
+            final @PathVariable("ownerId") UUID ownerId,
+            final @RequestParam(value = "documentType", required = false) DocumentType documentType,
+            final @RequestParam(value = "statusType", required = false) StatusType statusType,
+            final @RequestParam(value = "cursor", required = false) String cursor,
+            final @RequestParam(value = "limit", defaultValue = "" + DEFAULT_LIMIT) int limit) throws DocumentException
+    {
+        if (limit < 1 || limit > MAX_LIMIT)
+        {
+            throw new DocumentException(String.format("Invalid limit: '%d', must be between 1 and %d", limit, MAX_LIMIT), HttpStatus.BAD_REQUEST);
+        }
+
+        DocumentCursor after = cursor == null || cursor.isEmpty() ? null : DocumentCursor.decode(cursor);
+        Slice<DocumentSummary> slice = documentService.findSummariesByOwnerId(ownerId, documentType, statusType, after, limit);
+
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok();
+        if (slice.hasNext())
+        {
+            List<DocumentSummary> summaries = slice.getContent();
+            builder.header(NEXT_CURSOR, DocumentCursor.of(summaries.get(summaries.size() - 1)).encode());
+        }
+
+        return builder.body(DocumentMapper.INSTANCE.fromSummaryList(slice.getContent()));
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright(c) 2021 Hemajoo Digital Systems Inc.
+ * --------------------------------------------------------------------------------------
+ * This file is part of Hemajoo Systems Inc. projects which is licensed
+ * under the Apache license version 2 and use is subject to license terms.
+ * You should have received a copy of the license with the project's artifact
+ * binaries and/or sources.
+ *
+ * License can be consulted at http://www.apache.org/licenses/LICENSE-2.0
+ * --------------------------------------------------------------------------------------
+ */
+package com.hemajoo.commerce.cherry.api.controller;
+
+import com.hemajoo.commerce.cherry.commons.entity.EntityIdentity;
+import com.hemajoo.commerce.cherry.commons.exception.ContentStoreException;
+import com.hemajoo.commerce.cherry.commons.type.EntityType;
+import com.hemajoo.commerce.cherry.model.entity.document.DocumentException;
+import com.hemajoo.commerce.cherry.model.entity.document.DocumentType;
+import com.hemajoo.commerce.cherry.persistence.content.DocumentService;
+import com.hemajoo.commerce.cherry.persistence.content.DocumentUploadStore;
+import com.hemajoo.commerce.cherry.persistence.model.entity.base.BaseEntity;
+import com.hemajoo.commerce.cherry.persistence.model.entity.document.DocumentEntity;
+import org.apache.commons.io.FilenameUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.UUID;
+
+/**
+ * REST controller handling the resumable upload, by chunks, of the document contents.
+ * <p>
+ * The protocol is the following:
+ * <ul>
+ * <li>{@code POST /upload} initiates an upload and returns its identifier,</li>
+ * <li>{@code PATCH /upload/{uploadId}?offset=n} appends a chunk (raw bytes) at the given offset and returns the new
+ * offset; a chunk whose offset does not match the current offset of the upload is rejected with a {@code 409},</li>
+ * <li>{@code HEAD /upload/{uploadId}} returns the current offset (in the {@code Upload-Offset} header) so an upload
+ * interrupted by a dropped connection can be resumed,</li>
+ * <li>{@code POST /upload/{uploadId}/commit} creates the document, the uploaded file being moved as its content,</li>
+ * <li>{@code DELETE /upload/{uploadId}} aborts an upload.</li>
+ * </ul>
+ * The chunks are not subject to the multipart size limits as they are streamed, as is, to the content store.
+ * @author <a href="mailto:christophe.resse@gmail.com">Christophe Resse</a>
+ * @version 1.0.0
+ */
+@RestController
+@RequestMapping("/api/v1/document/upload")
+public class DocumentUploadController
+{
+    /**
+     * Header giving the current offset of an upload.
+     */
+    public static final String UPLOAD_OFFSET = "Upload-Offset";
+
+    /**
+     * Document persistence service.
+     */
+    @Autowired
+    private DocumentService documentService;
+
+    /**
+     * Upload store.
+     */
+    @Autowired
+    private DocumentUploadStore documentUploadStore;
+
+    /**
+     * Initiates an upload.
+     * @return Upload identifier.
+     * @throws ContentStoreException Raised if the upload cannot be initiated.
+     */
+    @PostMapping
+    public ResponseEntity<String> init() throws ContentStoreException
+    {
+        String uploadId = documentUploadStore.init();
+
+        return ResponseEntity.created(ServletUriComponentsBuilder.fromCurrentRequest().path("/{uploadId}").buildAndExpand(uploadId).toUri())
+                .header(UPLOAD_OFFSET, "0")
+                .body(uploadId);
+    }
+
+    /**
+     * Returns the current offset of an upload.
+     * @param uploadId Upload identifier.
+     * @return Empty response with the current offset in the {@code Upload-Offset} header.
+     * @throws ContentStoreException Raised if the upload cannot be found.
+     */
+    @RequestMapping(path = "/{uploadId}", method = RequestMethod.HEAD)
+    public ResponseEntity<Void> getOffset(final @PathVariable("uploadId") String uploadId) throws ContentStoreException
+    {
+        return ResponseEntity.noContent()
+                .header(UPLOAD_OFFSET, String.valueOf(documentUploadStore.getOffset(uploadId)))
+                .build();
+    }
+
+    /**
+     * Appends a chunk to an upload.
+     * @param uploadId Upload identifier.
+     * @param offset Offset of the chunk.
+     * @param request Http request whose body is the chunk.
+     * @return Empty response with the new offset in the {@code Upload-Offset} header.
+     * @throws ContentStoreException Raised if the chunk cannot be appended.
+     * @throws IOException Thrown in case an error occurred while reading the chunk.
+     */
+    @PatchMapping(path = "/{uploadId}", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<Void> append(final @PathVariable("uploadId") String uploadId, final @RequestParam("offset") long offset, final HttpServletRequest request) throws ContentStoreException, IOException
+    {
+        long position;
+        try (InputStream chunk = request.getInputStream())
+        {
+            position = documentUploadStore.append(uploadId, offset, chunk);
+        }
+
+        return ResponseEntity.noContent()
+                .header(UPLOAD_OFFSET, String.valueOf(position))
+                .build();
+    }
+
+    /**
+     * Commits an upload, creating a new document whose content is the uploaded file.
+     * @param uploadId Upload identifier.
+     * @param ownerId Identifier of the document owner.
+     * @param ownerType Entity type of the document owner (optional but avoids a lookup in all the entity tables).
+     * @param documentType Document type.
+     * @param filename Original file name.
+     * @return Identifier of the created document.
+     * @throws DocumentException Raised if the document cannot be created.
+     * @throws ContentStoreException Raised if the upload cannot be found.
+     */
+    @PostMapping("/{uploadId}/commit")
+    public ResponseEntity<UUID> commit(
+            final @PathVariable("uploadId") String uploadId,
+            final @RequestParam("ownerId") UUID ownerId,
+            final @RequestParam(name = "ownerType", required = false) EntityType ownerType,
+            final @RequestParam("documentType") DocumentType documentType,
+            final @RequestParam("filename") String filename) throws DocumentException, ContentStoreException
+    {
+        BaseEntity owner = documentService.findOwner(new EntityIdentity(ownerId, ownerType));
+        if (owner == null)
+        {
+            throw new DocumentException(String.format("Cannot find owner id: '%s'", ownerId), HttpStatus.NOT_FOUND);
+        }
+
+        DocumentEntity document = new DocumentEntity(owner, documentType);
+        document.setFilename(FilenameUtils.getName(filename));
+        document.setName(FilenameUtils.getBaseName(filename));
+        document.setExtension(FilenameUtils.getExtension(filename));
+
+        document = documentService.save(document, documentUploadStore.getFile(uploadId));
+
+        return ResponseEntity.status(HttpStatus.CREATED).body(document.getId());
+    }
+
+    /**
+     * Aborts an upload.
+     * @param uploadId Upload identifier.
+     * @return Empty response.
+     * @throws ContentStoreException Raised if the upload cannot be aborted.
+     */
+    @DeleteMapping("/{uploadId}")
+    public ResponseEntity<Void> abort(final @PathVariable("uploadId") String uploadId) throws ContentStoreException
+    {
+        documentUploadStore.abort(uploadId);
+
+        return ResponseEntity.noContent().build();
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright(c) 2021 Hemajoo Digital Systems Inc.
+ * --------------------------------------------------------------------------------------
+ * This file is part of Hemajoo Systems Inc. projects which is licensed
+ * under the Apache license version 2 and use is subject to license terms.
+ * You should have received a copy of the license with the project's artifact
+ * binaries and/or sources.
+ *
+ * License can be consulted at http://www.apache.org/licenses/LICENSE-2.0
+ * --------------------------------------------------------------------------------------
+ */
+package com.hemajoo.commerce.cherry.api.controller;
+
+import com.hemajoo.commerce.cherry.commons.exception.EntityException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+/**
+ * Translates the exceptions raised by the REST controllers into Http responses.
+ * @author <a href="mailto:christophe.resse@gmail.com">Christophe Resse</a>
+ * @version 1.0.0
+ */
+@RestControllerAdvice
+public class EntityExceptionHandler
+{
+    /**
+     * Handles an entity exception using its Http status.
+     * @param exception Entity exception.
+     * @return Http response.
+     */
+    @ExceptionHandler(EntityException.class)
+    public ResponseEntity<String> handleEntityException(final EntityException exception)
+    {
+        HttpStatus status = exception.getStatus() != null ? exception.getStatus() : HttpStatus.INTERNAL_SERVER_ERROR;
+
+        return ResponseEntity.status(status).body(exception.getMessage());
+    }
+
+    /**
+     * Handles the failure of an optimistic lock, i.e. an update of an entity that has been updated by someone else
+     * since it has been read (detected when the transaction commits).
+     * @param exception Optimistic locking failure.
+     * @return Http response.
+     */
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    public ResponseEntity<String> handleOptimisticLockingFailure(final OptimisticLockingFailureException exception)
+    {
+        return ResponseEntity.status(HttpStatus.CONFLICT).body("Entity has been modified concurrently, read it again and retry!");
+    }
+}
@@ -0,0 +1,294 @@
+/*
+ * Copyright(c) 2021 Hemajoo Digital Systems Inc.
+ * --------------------------------------------------------------------------------------
+ * This file is part of Hemajoo Systems Inc. projects which is licensed
+ * under the Apache license version 2 and use is subject to license terms.
+ * You should have received a copy of the license with the project's artifact
+ * binaries and/or sources.
+ *
+ * License can be consulted at http://www.apache.org/licenses/LICENSE-2.0
+ * --------------------------------------------------------------------------------------
+ */
+package com.hemajoo.commerce.cherry.api.test.unit.configuration;
+
+import com.hemajoo.commerce.cherry.api.configuration.VirtualThreadConfiguration;
+import com.hemajoo.commerce.cherry.api.controller.DocumentContentController;
+import com.hemajoo.commerce.cherry.api.controller.EntityExceptionHandler;
+import com.hemajoo.commerce.cherry.model.entity.document.DocumentException;
+import com.hemajoo.commerce.cherry.persistence.base.concurrent.BulkheadExecutors;
+import com.hemajoo.commerce.cherry.persistence.content.DocumentContentReader;
+import com.hemajoo.commerce.cherry.persistence.content.DocumentService;
+import com.hemajoo.commerce.cherry.persistence.content.DocumentStoreLayout;
+import com.hemajoo.commerce.cherry.persistence.model.entity.document.DocumentEntity;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.coyote.http11.AbstractHttp11Protocol;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.ressec.avocado.core.junit.BaseUnitTest;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.http.HttpMessageConvertersAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.embedded.EmbeddedWebServerFactoryCustomizerAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.servlet.DispatcherServletAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.servlet.ServletWebServerFactoryAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.servlet.WebMvcAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.web.embedded.tomcat.TomcatConnectorCustomizer;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.context.annotation.Bean;
+import org.springframework.test.context.TestPropertySource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Benchmark comparing concurrent slow client downloads served by the application when the requests are handled by the
+ * bounded {@code Tomcat} thread pool ({@code hemajoo.commerce.cherry.web.virtual-threads} property disabled) and by
+ * virtual threads (property enabled).
+ * <p>
+ * While slow clients are downloading contents through the {@link DocumentContentController}, the latency of a fast
+ * request (a probe) is measured: with a bounded pool, the probe waits for a slow download to end. {@code sendfile} is
+ * disabled so the contents are written by the request threads (as behind {@code TLS}).
+ * <p>
+ * Excluded from the default test runs, run with the {@code benchmark} profile on a {@code JVM} supporting virtual
+ * threads ({@code Java 21+}).
+ * @author <a href="mailto:christophe.resse@gmail.com">Christophe Resse</a>
+ * @version 1.0.0
+ */
+@Slf4j
+@Tag("benchmark")
+@SpringBootTest(
+        webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        classes = { DocumentContentController.class, EntityExceptionHandler.class, VirtualThreadConfiguration.class, UnitTestSlowClientDownloadBenchmark.BenchmarkConfiguration.class },
+        properties = "server.tomcat.threads.max=" + UnitTestSlowClientDownloadBenchmark.POOL_SIZE)
+@DisplayName("Benchmark the slow client downloads")
+class UnitTestSlowClientDownloadBenchmark extends BaseUnitTest
+{
+    /**
+     * Number of request threads of the {@code Tomcat} pool.
+     */
+    static final int POOL_SIZE = 16;
+
+    /**
+     * Number of slow clients.
+     */
+    private static final int CLIENTS = 64;
+
+    /**
+     * Length of the downloaded content.
+     */
+    private static final int CONTENT_LENGTH = 4 * 1024 * 1024;
+
+    /**
+     * Time (in milliseconds) a slow client waits between two reads of 64 KB.
+     */
+    private static final long CLIENT_DELAY = 20;
+
+    /**
+     * Identifier of the downloaded document.
+     */
+    private static final UUID DOCUMENT_ID = UUID.randomUUID();
+
+    /**
+     * Probe latencies (in milliseconds) per execution mode.
+     */
+    private static final Map<String, Long> LATENCIES = new ConcurrentHashMap<>();
+
+    /**
+     * Web tier under test: the content controller serving a document whose content is a file of a temporary directory.
+     */
+    @TestConfiguration
+    @ImportAutoConfiguration({
+            ServletWebServerFactoryAutoConfiguration.class,
+            EmbeddedWebServerFactoryCustomizerAutoConfiguration.class,
+            DispatcherServletAutoConfiguration.class,
+            WebMvcAutoConfiguration.class,
+            HttpMessageConvertersAutoConfiguration.class,
+            JacksonAutoConfiguration.class })
+    static class BenchmarkConfiguration
+    {
+        @Bean
+        public DocumentStoreLayout documentStoreLayout() throws IOException
+        {
+            Path content = Files.createTempFile("cherry-benchmark", ".bin");
+            content.toFile().deleteOnExit();
+            Files.write(content, new byte[CONTENT_LENGTH]);
+
+            DocumentStoreLayout layout = mock(DocumentStoreLayout.class);
+            when(layout.resolve("content")).thenReturn(content);
+
+            return layout;
+        }
+
+        @Bean
+        public DocumentContentReader documentContentReader(final DocumentStoreLayout documentStoreLayout)
+        {
+            return new DocumentContentReader(documentStoreLayout, 0, false);
+        }
+
+        @Bean
+        public DocumentService documentService() throws DocumentException
+        {
+            DocumentEntity document = new DocumentEntity();
+            document.setId(DOCUMENT_ID);
+            document.setContentId("content");
+            document.setVersion(1L);
+            document.setMimeType("application/octet-stream");
+            document.setFilename("content.bin");
+            document.setModifiedDate(new Date());
+
+            DocumentService service = mock(DocumentService.class);
+            when(service.findById(DOCUMENT_ID)).thenReturn(document);
+
+            return service;
+        }
+
+        @Bean
+        public TomcatConnectorCustomizer disableSendfile()
+        {
+            return connector -> ((AbstractHttp11Protocol<?>) connector.getProtocolHandler()).setUseSendfile(false);
+        }
+    }
+
+    @Nested
+    @TestPropertySource(properties = "hemajoo.commerce.cherry.web.virtual-threads=false")
+    @DisplayName("Requests handled by the Tomcat thread pool")
+    class PlatformThreads
+    {
+        @LocalServerPort
+        private int port;
+
+        @Test
+        @DisplayName("Measure the probe latency during slow client downloads")
+        final void testSlowClientDownloads() throws Exception
+        {
+            LATENCIES.put("platform", run(port));
+        }
+    }
+
+    @Nested
+    @TestPropertySource(properties = "hemajoo.commerce.cherry.web.virtual-threads=true")
+    @DisplayName("Requests handled by virtual threads")
+    class VirtualThreads
+    {
+        @LocalServerPort
+        private int port;
+
+        @Test
+        @DisplayName("Measure the probe latency during slow client downloads")
+        final void testSlowClientDownloads() throws Exception
+        {
+            assumeTrue(BulkheadExecutors.isVirtualThreadSupported(), "Virtual threads are not supported by this JVM!");
+
+            LATENCIES.put("virtual", run(port));
+        }
+    }
+
+    @AfterAll
+    static void compareLatencies()
+    {
+        if (LATENCIES.size() < 2)
+        {
+            return; // Virtual threads not supported.
+        }
+
+        log.info("Probe latency while {} slow clients are downloading: platform threads ({} threads): {} ms, virtual threads: {} ms",
+                CLIENTS, POOL_SIZE, LATENCIES.get("platform"), LATENCIES.get("virtual"));
+
+        assertThat(LATENCIES.get("virtual"))
+                .as("Probe should not wait for the slow downloads on virtual threads!")
+                .isLessThan(LATENCIES.get("platform"));
+    }
+
+    /**
+     * Runs the slow client downloads against the application.
+     * @param port Port of the application.
+     * @return Probe latency (in milliseconds).
+     * @throws Exception Thrown in case an error occurred while running the benchmark.
+     */
+    private static long run(final int port) throws Exception
+    {
+        String base = "http://localhost:" + port + "/api/v1/document/" + DOCUMENT_ID;
+        ExecutorService clients = Executors.newCachedThreadPool();
+        try
+        {
+            List<Future<Long>> downloads = new ArrayList<>(CLIENTS);
+            for (int i = 0; i < CLIENTS; i++)
+            {
+                downloads.add(clients.submit(() -> download(new URL(base + "/content"))));
+            }
+
+            Thread.sleep(500); // Let the slow downloads occupy the request threads.
+
+            // The probe is a conditional request answered without any content.
+            long start = System.nanoTime();
+            HttpURLConnection probe = (HttpURLConnection) new URL(base + "/content").openConnection();
+            probe.setRequestProperty("If-Modified-Since", "Fri, 31 Dec 2100 23:59:59 GMT");
+            assertThat(probe.getResponseCode())
+                    .as("Probe should succeed!")
+                    .isEqualTo(304);
+            long latency = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+            for (Future<Long> download : downloads)
+            {
+                assertThat(download.get(5, TimeUnit.MINUTES))
+                        .as("Content should be downloaded whole!")
+                        .isEqualTo(CONTENT_LENGTH);
+            }
+
+            return latency;
+        }
+        finally
+        {
+            clients.shutdownNow();
+        }
+    }
+
+    /**
+     * Downloads a content as a slow client.
+     * @param url Content url.
+     * @return Number of bytes downloaded.
+     * @throws IOException Thrown in case an error occurred while downloading the content.
+     * @throws InterruptedException Thrown if the download has been interrupted.
+     */
+    private static long download(final URL url) throws IOException, InterruptedException
+    {
+        byte[] buffer = new byte[64 * 1024];
+        long length = 0;
+
+        try (InputStream input = url.openStream())
+        {
+            int count;
+            while ((count = input.read(buffer)) != -1)
+            {
+                length += count;
+                Thread.sleep(CLIENT_DELAY);
+            }
+        }
+
+        return length;
+    }
+}
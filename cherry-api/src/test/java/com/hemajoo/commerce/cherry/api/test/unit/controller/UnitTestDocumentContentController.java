@@ -0,0 +1,371 @@
+/*
+ * Copyright(c) 2021 Hemajoo Digital Systems Inc.
+ * --------------------------------------------------------------------------------------
+ * This file is part of Hemajoo Systems Inc. projects which is licensed
+ * under the Apache license version 2 and use is subject to license terms.
+ * You should have received a copy of the license with the project's artifact
+ * binaries and/or sources.
+ *
+ * License can be consulted at http://www.apache.org/licenses/LICENSE-2.0
+ * --------------------------------------------------------------------------------------
+ */
+package com.hemajoo.commerce.cherry.api.test.unit.controller;
+
+import com.hemajoo.commerce.cherry.api.controller.DocumentContentController;
+import com.hemajoo.commerce.cherry.api.controller.EntityExceptionHandler;
+import com.hemajoo.commerce.cherry.model.entity.document.DocumentException;
+import com.hemajoo.commerce.cherry.persistence.base.io.ContentDigests;
+import com.hemajoo.commerce.cherry.persistence.content.DocumentContentReader;
+import com.hemajoo.commerce.cherry.persistence.content.DocumentService;
+import com.hemajoo.commerce.cherry.persistence.content.DocumentStoreLayout;
+import com.hemajoo.commerce.cherry.persistence.model.entity.document.DocumentEntity;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.ressec.avocado.core.junit.BaseUnitTest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Test the {@link DocumentContentController} class: conditional, partial and verified downloads, conditional uploads.
+ * @author <a href="mailto:christophe.resse@gmail.com">Christophe Resse</a>
+ * @version 1.0.0
+ */
+@WebMvcTest(controllers = DocumentContentController.class)
+@ContextConfiguration(classes = { DocumentContentController.class, EntityExceptionHandler.class, UnitTestDocumentContentController.ReaderConfiguration.class })
+class UnitTestDocumentContentController extends BaseUnitTest
+{
+    /**
+     * Content of the document.
+     */
+    private static final byte[] CONTENT = "0123456789".repeat(10).getBytes();
+
+    /**
+     * Mock Mvc.
+     */
+    @Autowired
+    private MockMvc mockMvc;
+
+    /**
+     * Document persistence service.
+     */
+    @MockBean
+    private DocumentService documentService;
+
+    /**
+     * Content store layout.
+     */
+    @MockBean
+    private DocumentStoreLayout documentStoreLayout;
+
+    /**
+     * Content reader verifying the contents on read.
+     */
+    @TestConfiguration
+    static class ReaderConfiguration
+    {
+        @Bean
+        public DocumentContentReader documentContentReader(final DocumentStoreLayout documentStoreLayout)
+        {
+            return new DocumentContentReader(documentStoreLayout, 0, true);
+        }
+    }
+
+    /**
+     * Directory of the content file.
+     */
+    @TempDir
+    Path directory;
+
+    /**
+     * Document identifier.
+     */
+    private UUID id;
+
+    /**
+     * Document (without digest, so its content is not verified).
+     */
+    private DocumentEntity document;
+
+    @BeforeEach
+    final void setUp() throws DocumentException, IOException
+    {
+        Path file = Files.write(directory.resolve("content"), CONTENT);
+
+        id = UUID.randomUUID();
+        document = newDocument(1L);
+        when(documentService.findById(id)).thenReturn(document);
+        when(documentService.findCurrentById(id)).thenReturn(document);
+        when(documentStoreLayout.resolve("content")).thenReturn(file);
+    }
+
+    @Test
+    @DisplayName("Download the whole content of a document")
+    final void testDownloadContent() throws Exception
+    {
+        MvcResult result = mockMvc.perform(get("/api/v1/document/{id}/content", id))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ACCEPT_RANGES, "bytes"))
+                .andExpect(header().exists(HttpHeaders.ETAG))
+                .andExpect(header().longValue(HttpHeaders.CONTENT_LENGTH, CONTENT.length))
+                .andReturn();
+
+        assertThat(result.getResponse().getContentAsByteArray())
+                .as("Whole content should have been served!")
+                .isEqualTo(CONTENT);
+    }
+
+    @Test
+    @DisplayName("Download a range of the content of a document")
+    final void testDownloadRange() throws Exception
+    {
+        MvcResult result = mockMvc.perform(get("/api/v1/document/{id}/content", id)
+                        .header(HttpHeaders.RANGE, "bytes=10-19"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 10-19/" + CONTENT.length))
+                .andExpect(header().longValue(HttpHeaders.CONTENT_LENGTH, 10))
+                .andReturn();
+
+        assertThat(result.getResponse().getContentAsByteArray())
+                .as("Requested range should have been served!")
+                .isEqualTo(Arrays.copyOfRange(CONTENT, 10, 20));
+    }
+
+    @Test
+    @DisplayName("Download a range only if the content has not changed (If-Range)")
+    final void testDownloadRangeIfUnchanged() throws Exception
+    {
+        String etag = mockMvc.perform(get("/api/v1/document/{id}/content", id))
+                .andReturn()
+                .getResponse()
+                .getHeader(HttpHeaders.ETAG);
+
+        mockMvc.perform(get("/api/v1/document/{id}/content", id)
+                        .header(HttpHeaders.RANGE, "bytes=0-9")
+                        .header(HttpHeaders.IF_RANGE, etag))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 0-9/" + CONTENT.length));
+
+        // Content has changed since: the whole content is served.
+        MvcResult result = mockMvc.perform(get("/api/v1/document/{id}/content", id)
+                        .header(HttpHeaders.RANGE, "bytes=0-9")
+                        .header(HttpHeaders.IF_RANGE, "\"stale\""))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(HttpHeaders.CONTENT_RANGE))
+                .andReturn();
+
+        assertThat(result.getResponse().getContentAsByteArray())
+                .as("Whole content should have been served for a stale If-Range!")
+                .isEqualTo(CONTENT);
+    }
+
+    @Test
+    @DisplayName("Answer 304 when the client already has the content")
+    final void testNotModified() throws Exception
+    {
+        String etag = mockMvc.perform(get("/api/v1/document/{id}/content", id))
+                .andReturn()
+                .getResponse()
+                .getHeader(HttpHeaders.ETAG);
+
+        MvcResult result = mockMvc.perform(get("/api/v1/document/{id}/content", id)
+                        .header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andReturn();
+
+        assertThat(result.getResponse().getContentAsByteArray())
+                .as("No content should have been served!")
+                .isEmpty();
+    }
+
+    @Test
+    @DisplayName("Answer 416 for a range outside of the content")
+    final void testRangeNotSatisfiable() throws Exception
+    {
+        mockMvc.perform(get("/api/v1/document/{id}/content", id)
+                        .header(HttpHeaders.RANGE, "bytes=200-299"))
+                .andExpect(status().isRequestedRangeNotSatisfiable())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes */" + CONTENT.length));
+    }
+
+    @Test
+    @DisplayName("Verify the whole content against its digest when downloaded")
+    final void testDownloadVerifiedContent() throws Exception
+    {
+        document.setContentDigest(ContentDigests.toHex(ContentDigests.newDigest().digest(CONTENT)));
+        MvcResult result = mockMvc.perform(get("/api/v1/document/{id}/content", id))
+                .andExpect(status().isOk())
+                .andExpect(header().longValue(HttpHeaders.CONTENT_LENGTH, CONTENT.length))
+                .andReturn();
+
+        assertThat(result.getResponse().getContentAsByteArray())
+                .as("Intact content should have been served whole!")
+                .isEqualTo(CONTENT);
+
+        // Content no more matching its digest.
+        document.setContentDigest(ContentDigests.toHex(ContentDigests.newDigest().digest("corrupted".getBytes())));
+        assertThatThrownBy(() -> mockMvc.perform(get("/api/v1/document/{id}/content", id)))
+                .as("Corrupted content should fail the download!")
+                .hasRootCauseInstanceOf(IOException.class)
+                .hasStackTraceContaining("Content is corrupted");
+
+        // Ranges are not verified.
+        mockMvc.perform(get("/api/v1/document/{id}/content", id)
+                        .header(HttpHeaders.RANGE, "bytes=0-9"))
+                .andExpect(status().isPartialContent());
+    }
+
+    @Test
+    @DisplayName("Answer 412 for an upload with a stale If-Match")
+    final void testUploadStale() throws Exception
+    {
+        String etag = mockMvc.perform(get("/api/v1/document/{id}/content", id))
+                .andReturn()
+                .getResponse()
+                .getHeader(HttpHeaders.ETAG);
+
+        // Document updated by another client since.
+        document.setVersion(2L);
+        mockMvc.perform(put("/api/v1/document/{id}/content", id)
+                        .header(HttpHeaders.IF_MATCH, etag)
+                        .content(CONTENT))
+                .andExpect(status().isPreconditionFailed());
+
+        verify(documentService, never()).save(any(DocumentEntity.class));
+    }
+
+    @Test
+    @DisplayName("Answer 204 to the winner and 409 to the loser of concurrent uploads")
+    final void testUploadRace() throws Exception
+    {
+        String etag = mockMvc.perform(get("/api/v1/document/{id}/content", id))
+                .andReturn()
+                .getResponse()
+                .getHeader(HttpHeaders.ETAG);
+
+        // Both clients read the document before the winner commits, the loser fails on the version check at commit.
+        AtomicLong committed = new AtomicLong(1L);
+        when(documentService.findCurrentById(id)).thenAnswer(invocation -> newDocument(1L));
+        when(documentService.save(any(DocumentEntity.class))).thenAnswer(invocation -> {
+            DocumentEntity saved = invocation.getArgument(0);
+            if (!committed.compareAndSet(saved.getVersion(), saved.getVersion() + 1))
+            {
+                throw new DocumentException(String.format("Document id: '%s' has been modified concurrently", id), HttpStatus.CONFLICT);
+            }
+            saved.setVersion(committed.get());
+
+            return saved;
+        });
+
+        String winner = mockMvc.perform(put("/api/v1/document/{id}/content", id)
+                        .header(HttpHeaders.IF_MATCH, etag)
+                        .content(CONTENT))
+                .andExpect(status().isNoContent())
+                .andExpect(header().exists(HttpHeaders.ETAG))
+                .andReturn()
+                .getResponse()
+                .getHeader(HttpHeaders.ETAG);
+
+        assertThat(winner)
+                .as("Winner should have been given the entity tag of the new version!")
+                .isNotEqualTo(etag);
+
+        mockMvc.perform(put("/api/v1/document/{id}/content", id)
+                        .header(HttpHeaders.IF_MATCH, etag)
+                        .content(CONTENT))
+                .andExpect(status().isConflict());
+    }
+
+    @Test
+    @DisplayName("Check If-Match against the last committed version, not a cached one")
+    final void testUploadStaleCache() throws Exception
+    {
+        // Document updated on another instance: the cached copy is still at version 1.
+        document.setVersion(2L);
+        String etag = mockMvc.perform(get("/api/v1/document/{id}/content", id))
+                .andReturn()
+                .getResponse()
+                .getHeader(HttpHeaders.ETAG);
+        when(documentService.findById(id)).thenReturn(newDocument(1L));
+        when(documentService.save(any(DocumentEntity.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        mockMvc.perform(put("/api/v1/document/{id}/content", id)
+                        .header(HttpHeaders.IF_MATCH, etag)
+                        .content(CONTENT))
+                .andExpect(status().isNoContent());
+
+        verify(documentService).save(argThat(saved -> saved.getVersion() == 2L));
+    }
+
+    @Test
+    @DisplayName("Match any existing document with If-Match: *")
+    final void testUploadAnyExisting() throws Exception
+    {
+        // Document without content yet.
+        document.setContentId(null);
+        when(documentService.save(any(DocumentEntity.class))).thenAnswer(invocation -> {
+            DocumentEntity saved = invocation.getArgument(0);
+            saved.setContentId("content");
+
+            return saved;
+        });
+
+        mockMvc.perform(put("/api/v1/document/{id}/content", id)
+                        .header(HttpHeaders.IF_MATCH, "\"stale\"")
+                        .content(CONTENT))
+                .andExpect(status().isPreconditionFailed());
+
+        mockMvc.perform(put("/api/v1/document/{id}/content", id)
+                        .header(HttpHeaders.IF_MATCH, "*")
+                        .content(CONTENT))
+                .andExpect(status().isNoContent())
+                .andExpect(header().exists(HttpHeaders.ETAG));
+    }
+
+    /**
+     * Creates the document under test.
+     * @param version Version of the document.
+     * @return Document.
+     */
+    private DocumentEntity newDocument(final long version)
+    {
+        DocumentEntity entity = new DocumentEntity();
+        entity.setId(id);
+        entity.setContentId("content");
+        entity.setVersion(version);
+        entity.setMimeType("text/plain");
+        entity.setFilename("digits.txt");
+        entity.setModifiedDate(new Date(1_600_000_000_000L));
+
+        return entity;
+    }
+}
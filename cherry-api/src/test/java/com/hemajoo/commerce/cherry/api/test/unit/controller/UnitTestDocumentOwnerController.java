@@ -0,0 +1,208 @@
+/*
+ * Copyright(c) 2021 Hemajoo Digital Systems Inc.
+ * --------------------------------------------------------------------------------------
+ * This file is part of Hemajoo Systems Inc. projects which is licensed
+ * under the Apache license version 2 and use is subject to license terms.
+ * You should have received a copy of the license with the project's artifact
+ * binaries and/or sources.
+ *
+ * License can be consulted at http://www.apache.org/licenses/LICENSE-2.0
+ * --------------------------------------------------------------------------------------
+ */
+package com.hemajoo.commerce.cherry.api.test.unit.controller;
+
+import com.hemajoo.commerce.cherry.api.controller.DocumentOwnerController;
+import com.hemajoo.commerce.cherry.api.controller.EntityExceptionHandler;
+import com.hemajoo.commerce.cherry.persistence.content.DocumentService;
+import com.hemajoo.commerce.cherry.persistence.model.entity.document.DocumentCursor;
+import com.hemajoo.commerce.cherry.persistence.model.entity.document.DocumentSummary;
+import com.jayway.jsonpath.JsonPath;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.ressec.avocado.core.junit.BaseUnitTest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Test the {@link DocumentOwnerController} class: listing of the documents of an owner by slices, using cursors.
+ * @author <a href="mailto:christophe.resse@gmail.com">Christophe Resse</a>
+ * @version 1.0.0
+ */
+@WebMvcTest(controllers = DocumentOwnerController.class)
+@ContextConfiguration(classes = { DocumentOwnerController.class, EntityExceptionHandler.class })
+class UnitTestDocumentOwnerController extends BaseUnitTest
+{
+    /**
+     * Mock Mvc.
+     */
+    @Autowired
+    private MockMvc mockMvc;
+
+    /**
+     * Document persistence service.
+     */
+    @MockBean
+    private DocumentService documentService;
+
+    /**
+     * Owner identifier.
+     */
+    private final UUID ownerId = UUID.randomUUID();
+
+    /**
+     * Summaries of the documents of the owner, in listing order (creation date then identifier).
+     */
+    private final List<DocumentSummary> summaries = new ArrayList<>();
+
+    @BeforeEach
+    final void setUp()
+    {
+        // Documents created two by two at the same instant, so the identifier breaks the ties.
+        for (int i = 0; i < 7; i++)
+        {
+            summaries.add(summary(UUID.randomUUID(), new Date(1_600_000_000_000L + (i / 2) * 1000L)));
+        }
+        summaries.sort(Comparator.comparing((DocumentSummary summary) -> summary.getCreatedDate().getTime()).thenComparing(DocumentSummary::getId));
+
+        // Keyset pagination as performed by the repository: the documents following the cursor, plus one.
+        when(documentService.findSummariesByOwnerId(eq(ownerId), any(), any(), any(), anyInt())).thenAnswer(invocation -> {
+            DocumentCursor after = invocation.getArgument(3);
+            int limit = invocation.getArgument(4);
+            List<DocumentSummary> following = summaries.stream()
+                    .filter(summary -> after == null || isAfter(summary, after))
+                    .limit(limit + 1L)
+                    .collect(Collectors.toList());
+
+            return following.size() > limit
+                    ? new SliceImpl<>(following.subList(0, limit), PageRequest.of(0, limit), true)
+                    : new SliceImpl<>(following, PageRequest.of(0, limit), false);
+        });
+    }
+
+    @Test
+    @DisplayName("Browse the documents of an owner using the cursors returned over Http")
+    final void testBrowseUsingCursors() throws Exception
+    {
+        List<String> browsed = new ArrayList<>();
+        String cursor = null;
+        int requests = 0;
+        do
+        {
+            MockHttpServletRequestBuilder request = get("/api/v1/document/owner/{ownerId}", ownerId).param("limit", "3");
+            if (cursor != null)
+            {
+                request.param("cursor", cursor);
+            }
+
+            MvcResult result = mockMvc.perform(request)
+                    .andExpect(status().isOk())
+                    .andReturn();
+            List<String> ids = JsonPath.read(result.getResponse().getContentAsString(), "$[*].id");
+            assertThat(ids)
+                    .as("A slice should hold at most 3 documents!")
+                    .hasSizeLessThanOrEqualTo(3);
+            browsed.addAll(ids);
+
+            cursor = result.getResponse().getHeader(DocumentOwnerController.NEXT_CURSOR);
+            requests++;
+        }
+        while (cursor != null);
+
+        assertThat(requests)
+                .as("Documents should have been listed in 3 slices!")
+                .isEqualTo(3);
+        assertThat(browsed)
+                .as("All the documents of the owner should have been browsed once, in order!")
+                .containsExactlyElementsOf(summaries.stream().map(summary -> summary.getId().toString()).collect(Collectors.toList()));
+
+        // The cursor of a slice is decoded as the position of its last document.
+        verify(documentService).findSummariesByOwnerId(ownerId, null, null, DocumentCursor.of(summaries.get(2)), 3);
+        verify(documentService).findSummariesByOwnerId(ownerId, null, null, DocumentCursor.of(summaries.get(5)), 3);
+    }
+
+    @Test
+    @DisplayName("Answer 400 for an invalid cursor")
+    final void testRejectInvalidCursor() throws Exception
+    {
+        // Not Base64.
+        mockMvc.perform(get("/api/v1/document/owner/{ownerId}", ownerId)
+                        .param("cursor", "not a cursor!"))
+                .andExpect(status().isBadRequest());
+
+        // Valid Base64, invalid length.
+        mockMvc.perform(get("/api/v1/document/owner/{ownerId}", ownerId)
+                        .param("cursor", "AAAA"))
+                .andExpect(status().isBadRequest());
+
+        verify(documentService, never()).findSummariesByOwnerId(any(), any(), any(), any(), anyInt());
+    }
+
+    @Test
+    @DisplayName("Answer the last slice without cursor")
+    final void testLastSlice() throws Exception
+    {
+        mockMvc.perform(get("/api/v1/document/owner/{ownerId}", ownerId)
+                        .param("limit", String.valueOf(summaries.size())))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(DocumentOwnerController.NEXT_CURSOR));
+
+        verify(documentService).findSummariesByOwnerId(eq(ownerId), isNull(), isNull(), isNull(), eq(summaries.size()));
+    }
+
+    /**
+     * Checks if a document follows a cursor in the listing order.
+     * @param summary Document summary.
+     * @param cursor Cursor.
+     * @return {@code True} if the document follows the cursor, {@code false} otherwise.
+     */
+    private static boolean isAfter(final DocumentSummary summary, final DocumentCursor cursor)
+    {
+        int compare = Long.compare(summary.getCreatedDate().getTime(), cursor.getCreatedDate().getTime());
+
+        return compare > 0 || (compare == 0 && summary.getId().compareTo(cursor.getId()) > 0);
+    }
+
+    /**
+     * Creates a document summary.
+     * @param id Document identifier.
+     * @param createdDate Creation date.
+     * @return Document summary.
+     */
+    private static DocumentSummary summary(final UUID id, final Date createdDate)
+    {
+        DocumentSummary summary = mock(DocumentSummary.class);
+        when(summary.getId()).thenReturn(id);
+        when(summary.getName()).thenReturn("document-" + id);
+        when(summary.getCreatedDate()).thenReturn(createdDate);
+
+        return summary;
+    }
+}
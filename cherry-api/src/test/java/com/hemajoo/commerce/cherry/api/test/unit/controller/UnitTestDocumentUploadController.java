@@ -0,0 +1,244 @@
+/*
+ * Copyright(c) 2021 Hemajoo Digital Systems Inc.
+ * --------------------------------------------------------------------------------------
+ * This file is part of Hemajoo Systems Inc. projects which is licensed
+ * under the Apache license version 2 and use is subject to license terms.
+ * You should have received a copy of the license with the project's artifact
+ * binaries and/or sources.
+ *
+ * License can be consulted at http://www.apache.org/licenses/LICENSE-2.0
+ * --------------------------------------------------------------------------------------
+ */
+package com.hemajoo.commerce.cherry.api.test.unit.controller;
+
+import com.hemajoo.commerce.cherry.api.controller.DocumentUploadController;
+import com.hemajoo.commerce.cherry.api.controller.EntityExceptionHandler;
+import com.hemajoo.commerce.cherry.commons.entity.EntityIdentity;
+import com.hemajoo.commerce.cherry.model.entity.document.DocumentException;
+import com.hemajoo.commerce.cherry.persistence.content.DocumentService;
+import com.hemajoo.commerce.cherry.persistence.content.DocumentUploadStore;
+import com.hemajoo.commerce.cherry.persistence.model.entity.document.DocumentEntity;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.ressec.avocado.core.junit.BaseUnitTest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Test the {@link DocumentUploadController} class: chunked, resumed and committed uploads.
+ * @author <a href="mailto:christophe.resse@gmail.com">Christophe Resse</a>
+ * @version 1.0.0
+ */
+@WebMvcTest(controllers = DocumentUploadController.class)
+@ContextConfiguration(classes = { DocumentUploadController.class, EntityExceptionHandler.class, UnitTestDocumentUploadController.UploadStoreConfiguration.class })
+class UnitTestDocumentUploadController extends BaseUnitTest
+{
+    /**
+     * Content uploaded by the tests.
+     */
+    private static final byte[] CONTENT = "Hello chunked World!".getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * Mock Mvc.
+     */
+    @Autowired
+    private MockMvc mockMvc;
+
+    /**
+     * Document persistence service.
+     */
+    @MockBean
+    private DocumentService documentService;
+
+    /**
+     * Content of the document created by the last commit.
+     */
+    private final AtomicReference<byte[]> committed = new AtomicReference<>();
+
+    /**
+     * Upload store writing the partial files into a temporary directory.
+     */
+    @TestConfiguration
+    static class UploadStoreConfiguration
+    {
+        @Bean
+        public DocumentUploadStore documentUploadStore() throws IOException
+        {
+            return new DocumentUploadStore(Files.createTempDirectory("cherry-store").toString());
+        }
+    }
+
+    @BeforeEach
+    final void setUp() throws DocumentException
+    {
+        when(documentService.findOwner(any(EntityIdentity.class))).thenReturn(new DocumentEntity());
+        when(documentService.save(any(DocumentEntity.class), any(Path.class))).thenAnswer(invocation -> {
+            committed.set(Files.readAllBytes(invocation.getArgument(1, Path.class)));
+            DocumentEntity document = invocation.getArgument(0);
+            document.setId(UUID.randomUUID());
+            return document;
+        });
+    }
+
+    @Test
+    @DisplayName("Upload a content by chunks then commit it")
+    final void testUploadByChunks() throws Exception
+    {
+        String uploadId = init();
+
+        append(uploadId, 0, Arrays.copyOfRange(CONTENT, 0, 5), 5);
+        append(uploadId, 5, Arrays.copyOfRange(CONTENT, 5, CONTENT.length), CONTENT.length);
+
+        commit(uploadId);
+        assertThat(committed.get())
+                .as("Document should have been created with the whole uploaded content!")
+                .isEqualTo(CONTENT);
+    }
+
+    @Test
+    @DisplayName("Resume an interrupted upload from its current offset")
+    final void testResumeUpload() throws Exception
+    {
+        String uploadId = init();
+
+        // Connection dropped after the first bytes of the chunk: only them have been received.
+        append(uploadId, 0, Arrays.copyOfRange(CONTENT, 0, 3), 3);
+
+        String offset = mockMvc.perform(head("/api/v1/document/upload/{uploadId}", uploadId))
+                .andExpect(status().isNoContent())
+                .andReturn()
+                .getResponse()
+                .getHeader(DocumentUploadController.UPLOAD_OFFSET);
+        assertThat(offset)
+                .as("Current offset should be the number of bytes received!")
+                .isEqualTo("3");
+
+        append(uploadId, Long.parseLong(offset), Arrays.copyOfRange(CONTENT, 3, CONTENT.length), CONTENT.length);
+
+        commit(uploadId);
+        assertThat(committed.get())
+                .as("Resumed upload should have been committed with the whole content!")
+                .isEqualTo(CONTENT);
+    }
+
+    @Test
+    @DisplayName("Reject a chunk whose offset does not match the current offset")
+    final void testRejectWrongOffset() throws Exception
+    {
+        String uploadId = init();
+        append(uploadId, 0, Arrays.copyOfRange(CONTENT, 0, 5), 5);
+
+        // Gap.
+        mockMvc.perform(patch("/api/v1/document/upload/{uploadId}", uploadId)
+                        .param("offset", "10")
+                        .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                        .content(CONTENT))
+                .andExpect(status().isConflict());
+
+        // Chunk already received (replayed).
+        mockMvc.perform(patch("/api/v1/document/upload/{uploadId}", uploadId)
+                        .param("offset", "0")
+                        .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                        .content(CONTENT))
+                .andExpect(status().isConflict());
+
+        mockMvc.perform(head("/api/v1/document/upload/{uploadId}", uploadId))
+                .andExpect(header().string(DocumentUploadController.UPLOAD_OFFSET, "5"));
+    }
+
+    @Test
+    @DisplayName("Reject the chunks and the commit of an unknown or aborted upload")
+    final void testRejectUnknownUpload() throws Exception
+    {
+        mockMvc.perform(patch("/api/v1/document/upload/{uploadId}", "not-an-upload")
+                        .param("offset", "0")
+                        .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                        .content(CONTENT))
+                .andExpect(status().isBadRequest());
+
+        String uploadId = init();
+        mockMvc.perform(delete("/api/v1/document/upload/{uploadId}", uploadId))
+                .andExpect(status().isNoContent());
+
+        mockMvc.perform(head("/api/v1/document/upload/{uploadId}", uploadId))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(post("/api/v1/document/upload/{uploadId}/commit", uploadId)
+                        .param("ownerId", UUID.randomUUID().toString())
+                        .param("documentType", "DOCUMENT_GENERIC")
+                        .param("filename", "hello.txt"))
+                .andExpect(status().isNotFound());
+
+        verify(documentService, never()).save(any(DocumentEntity.class), any(Path.class));
+    }
+
+    /**
+     * Initiates an upload.
+     * @return Upload identifier.
+     * @throws Exception Thrown in case an error occurred while performing the request.
+     */
+    private String init() throws Exception
+    {
+        return mockMvc.perform(post("/api/v1/document/upload"))
+                .andExpect(status().isCreated())
+                .andExpect(header().string(DocumentUploadController.UPLOAD_OFFSET, "0"))
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+    }
+
+    /**
+     * Appends a chunk to an upload.
+     * @param uploadId Upload identifier.
+     * @param offset Offset of the chunk.
+     * @param chunk Chunk.
+     * @param expected Expected offset once the chunk has been appended.
+     * @throws Exception Thrown in case an error occurred while performing the request.
+     */
+    private void append(final String uploadId, final long offset, final byte[] chunk, final long expected) throws Exception
+    {
+        mockMvc.perform(patch("/api/v1/document/upload/{uploadId}", uploadId)
+                        .param("offset", String.valueOf(offset))
+                        .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                        .content(chunk))
+                .andExpect(status().isNoContent())
+                .andExpect(header().string(DocumentUploadController.UPLOAD_OFFSET, String.valueOf(expected)));
+    }
+
+    /**
+     * Commits an upload.
+     * @param uploadId Upload identifier.
+     * @throws Exception Thrown in case an error occurred while performing the request.
+     */
+    private void commit(final String uploadId) throws Exception
+    {
+        mockMvc.perform(post("/api/v1/document/upload/{uploadId}/commit", uploadId)
+                        .param("ownerId", UUID.randomUUID().toString())
+                        .param("documentType", "DOCUMENT_GENERIC")
+                        .param("filename", "hello.txt"))
+                .andExpect(status().isCreated());
+    }
+}
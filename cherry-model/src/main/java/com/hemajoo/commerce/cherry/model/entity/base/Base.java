@@ -63,6 +63,12 @@ public class Base extends Status implements IEntityIdentity
     @ApiModelProperty(name = "reference", notes = "Reference")
     private String reference;
 
+    /**
+     * Entity version, incremented by each update (optimistic locking).
+     */
+    @ApiModelProperty(name = "version", notes = "Version (incremented by each update)", readOnly = true)
+    private Long version;
+
     /**
      * Entity documents.
      */
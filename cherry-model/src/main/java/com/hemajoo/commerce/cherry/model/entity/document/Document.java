@@ -15,7 +15,6 @@ import com.hemajoo.commerce.cherry.commons.type.EntityType;
 import com.hemajoo.commerce.cherry.model.entity.base.Base;
 import lombok.*;
 import org.apache.commons.io.FilenameUtils;
-import org.apache.tika.Tika;
 import org.ressec.avocado.core.helper.FileHelper;
 import org.springframework.web.multipart.MultipartFile;
 
@@ -84,6 +83,13 @@ public class Document extends Base
     @Setter
     private String mimeType = "text/plain";
 
+    /**
+     * File content digest ({@code SHA-256}, hexadecimal representation).
+     */
+    @Getter
+    @Setter
+    private String contentDigest;
+
     /**
      * File path (in the content store).
      */
@@ -242,7 +248,7 @@ public class Document extends Base
     {
         try
         {
-            mimeType = new Tika().detect(FileHelper.getFile(filename));
+            mimeType = MimeTypeDetector.getInstance().detect(FileHelper.getFile(filename));
         }
         catch (Exception e)
         {
@@ -259,24 +265,7 @@ public class Document extends Base
     {
         try
         {
-            mimeType = new Tika().detect(file);
-        }
-        catch (Exception e)
-        {
-            throw new DocumentContentException(e.getMessage());
-        }
-    }
-
-    /**
-     * Detects the media file {@code Mime} type.
-     * @param inputStream Input Stream.
-     * @throws DocumentContentException Thrown in case an error occurred while processing the media file.
-     */
-    private void detectMimeType(final @NonNull InputStream inputStream) throws DocumentContentException
-    {
-        try
-        {
-            mimeType = new Tika().detect(inputStream);
+            mimeType = MimeTypeDetector.getInstance().detect(file);
         }
         catch (Exception e)
         {
@@ -291,9 +280,9 @@ public class Document extends Base
      */
     private void detectMimeType(final @NonNull MultipartFile multiPartFile) throws DocumentContentException
     {
-        try
+        try (InputStream inputStream = multiPartFile.getInputStream())
         {
-            mimeType = new Tika().detect(multiPartFile.getInputStream());
+            mimeType = MimeTypeDetector.getInstance().detect(inputStream, multiPartFile.getOriginalFilename());
         }
         catch (Exception e)
         {
@@ -0,0 +1,192 @@
+/*
+ * Copyright(c) 2021 Hemajoo Systems Inc.
+ * --------------------------------------------------------------------------------------
+ * This file is part of Hemajoo Systems Inc. projects which is licensed
+ * under the Apache license version 2 and use is subject to license terms.
+ * You should have received a copy of the license with the project's artifact
+ * binaries and/or sources.
+ *
+ * License can be consulted at http://www.apache.org/licenses/LICENSE-2.0
+ * --------------------------------------------------------------------------------------
+ */
+package com.hemajoo.commerce.cherry.model.entity.document;
+
+import lombok.Getter;
+import lombok.NonNull;
+import org.apache.tika.Tika;
+import org.apache.tika.mime.MimeTypes;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread safe service detecting the {@code Mime} type of the media files.
+ * <p>
+ * The underlying {@link Tika} detector and its {@code Mime} types registry are loaded only once and shared. Only the
+ * header window of a media file (the number of bytes needed by the magic bytes detection) is read.
+ * @author <a href="mailto:christophe.resse@gmail.com">Christophe Resse</a>
+ * @version 1.0.0
+ */
+public final class MimeTypeDetector
+{
+    /**
+     * Shared instance.
+     */
+    private static final MimeTypeDetector INSTANCE = new MimeTypeDetector();
+
+    /**
+     * Tika facade (thread safe).
+     */
+    private final Tika tika = new Tika();
+
+    /**
+     * Number of bytes of the header window read to detect a {@code Mime} type.
+     */
+    @Getter
+    private final int headerSize = MimeTypes.getDefaultMimeTypes().getMinLength();
+
+    /**
+     * Number of detections.
+     */
+    private final LongAdder detectionCount = new LongAdder();
+
+    /**
+     * Cumulated detection time (in nanoseconds).
+     */
+    private final LongAdder detectionTime = new LongAdder();
+
+    /**
+     * Creates a new {@code Mime} type detector.
+     */
+    private MimeTypeDetector()
+    {
+        // Use getInstance()
+    }
+
+    /**
+     * Returns the shared {@code Mime} type detector.
+     * @return {@code Mime} type detector.
+     */
+    public static MimeTypeDetector getInstance()
+    {
+        return INSTANCE;
+    }
+
+    /**
+     * Detects the {@code Mime} type of a media file.
+     * @param file File.
+     * @return {@code Mime} type.
+     * @throws IOException Thrown in case an error occurred while reading the media file.
+     */
+    public String detect(final @NonNull File file) throws IOException
+    {
+        try (InputStream inputStream = new FileInputStream(file))
+        {
+            return detect(inputStream, file.getName());
+        }
+    }
+
+    /**
+     * Detects the {@code Mime} type of a media file given its content.
+     * <p>
+     * If the input stream supports marks, it is reset to its initial position after the detection, otherwise the
+     * header window is consumed.
+     * @param inputStream Input stream.
+     * @param filename File name used as a hint (can be null).
+     * @return {@code Mime} type.
+     * @throws IOException Thrown in case an error occurred while reading the media file.
+     */
+    public String detect(final @NonNull InputStream inputStream, final String filename) throws IOException
+    {
+        byte[] header = new byte[headerSize];
+        int length = 0;
+
+        if (inputStream.markSupported())
+        {
+            inputStream.mark(headerSize);
+        }
+
+        try
+        {
+            int count;
+            while (length < headerSize && (count = inputStream.read(header, length, headerSize - length)) != -1)
+            {
+                length += count;
+            }
+        }
+        finally
+        {
+            if (inputStream.markSupported())
+            {
+                inputStream.reset();
+            }
+        }
+
+        return detect(header, length, filename);
+    }
+
+    /**
+     * Detects the {@code Mime} type of a media file given its name only, without reading its content (not counted as a
+     * detection).
+     * @param filename File name.
+     * @return {@code Mime} type.
+     */
+    public String detect(final @NonNull String filename)
+    {
+        return tika.detect(filename);
+    }
+
+    /**
+     * Detects the {@code Mime} type of a media file given its header.
+     * @param header Header window of the media file.
+     * @param length Number of valid bytes in the header window.
+     * @param filename File name used as a hint (can be null).
+     * @return {@code Mime} type.
+     */
+    public String detect(final @NonNull byte[] header, final int length, final String filename)
+    {
+        long start = System.nanoTime();
+        try
+        {
+            return tika.detect(length == header.length ? header : Arrays.copyOf(header, length), filename);
+        }
+        finally
+        {
+            detectionTime.add(System.nanoTime() - start);
+            detectionCount.increment();
+        }
+    }
+
+    /**
+     * Returns the number of detections performed.
+     * @return Number of detections.
+     */
+    public long getDetectionCount()
+    {
+        return detectionCount.sum();
+    }
+
+    /**
+     * Returns the cumulated detection time (excluding the time spent reading the header windows).
+     * @return Detection time in nanoseconds.
+     */
+    public long getDetectionTime()
+    {
+        return detectionTime.sum();
+    }
+
+    /**
+     * Returns the average detection time (excluding the time spent reading the header windows).
+     * @return Average detection time in nanoseconds.
+     */
+    public long getAverageDetectionTime()
+    {
+        long count = detectionCount.sum();
+
+        return count == 0 ? 0 : detectionTime.sum() / count;
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright(c) 2021 Hemajoo Digital Systems Inc.
+ * --------------------------------------------------------------------------------------
+ * This file is part of Hemajoo Systems Inc. projects which is licensed
+ * under the Apache license version 2 and use is subject to license terms.
+ * You should have received a copy of the license with the project's artifact
+ * binaries and/or sources.
+ *
+ * License can be consulted at http://www.apache.org/licenses/LICENSE-2.0
+ * --------------------------------------------------------------------------------------
+ */
+package com.hemajoo.commerce.cherry.persistence.base.batch;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Hibernate {@code JDBC} batching customizer.
+ * <p>
+ * The inserts and updates of a flush are ordered by entity so the statements of a batch save of documents are grouped
+ * into {@code JDBC} batches. Batching is disabled if the batch size is {@code 0}, a value explicitly set in the
+ * {@code Hibernate} properties is kept.
+ * @author <a href="mailto:christophe.resse@gmail.com">Christophe Resse</a>
+ * @version 1.0.0
+ */
+@Component
+public class BatchHibernateCustomizer implements HibernatePropertiesCustomizer
+{
+    /**
+     * Number of statements per {@code JDBC} batch.
+     */
+    private final int batchSize;
+
+    /**
+     * Creates a new {@code JDBC} batching customizer.
+     * @param batchSize Number of statements per {@code JDBC} batch ({@code 0} to disable batching).
+     */
+    public BatchHibernateCustomizer(final @Value("${hemajoo.commerce.cherry.database.batch-size:50}") int batchSize)
+    {
+        if (batchSize < 0)
+        {
+            throw new IllegalArgumentException(String.format("Invalid JDBC batch size: '%s'!", batchSize));
+        }
+
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public void customize(Map<String, Object> hibernateProperties)
+    {
+        if (batchSize > 0)
+        {
+            hibernateProperties.putIfAbsent(AvailableSettings.STATEMENT_BATCH_SIZE, String.valueOf(batchSize));
+            hibernateProperties.putIfAbsent(AvailableSettings.ORDER_INSERTS, Boolean.TRUE.toString());
+            hibernateProperties.putIfAbsent(AvailableSettings.ORDER_UPDATES, Boolean.TRUE.toString());
+            hibernateProperties.putIfAbsent(AvailableSettings.BATCH_VERSIONED_DATA, Boolean.TRUE.toString());
+        }
+    }
+}
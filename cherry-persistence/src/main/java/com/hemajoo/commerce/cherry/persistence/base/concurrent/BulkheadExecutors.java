@@ -0,0 +1,242 @@
+/*
+ * Copyright(c) 2021 Hemajoo Digital Systems Inc.
+ * --------------------------------------------------------------------------------------
+ * This file is part of Hemajoo Systems Inc. projects which is licensed
+ * under the Apache license version 2 and use is subject to license terms.
+ * You should have received a copy of the license with the project's artifact
+ * binaries and/or sources.
+ *
+ * License can be consulted at http://www.apache.org/licenses/LICENSE-2.0
+ * --------------------------------------------------------------------------------------
+ */
+package com.hemajoo.commerce.cherry.persistence.base.concurrent;
+
+import lombok.NonNull;
+import lombok.experimental.UtilityClass;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Factory of bulkhead executors, i.e. executors bounding both the number of tasks running concurrently and the number
+ * of tasks waiting to run, so a kind of work (such as database or content store accesses) cannot exhaust the resources
+ * shared with the other ones.
+ * <p>
+ * When the {@code JVM} supports virtual threads ({@code Java 21+}), the tasks run on virtual threads (one per task) and
+ * the concurrency is bounded by a semaphore: a waiting task does not hold a platform thread. Otherwise, the tasks run on
+ * a bounded pool of platform threads. In both cases, a task submitted to a full bulkhead is rejected with a
+ * {@link RejectedExecutionException}. A task interrupted while waiting for a permit (the bulkhead being shut down) is
+ * not run and, if it is a {@link Future} (such as the tasks submitted through {@code submit}), is cancelled so its
+ * callers are not left waiting.
+ * <p>
+ * Virtual threads are detected and created by reflection as the project still targets {@code Java 11}.
+ * @author <a href="mailto:christophe.resse@gmail.com">Christophe Resse</a>
+ * @version 1.0.0
+ */
+@Slf4j
+@UtilityClass
+public class BulkheadExecutors
+{
+    /**
+     * Returns a factory of virtual threads, if supported by the {@code JVM}.
+     * @param name Name prefix of the threads.
+     * @return Thread factory or null if virtual threads are not supported.
+     */
+    public static ThreadFactory getVirtualThreadFactory(final @NonNull String name)
+    {
+        try
+        {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, name, 0L);
+
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+        }
+        catch (ReflectiveOperationException | RuntimeException e)
+        {
+            return null; // Not supported (or still a preview feature).
+        }
+    }
+
+    /**
+     * Checks if the {@code JVM} supports virtual threads.
+     * @return {@code True} if virtual threads are supported, {@code false} otherwise.
+     */
+    public static boolean isVirtualThreadSupported()
+    {
+        return getVirtualThreadFactory("probe-") != null;
+    }
+
+    /**
+     * Creates a new executor starting a new virtual thread per task, if supported by the {@code JVM}.
+     * @param name Name prefix of the threads.
+     * @return Executor or null if virtual threads are not supported.
+     */
+    public static ExecutorService newVirtualThreadPerTaskExecutor(final @NonNull String name)
+    {
+        ThreadFactory factory = getVirtualThreadFactory(name);
+
+        return factory != null ? newThreadPerTaskExecutor(factory) : null;
+    }
+
+    /**
+     * Creates a new bulkhead executor.
+     * @param name Name prefix of the threads.
+     * @param concurrency Maximum number of tasks running concurrently.
+     * @param queueSize Maximum number of tasks waiting to run.
+     * @param virtualThreads Should the tasks run on virtual threads (if supported)?
+     * @return Executor.
+     */
+    public static ExecutorService newBulkhead(final @NonNull String name, final int concurrency, final int queueSize, final boolean virtualThreads)
+    {
+        ThreadFactory factory = virtualThreads ? getVirtualThreadFactory(name) : null;
+        if (factory != null)
+        {
+            log.info("Bulkhead: '{}' runs on virtual threads (concurrency: {}, queue: {})", name, concurrency, queueSize);
+            return new VirtualThreadBulkhead(factory, concurrency, queueSize);
+        }
+
+        log.info("Bulkhead: '{}' runs on platform threads (concurrency: {}, queue: {})", name, concurrency, queueSize);
+        return new ThreadPoolExecutor(
+                concurrency,
+                concurrency,
+                60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(Math.max(queueSize, 1)),
+                new CustomizableThreadFactory(name),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Creates an executor starting a new thread per task.
+     * @param factory Thread factory.
+     * @return Executor.
+     */
+    private static ExecutorService newThreadPerTaskExecutor(final ThreadFactory factory)
+    {
+        try
+        {
+            return (ExecutorService) Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class).invoke(null, factory);
+        }
+        catch (ReflectiveOperationException e)
+        {
+            throw new IllegalStateException("Cannot create a thread per task executor!", e);
+        }
+    }
+
+    /**
+     * Bulkhead running each task on its own virtual thread, the concurrency being bounded by a semaphore.
+     */
+    private static final class VirtualThreadBulkhead extends AbstractExecutorService
+    {
+        /**
+         * Thread per task executor.
+         */
+        private final ExecutorService delegate;
+
+        /**
+         * Permits of the tasks running concurrently.
+         */
+        private final Semaphore permits;
+
+        /**
+         * Maximum number of tasks running or waiting to run.
+         */
+        private final long limit;
+
+        /**
+         * Number of tasks running or waiting to run.
+         */
+        private final AtomicInteger pending = new AtomicInteger();
+
+        /**
+         * Creates a new virtual thread bulkhead.
+         * @param factory Virtual thread factory.
+         * @param concurrency Maximum number of tasks running concurrently.
+         * @param queueSize Maximum number of tasks waiting to run.
+         */
+        private VirtualThreadBulkhead(final ThreadFactory factory, final int concurrency, final int queueSize)
+        {
+            this.delegate = newThreadPerTaskExecutor(factory);
+            this.permits = new Semaphore(concurrency, true);
+            this.limit = (long) concurrency + queueSize;
+        }
+
+        @Override
+        public void execute(final @NonNull Runnable task)
+        {
+            if (pending.incrementAndGet() > limit)
+            {
+                pending.decrementAndGet();
+                throw new RejectedExecutionException("Bulkhead is full!");
+            }
+
+            try
+            {
+                delegate.execute(() -> {
+                    try
+                    {
+                        permits.acquire();
+                        try
+                        {
+                            task.run();
+                        }
+                        finally
+                        {
+                            permits.release();
+                        }
+                    }
+                    catch (InterruptedException e)
+                    {
+                        if (task instanceof Future)
+                        {
+                            ((Future<?>) task).cancel(false);
+                        }
+                        Thread.currentThread().interrupt();
+                    }
+                    finally
+                    {
+                        pending.decrementAndGet();
+                    }
+                });
+            }
+            catch (RejectedExecutionException e)
+            {
+                pending.decrementAndGet();
+                throw e;
+            }
+        }
+
+        @Override
+        public void shutdown()
+        {
+            delegate.shutdown();
+        }
+
+        @Override
+        public List<Runnable> shutdownNow()
+        {
+            return delegate.shutdownNow();
+        }
+
+        @Override
+        public boolean isShutdown()
+        {
+            return delegate.isShutdown();
+        }
+
+        @Override
+        public boolean isTerminated()
+        {
+            return delegate.isTerminated();
+        }
+
+        @Override
+        public boolean awaitTermination(final long timeout, final @NonNull TimeUnit unit) throws InterruptedException
+        {
+            return delegate.awaitTermination(timeout, unit);
+        }
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright(c) 2021 Hemajoo Digital Systems Inc.
+ * --------------------------------------------------------------------------------------
+ * This file is part of Hemajoo Systems Inc. projects which is licensed
+ * under the Apache license version 2 and use is subject to license terms.
+ * You should have received a copy of the license with the project's artifact
+ * binaries and/or sources.
+ *
+ * License can be consulted at http://www.apache.org/licenses/LICENSE-2.0
+ * --------------------------------------------------------------------------------------
+ */
+package com.hemajoo.commerce.cherry.persistence.base.concurrent;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.Getter;
+import lombok.NonNull;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Data source bounding the number of threads holding a connection at the same time.
+ * <p>
+ * When running on virtual threads, a virtual thread executing a {@code synchronized} block of the {@code JDBC} driver or
+ * of {@code Hibernate} is pinned to its carrier (platform) thread for the duration of the block, including when it
+ * blocks on I/O. If as many virtual threads as there are carrier threads are pinned, no other virtual thread (such as
+ * the ones serving downloads) can run anymore. Bounding the number of connections held at the same time below the
+ * number of carrier threads guarantees carrier threads remain available for the other work.
+ * <p>
+ * A thread waiting for a permit is not pinned as the permits are given by a {@link Semaphore}. By default, the number of
+ * permits is the number of carrier threads minus one, and at most the size of the connection pool so the threads wait
+ * for a connection on the semaphore rather than inside the pool.
+ * @author <a href="mailto:christophe.resse@gmail.com">Christophe Resse</a>
+ * @version 1.0.0
+ */
+public class PinningGuardDataSource extends DelegatingDataSource
+{
+    /**
+     * Permits of the connections held.
+     */
+    private final Semaphore permits;
+
+    /**
+     * Maximum number of connections held at the same time.
+     */
+    @Getter
+    private final int concurrency;
+
+    /**
+     * Maximum time (in milliseconds) to wait for a permit.
+     */
+    private final long timeout;
+
+    /**
+     * Creates a new pinning guard data source.
+     * @param dataSource Target data source.
+     * @param concurrency Maximum number of connections held at the same time.
+     * @param timeout Maximum time (in milliseconds) to wait for a permit.
+     */
+    public PinningGuardDataSource(final @NonNull DataSource dataSource, final int concurrency, final long timeout)
+    {
+        super(dataSource);
+
+        this.concurrency = Math.max(concurrency, 1);
+        this.permits = new Semaphore(this.concurrency, true);
+        this.timeout = timeout;
+    }
+
+    /**
+     * Returns the default maximum number of connections held at the same time for a data source, i.e. the number of
+     * carrier threads of the virtual threads (the number of processors) minus one, so at least one carrier thread is
+     * never pinned, and at most the maximum size of its pool for a {@code Hikari} data source.
+     * @param dataSource Data source.
+     * @return Default concurrency.
+     */
+    public static int getDefaultConcurrency(final @NonNull DataSource dataSource)
+    {
+        int concurrency = Math.max(Runtime.getRuntime().availableProcessors() - 1, 1);
+        if (dataSource instanceof HikariDataSource)
+        {
+            return Math.min(concurrency, ((HikariDataSource) dataSource).getMaximumPoolSize());
+        }
+
+        return concurrency;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException
+    {
+        acquire();
+        try
+        {
+            return guard(super.getConnection());
+        }
+        catch (SQLException | RuntimeException e)
+        {
+            permits.release();
+            throw e;
+        }
+    }
+
+    @Override
+    public Connection getConnection(final String username, final String password) throws SQLException
+    {
+        acquire();
+        try
+        {
+            return guard(super.getConnection(username, password));
+        }
+        catch (SQLException | RuntimeException e)
+        {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Acquires a permit.
+     * @throws SQLException Thrown if no permit has been given in time or if the thread has been interrupted.
+     */
+    private void acquire() throws SQLException
+    {
+        try
+        {
+            if (!permits.tryAcquire(timeout, TimeUnit.MILLISECONDS))
+            {
+                throw new SQLTransientConnectionException(String.format("No connection available in %d ms (%d connections held)", timeout, concurrency));
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientConnectionException("Interrupted while waiting for a connection!", e);
+        }
+    }
+
+    /**
+     * Returns a connection releasing its permit (once) when closed.
+     * @param connection Connection.
+     * @return Guarded connection.
+     */
+    private Connection guard(final Connection connection)
+    {
+        AtomicBoolean released = new AtomicBoolean();
+
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[] { Connection.class }, (proxy, method, arguments) -> {
+            try
+            {
+                return method.invoke(connection, arguments);
+            }
+            catch (InvocationTargetException e)
+            {
+                throw e.getCause();
+            }
+            finally
+            {
+                if ("close".equals(method.getName()) && released.compareAndSet(false, true))
+                {
+                    permits.release();
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright(c) 2021 Hemajoo Digital Systems Inc.
+ * --------------------------------------------------------------------------------------
+ * This file is part of Hemajoo Systems Inc. projects which is licensed
+ * under the Apache license version 2 and use is subject to license terms.
+ * You should have received a copy of the license with the project's artifact
+ * binaries and/or sources.
+ *
+ * License can be consulted at http://www.apache.org/licenses/LICENSE-2.0
+ * --------------------------------------------------------------------------------------
+ */
+package com.hemajoo.commerce.cherry.persistence.base.identifier;
+
+import org.hibernate.HibernateException;
+import org.hibernate.MappingException;
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.Configurable;
+import org.hibernate.id.IdentifierGenerator;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+import java.io.Serializable;
+import java.util.Properties;
+import java.util.UUID;
+
+/**
+ * {@code Hibernate} generator of the entity identifiers.
+ * <p>
+ * The generation strategy is given by the {@code strategy} parameter of the generator or, if not set, by the
+ * {@code hemajoo.commerce.cherry.identifier.strategy} {@code Hibernate} property (which can be set through
+ * {@code spring.jpa.properties.hemajoo.commerce.cherry.identifier.strategy}):
+ * <ul>
+ * <li>{@code time-ordered} (default): time-ordered identifiers (see {@link TimeOrderedUuid}),</li>
+ * <li>{@code random}: random ({@code version 4}) identifiers.</li>
+ * </ul>
+ * @author <a href="mailto:christophe.resse@gmail.com">Christophe Resse</a>
+ * @version 1.0.0
+ */
+public class EntityIdentifierGenerator implements IdentifierGenerator, Configurable
+{
+    /**
+     * Generator name.
+     */
+    public static final String NAME = "entity-identifier";
+
+    /**
+     * Name of the generator parameter (and of the {@code Hibernate} property) giving the generation strategy.
+     */
+    public static final String STRATEGY_PARAMETER = "strategy";
+
+    /**
+     * {@code Hibernate} property giving the generation strategy.
+     */
+    public static final String STRATEGY_PROPERTY = "hemajoo.commerce.cherry.identifier.strategy";
+
+    /**
+     * Time-ordered generation strategy.
+     */
+    public static final String STRATEGY_TIME_ORDERED = "time-ordered";
+
+    /**
+     * Random generation strategy.
+     */
+    public static final String STRATEGY_RANDOM = "random";
+
+    /**
+     * Are the identifiers time-ordered?
+     */
+    private boolean timeOrdered = true;
+
+    @Override
+    public void configure(final Type type, final Properties parameters, final ServiceRegistry serviceRegistry) throws MappingException
+    {
+        String strategy = parameters.getProperty(STRATEGY_PARAMETER);
+        if (strategy == null)
+        {
+            Object setting = serviceRegistry.getService(ConfigurationService.class).getSettings().get(STRATEGY_PROPERTY);
+            strategy = setting != null ? setting.toString() : STRATEGY_TIME_ORDERED;
+        }
+
+        if (STRATEGY_TIME_ORDERED.equalsIgnoreCase(strategy))
+        {
+            timeOrdered = true;
+        }
+        else if (STRATEGY_RANDOM.equalsIgnoreCase(strategy))
+        {
+            timeOrdered = false;
+        }
+        else
+        {
+            throw new MappingException(String.format("Invalid identifier generation strategy: '%s'", strategy));
+        }
+    }
+
+    @Override
+    public Serializable generate(final SharedSessionContractImplementor session, final Object object) throws HibernateException
+    {
+        return timeOrdered ? TimeOrderedUuid.generate() : UUID.randomUUID();
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright(c) 2021 Hemajoo Digital Systems Inc.
+ * --------------------------------------------------------------------------------------
+ * This file is part of Hemajoo Systems Inc. projects which is licensed
+ * under the Apache license version 2 and use is subject to license terms.
+ * You should have received a copy of the license with the project's artifact
+ * binaries and/or sources.
+ *
+ * License can be consulted at http://www.apache.org/licenses/LICENSE-2.0
+ * --------------------------------------------------------------------------------------
+ */
+package com.hemajoo.commerce.cherry.persistence.base.identifier;
+
+import lombok.NonNull;
+import lombok.experimental.UtilityClass;
+
+import java.security.SecureRandom;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generates time-ordered {@code UUID}s (version 7 layout).
+ * <p>
+ * The 48 most significant bits hold the Unix time in milliseconds, followed by the version, a 12 bits counter keeping
+ * the identifiers generated during the same millisecond ordered, the variant and 62 random bits. The identifiers are
+ * therefore (almost) monotonic: new rows are appended at the end of the primary key index instead of being scattered
+ * across it as with random ({@code version 4}) identifiers.
+ * @author <a href="mailto:christophe.resse@gmail.com">Christophe Resse</a>
+ * @version 1.0.0
+ */
+@UtilityClass
+public final class TimeOrderedUuid
+{
+    /**
+     * Number of bits of the counter.
+     */
+    private static final int COUNTER_BITS = 12;
+
+    /**
+     * Version 7 bits.
+     */
+    private static final long VERSION = 0x7000L;
+
+    /**
+     * Variant bits ({@code IETF}).
+     */
+    private static final long VARIANT = 0x8000000000000000L;
+
+    /**
+     * Mask of the random bits of the least significant bits.
+     */
+    private static final long RANDOM_MASK = 0x3FFFFFFFFFFFFFFFL;
+
+    /**
+     * Random number generator.
+     */
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    /**
+     * Last generated timestamp and counter (timestamp shifted by the counter bits).
+     */
+    private static final AtomicLong LAST = new AtomicLong();
+
+    /**
+     * Generates a new time-ordered {@code UUID}.
+     * @return Time-ordered {@code UUID}.
+     */
+    public static UUID generate()
+    {
+        long now = System.currentTimeMillis() << COUNTER_BITS;
+
+        // Same millisecond (or clock going backward): the counter is incremented, overflowing on the next millisecond.
+        long value = LAST.updateAndGet(last -> Math.max(now, last + 1));
+
+        long mostSigBits = ((value >>> COUNTER_BITS) << 16) | VERSION | (value & ((1L << COUNTER_BITS) - 1));
+        long leastSigBits = (RANDOM.nextLong() & RANDOM_MASK) | VARIANT;
+
+        return new UUID(mostSigBits, leastSigBits);
+    }
+
+    /**
+     * Returns the time (in milliseconds since the epoch) at which a time-ordered {@code UUID} has been generated.
+     * @param uuid Time-ordered {@code UUID}.
+     * @return Time in milliseconds.
+     */
+    public static long getTimestamp(final @NonNull UUID uuid)
+    {
+        if (uuid.version() != 7)
+        {
+            throw new IllegalArgumentException(String.format("UUID: '%s' is not time-ordered!", uuid));
+        }
+
+        return uuid.getMostSignificantBits() >>> 16;
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright(c) 2021 Hemajoo Digital Systems Inc.
+ * --------------------------------------------------------------------------------------
+ * This file is part of Hemajoo Systems Inc. projects which is licensed
+ * under the Apache license version 2 and use is subject to license terms.
+ * You should have received a copy of the license with the project's artifact
+ * binaries and/or sources.
+ *
+ * License can be consulted at http://www.apache.org/licenses/LICENSE-2.0
+ * --------------------------------------------------------------------------------------
+ */
+package com.hemajoo.commerce.cherry.persistence.base.io;
+
+import lombok.NonNull;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Input stream reading the remaining bytes of a {@link ByteBuffer} (heap, direct or mapped).
+ * <p>
+ * The stream reads from its own view of the buffer, so the position of the given buffer is left untouched and a same
+ * buffer can be read by several streams concurrently.
+ * @author <a href="mailto:christophe.resse@gmail.com">Christophe Resse</a>
+ * @version 1.0.0
+ */
+public class ByteBufferInputStream extends InputStream
+{
+    /**
+     * View of the buffer being read.
+     */
+    private final ByteBuffer buffer;
+
+    /**
+     * Creates a new input stream reading the remaining bytes of a buffer.
+     * @param buffer Buffer to read.
+     */
+    public ByteBufferInputStream(final @NonNull ByteBuffer buffer)
+    {
+        this.buffer = buffer.duplicate();
+        this.buffer.mark(); // Reset to the start of the stream if not marked.
+    }
+
+    @Override
+    public int read()
+    {
+        return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+    }
+
+    @Override
+    public int read(final byte[] bytes, final int offset, final int length)
+    {
+        if (length == 0)
+        {
+            return 0;
+        }
+
+        if (!buffer.hasRemaining())
+        {
+            return -1;
+        }
+
+        int count = Math.min(length, buffer.remaining());
+        buffer.get(bytes, offset, count);
+
+        return count;
+    }
+
+    @Override
+    public long skip(final long count)
+    {
+        int skipped = (int) Math.max(0, Math.min(count, buffer.remaining()));
+        buffer.position(buffer.position() + skipped);
+
+        return skipped;
+    }
+
+    @Override
+    public int available()
+    {
+        return buffer.remaining();
+    }
+
+    @Override
+    public boolean markSupported()
+    {
+        return true;
+    }
+
+    @Override
+    public void mark(final int limit)
+    {
+        buffer.mark();
+    }
+
+    @Override
+    public void reset()
+    {
+        buffer.reset();
+    }
+}
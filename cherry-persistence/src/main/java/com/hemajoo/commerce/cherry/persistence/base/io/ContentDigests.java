@@ -0,0 +1,71 @@
+/*
+ * Copyright(c) 2021 Hemajoo Digital Systems Inc.
+ * --------------------------------------------------------------------------------------
+ * This file is part of Hemajoo Systems Inc. projects which is licensed
+ * under the Apache license version 2 and use is subject to license terms.
+ * You should have received a copy of the license with the project's artifact
+ * binaries and/or sources.
+ *
+ * License can be consulted at http://www.apache.org/licenses/LICENSE-2.0
+ * --------------------------------------------------------------------------------------
+ */
+package com.hemajoo.commerce.cherry.persistence.base.io;
+
+import lombok.NonNull;
+import lombok.experimental.UtilityClass;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Helper for the digests of the contents stored in the content store.
+ * @author <a href="mailto:christophe.resse@gmail.com">Christophe Resse</a>
+ * @version 1.0.0
+ */
+@UtilityClass
+public class ContentDigests
+{
+    /**
+     * Algorithm used to compute the content digests.
+     */
+    public static final String ALGORITHM = "SHA-256";
+
+    /**
+     * Hexadecimal digits.
+     */
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    /**
+     * Creates a new message digest computing a content digest.
+     * @return Message digest.
+     */
+    public static MessageDigest newDigest()
+    {
+        try
+        {
+            return MessageDigest.getInstance(ALGORITHM);
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            // Every Java platform is required to support SHA-256.
+            throw new IllegalStateException(String.format("Digest algorithm: '%s' is not available!", ALGORITHM), e);
+        }
+    }
+
+    /**
+     * Converts a digest to its hexadecimal representation.
+     * @param digest Digest.
+     * @return Hexadecimal representation.
+     */
+    public static String toHex(final @NonNull byte[] digest)
+    {
+        char[] chars = new char[digest.length * 2];
+        for (int i = 0; i < digest.length; i++)
+        {
+            chars[i * 2] = HEX_DIGITS[(digest[i] >> 4) & 0x0F];
+            chars[i * 2 + 1] = HEX_DIGITS[digest[i] & 0x0F];
+        }
+
+        return new String(chars);
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright(c) 2021 Hemajoo Digital Systems Inc.
+ * --------------------------------------------------------------------------------------
+ * This file is part of Hemajoo Systems Inc. projects which is licensed
+ * under the Apache license version 2 and use is subject to license terms.
+ * You should have received a copy of the license with the project's artifact
+ * binaries and/or sources.
+ *
+ * License can be consulted at http://www.apache.org/licenses/LICENSE-2.0
+ * --------------------------------------------------------------------------------------
+ */
+package com.hemajoo.commerce.cherry.persistence.base.io;
+
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+/**
+ * Input stream inspecting the bytes read through it: it counts them, computes their digest and keeps the header window
+ * (the first bytes, used to sniff the {@code Mime} type), so a content can be copied and inspected in a single read.
+ * <p>
+ * Skipped bytes are read (and inspected) as well, marks are not supported.
+ * @author <a href="mailto:christophe.resse@gmail.com">Christophe Resse</a>
+ * @version 1.0.0
+ */
+public class InspectingInputStream extends FilterInputStream
+{
+    /**
+     * Size of the buffer used to skip bytes.
+     */
+    private static final int SKIP_BUFFER_SIZE = 8192;
+
+    /**
+     * Message digest.
+     */
+    private final MessageDigest digest;
+
+    /**
+     * Header window.
+     */
+    private final byte[] header;
+
+    /**
+     * Number of valid bytes in the header window.
+     */
+    @Getter
+    private int headerLength;
+
+    /**
+     * Number of bytes read.
+     */
+    @Getter
+    private long length;
+
+    /**
+     * Digest of the bytes read (null until computed).
+     */
+    private byte[] result;
+
+    /**
+     * Creates a new inspecting input stream.
+     * @param input Underlying input stream.
+     * @param digest Message digest.
+     * @param headerSize Size of the header window.
+     */
+    public InspectingInputStream(final @NonNull InputStream input, final @NonNull MessageDigest digest, final int headerSize)
+    {
+        super(input);
+
+        this.digest = digest;
+        this.header = new byte[Math.max(headerSize, 0)];
+    }
+
+    @Override
+    public int read() throws IOException
+    {
+        int value = in.read();
+        if (value != -1)
+        {
+            inspect(new byte[] { (byte) value }, 0, 1);
+        }
+
+        return value;
+    }
+
+    @Override
+    public int read(final byte[] bytes, final int offset, final int count) throws IOException
+    {
+        int read = in.read(bytes, offset, count);
+        if (read > 0)
+        {
+            inspect(bytes, offset, read);
+        }
+
+        return read;
+    }
+
+    @Override
+    public long skip(final long count) throws IOException
+    {
+        byte[] buffer = new byte[(int) Math.min(Math.max(count, 0), SKIP_BUFFER_SIZE)];
+        long skipped = 0;
+        int read;
+        while (skipped < count && (read = read(buffer, 0, (int) Math.min(buffer.length, count - skipped))) != -1)
+        {
+            skipped += read;
+        }
+
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported()
+    {
+        return false;
+    }
+
+    @Override
+    public void mark(final int limit)
+    {
+        // Not supported.
+    }
+
+    @Override
+    public void reset() throws IOException
+    {
+        throw new IOException("Mark/reset not supported");
+    }
+
+    /**
+     * Returns the digest of the bytes read. Once called, no more bytes should be read.
+     * @return Digest.
+     */
+    public byte[] getDigest()
+    {
+        if (result == null)
+        {
+            result = digest.digest();
+        }
+
+        return result.clone();
+    }
+
+    /**
+     * Returns the header window, i.e. the first bytes read.
+     * @return Header window.
+     */
+    public byte[] getHeader()
+    {
+        return Arrays.copyOf(header, headerLength);
+    }
+
+    /**
+     * Inspects bytes read.
+     * @param bytes Bytes.
+     * @param offset Offset of the bytes read.
+     * @param count Number of bytes read.
+     */
+    private void inspect(final byte[] bytes, final int offset, final int count)
+    {
+        if (headerLength < header.length)
+        {
+            int copied = Math.min(count, header.length - headerLength);
+            System.arraycopy(bytes, offset, header, headerLength, copied);
+            headerLength += copied;
+        }
+
+        digest.update(bytes, offset, count);
+        length += count;
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright(c) 2021 Hemajoo Digital Systems Inc.
+ * --------------------------------------------------------------------------------------
+ * This file is part of Hemajoo Systems Inc. projects which is licensed
+ * under the Apache license version 2 and use is subject to license terms.
+ * You should have received a copy of the license with the project's artifact
+ * binaries and/or sources.
+ *
+ * License can be consulted at http://www.apache.org/licenses/LICENSE-2.0
+ * --------------------------------------------------------------------------------------
+ */
+package com.hemajoo.commerce.cherry.persistence.base.io;
+
+import lombok.NonNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Input stream opening its underlying stream only when first read.
+ * <p>
+ * Useful to hand out many streams (such as the contents of a list of documents) without holding a file handle for the
+ * ones not (yet) consumed. The underlying stream is closed, and the handle released, as soon as the stream is closed.
+ * @author <a href="mailto:christophe.resse@gmail.com">Christophe Resse</a>
+ * @version 1.0.0
+ */
+public class LazyInputStream extends InputStream
+{
+    /**
+     * Opener of the underlying stream.
+     */
+    private final Opener opener;
+
+    /**
+     * Underlying stream (null until opened).
+     */
+    private InputStream delegate;
+
+    /**
+     * Is the stream closed?
+     */
+    private boolean closed;
+
+    /**
+     * Creates a new lazily opened input stream.
+     * @param opener Opener of the underlying stream.
+     */
+    public LazyInputStream(final @NonNull Opener opener)
+    {
+        this.opener = opener;
+    }
+
+    /**
+     * Checks if the underlying stream has been opened.
+     * @return {@code True} if opened, {@code false} otherwise.
+     */
+    public boolean isOpened()
+    {
+        return delegate != null;
+    }
+
+    @Override
+    public int read() throws IOException
+    {
+        return getDelegate().read();
+    }
+
+    @Override
+    public int read(final byte[] bytes, final int offset, final int length) throws IOException
+    {
+        return getDelegate().read(bytes, offset, length);
+    }
+
+    @Override
+    public long skip(final long count) throws IOException
+    {
+        return getDelegate().skip(count);
+    }
+
+    @Override
+    public int available() throws IOException
+    {
+        return delegate != null ? delegate.available() : 0;
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        closed = true;
+        if (delegate != null)
+        {
+            delegate.close();
+        }
+    }
+
+    /**
+     * Returns the underlying stream, opening it if needed.
+     * @return Underlying stream.
+     * @throws IOException Thrown in case an error occurred while opening the stream.
+     */
+    private InputStream getDelegate() throws IOException
+    {
+        if (closed)
+        {
+            throw new IOException("Stream closed");
+        }
+
+        if (delegate == null)
+        {
+            delegate = opener.open();
+        }
+
+        return delegate;
+    }
+
+    /**
+     * Opener of the underlying stream.
+     */
+    @FunctionalInterface
+    public interface Opener
+    {
+        /**
+         * Opens the underlying stream.
+         * @return Input stream.
+         * @throws IOException Thrown in case an error occurred while opening the stream.
+         */
+        InputStream open() throws IOException;
+    }
+}
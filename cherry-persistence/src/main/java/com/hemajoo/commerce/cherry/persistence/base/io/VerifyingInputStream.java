@@ -0,0 +1,124 @@
+/*
+ * Copyright(c) 2021 Hemajoo Digital Systems Inc.
+ * --------------------------------------------------------------------------------------
+ * This file is part of Hemajoo Systems Inc. projects which is licensed
+ * under the Apache license version 2 and use is subject to license terms.
+ * You should have received a copy of the license with the project's artifact
+ * binaries and/or sources.
+ *
+ * License can be consulted at http://www.apache.org/licenses/LICENSE-2.0
+ * --------------------------------------------------------------------------------------
+ */
+package com.hemajoo.commerce.cherry.persistence.base.io;
+
+import lombok.NonNull;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Input stream verifying, once its end is reached, the digest of the content read through it.
+ * <p>
+ * A content not read up to its end is not verified. Skipped bytes are read (and verified) as well, marks are not
+ * supported.
+ * @author <a href="mailto:christophe.resse@gmail.com">Christophe Resse</a>
+ * @version 1.0.0
+ */
+public class VerifyingInputStream extends FilterInputStream
+{
+    /**
+     * Expected digest (hexadecimal representation).
+     */
+    private final String expected;
+
+    /**
+     * Inspecting stream computing the digest.
+     */
+    private final InspectingInputStream inspector;
+
+    /**
+     * Has the digest been verified?
+     */
+    private boolean verified;
+
+    /**
+     * Creates a new verifying input stream.
+     * @param input Underlying input stream.
+     * @param expected Expected digest (hexadecimal representation, see {@link ContentDigests}).
+     */
+    public VerifyingInputStream(final @NonNull InputStream input, final @NonNull String expected)
+    {
+        this(new InspectingInputStream(input, ContentDigests.newDigest(), 0), expected);
+    }
+
+    /**
+     * Creates a new verifying input stream.
+     * @param inspector Inspecting stream computing the digest.
+     * @param expected Expected digest.
+     */
+    private VerifyingInputStream(final InspectingInputStream inspector, final String expected)
+    {
+        super(inspector);
+
+        this.inspector = inspector;
+        this.expected = expected;
+    }
+
+    @Override
+    public int read() throws IOException
+    {
+        return verify(in.read());
+    }
+
+    @Override
+    public int read(final byte[] bytes, final int offset, final int count) throws IOException
+    {
+        return verify(in.read(bytes, offset, count));
+    }
+
+    @Override
+    public long skip(final long count) throws IOException
+    {
+        return in.skip(count); // End of the content is detected by the next read.
+    }
+
+    @Override
+    public boolean markSupported()
+    {
+        return false;
+    }
+
+    @Override
+    public void mark(final int limit)
+    {
+        // Not supported.
+    }
+
+    @Override
+    public void reset() throws IOException
+    {
+        throw new IOException("Mark/reset not supported");
+    }
+
+    /**
+     * Verifies the digest when the end of the content is reached.
+     * @param read Result of the read.
+     * @return Result of the read.
+     * @throws IOException Thrown if the digest of the content does not match the expected one.
+     */
+    private int verify(final int read) throws IOException
+    {
+        if (read == -1 && !verified)
+        {
+            verified = true;
+            String actual = ContentDigests.toHex(inspector.getDigest());
+            if (!actual.equalsIgnoreCase(expected))
+            {
+                throw new IOException(String.format("Content is corrupted, digest: '%s' expected: '%s' (%d bytes read)", actual, expected, inspector.getLength()));
+            }
+        }
+
+        return read;
+    }
+}
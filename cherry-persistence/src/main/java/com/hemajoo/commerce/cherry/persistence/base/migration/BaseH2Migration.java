@@ -0,0 +1,142 @@
+/*
+ * Copyright(c) 2021 Hemajoo Digital Systems Inc.
+ * --------------------------------------------------------------------------------------
+ * This file is part of Hemajoo Systems Inc. projects which is licensed
+ * under the Apache license version 2 and use is subject to license terms.
+ * You should have received a copy of the license with the project's artifact
+ * binaries and/or sources.
+ *
+ * License can be consulted at http://www.apache.org/licenses/LICENSE-2.0
+ * --------------------------------------------------------------------------------------
+ */
+package com.hemajoo.commerce.cherry.persistence.base.migration;
+
+import lombok.NonNull;
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Base class of the {@code Java} based {@code Flyway} migrations of a {@code H2} database.
+ * <p>
+ * The tables being created by {@code Hibernate} (and not by {@code Flyway}), a migration must be applied on each
+ * schema managed by {@code Flyway} but only if the tables it targets exist.
+ * @author <a href="mailto:christophe.resse@gmail.com">Christophe Resse</a>
+ * @version 1.0.0
+ */
+public abstract class BaseH2Migration extends BaseJavaMigration
+{
+    @Override
+    public final void migrate(final Context context) throws SQLException
+    {
+        Connection connection = context.getConnection();
+
+        for (String schema : getSchemas(context))
+        {
+            migrate(connection, schema);
+        }
+    }
+
+    /**
+     * Applies the migration on a schema.
+     * @param connection Database connection.
+     * @param schema Schema name.
+     * @throws SQLException Thrown in case an error occurred while migrating the schema.
+     */
+    protected abstract void migrate(final Connection connection, final String schema) throws SQLException;
+
+    /**
+     * Returns the schemas managed by {@code Flyway}, or the current schema of the connection if none.
+     * @param context Migration context.
+     * @return List of schema names.
+     * @throws SQLException Thrown in case an error occurred while accessing the database.
+     */
+    protected final List<String> getSchemas(final @NonNull Context context) throws SQLException
+    {
+        String[] schemas = context.getConfiguration().getSchemas();
+        if (schemas == null || schemas.length == 0)
+        {
+            List<String> list = new ArrayList<>();
+            list.add(context.getConnection().getSchema());
+            return list;
+        }
+
+        return Arrays.asList(schemas);
+    }
+
+    /**
+     * Checks if a table exists.
+     * @param connection Database connection.
+     * @param schema Schema name.
+     * @param table Table name.
+     * @return {@code True} if the table exists, {@code false} otherwise.
+     * @throws SQLException Thrown in case an error occurred while accessing the database.
+     */
+    protected final boolean tableExists(final @NonNull Connection connection, final String schema, final @NonNull String table) throws SQLException
+    {
+        try (ResultSet result = connection.getMetaData().getTables(null, schema, table, null))
+        {
+            return result.next();
+        }
+    }
+
+    /**
+     * Returns the type name of a column.
+     * @param connection Database connection.
+     * @param schema Schema name.
+     * @param table Table name.
+     * @param column Column name.
+     * @return Type name or null if the column does not exist.
+     * @throws SQLException Thrown in case an error occurred while accessing the database.
+     */
+    protected final String getColumnType(final @NonNull Connection connection, final String schema, final @NonNull String table, final @NonNull String column) throws SQLException
+    {
+        try (ResultSet result = connection.getMetaData().getColumns(null, schema, table, column))
+        {
+            return result.next() ? result.getString("TYPE_NAME") : null;
+        }
+    }
+
+    /**
+     * Returns the entity tables, i.e. the tables having an {@code ENTITY_TYPE} column.
+     * @param connection Database connection.
+     * @param schema Schema name.
+     * @return List of table names.
+     * @throws SQLException Thrown in case an error occurred while accessing the database.
+     */
+    protected final List<String> getEntityTableNames(final @NonNull Connection connection, final String schema) throws SQLException
+    {
+        List<String> tables = new ArrayList<>();
+
+        try (ResultSet result = connection.getMetaData().getColumns(null, schema, null, "ENTITY_TYPE"))
+        {
+            while (result.next())
+            {
+                tables.add(result.getString("TABLE_NAME"));
+            }
+        }
+
+        return tables;
+    }
+
+    /**
+     * Executes a statement.
+     * @param connection Database connection.
+     * @param sql Statement to execute.
+     * @throws SQLException Thrown in case an error occurred while executing the statement.
+     */
+    protected final void execute(final @NonNull Connection connection, final @NonNull String sql) throws SQLException
+    {
+        try (Statement statement = connection.createStatement())
+        {
+            statement.execute(sql);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright(c) 2021 Hemajoo Digital Systems Inc.
+ * --------------------------------------------------------------------------------------
+ * This file is part of Hemajoo Systems Inc. projects which is licensed
+ * under the Apache license version 2 and use is subject to license terms.
+ * You should have received a copy of the license with the project's artifact
+ * binaries and/or sources.
+ *
+ * License can be consulted at http://www.apache.org/licenses/LICENSE-2.0
+ * --------------------------------------------------------------------------------------
+ */
+package com.hemajoo.commerce.cherry.persistence.content;
+
+import com.hemajoo.commerce.cherry.persistence.base.concurrent.BulkheadExecutors;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Configurer of the executors (bulkheads) running the asynchronous document operations.
+ * <p>
+ * The database and the content store accesses run in separate bulkheads so a burst of one kind of work (such as large
+ * uploads) cannot starve the other one. The concurrency of the database bulkhead should not exceed the size of the
+ * connection pool.
+ * @author <a href="mailto:christophe.resse@gmail.com">Christophe Resse</a>
+ * @version 1.0.0
+ */
+@Configuration
+public class DocumentAsyncConfigurer
+{
+    /**
+     * Returns the bulkhead running the asynchronous database accesses.
+     * @param virtualThreads Should the tasks run on virtual threads (if supported)?
+     * @param concurrency Maximum number of tasks running concurrently.
+     * @param queueSize Maximum number of tasks waiting to run.
+     * @return Database bulkhead.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService documentDatabaseBulkhead(
+            final @Value("${hemajoo.commerce.cherry.async.virtual-threads:true}") boolean virtualThreads,
+            final @Value("${hemajoo.commerce.cherry.async.database.concurrency:10}") int concurrency,
+            final @Value("${hemajoo.commerce.cherry.async.database.queue:1000}") int queueSize)
+    {
+        return BulkheadExecutors.newBulkhead("cherry-async-db-", concurrency, queueSize, virtualThreads);
+    }
+
+    /**
+     * Returns the bulkhead running the asynchronous content store accesses.
+     * @param virtualThreads Should the tasks run on virtual threads (if supported)?
+     * @param concurrency Maximum number of tasks running concurrently.
+     * @param queueSize Maximum number of tasks waiting to run.
+     * @return Content store bulkhead.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService documentStoreBulkhead(
+            final @Value("${hemajoo.commerce.cherry.async.virtual-threads:true}") boolean virtualThreads,
+            final @Value("${hemajoo.commerce.cherry.async.store.concurrency:16}") int concurrency,
+            final @Value("${hemajoo.commerce.cherry.async.store.queue:1000}") int queueSize)
+    {
+        return BulkheadExecutors.newBulkhead("cherry-async-store-", concurrency, queueSize, virtualThreads);
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright(c) 2021 Hemajoo Digital Systems Inc.
+ * --------------------------------------------------------------------------------------
+ * This file is part of Hemajoo Systems Inc. projects which is licensed
+ * under the Apache license version 2 and use is subject to license terms.
+ * You should have received a copy of the license with the project's artifact
+ * binaries and/or sources.
+ *
+ * License can be consulted at http://www.apache.org/licenses/LICENSE-2.0
+ * --------------------------------------------------------------------------------------
+ */
+package com.hemajoo.commerce.cherry.persistence.content;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.jpa.HibernateMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
+
+import javax.persistence.EntityManagerFactory;
+
+/**
+ * Configurer of the {@code Hibernate} second level cache, backed by {@code Ehcache} through {@code JCache}.
+ * <p>
+ * When enabled, the entities (documents and document owners) are cached with a read-write concurrency strategy: a
+ * document loaded by identifier in a later persistence context (such as another request, or the owner of a document
+ * being initialized) can be assembled from the cache instead of being selected again, as long as its entry has not
+ * been evicted, has not expired and has not been invalidated by an update. The lookups of the documents of an owner are
+ * cached in their own query region, invalidated whenever the document table is modified. Other queries, and the
+ * documents collection of an owner, are not cached.
+ * <p>
+ * The second level cache owns the state of the entities: it is kept consistent with the database by {@code Hibernate}
+ * for the writes of this instance and serves the managed entities of every persistence context. The
+ * {@link DocumentMetadataCache} is only a per instance front of the service lookups by identifier (outside any
+ * transaction), returning detached copies of the document metadata, and expires its entries to see the changes made by
+ * other instances.
+ * <p>
+ * The cache regions (heap and off-heap tiers, expirations) are defined in the {@code Ehcache} configuration file. The
+ * {@code Hibernate} statistics are published as metrics ({@code hibernate.*}) in the meter registry of the application
+ * if any, in the global registry otherwise.
+ * @author <a href="mailto:christophe.resse@gmail.com">Christophe Resse</a>
+ * @version 1.0.0
+ */
+@Slf4j
+@Configuration
+@ConditionalOnProperty(name = "hemajoo.commerce.cherry.cache.second-level.enabled", havingValue = "true")
+public class DocumentCacheConfigurer
+{
+    /**
+     * Name of the entity manager factory in the metrics.
+     */
+    private static final String METRICS_NAME = "cherry";
+
+    /**
+     * Returns the customizer enabling the second level cache in the {@code Hibernate} properties.
+     * @param configuration Location of the {@code Ehcache} configuration file.
+     * @return Hibernate properties customizer.
+     */
+    @Bean
+    public HibernatePropertiesCustomizer documentCacheCustomizer(
+            final @Value("${hemajoo.commerce.cherry.cache.second-level.configuration:classpath:cherry-ehcache.xml}") String configuration)
+    {
+        return properties -> {
+            properties.put(AvailableSettings.USE_SECOND_LEVEL_CACHE, Boolean.TRUE.toString());
+            properties.put(AvailableSettings.USE_QUERY_CACHE, Boolean.TRUE.toString());
+            properties.put(AvailableSettings.CACHE_REGION_FACTORY, "jcache");
+            properties.put(AvailableSettings.GENERATE_STATISTICS, Boolean.TRUE.toString());
+            properties.put(ConfigSettings.PROVIDER, "org.ehcache.jsr107.EhcacheCachingProvider");
+            properties.put(ConfigSettings.CONFIG_URI, configuration);
+            properties.put(ConfigSettings.MISSING_CACHE_STRATEGY, "create-warn");
+        };
+    }
+
+    /**
+     * Publishes the {@code Hibernate} statistics as metrics once the application is ready.
+     * @param event Application ready event.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void bindMetrics(final ApplicationReadyEvent event)
+    {
+        ObjectProvider<MeterRegistry> registries = event.getApplicationContext().getBeanProvider(MeterRegistry.class);
+        MeterRegistry registry = registries.getIfAvailable(() -> Metrics.globalRegistry);
+
+        event.getApplicationContext().getBeanProvider(EntityManagerFactory.class).ifAvailable(factory -> {
+            HibernateMetrics.monitor(registry, factory, METRICS_NAME, Tags.empty());
+            log.info("Hibernate second level cache enabled, statistics published in meter registry: '{}'.", registry.getClass().getSimpleName());
+        });
+    }
+}
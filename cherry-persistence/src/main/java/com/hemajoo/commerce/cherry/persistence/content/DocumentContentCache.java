@@ -0,0 +1,434 @@
+/*
+ * Copyright(c) 2021 Hemajoo Digital Systems Inc.
+ * --------------------------------------------------------------------------------------
+ * This file is part of Hemajoo Systems Inc. projects which is licensed
+ * under the Apache license version 2 and use is subject to license terms.
+ * You should have received a copy of the license with the project's artifact
+ * binaries and/or sources.
+ *
+ * License can be consulted at http://www.apache.org/licenses/LICENSE-2.0
+ * --------------------------------------------------------------------------------------
+ */
+package com.hemajoo.commerce.cherry.persistence.content;
+
+import com.hemajoo.commerce.cherry.persistence.base.io.ByteBufferInputStream;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Off-heap cache of the small contents (such as icons and thumbnails) served frequently.
+ * <p>
+ * The contents whose length is below a threshold are kept in direct (off-heap) byte buffers, so they do not weigh on
+ * the heap nor on the garbage collector, and are served without accessing the file system. The cache is bounded by a
+ * global byte budget and the least recently used contents are evicted first.
+ * <p>
+ * The contents are keyed by their content identifier and must be invalidated each time a content is set or unset in
+ * the content store. A content loaded while an invalidation occurs is served but not cached, so a lookup racing with
+ * the deletion of a content cannot cache it again once invalidated.
+ * <p>
+ * The cache statistics are published as metrics ({@code cache.*}, tagged with the {@value #METRICS_NAME} cache name)
+ * in the meter registry of the application if any, in the global registry otherwise.
+ * @author <a href="mailto:christophe.resse@gmail.com">Christophe Resse</a>
+ * @version 1.0.0
+ */
+@Slf4j
+@Component
+public class DocumentContentCache
+{
+    /**
+     * Name of the cache in the metrics.
+     */
+    public static final String METRICS_NAME = "cherry.document.content";
+
+    /**
+     * Is the cache enabled?
+     */
+    @Getter
+    private final boolean enabled;
+
+    /**
+     * Maximum length (in bytes) of a cached content.
+     */
+    @Getter
+    private final int threshold;
+
+    /**
+     * Byte budget of the cache.
+     */
+    @Getter
+    private final long capacity;
+
+    /**
+     * Cached contents (in access order, the least recently used first).
+     */
+    private final LinkedHashMap<String, ByteBuffer> contents = new LinkedHashMap<>(16, 0.75F, true);
+
+    /**
+     * Lock guarding the cached contents.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * Number of bytes currently cached.
+     */
+    private long size;
+
+    /**
+     * Number of invalidations (guarded by the lock), a content is only cached if no invalidation occurred while it was
+     * loaded.
+     */
+    private long invalidations;
+
+    /**
+     * Number of hits.
+     */
+    private final LongAdder hits = new LongAdder();
+
+    /**
+     * Number of misses.
+     */
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Number of evictions.
+     */
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Creates a new content cache.
+     * @param enabled Is the cache enabled?
+     * @param threshold Maximum length (in bytes) of a cached content.
+     * @param capacity Byte budget of the cache.
+     */
+    public DocumentContentCache(
+            final @Value("${hemajoo.commerce.cherry.cache.content.enabled:true}") boolean enabled,
+            final @Value("${hemajoo.commerce.cherry.cache.content.threshold:65536}") int threshold,
+            final @Value("${hemajoo.commerce.cherry.cache.content.capacity:33554432}") long capacity)
+    {
+        this.enabled = enabled && threshold > 0 && capacity > 0;
+        this.threshold = threshold;
+        this.capacity = capacity;
+    }
+
+    /**
+     * Checks if a content can be cached given its length.
+     * @param length Content length.
+     * @return {@code True} if the content can be cached, {@code false} otherwise.
+     */
+    public boolean isCacheable(final long length)
+    {
+        return enabled && length > 0 && length <= threshold && length <= capacity;
+    }
+
+    /**
+     * Returns a content, loading it if not cached.
+     * <p>
+     * If the content turns out to be longer than the threshold, it is not cached and is returned as a stream reading
+     * the bytes already read followed by the remaining ones.
+     * @param contentId Content identifier.
+     * @param length Expected content length.
+     * @param loader Loader of the content if not cached.
+     * @return Input stream on the content.
+     * @throws IOException Thrown in case an error occurred while loading the content.
+     */
+    public InputStream getContent(final @NonNull String contentId, final long length, final @NonNull ContentLoader loader) throws IOException
+    {
+        if (!isCacheable(length))
+        {
+            return loader.load();
+        }
+
+        ByteBuffer buffer = get(contentId);
+        if (buffer != null)
+        {
+            hits.increment();
+            return new ByteBufferInputStream(buffer);
+        }
+
+        misses.increment();
+
+        long stamp = getInvalidations();
+        InputStream input = loader.load();
+        if (input == null)
+        {
+            return null;
+        }
+
+        // One more byte than the threshold is read to detect a content longer than expected.
+        buffer = ByteBuffer.allocateDirect((int) Math.min((long) threshold + 1, length + 1));
+        try
+        {
+            ReadableByteChannel channel = Channels.newChannel(input);
+            while (buffer.hasRemaining() && channel.read(buffer) != -1)
+            {
+                // Fill the buffer.
+            }
+            buffer.flip();
+        }
+        catch (IOException e)
+        {
+            input.close();
+            throw e;
+        }
+
+        if (buffer.limit() > threshold || buffer.limit() > length)
+        {
+            // Content longer than expected (stale length), it is not cached.
+            return new SequenceInputStream(new ByteBufferInputStream(buffer), input);
+        }
+
+        input.close();
+        put(contentId, buffer.asReadOnlyBuffer(), stamp);
+
+        return new ByteBufferInputStream(buffer);
+    }
+
+    /**
+     * Invalidates a content.
+     * @param contentId Content identifier.
+     */
+    public void invalidate(final String contentId)
+    {
+        if (!enabled || contentId == null)
+        {
+            return;
+        }
+
+        lock.lock();
+        try
+        {
+            ByteBuffer buffer = contents.remove(contentId);
+            if (buffer != null)
+            {
+                size -= buffer.limit();
+            }
+            invalidations++;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Invalidates all the contents.
+     */
+    public void invalidateAll()
+    {
+        lock.lock();
+        try
+        {
+            contents.clear();
+            size = 0;
+            invalidations++;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of bytes currently cached.
+     * @return Number of bytes.
+     */
+    public long size()
+    {
+        lock.lock();
+        try
+        {
+            return size;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of hits.
+     * @return Number of hits.
+     */
+    public long getHitCount()
+    {
+        return hits.sum();
+    }
+
+    /**
+     * Returns the number of misses.
+     * @return Number of misses.
+     */
+    public long getMissCount()
+    {
+        return misses.sum();
+    }
+
+    /**
+     * Returns the number of evictions.
+     * @return Number of evictions.
+     */
+    public long getEvictionCount()
+    {
+        return evictions.sum();
+    }
+
+    /**
+     * Returns the hit ratio, i.e. the ratio of the lookups of cacheable contents served by the cache.
+     * @return Hit ratio (1.0 if no lookup).
+     */
+    public double getHitRatio()
+    {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+
+        return total == 0 ? 1.0 : (double) hitCount / total;
+    }
+
+    /**
+     * Publishes the cache statistics as metrics once the application is ready.
+     * @param event Application ready event.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void bindMetrics(final ApplicationReadyEvent event)
+    {
+        MeterRegistry registry = event.getApplicationContext().getBeanProvider(MeterRegistry.class).getIfAvailable(() -> Metrics.globalRegistry);
+        bindTo(registry);
+    }
+
+    /**
+     * Publishes the cache statistics (hits, misses, evictions and cached bytes) as metrics in a meter registry.
+     * @param registry Meter registry.
+     */
+    public void bindTo(final @NonNull MeterRegistry registry)
+    {
+        if (!enabled)
+        {
+            return;
+        }
+
+        FunctionCounter.builder("cache.gets", this, DocumentContentCache::getHitCount)
+                .tags("cache", METRICS_NAME, "result", "hit")
+                .description("Number of lookups of cacheable contents served by the cache")
+                .register(registry);
+        FunctionCounter.builder("cache.gets", this, DocumentContentCache::getMissCount)
+                .tags("cache", METRICS_NAME, "result", "miss")
+                .description("Number of lookups of cacheable contents loaded from the content store")
+                .register(registry);
+        FunctionCounter.builder("cache.evictions", this, DocumentContentCache::getEvictionCount)
+                .tags("cache", METRICS_NAME)
+                .description("Number of contents evicted to stay within the byte budget")
+                .register(registry);
+        Gauge.builder("cache.size", this, DocumentContentCache::size)
+                .tags("cache", METRICS_NAME)
+                .description("Number of bytes currently cached")
+                .baseUnit("bytes")
+                .register(registry);
+
+        log.info("Document content cache statistics published in meter registry: '{}'.", registry.getClass().getSimpleName());
+    }
+
+    /**
+     * Returns the number of invalidations.
+     * @return Number of invalidations.
+     */
+    private long getInvalidations()
+    {
+        lock.lock();
+        try
+        {
+            return invalidations;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns a cached content.
+     * @param contentId Content identifier.
+     * @return Buffer or null if not cached.
+     */
+    private ByteBuffer get(final String contentId)
+    {
+        lock.lock();
+        try
+        {
+            return contents.get(contentId);
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Caches a content, evicting the least recently used contents to stay within the byte budget.
+     * <p>
+     * The content is not cached if an invalidation occurred since it started to be loaded.
+     * @param contentId Content identifier.
+     * @param buffer Content buffer.
+     * @param stamp Number of invalidations when the content started to be loaded.
+     */
+    private void put(final String contentId, final ByteBuffer buffer, final long stamp)
+    {
+        lock.lock();
+        try
+        {
+            if (invalidations != stamp)
+            {
+                return; // Possibly stale content!
+            }
+
+            ByteBuffer previous = contents.put(contentId, buffer);
+            size += buffer.limit() - (previous != null ? previous.limit() : 0);
+
+            Iterator<Map.Entry<String, ByteBuffer>> iterator = contents.entrySet().iterator();
+            while (size > capacity && iterator.hasNext())
+            {
+                size -= iterator.next().getValue().limit();
+                iterator.remove();
+                evictions.increment();
+            }
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Loader of a content not cached.
+     */
+    @FunctionalInterface
+    public interface ContentLoader
+    {
+        /**
+         * Loads a content.
+         * @return Input stream on the content or null if the content does not exist.
+         * @throws IOException Thrown in case an error occurred while loading the content.
+         */
+        InputStream load() throws IOException;
+    }
+}
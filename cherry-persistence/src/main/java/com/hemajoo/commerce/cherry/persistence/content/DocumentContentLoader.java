@@ -0,0 +1,175 @@
+/*
+ * Copyright(c) 2021 Hemajoo Digital Systems Inc.
+ * --------------------------------------------------------------------------------------
+ * This file is part of Hemajoo Systems Inc. projects which is licensed
+ * under the Apache license version 2 and use is subject to license terms.
+ * You should have received a copy of the license with the project's artifact
+ * binaries and/or sources.
+ *
+ * License can be consulted at http://www.apache.org/licenses/LICENSE-2.0
+ * --------------------------------------------------------------------------------------
+ */
+package com.hemajoo.commerce.cherry.persistence.content;
+
+import com.hemajoo.commerce.cherry.commons.exception.ContentStoreException;
+import com.hemajoo.commerce.cherry.model.entity.document.DocumentException;
+import com.hemajoo.commerce.cherry.persistence.model.entity.document.DocumentEntity;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Component responsible to load the content of a document or, in one parallel pass, the contents of several documents
+ * (such as the photos of a gallery).
+ * <p>
+ * The content files of several documents are resolved in parallel on the content store executor. Each document is then
+ * given:
+ * <ul>
+ * <li>a stream on the cached content, for the small contents (see {@link DocumentContentCache}),</li>
+ * <li>a stream on a memory mapped file, for the contents above the mapping threshold, so they are read straight from
+ * the page cache without being copied, or a lazily opened stream otherwise, so a file handle is only held while the
+ * content is consumed (see {@link DocumentContentReader}).</li>
+ * </ul>
+ * In both cases, the content is verified against its digest once fully read if verification on read is enabled.
+ * @author <a href="mailto:christophe.resse@gmail.com">Christophe Resse</a>
+ * @version 1.0.0
+ */
+@Slf4j
+@Component
+public class DocumentContentLoader
+{
+    /**
+     * Document content reader.
+     */
+    @Autowired
+    private DocumentContentReader documentContentReader;
+
+    /**
+     * Document content cache.
+     */
+    @Autowired
+    private DocumentContentCache documentContentCache;
+
+    /**
+     * Content store executor.
+     */
+    @Autowired
+    @Qualifier("contentStoreExecutor")
+    private ExecutorService contentStoreExecutor;
+
+    /**
+     * Loads the content of a document.
+     * <p>
+     * A document without content, or whose content file cannot be found, is left without content.
+     * @param document Document.
+     * @throws DocumentException Raised if an error occurred while trying to load the content.
+     */
+    public void load(final @NonNull DocumentEntity document) throws DocumentException
+    {
+        if (document.getContentId() == null)
+        {
+            return;
+        }
+
+        try
+        {
+            InputStream content = open(document);
+            if (content != null)
+            {
+                document.setContent(content);
+            }
+        }
+        catch (ContentStoreException | IOException e)
+        {
+            throw new DocumentException(String.format("Cannot load content of document id: '%s'", document.getId()), e);
+        }
+    }
+
+    /**
+     * Loads the contents of documents.
+     * <p>
+     * Documents without content, or whose content file cannot be found, are left without content.
+     * @param documents Documents.
+     * @throws DocumentException Raised if an error occurred while trying to load the contents.
+     */
+    public void load(final @NonNull Collection<DocumentEntity> documents) throws DocumentException
+    {
+        List<Future<Void>> futures = new ArrayList<>(documents.size());
+
+        for (DocumentEntity document : documents)
+        {
+            if (document.getContentId() != null)
+            {
+                futures.add(contentStoreExecutor.submit(() -> {
+                    InputStream content = open(document);
+                    if (content != null)
+                    {
+                        document.setContent(content);
+                    }
+                    return null;
+                }));
+            }
+        }
+
+        try
+        {
+            for (Future<Void> future : futures)
+            {
+                future.get();
+            }
+        }
+        catch (ExecutionException e)
+        {
+            futures.forEach(future -> future.cancel(true));
+            throw new DocumentException("Cannot load the documents content!", e.getCause() instanceof Exception ? (Exception) e.getCause() : e);
+        }
+        catch (InterruptedException e)
+        {
+            futures.forEach(future -> future.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new DocumentException("Interrupted while loading the documents content!", e);
+        }
+    }
+
+    /**
+     * Opens the content of a document.
+     * @param document Document.
+     * @return Input stream on the content or null if the content file cannot be found.
+     * @throws ContentStoreException Raised if an error occurred while opening the content.
+     * @throws IOException Thrown in case an error occurred while reading the content.
+     */
+    private InputStream open(final DocumentEntity document) throws ContentStoreException, IOException
+    {
+        Path path;
+        try
+        {
+            path = documentContentReader.getPath(document);
+        }
+        catch (ContentStoreException e)
+        {
+            log.warn(e.getMessage());
+            return null;
+        }
+
+        long length = Files.size(path);
+        if (documentContentCache.isCacheable(length))
+        {
+            return documentContentReader.verifying(document, documentContentCache.getContent(document.getContentId(), length, () -> Files.newInputStream(path)));
+        }
+
+        return documentContentReader.getContent(document);
+    }
+}
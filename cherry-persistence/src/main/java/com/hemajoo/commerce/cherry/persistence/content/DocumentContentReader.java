@@ -0,0 +1,264 @@
+/*
+ * Copyright(c) 2021 Hemajoo Digital Systems Inc.
+ * --------------------------------------------------------------------------------------
+ * This file is part of Hemajoo Systems Inc. projects which is licensed
+ * under the Apache license version 2 and use is subject to license terms.
+ * You should have received a copy of the license with the project's artifact
+ * binaries and/or sources.
+ *
+ * License can be consulted at http://www.apache.org/licenses/LICENSE-2.0
+ * --------------------------------------------------------------------------------------
+ */
+package com.hemajoo.commerce.cherry.persistence.content;
+
+import com.hemajoo.commerce.cherry.commons.exception.ContentStoreException;
+import com.hemajoo.commerce.cherry.persistence.base.io.ByteBufferInputStream;
+import com.hemajoo.commerce.cherry.persistence.base.io.LazyInputStream;
+import com.hemajoo.commerce.cherry.persistence.base.io.VerifyingInputStream;
+import com.hemajoo.commerce.cherry.persistence.model.entity.document.DocumentEntity;
+import lombok.Getter;
+import lombok.NonNull;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Component giving a direct, read-only, access to the content (media file) of the documents.
+ * <p>
+ * Contrary to {@link DocumentStore#getContent(Object)} which returns a plain input stream, the content can be accessed
+ * through a {@link FileChannel} (for random accesses on contents of any size) or through a {@link MappedByteBuffer}
+ * (for zero-copy accesses, straight from the page cache). The input streams returned by
+ * {@link #getContent(DocumentEntity)} read the contents above the mapping threshold from a mapped buffer.
+ * <p>
+ * A mapped buffer being limited to {@code 2 GB}, larger contents must be mapped by regions (see
+ * {@link #map(DocumentEntity, long, long)}). A mapping remains valid once the channel used to create it is closed and
+ * is released when the buffer is garbage collected.
+ * <p>
+ * When the {@code hemajoo.commerce.cherry.store.io.verify-on-read} property is enabled, the input streams verify, once
+ * fully read, the content against the digest computed when it was written (see
+ * {@link DocumentEntity#getContentDigest()}) and fail if the content is corrupted. This applies to every content read
+ * through the input streams: the documents loaded by the {@link DocumentContentLoader} (including the contents served
+ * by the {@link DocumentContentCache}, see {@link #verifying(DocumentEntity, InputStream)}) and the whole contents
+ * downloaded. The channels, the mapped buffers and the ranges of a content are never verified.
+ * @author <a href="mailto:christophe.resse@gmail.com">Christophe Resse</a>
+ * @version 1.0.0
+ */
+@Component
+public class DocumentContentReader
+{
+    /**
+     * Maximum size of a mapped region.
+     */
+    public static final long MAX_MAPPING_SIZE = Integer.MAX_VALUE;
+
+    /**
+     * Minimum length (in bytes) of the contents to read from a mapped buffer, 0 to disable memory mapping.
+     */
+    @Getter
+    private final long mmapThreshold;
+
+    /**
+     * Are the contents verified against their digest when read?
+     */
+    @Getter
+    private final boolean verifyOnRead;
+
+    /**
+     * Content store layout.
+     */
+    private final DocumentStoreLayout documentStoreLayout;
+
+    /**
+     * Creates a new document content reader.
+     * @param documentStoreLayout Content store layout.
+     * @param mmapThreshold Minimum length (in bytes) of the contents to read from a mapped buffer, 0 to disable memory
+     * mapping.
+     * @param verifyOnRead Are the contents verified against their digest when read?
+     */
+    public DocumentContentReader(
+            final DocumentStoreLayout documentStoreLayout,
+            final @Value("${hemajoo.commerce.cherry.store.io.mmap-threshold:1048576}") long mmapThreshold,
+            final @Value("${hemajoo.commerce.cherry.store.io.verify-on-read:false}") boolean verifyOnRead)
+    {
+        this.documentStoreLayout = documentStoreLayout;
+        this.mmapThreshold = mmapThreshold;
+        this.verifyOnRead = verifyOnRead;
+    }
+
+    /**
+     * Returns the path of the content of a document.
+     * @param document Document.
+     * @return Content path.
+     * @throws ContentStoreException Raised if the document has no content or if its content cannot be found.
+     */
+    public Path getPath(final @NonNull DocumentEntity document) throws ContentStoreException
+    {
+        if (document.getContentId() == null)
+        {
+            throw new ContentStoreException(String.format("Document id: '%s' has no content!", document.getId()), HttpStatus.NOT_FOUND);
+        }
+
+        Path path = documentStoreLayout.resolve(document.getContentId());
+        if (!Files.isRegularFile(path))
+        {
+            throw new ContentStoreException(String.format("Cannot find content id: '%s' of document id: '%s'", document.getContentId(), document.getId()), HttpStatus.NOT_FOUND);
+        }
+
+        return path;
+    }
+
+    /**
+     * Checks if a content should be read from a mapped buffer given its length.
+     * @param length Content length.
+     * @return {@code True} if the content should be mapped, {@code false} otherwise.
+     */
+    public boolean isMappable(final long length)
+    {
+        return mmapThreshold > 0 && length >= mmapThreshold && length <= MAX_MAPPING_SIZE;
+    }
+
+    /**
+     * Opens a read-only channel on the content of a document.
+     * <p>
+     * The caller is responsible to close the channel.
+     * @param document Document.
+     * @return File channel.
+     * @throws ContentStoreException Raised if the content cannot be found or opened.
+     */
+    public FileChannel openChannel(final @NonNull DocumentEntity document) throws ContentStoreException
+    {
+        Path path = getPath(document);
+
+        try
+        {
+            return FileChannel.open(path, StandardOpenOption.READ);
+        }
+        catch (IOException e)
+        {
+            throw new ContentStoreException(String.format("Cannot open content id: '%s'", document.getContentId()), e);
+        }
+    }
+
+    /**
+     * Maps the whole content of a document.
+     * @param document Document.
+     * @return Read-only mapped buffer.
+     * @throws ContentStoreException Raised if the content cannot be found, is too large to be mapped at once or cannot
+     * be mapped.
+     */
+    public MappedByteBuffer map(final @NonNull DocumentEntity document) throws ContentStoreException
+    {
+        try (FileChannel channel = openChannel(document))
+        {
+            return map(document, channel, 0, channel.size());
+        }
+        catch (IOException e)
+        {
+            throw new ContentStoreException(String.format("Cannot map content id: '%s'", document.getContentId()), e);
+        }
+    }
+
+    /**
+     * Maps a region of the content of a document.
+     * @param document Document.
+     * @param position Start position of the region.
+     * @param size Size of the region (at most {@link #MAX_MAPPING_SIZE}).
+     * @return Read-only mapped buffer.
+     * @throws ContentStoreException Raised if the content cannot be found or the region cannot be mapped.
+     */
+    public MappedByteBuffer map(final @NonNull DocumentEntity document, final long position, final long size) throws ContentStoreException
+    {
+        try (FileChannel channel = openChannel(document))
+        {
+            return map(document, channel, position, size);
+        }
+        catch (IOException e)
+        {
+            throw new ContentStoreException(String.format("Cannot map content id: '%s'", document.getContentId()), e);
+        }
+    }
+
+    /**
+     * Returns an input stream on the content of a document.
+     * <p>
+     * Contents above the mapping threshold are read from a mapped buffer (no file handle is held), the other ones from
+     * a buffered stream opened on first read.
+     * @param document Document.
+     * @return Input stream on the content, verified against its digest if verification on read is enabled.
+     * @throws ContentStoreException Raised if the content cannot be found or opened.
+     */
+    public InputStream getContent(final @NonNull DocumentEntity document) throws ContentStoreException
+    {
+        return getContent(document, verifyOnRead);
+    }
+
+    /**
+     * Returns an input stream on the content of a document.
+     * <p>
+     * When verified, reading the end of the content throws an {@link IOException} if its digest does not match the one
+     * computed when it was written. Contents without digest (written before digests were computed) are not verified.
+     * @param document Document.
+     * @param verify Should the content be verified against its digest?
+     * @return Input stream on the content.
+     * @throws ContentStoreException Raised if the content cannot be found or opened.
+     */
+    public InputStream getContent(final @NonNull DocumentEntity document, final boolean verify) throws ContentStoreException
+    {
+        Path path = getPath(document);
+        InputStream content;
+
+        try
+        {
+            content = isMappable(Files.size(path))
+                    ? new ByteBufferInputStream(map(document))
+                    : new LazyInputStream(() -> new BufferedInputStream(Files.newInputStream(path)));
+        }
+        catch (IOException e)
+        {
+            throw new ContentStoreException(String.format("Cannot read content id: '%s'", document.getContentId()), e);
+        }
+
+        return verify && document.getContentDigest() != null ? new VerifyingInputStream(content, document.getContentDigest()) : content;
+    }
+
+    /**
+     * Returns an input stream verifying a content of a document read from another source (such as the content cache),
+     * if verification on read is enabled.
+     * @param document Document.
+     * @param content Input stream on the content.
+     * @return Input stream on the content, verified against its digest if verification on read is enabled.
+     */
+    public InputStream verifying(final @NonNull DocumentEntity document, final @NonNull InputStream content)
+    {
+        return verifyOnRead && document.getContentDigest() != null ? new VerifyingInputStream(content, document.getContentDigest()) : content;
+    }
+
+    /**
+     * Maps a region of a content.
+     * @param document Document.
+     * @param channel File channel on the content.
+     * @param position Start position of the region.
+     * @param size Size of the region.
+     * @return Read-only mapped buffer.
+     * @throws ContentStoreException Raised if the region cannot be mapped.
+     * @throws IOException Thrown in case an error occurred while mapping the region.
+     */
+    private MappedByteBuffer map(final DocumentEntity document, final FileChannel channel, final long position, final long size) throws ContentStoreException, IOException
+    {
+        if (position < 0 || size < 0 || size > MAX_MAPPING_SIZE || position + size > channel.size())
+        {
+            throw new ContentStoreException(String.format("Cannot map region [%d, %d[ of content id: '%s' (length: %d)", position, position + size, document.getContentId(), channel.size()), HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE);
+        }
+
+        return channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+    }
+}
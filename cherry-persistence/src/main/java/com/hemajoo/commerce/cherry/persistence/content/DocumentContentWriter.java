@@ -0,0 +1,452 @@
+/*
+ * Copyright(c) 2021 Hemajoo Digital Systems Inc.
+ * --------------------------------------------------------------------------------------
+ * This file is part of Hemajoo Systems Inc. projects which is licensed
+ * under the Apache license version 2 and use is subject to license terms.
+ * You should have received a copy of the license with the project's artifact
+ * binaries and/or sources.
+ *
+ * License can be consulted at http://www.apache.org/licenses/LICENSE-2.0
+ * --------------------------------------------------------------------------------------
+ */
+package com.hemajoo.commerce.cherry.persistence.content;
+
+import com.hemajoo.commerce.cherry.commons.exception.ContentStoreException;
+import com.hemajoo.commerce.cherry.model.entity.document.MimeTypeDetector;
+import com.hemajoo.commerce.cherry.persistence.base.io.ContentDigests;
+import com.hemajoo.commerce.cherry.persistence.base.io.InspectingInputStream;
+import com.hemajoo.commerce.cherry.persistence.model.entity.document.DocumentEntity;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Component responsible to write the content (media file) of the documents into the content store.
+ * <p>
+ * Contents are written in two phases so the content store stays consistent with the database: a content is first
+ * written into a staging file, then moved (atomically renamed) to its location once the transaction saving its document
+ * commits. If the transaction rolls back, the staging file is deleted. Each written content gets a new content
+ * identifier, so a committed content is never overwritten, and a released content is only deleted once the transaction
+ * commits. Staging files named after their content identifier, and the contents left behind by a crash, are reconciled
+ * by the {@link DocumentStoreSweeper}. Outside a transaction, the contents are moved and deleted immediately.
+ * <p>
+ * A content is read only once: its length, its {@code SHA-256} digest (persisted so the content integrity can be
+ * verified when read) and its {@code Mime} type (sniffed from its header) are computed while it is copied.
+ * <p>
+ * When the {@code hemajoo.commerce.cherry.store.deduplication} property is enabled, the content store works in a
+ * content addressed mode: blobs are keyed by the {@code SHA-256} digest of their content, computed while the content is
+ * uploaded, and are shared by all the documents having the same content. A blob is only written once and is never
+ * deleted by a release: checking that no more document references it then deleting it would race with a concurrent
+ * write of the same content, whose document is not committed yet. The blobs no more referenced are reclaimed by the
+ * {@link DocumentStoreSweeper} instead, after a grace period. A write of a content already stored touches its blob (so
+ * the sweeper does not reclaim it before the document referencing it commits), and stages a fresh copy if the blob is
+ * being reclaimed.
+ * @author <a href="mailto:christophe.resse@gmail.com">Christophe Resse</a>
+ * @version 1.0.0
+ */
+@Slf4j
+@Component
+public class DocumentContentWriter
+{
+    /**
+     * Is the content addressed (deduplicating) mode enabled?
+     */
+    @Getter
+    @Value("${hemajoo.commerce.cherry.store.deduplication:false}")
+    private boolean deduplication;
+
+    /**
+     * Content store layout.
+     */
+    @Autowired
+    private DocumentStoreLayout documentStoreLayout;
+
+    /**
+     * Document content cache.
+     */
+    @Autowired
+    private DocumentContentCache documentContentCache;
+
+    /**
+     * Upload store.
+     */
+    @Autowired
+    private DocumentUploadStore documentUploadStore;
+
+    /**
+     * Writes the content of a document into the content store.
+     * <p>
+     * The content is moved to its location when the current transaction commits (immediately if no transaction is
+     * active).
+     * @param document Document.
+     * @param content Input stream of the content to write.
+     * @throws ContentStoreException Raised if an error occurred while trying to write the content.
+     */
+    public void write(final @NonNull DocumentEntity document, final @NonNull InputStream content) throws ContentStoreException
+    {
+        publish(document, stage(document, content));
+    }
+
+    /**
+     * Writes the content of a document into a staging file.
+     * <p>
+     * The document is given the identifier, the length, the digest and the {@code Mime} type of the content. Can be
+     * called from any thread, the staged content must then be published by the thread running the transaction saving
+     * the document (see {@link #publish(DocumentEntity, Path)}).
+     * @param document Document.
+     * @param content Input stream of the content to write.
+     * @return Staging file or null if the same content is already stored.
+     * @throws ContentStoreException Raised if an error occurred while trying to write the content.
+     */
+    public Path stage(final @NonNull DocumentEntity document, final @NonNull InputStream content) throws ContentStoreException
+    {
+        Path temporary = null;
+        try (InputStream input = content)
+        {
+            Path directory = documentStoreLayout.getStagingDirectory();
+            Files.createDirectories(directory);
+            temporary = Files.createTempFile(directory, "content-", ".tmp");
+
+            // The length, the digest and the header are computed while the content is copied into the temporary file.
+            InspectingInputStream stream = inspect(input);
+            Files.copy(stream, temporary, StandardCopyOption.REPLACE_EXISTING);
+            String contentId = apply(document, stream);
+
+            Path staging = null;
+            if (!deduplication || !retain(documentStoreLayout.resolveSharded(contentId)))
+            {
+                staging = toStaging(contentId, temporary);
+            }
+
+            document.setContentId(contentId);
+
+            return staging;
+        }
+        catch (IOException e)
+        {
+            throw new ContentStoreException(String.format("Cannot write content of document id: '%s'", document.getId()), e);
+        }
+        finally
+        {
+            deleteQuietly(temporary);
+        }
+    }
+
+    /**
+     * Publishes the staged content of a document: the content is moved to its location when the current transaction
+     * commits, or discarded if it rolls back (moved immediately if no transaction is active).
+     * @param document Document.
+     * @param staging Staging file of the content (null if nothing has been staged).
+     */
+    public void publish(final @NonNull DocumentEntity document, final Path staging)
+    {
+        String contentId = document.getContentId();
+        if (staging == null || contentId == null)
+        {
+            return; // Nothing staged (or same content already stored).
+        }
+
+        if (!TransactionSynchronizationManager.isSynchronizationActive())
+        {
+            promote(contentId, staging);
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization()
+        {
+            @Override
+            public void afterCommit()
+            {
+                promote(contentId, staging);
+            }
+
+            @Override
+            public void afterCompletion(final int status)
+            {
+                if (status != STATUS_COMMITTED)
+                {
+                    discard(contentId, staging);
+                }
+            }
+        });
+    }
+
+    /**
+     * Moves a file, already located in the content store (such as a completed upload), as the content of a document.
+     * <p>
+     * The digest of a completed upload has been computed while its chunks were received (see
+     * {@link DocumentUploadStore#takeDigest(Path)}), only its header is read to sniff its {@code Mime} type. The file is
+     * then moved atomically, without being copied, to the staging directory and to its location when the current
+     * transaction commits. In content addressed mode, the file is discarded if the same content is already stored.
+     * @param document Document.
+     * @param file File to move.
+     * @throws ContentStoreException Raised if an error occurred while trying to move the file.
+     */
+    public void move(final @NonNull DocumentEntity document, final @NonNull Path file) throws ContentStoreException
+    {
+        try
+        {
+            byte[] digest = documentUploadStore.takeDigest(file);
+            byte[] header;
+            try (InputStream input = Files.newInputStream(file))
+            {
+                header = input.readNBytes(MimeTypeDetector.getInstance().getHeaderSize());
+            }
+            String contentId = apply(document, digest, Files.size(file), header);
+
+            Path staging = null;
+            if (deduplication && retain(documentStoreLayout.resolveSharded(contentId)))
+            {
+                Files.delete(file); // Same content is already stored!
+            }
+            else
+            {
+                Files.createDirectories(documentStoreLayout.getStagingDirectory());
+                staging = toStaging(contentId, file);
+            }
+
+            document.setContentId(contentId);
+            publish(document, staging);
+        }
+        catch (IOException e)
+        {
+            throw new ContentStoreException(String.format("Cannot move file: '%s' as content of document id: '%s'", file, document.getId()), e);
+        }
+    }
+
+    /**
+     * Releases a content from the content store.
+     * <p>
+     * The content is deleted when the current transaction commits (immediately if no transaction is active), a content
+     * staged by the current transaction is discarded immediately. In content addressed mode, the content is left to the
+     * content store sweeper, which reclaims it once no more document references it.
+     * @param document Document that was referencing the content.
+     * @param contentId Content identifier.
+     * @throws ContentStoreException Raised if an error occurred while trying to delete the content.
+     */
+    public void release(final @NonNull DocumentEntity document, final @NonNull String contentId) throws ContentStoreException
+    {
+        if (deduplication)
+        {
+            return; // Blob may be shared, even by a document not committed yet!
+        }
+
+        // Content identifiers being unique per write, a staged content can only belong to the current transaction.
+        Path staging = documentStoreLayout.getStaging(contentId);
+        if (staging != null)
+        {
+            discard(contentId, staging);
+            return;
+        }
+
+        if (!TransactionSynchronizationManager.isSynchronizationActive())
+        {
+            delete(contentId);
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization()
+        {
+            @Override
+            public void afterCommit()
+            {
+                try
+                {
+                    delete(contentId);
+                }
+                catch (ContentStoreException e)
+                {
+                    // Left to the content store sweeper.
+                    log.warn(e.getMessage(), e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Discards a staged content not published.
+     * @param document Document the content has been staged for.
+     * @param staging Staging file (null if the content was already stored).
+     */
+    public void discard(final @NonNull DocumentEntity document, final Path staging)
+    {
+        if (staging != null && document.getContentId() != null)
+        {
+            discard(document.getContentId(), staging);
+        }
+    }
+
+    /**
+     * Moves a file to a new staging file named after the content identifier (so the content store sweeper can complete
+     * the move of a committed content left behind by a crash) and registers it.
+     * @param contentId Content identifier.
+     * @param file File to stage.
+     * @return Staging file.
+     * @throws IOException Thrown in case an error occurred while moving the file.
+     */
+    private Path toStaging(final String contentId, final Path file) throws IOException
+    {
+        Path staging = Files.createTempFile(documentStoreLayout.getStagingDirectory(), contentId + ".", DocumentStoreLayout.STAGING_SUFFIX);
+        Files.move(file, staging, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        documentStoreLayout.stage(contentId, staging);
+
+        return staging;
+    }
+
+    /**
+     * Moves a staged content to its location.
+     * <p>
+     * A failure is only logged as the transaction is already committed, the content store sweeper will complete the
+     * move.
+     * @param contentId Content identifier.
+     * @param staging Staging file.
+     */
+    private void promote(final String contentId, final Path staging)
+    {
+        try
+        {
+            Path target = documentStoreLayout.resolveSharded(contentId);
+            if (!Files.exists(staging))
+            {
+                return; // Discarded while staged.
+            }
+
+            if (deduplication && retain(target))
+            {
+                Files.delete(staging); // Same content has been stored concurrently!
+            }
+            else
+            {
+                Files.createDirectories(target.getParent());
+                Files.move(staging, target, StandardCopyOption.ATOMIC_MOVE);
+            }
+        }
+        catch (IOException e)
+        {
+            log.error(String.format("Cannot move staged content id: '%s'", contentId), e);
+        }
+        finally
+        {
+            documentStoreLayout.unstage(contentId, staging);
+        }
+    }
+
+    /**
+     * Discards a staged content.
+     * @param contentId Content identifier.
+     * @param staging Staging file.
+     */
+    private void discard(final String contentId, final Path staging)
+    {
+        deleteQuietly(staging);
+        documentStoreLayout.unstage(contentId, staging);
+    }
+
+    /**
+     * Deletes a content from the content store.
+     * @param contentId Content identifier.
+     * @throws ContentStoreException Raised if an error occurred while trying to delete the content.
+     */
+    private void delete(final String contentId) throws ContentStoreException
+    {
+        try
+        {
+            Files.deleteIfExists(documentStoreLayout.resolve(contentId));
+            documentContentCache.invalidate(contentId);
+        }
+        catch (IOException e)
+        {
+            throw new ContentStoreException(String.format("Cannot delete content id: '%s'", contentId), e);
+        }
+    }
+
+    /**
+     * Retains a stored blob, touching it so it is not reclaimed by the content store sweeper during its grace period.
+     * @param target Blob.
+     * @return {@code True} if the blob is stored, {@code false} otherwise (or being reclaimed).
+     * @throws IOException Thrown in case an error occurred while touching the blob.
+     */
+    private static boolean retain(final Path target) throws IOException
+    {
+        try
+        {
+            Files.setLastModifiedTime(target, FileTime.from(Instant.now()));
+            return true;
+        }
+        catch (NoSuchFileException e)
+        {
+            return false;
+        }
+    }
+
+    /**
+     * Deletes a file, ignoring any error.
+     * @param path File path.
+     */
+    private static void deleteQuietly(final Path path)
+    {
+        if (path != null)
+        {
+            try
+            {
+                Files.deleteIfExists(path);
+            }
+            catch (IOException e)
+            {
+                // Staging files left behind are reclaimed by the content store sweeper.
+            }
+        }
+    }
+
+    /**
+     * Returns a stream inspecting a content while it is read.
+     * @param input Input stream of the content.
+     * @return Inspecting input stream.
+     */
+    private static InspectingInputStream inspect(final InputStream input)
+    {
+        return new InspectingInputStream(input, ContentDigests.newDigest(), MimeTypeDetector.getInstance().getHeaderSize());
+    }
+
+    /**
+     * Applies the result of the inspection of a content, fully read, to its document.
+     * @param document Document.
+     * @param stream Inspecting input stream.
+     * @return Content identifier to give to the content.
+     */
+    private String apply(final DocumentEntity document, final InspectingInputStream stream)
+    {
+        return apply(document, stream.getDigest(), stream.getLength(), stream.getHeader());
+    }
+
+    /**
+     * Applies the inspection of a content to its document.
+     * @param document Document.
+     * @param digest Digest of the content.
+     * @param length Length of the content.
+     * @param header Header of the content.
+     * @return Content identifier to give to the content.
+     */
+    private String apply(final DocumentEntity document, final byte[] digest, final long length, final byte[] header)
+    {
+        String hex = ContentDigests.toHex(digest);
+
+        document.setContentLength(length);
+        document.setContentDigest(hex);
+        document.setMimeType(MimeTypeDetector.getInstance().detect(header, header.length, document.getFilename()));
+
+        return deduplication ? hex : UUID.randomUUID().toString();
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright(c) 2021 Hemajoo Digital Systems Inc.
+ * --------------------------------------------------------------------------------------
+ * This file is part of Hemajoo Systems Inc. projects which is licensed
+ * under the Apache license version 2 and use is subject to license terms.
+ * You should have received a copy of the license with the project's artifact
+ * binaries and/or sources.
+ *
+ * License can be consulted at http://www.apache.org/licenses/LICENSE-2.0
+ * --------------------------------------------------------------------------------------
+ */
+package com.hemajoo.commerce.cherry.persistence.content;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+
+/**
+ * Verifies, when the application is ready, that the indexes the document queries rely on exist, so a database missing
+ * them (such as one whose migrations have not been applied) fails the startup instead of silently degrading the owner
+ * lookups into table scans.
+ * <p>
+ * An index is matched on its leading columns, not on its name, so an equivalent index created by other means is
+ * accepted.
+ * @author <a href="mailto:christophe.resse@gmail.com">Christophe Resse</a>
+ * @version 1.0.0
+ */
+@Slf4j
+@Component
+public class DocumentIndexVerifier
+{
+    /**
+     * Name of the document table.
+     */
+    private static final String TABLE = "DOCUMENT";
+
+    /**
+     * Expected indexes (leading columns, in order) of the document table.
+     */
+    private static final List<List<String>> EXPECTED_INDEXES = Arrays.asList(
+            Arrays.asList("OWNER_ID", "CREATED_DATE", "ID"),
+            Arrays.asList("DOCUMENT_TYPE", "STATUS_TYPE"));
+
+    /**
+     * Data source.
+     */
+    private final DataSource dataSource;
+
+    /**
+     * Schema of the document table (current schema if empty).
+     */
+    private final String schema;
+
+    /**
+     * Are the indexes verified when the application is ready?
+     */
+    private final boolean enabled;
+
+    /**
+     * Creates a new document index verifier.
+     * @param dataSource Data source.
+     * @param schema Schema of the document table (current schema if empty).
+     * @param enabled Are the indexes verified when the application is ready?
+     */
+    @Autowired
+    public DocumentIndexVerifier(
+            final DataSource dataSource,
+            final @Value("${spring.jpa.properties.hibernate.default_schema:}") String schema,
+            final @Value("${hemajoo.commerce.cherry.database.verify-indexes:true}") boolean enabled)
+    {
+        this.dataSource = dataSource;
+        this.schema = schema;
+        this.enabled = enabled;
+    }
+
+    /**
+     * Returns the expected indexes missing on the document table.
+     * @return List of missing indexes (their columns), empty if none.
+     * @throws SQLException Thrown in case an error occurred while reading the database metadata.
+     */
+    public List<List<String>> findMissingIndexes() throws SQLException
+    {
+        try (Connection connection = dataSource.getConnection())
+        {
+            Collection<List<String>> indexes = getIndexes(connection.getMetaData(), schema.isEmpty() ? connection.getSchema() : schema);
+
+            List<List<String>> missing = new ArrayList<>();
+            for (List<String> expected : EXPECTED_INDEXES)
+            {
+                if (indexes.stream().noneMatch(columns -> columns.size() >= expected.size() && columns.subList(0, expected.size()).equals(expected)))
+                {
+                    missing.add(expected);
+                }
+            }
+
+            return missing;
+        }
+    }
+
+    /**
+     * Verifies the indexes when the application is ready, if enabled.
+     * @throws IllegalStateException Thrown if an expected index is missing.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady()
+    {
+        if (!enabled)
+        {
+            return;
+        }
+
+        List<List<String>> missing;
+        try
+        {
+            missing = findMissingIndexes();
+        }
+        catch (SQLException e)
+        {
+            throw new IllegalStateException("Cannot verify the indexes of the document table!", e);
+        }
+
+        if (!missing.isEmpty())
+        {
+            throw new IllegalStateException(String.format("Missing indexes on table: '%s', columns: %s (apply the database migrations)!", TABLE, missing));
+        }
+
+        log.info("Indexes of table: '{}' verified.", TABLE);
+    }
+
+    /**
+     * Returns the indexes (their columns, in order) of the document table.
+     * @param metadata Database metadata.
+     * @param schemaName Schema name.
+     * @return Indexes.
+     * @throws SQLException Thrown in case an error occurred while reading the database metadata.
+     */
+    private static Collection<List<String>> getIndexes(final @NonNull DatabaseMetaData metadata, final String schemaName) throws SQLException
+    {
+        Map<String, SortedMap<Short, String>> indexes = new HashMap<>();
+
+        try (ResultSet result = metadata.getIndexInfo(null, schemaName, TABLE, false, true))
+        {
+            while (result.next())
+            {
+                String name = result.getString("INDEX_NAME");
+                String column = result.getString("COLUMN_NAME");
+                if (name != null && column != null)
+                {
+                    indexes.computeIfAbsent(name, key -> new TreeMap<>()).put(result.getShort("ORDINAL_POSITION"), column.toUpperCase(Locale.ROOT));
+                }
+            }
+        }
+
+        List<List<String>> columns = new ArrayList<>(indexes.size());
+        indexes.values().forEach(index -> columns.add(new ArrayList<>(index.values())));
+
+        return columns;
+    }
+}
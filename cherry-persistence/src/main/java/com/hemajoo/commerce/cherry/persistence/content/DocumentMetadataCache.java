@@ -0,0 +1,228 @@
+/*
+ * Copyright(c) 2021 Hemajoo Digital Systems Inc.
+ * --------------------------------------------------------------------------------------
+ * This file is part of Hemajoo Systems Inc. projects which is licensed
+ * under the Apache license version 2 and use is subject to license terms.
+ * You should have received a copy of the license with the project's artifact
+ * binaries and/or sources.
+ *
+ * License can be consulted at http://www.apache.org/licenses/LICENSE-2.0
+ * --------------------------------------------------------------------------------------
+ */
+package com.hemajoo.commerce.cherry.persistence.content;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.hemajoo.commerce.cherry.persistence.model.entity.document.DocumentEntity;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Bounded, per instance, cache of the document metadata (the persistent documents without their content).
+ * <p>
+ * The cache is bounded both in size (evictions following the {@code W-TinyLFU} policy of {@code Caffeine}) and in time
+ * (entries expire after a given delay so the changes made by other instances are eventually seen).
+ * <p>
+ * Only the metadata of the documents are cached (see {@link DocumentEntity#copyMetadata()}) and a copy is returned on
+ * each hit, so the callers can neither share nor alter the cached documents. The owner of a cached document must be
+ * resolved from its identity. The cache is bypassed when a transaction is active as the caller then expects a document
+ * managed by its persistence context.
+ * <p>
+ * This cache does not own the state of the documents: when enabled, the {@code Hibernate} second level cache does (see
+ * {@link DocumentCacheConfigurer}). This cache is a front of the lookups by identifier made outside any transaction,
+ * returning detached copies without opening a persistence context at all.
+ * <p>
+ * The cache statistics are published as metrics ({@code cache.*}, tagged with the {@value #METRICS_NAME} cache name)
+ * in the meter registry of the application if any, in the global registry otherwise.
+ * @author <a href="mailto:christophe.resse@gmail.com">Christophe Resse</a>
+ * @version 1.0.0
+ */
+@Slf4j
+@Component
+public class DocumentMetadataCache
+{
+    /**
+     * Name of the cache in the metrics.
+     */
+    public static final String METRICS_NAME = "cherry.document.metadata";
+
+    /**
+     * Is the cache enabled?
+     */
+    @Getter
+    private final boolean enabled;
+
+    /**
+     * Cached documents.
+     */
+    private final Cache<UUID, DocumentEntity> cache;
+
+    /**
+     * Number of invalidations, a document is only cached if no invalidation occurred while it was being loaded.
+     */
+    private final AtomicLong invalidations = new AtomicLong();
+
+    /**
+     * Creates a new document metadata cache.
+     * @param enabled Is the cache enabled?
+     * @param maximumSize Maximum number of cached documents.
+     * @param expireAfterWrite Time (in seconds) after which a cached document expires.
+     */
+    public DocumentMetadataCache(
+            final @Value("${hemajoo.commerce.cherry.cache.document.enabled:true}") boolean enabled,
+            final @Value("${hemajoo.commerce.cherry.cache.document.maximum-size:10000}") long maximumSize,
+            final @Value("${hemajoo.commerce.cherry.cache.document.expire-after-write:300}") long expireAfterWrite)
+    {
+        this.enabled = enabled && maximumSize > 0;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(Math.max(maximumSize, 0))
+                .expireAfterWrite(expireAfterWrite, TimeUnit.SECONDS)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Returns a document, loading it if not cached.
+     * <p>
+     * A loaded document is not cached if an invalidation occurred while it was being loaded, as it may have been read
+     * before the change being invalidated was committed.
+     * @param id Document identifier.
+     * @param loader Function loading the document if not cached.
+     * @return Document or null if not found.
+     */
+    public DocumentEntity get(final @NonNull UUID id, final @NonNull Function<UUID, DocumentEntity> loader)
+    {
+        if (!enabled || TransactionSynchronizationManager.isActualTransactionActive())
+        {
+            return loader.apply(id);
+        }
+
+        DocumentEntity document = cache.getIfPresent(id);
+        if (document != null)
+        {
+            return document.copyMetadata();
+        }
+
+        long stamp = invalidations.get();
+        document = loader.apply(id);
+        if (document != null)
+        {
+            cache.put(id, document.copyMetadata());
+
+            // Checked after the put: an invalidation counted later also removes the entry.
+            if (invalidations.get() != stamp)
+            {
+                cache.invalidate(id); // Possibly stale document!
+            }
+        }
+
+        return document;
+    }
+
+    /**
+     * Invalidates a document.
+     * <p>
+     * If a transaction is active, the document is also invalidated once the transaction is completed so a concurrent
+     * lookup cannot cache the document as it was before the transaction.
+     * @param id Document identifier.
+     */
+    public void invalidate(final UUID id)
+    {
+        if (!enabled || id == null)
+        {
+            return;
+        }
+
+        evict(id);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive())
+        {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization()
+            {
+                @Override
+                public void afterCompletion(int status)
+                {
+                    evict(id);
+                }
+            });
+        }
+    }
+
+    /**
+     * Invalidates all the documents.
+     */
+    public void invalidateAll()
+    {
+        invalidations.incrementAndGet();
+        cache.invalidateAll();
+    }
+
+    /**
+     * Counts an invalidation then evicts a document.
+     * @param id Document identifier.
+     */
+    private void evict(final UUID id)
+    {
+        invalidations.incrementAndGet();
+        cache.invalidate(id);
+    }
+
+    /**
+     * Returns the (approximate) number of cached documents.
+     * @return Number of cached documents.
+     */
+    public long size()
+    {
+        return cache.estimatedSize();
+    }
+
+    /**
+     * Publishes the cache statistics as metrics once the application is ready.
+     * @param event Application ready event.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void bindMetrics(final ApplicationReadyEvent event)
+    {
+        MeterRegistry registry = event.getApplicationContext().getBeanProvider(MeterRegistry.class).getIfAvailable(() -> Metrics.globalRegistry);
+        bindTo(registry);
+    }
+
+    /**
+     * Publishes the cache statistics (hits, misses, evictions and size) as metrics in a meter registry.
+     * @param registry Meter registry.
+     */
+    public void bindTo(final @NonNull MeterRegistry registry)
+    {
+        if (enabled)
+        {
+            CaffeineCacheMetrics.monitor(registry, cache, METRICS_NAME, Tags.empty());
+            log.info("Document metadata cache statistics published in meter registry: '{}'.", registry.getClass().getSimpleName());
+        }
+    }
+
+    /**
+     * Returns the cache statistics (hits, misses and evictions).
+     * @return Cache statistics.
+     */
+    public CacheStats getStatistics()
+    {
+        return cache.stats();
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright(c) 2021 Hemajoo Digital Systems Inc.
+ * --------------------------------------------------------------------------------------
+ * This file is part of Hemajoo Systems Inc. projects which is licensed
+ * under the Apache license version 2 and use is subject to license terms.
+ * You should have received a copy of the license with the project's artifact
+ * binaries and/or sources.
+ *
+ * License can be consulted at http://www.apache.org/licenses/LICENSE-2.0
+ * --------------------------------------------------------------------------------------
+ */
+package com.hemajoo.commerce.cherry.persistence.content;
+
+import com.hemajoo.commerce.cherry.commons.entity.EntityIdentity;
+import com.hemajoo.commerce.cherry.commons.type.EntityType;
+import com.hemajoo.commerce.cherry.persistence.model.entity.base.BaseEntity;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceContext;
+import java.lang.reflect.Modifier;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Resolves the owner of the documents given its identity.
+ * <p>
+ * The entities being stored in one table per entity type, a lookup by identifier only on the base entity is a
+ * polymorphic query over all the entity tables. Knowing the entity type of the owner, the owner is instead looked up
+ * directly in the table of its persistent class, whatever the number of entity types.
+ * @author <a href="mailto:christophe.resse@gmail.com">Christophe Resse</a>
+ * @version 1.0.0
+ */
+@Slf4j
+@Component
+public class DocumentOwnerResolver implements InitializingBean
+{
+    /**
+     * Persistent classes per entity type.
+     */
+    private final Map<EntityType, Class<? extends BaseEntity>> classes = new EnumMap<>(EntityType.class);
+
+    /**
+     * Entity manager factory.
+     */
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    /**
+     * Entity manager.
+     */
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public void afterPropertiesSet()
+    {
+        // The entity type of a persistent class is the one set by its default constructor.
+        for (javax.persistence.metamodel.EntityType<?> type : entityManagerFactory.getMetamodel().getEntities())
+        {
+            Class<?> javaType = type.getJavaType();
+            if (!BaseEntity.class.isAssignableFrom(javaType) || Modifier.isAbstract(javaType.getModifiers()))
+            {
+                continue;
+            }
+
+            try
+            {
+                BaseEntity entity = (BaseEntity) javaType.getDeclaredConstructor().newInstance();
+                if (entity.getEntityType() != null && classes.putIfAbsent(entity.getEntityType(), javaType.asSubclass(BaseEntity.class)) != null)
+                {
+                    log.warn("Entity type: '{}' is mapped by several persistent classes, using: '{}'", entity.getEntityType(), classes.get(entity.getEntityType()).getName());
+                }
+            }
+            catch (ReflectiveOperationException e)
+            {
+                log.warn("Cannot determine entity type of persistent class: '{}'", javaType.getName());
+            }
+        }
+    }
+
+    /**
+     * Returns the persistent class of an entity type.
+     * @param type Entity type.
+     * @return Persistent class or null if the entity type has no persistent class.
+     */
+    public Class<? extends BaseEntity> getPersistentClass(final @NonNull EntityType type)
+    {
+        return classes.get(type);
+    }
+
+    /**
+     * Resolves an entity given its identity.
+     * <p>
+     * If the entity type is unknown (legacy references), the entity is looked up using a polymorphic query.
+     * @param identity Entity identity.
+     * @return Entity or null if not found.
+     */
+    public BaseEntity resolve(final @NonNull EntityIdentity identity)
+    {
+        return resolve(identity.getId(), identity.getEntityType());
+    }
+
+    /**
+     * Resolves an entity given its identifier and its entity type.
+     * <p>
+     * If the entity type is unknown (legacy references), the entity is looked up using a polymorphic query.
+     * @param id Entity identifier.
+     * @param type Entity type (can be null).
+     * @return Entity or null if not found.
+     */
+    public BaseEntity resolve(final @NonNull UUID id, final EntityType type)
+    {
+        Class<? extends BaseEntity> persistentClass = type != null ? classes.get(type) : null;
+
+        return entityManager.find(persistentClass != null ? persistentClass : BaseEntity.class, id);
+    }
+}
@@ -11,11 +11,30 @@
  */
 package com.hemajoo.commerce.cherry.persistence.content;
 
+import com.hemajoo.commerce.cherry.commons.type.StatusType;
+import com.hemajoo.commerce.cherry.model.entity.document.DocumentType;
 import com.hemajoo.commerce.cherry.persistence.model.entity.document.DocumentEntity;
+import com.hemajoo.commerce.cherry.persistence.model.entity.document.DocumentSummary;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
+import javax.persistence.QueryHint;
+import java.util.Collection;
+import java.util.Date;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_CACHEABLE;
+import static org.hibernate.jpa.QueryHints.HINT_CACHE_REGION;
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
 
 /**
  * {@code JPA} repository for the document entity.
@@ -25,9 +44,156 @@ import java.util.UUID;
 public interface DocumentRepository extends JpaRepository<DocumentEntity, UUID>
 {
     /**
-     * Returns a list of documents belonging to the given owner identifier.
+     * Number of rows fetched per round trip when streaming documents.
+     */
+    String STREAM_FETCH_SIZE = "500";
+
+    /**
+     * Name of the second level cache region holding the results of the lookups of the documents of an owner.
+     */
+    String OWNER_QUERY_REGION = "cherry.query.document-owner";
+
+    /**
+     * Selection of the document summaries.
+     */
+    String SUMMARY_SELECT = "select d.id as id, d.name as name, d.filename as filename, d.mimeType as mimeType, "
+            + "d.contentLength as contentLength, d.documentType as documentType, d.createdDate as createdDate "
+            + "from DocumentEntity d ";
+
+    /**
+     * Optional filters of the document summaries on their type and status.
+     */
+    String SUMMARY_FILTER = "and (:documentType is null or d.documentType = :documentType) "
+            + "and (:statusType is null or d.statusType = :statusType) ";
+
+    /**
+     * Order of the document summaries (keyset pagination).
+     */
+    String SUMMARY_ORDER = "order by d.createdDate, d.id";
+
+    /**
+     * Returns a list of documents belonging to the given owner identifier, ordered by creation date.
+     * <p>
+     * Only the document table is queried, the owner reference being stored in the document ({@code OWNER_ID}), the
+     * lookup and the ordering being served by the {@link DocumentEntity#INDEX_OWNER} index.
+     * <p>
+     * The result is cached in the {@link #OWNER_QUERY_REGION} region when the second level cache is enabled (and
+     * invalidated whenever the document table is modified).
+     * @param id Owner identifier.
+     * @return List of documents.
+     */
+    @Query("select d from DocumentEntity d where d.ownerId = :id order by d.createdDate, d.id")
+    @QueryHints({ @QueryHint(name = HINT_CACHEABLE, value = "true"), @QueryHint(name = HINT_CACHE_REGION, value = OWNER_QUERY_REGION) })
+    List<DocumentEntity> findByOwnerId(@Param("id") UUID id);
+
+    /**
+     * Finds a document given its identifier, read from the database (a query does not read the second level cache).
+     * @param id Document identifier.
+     * @return Document.
+     */
+    @Query("select d from DocumentEntity d where d.id = :id")
+    Optional<DocumentEntity> findCurrentById(@Param("id") UUID id);
+
+    /**
+     * Finds a document given its identifier, with its owner fetched.
+     * @param id Document identifier.
+     * @return Document.
+     */
+    @EntityGraph(DocumentEntity.GRAPH_OWNER)
+    Optional<DocumentEntity> findWithOwnerById(UUID id);
+
+    /**
+     * Returns the summaries of the documents belonging to the given owner identifier, ordered by creation date.
+     * @param id Owner identifier.
+     * @return List of document summaries.
+     */
+    List<DocumentSummary> findSummariesByOwnerIdOrderByCreatedDateAscIdAsc(UUID id);
+
+    /**
+     * Returns the first summaries of the documents of an owner, ordered by creation date then identifier (keyset
+     * pagination), optionally filtered by document type and status.
+     * @param ownerId Owner identifier.
+     * @param documentType Document type (null for any).
+     * @param statusType Status type (null for any).
+     * @param pageable Page request (only its size is used).
+     * @return List of document summaries.
+     */
+    @Query(SUMMARY_SELECT + "where d.ownerId = :ownerId " + SUMMARY_FILTER + SUMMARY_ORDER)
+    List<DocumentSummary> findFirstSummariesByOwnerId(@Param("ownerId") UUID ownerId, @Param("documentType") DocumentType documentType, @Param("statusType") StatusType statusType, Pageable pageable);
+
+    /**
+     * Returns the summaries of the documents of an owner following the given position, ordered by creation date then
+     * identifier (keyset pagination), optionally filtered by document type and status.
+     * @param ownerId Owner identifier.
+     * @param createdDate Creation date of the last document of the previous page.
+     * @param id Identifier of the last document of the previous page.
+     * @param documentType Document type (null for any).
+     * @param statusType Status type (null for any).
+     * @param pageable Page request (only its size is used).
+     * @return List of document summaries.
+     */
+    @Query(SUMMARY_SELECT + "where d.ownerId = :ownerId "
+            + "and (d.createdDate > :createdDate or (d.createdDate = :createdDate and d.id > :id)) "
+            + SUMMARY_FILTER + SUMMARY_ORDER)
+    List<DocumentSummary> findNextSummariesByOwnerId(@Param("ownerId") UUID ownerId, @Param("createdDate") Date createdDate, @Param("id") UUID id, @Param("documentType") DocumentType documentType, @Param("statusType") StatusType statusType, Pageable pageable);
+
+    /**
+     * Returns a slice of document summaries.
+     * @param pageable Page request.
+     * @return Slice of document summaries.
+     */
+    Slice<DocumentSummary> findSummariesBy(Pageable pageable);
+
+    /**
+     * Returns, among the given content identifiers, the ones referenced by at least one document.
+     * @param contentIds Content identifiers.
+     * @return Referenced content identifiers.
+     */
+    @Query("select distinct d.contentId from DocumentEntity d where d.contentId in :contentIds")
+    List<String> findReferencedContentIds(@Param("contentIds") Collection<String> contentIds);
+
+    /**
+     * Returns a slice of documents (without counting the total number of documents).
+     * @param pageable Page request.
+     * @return Slice of documents.
+     */
+    Slice<DocumentEntity> findAllBy(Pageable pageable);
+
+    /**
+     * Returns a slice of the documents of an owner (without counting the total number of documents).
      * @param id Owner identifier.
+     * @param pageable Page request.
+     * @return Slice of documents.
+     */
+    Slice<DocumentEntity> findSliceByOwnerId(UUID id, Pageable pageable);
+
+    /**
+     * Returns the first documents ordered by identifier (keyset pagination).
+     * @param pageable Page request (only its size is used).
      * @return List of documents.
      */
-    List<DocumentEntity> findByOwnerId(UUID id);
+    @Query("select d from DocumentEntity d order by d.id")
+    List<DocumentEntity> findFirstKeyset(Pageable pageable);
+
+    /**
+     * Returns the documents following the given document identifier, ordered by identifier (keyset pagination).
+     * @param id Identifier of the last document of the previous page.
+     * @param pageable Page request (only its size is used).
+     * @return List of documents.
+     */
+    @Query("select d from DocumentEntity d where d.id > :id order by d.id")
+    List<DocumentEntity> findNextKeyset(@Param("id") UUID id, Pageable pageable);
+
+    /**
+     * Streams all the documents using a forward only cursor.
+     * <p>
+     * Must be called and consumed within a transaction, the stream must be closed once consumed.
+     * @return Stream of documents.
+     */
+    @QueryHints(value = {
+            @QueryHint(name = HINT_FETCH_SIZE, value = STREAM_FETCH_SIZE),
+            @QueryHint(name = HINT_READONLY, value = "true")
+    })
+    @Query("select d from DocumentEntity d")
+    Stream<DocumentEntity> streamAll();
 }
\ No newline at end of file
@@ -11,11 +11,25 @@
  */
 package com.hemajoo.commerce.cherry.persistence.content;
 
+import com.hemajoo.commerce.cherry.commons.entity.EntityIdentity;
+import com.hemajoo.commerce.cherry.commons.type.StatusType;
 import com.hemajoo.commerce.cherry.model.entity.document.DocumentException;
+import com.hemajoo.commerce.cherry.model.entity.document.DocumentType;
+import com.hemajoo.commerce.cherry.persistence.model.entity.base.BaseEntity;
 import com.hemajoo.commerce.cherry.persistence.model.entity.document.DocumentEntity;
+import com.hemajoo.commerce.cherry.persistence.model.entity.document.DocumentCursor;
+import com.hemajoo.commerce.cherry.persistence.model.entity.document.DocumentSummary;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 /**
  * Document persistence service.
@@ -38,14 +52,128 @@ public interface DocumentService
      */
     DocumentEntity findById(UUID id) throws DocumentException;
 
+    /**
+     * Finds a document given its identifier, read from the database without going through any cache, so it holds the
+     * last committed version of the document. To be used to check a precondition before updating a document.
+     * @param id Document identifier.
+     * @return Document if found, null otherwise.
+     */
+    DocumentEntity findCurrentById(UUID id);
+
+    /**
+     * Finds a document given its identifier, with its owner fetched (the owner is otherwise loaded lazily).
+     * @param id Document identifier.
+     * @return Document if found, null otherwise.
+     */
+    DocumentEntity findByIdWithOwner(UUID id);
+
+    /**
+     * Returns the documents belonging to an owner (without fetching the owner).
+     * @param ownerId Owner identifier.
+     * @return List of documents.
+     */
+    List<DocumentEntity> findByOwnerId(UUID ownerId);
+
+    /**
+     * Returns the summaries (read-only projections) of the documents belonging to an owner.
+     * @param ownerId Owner identifier.
+     * @return List of document summaries.
+     */
+    List<DocumentSummary> findSummariesByOwnerId(UUID ownerId);
+
+    /**
+     * Returns a slice of the summaries (read-only projections) of the documents of an owner, ordered by creation date
+     * then identifier, optionally filtered by document type and status.
+     * <p>
+     * The slice starts after the given cursor (keyset pagination), so a slice costs the same however deep it is. The
+     * cursor of the following slice is the one of the last summary of this slice (see {@link DocumentCursor#of}).
+     * @param ownerId Owner identifier.
+     * @param documentType Document type (null for any).
+     * @param statusType Status type (null for any).
+     * @param after Cursor of the last document of the previous slice, null to get the first slice.
+     * @param limit Maximum number of document summaries to return.
+     * @return Slice of document summaries.
+     */
+    Slice<DocumentSummary> findSummariesByOwnerId(UUID ownerId, DocumentType documentType, StatusType statusType, DocumentCursor after, int limit);
+
+    /**
+     * Returns a slice of document summaries (read-only projections).
+     * @param pageable Page request.
+     * @return Slice of document summaries.
+     */
+    Slice<DocumentSummary> findSummaries(Pageable pageable);
+
     /**
      * Saves a document.
+     * <p>
+     * An existing document is only updated if it has not been updated by someone else since it has been read (see
+     * {@link BaseEntity#getVersion()}), its new content being discarded otherwise.
      * @param document Document to save.
      * @return Saved document.
-     * @throws DocumentException Raised if an error occurred while trying to save the document.
+     * @throws DocumentException Raised if an error occurred while trying to save the document, with a {@code 409} status
+     * if the document has been modified concurrently.
      */
     DocumentEntity save(DocumentEntity document) throws DocumentException;
 
+    /**
+     * Saves a document whose content is a file already located in the content store (such as a completed upload).
+     * <p>
+     * The file is moved (not copied) to become the content of the document.
+     * @param document Document to save.
+     * @param file File to use as the document content.
+     * @return Saved document.
+     * @throws DocumentException Raised if an error occurred while trying to save the document.
+     */
+    DocumentEntity save(DocumentEntity document, Path file) throws DocumentException;
+
+    /**
+     * Saves a document whose content has already been staged (see {@link DocumentContentWriter#stage}), possibly by
+     * another thread.
+     * <p>
+     * The staged content is moved to its location once the transaction commits, or discarded if it rolls back.
+     * @param document Document to save.
+     * @param staging Staging file of the content (null if the same content is already stored).
+     * @param previousContentId Content identifier of the document before its content was staged (released once the
+     * transaction commits if replaced).
+     * @return Saved document.
+     * @throws DocumentException Raised if an error occurred while trying to save the document.
+     */
+    DocumentEntity saveStaged(DocumentEntity document, Path staging, String previousContentId) throws DocumentException;
+
+    /**
+     * Saves a collection of documents in a single transaction.
+     * <p>
+     * The contents are written in parallel and the documents are inserted using {@code JDBC} batches.
+     * @param documents Documents to save.
+     * @return Saved documents.
+     * @throws DocumentException Raised if an error occurred while trying to save the documents (with a {@code 409}
+     * status if one of them has been updated or deleted since it has been read).
+     */
+    List<DocumentEntity> saveAll(Collection<DocumentEntity> documents) throws DocumentException;
+
+    /**
+     * Finds an entity that can own documents given its identifier.
+     * <p>
+     * The entity type being unknown, prefer {@link #findOwner(EntityIdentity)} which looks up a single table.
+     * @param id Entity identifier.
+     * @return Entity if found, null otherwise.
+     */
+    BaseEntity findOwnerById(UUID id);
+
+    /**
+     * Finds an entity that can own documents given its identity.
+     * @param identity Entity identity.
+     * @return Entity if found, null otherwise.
+     */
+    BaseEntity findOwner(EntityIdentity identity);
+
+    /**
+     * Finds the owner of a document.
+     * @param document Document.
+     * @return Owner if found, null otherwise.
+     */
+    BaseEntity findOwner(DocumentEntity document);
+
     /**
      * Deletes a document given its identifier.
      * @param id Document identifier.
@@ -59,6 +187,48 @@ public interface DocumentService
      */
     List<DocumentEntity> findAll();
 
+    /**
+     * Returns a page of documents.
+     * @param pageable Page request.
+     * @return Page of documents.
+     */
+    Page<DocumentEntity> findAll(Pageable pageable);
+
+    /**
+     * Returns a slice of documents, cheaper than a page as the total number of documents is not counted.
+     * @param pageable Page request.
+     * @return Slice of documents.
+     */
+    Slice<DocumentEntity> findSlice(Pageable pageable);
+
+    /**
+     * Returns a slice of the documents of an owner, ordered by creation date then identifier unless the page request
+     * is sorted.
+     * <p>
+     * Prefer it to {@link BaseEntity#getDocuments()} to browse the documents of an owner having many documents, as the
+     * collection is loaded as a whole.
+     * @param ownerId Owner identifier.
+     * @param pageable Page request.
+     * @return Slice of documents.
+     */
+    Slice<DocumentEntity> findSliceByOwnerId(UUID ownerId, Pageable pageable);
+
+    /**
+     * Returns the documents following the given document identifier, ordered by identifier (keyset pagination).
+     * @param afterId Identifier of the last document of the previous page, null to get the first page.
+     * @param limit Maximum number of documents to return.
+     * @return List of documents.
+     */
+    List<DocumentEntity> findAll(UUID afterId, int limit);
+
+    /**
+     * Streams all the documents in constant memory, the documents being detached once read.
+     * <p>
+     * Must be called and consumed within a transaction, the stream must be closed once consumed.
+     * @return Stream of documents.
+     */
+    Stream<DocumentEntity> streamAll();
+
     /**
      * Loads the content (media file) of the document.
      * @param document Document.
@@ -72,4 +242,43 @@ public interface DocumentService
      * @throws DocumentException Raised if an error occurred while trying to load the document.
      */
     void loadContent(UUID documentId) throws DocumentException;
+
+    /**
+     * Loads the contents (media files) of several documents in one parallel pass.
+     * <p>
+     * The contents are given as lazily opened streams (or as streams on cached or memory mapped contents), so no file
+     * handle is held for a content not consumed. Documents whose content cannot be found are left without content.
+     * @param documents Documents.
+     * @throws DocumentException Raised if an error occurred while trying to load the contents.
+     */
+    void loadContent(Collection<DocumentEntity> documents) throws DocumentException;
+
+    /**
+     * Opens a read-only channel on the content (media file) of a document, for random accesses.
+     * <p>
+     * The caller is responsible to close the channel.
+     * @param document Document.
+     * @return File channel.
+     * @throws DocumentException Raised if the content cannot be found or opened.
+     */
+    FileChannel openContentChannel(DocumentEntity document) throws DocumentException;
+
+    /**
+     * Maps a region of the content (media file) of a document, for zero-copy accesses.
+     * @param document Document.
+     * @param position Start position of the region.
+     * @param size Size of the region (at most 2 GB).
+     * @return Read-only mapped buffer.
+     * @throws DocumentException Raised if the content cannot be found or the region cannot be mapped.
+     */
+    MappedByteBuffer mapContent(DocumentEntity document, long position, long size) throws DocumentException;
+
+    /**
+     * Returns the documents belonging to an owner, with their contents loaded.
+     * @param ownerId Owner identifier.
+     * @return List of documents.
+     * @throws DocumentException Raised if an error occurred while trying to load the contents.
+     * @see #loadContent(Collection)
+     */
+    List<DocumentEntity> loadContents(UUID ownerId) throws DocumentException;
 }
@@ -0,0 +1,84 @@
+/*
+ * Copyright(c) 2021 Hemajoo Digital Systems Inc.
+ * --------------------------------------------------------------------------------------
+ * This file is part of Hemajoo Systems Inc. projects which is licensed
+ * under the Apache license version 2 and use is subject to license terms.
+ * You should have received a copy of the license with the project's artifact
+ * binaries and/or sources.
+ *
+ * License can be consulted at http://www.apache.org/licenses/LICENSE-2.0
+ * --------------------------------------------------------------------------------------
+ */
+package com.hemajoo.commerce.cherry.persistence.content;
+
+import com.hemajoo.commerce.cherry.persistence.model.entity.document.DocumentEntity;
+
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Asynchronous (non-blocking) facade of the document persistence service.
+ * <p>
+ * The operations run in bulkheads separating the database accesses from the content store accesses, so the calling
+ * (request) thread is released immediately. The returned futures are completed exceptionally with a
+ * {@link com.hemajoo.commerce.cherry.model.entity.document.DocumentException} if an operation fails, and with a
+ * {@code SERVICE_UNAVAILABLE} status if the bulkhead of the operation is full.
+ * @author <a href="mailto:christophe.resse@gmail.com">Christophe Resse</a>
+ * @version 1.0.0
+ * @see DocumentService
+ */
+public interface DocumentServiceAsync
+{
+    /**
+     * Returns a document given its identifier.
+     * @param id Document identifier.
+     * @return Future completed with the document or null if not found.
+     */
+    CompletableFuture<DocumentEntity> findByIdAsync(UUID id);
+
+    /**
+     * Returns the documents belonging to an owner (without fetching the owner).
+     * @param ownerId Owner identifier.
+     * @return Future completed with the list of documents.
+     */
+    CompletableFuture<List<DocumentEntity>> findByOwnerIdAsync(UUID ownerId);
+
+    /**
+     * Saves a document and its content (if one).
+     * @param document Document.
+     * @return Future completed with the saved document.
+     */
+    CompletableFuture<DocumentEntity> saveAsync(DocumentEntity document);
+
+    /**
+     * Saves a document whose content is a file already located in the content store.
+     * @param document Document.
+     * @param file File to move as the document content.
+     * @return Future completed with the saved document.
+     */
+    CompletableFuture<DocumentEntity> saveAsync(DocumentEntity document, Path file);
+
+    /**
+     * Deletes a document given its identifier.
+     * @param id Document identifier.
+     * @return Future completed once the document is deleted.
+     */
+    CompletableFuture<Void> deleteByIdAsync(UUID id);
+
+    /**
+     * Loads the content (media file) of a document.
+     * @param document Document.
+     * @return Future completed with the document once its content is loaded.
+     */
+    CompletableFuture<DocumentEntity> loadContentAsync(DocumentEntity document);
+
+    /**
+     * Loads the contents (media files) of several documents.
+     * @param documents Documents.
+     * @return Future completed once the contents are loaded.
+     */
+    CompletableFuture<Void> loadContentAsync(Collection<DocumentEntity> documents);
+}
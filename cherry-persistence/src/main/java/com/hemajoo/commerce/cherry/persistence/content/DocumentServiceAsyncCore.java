@@ -0,0 +1,207 @@
+/*
+ * Copyright(c) 2021 Hemajoo Digital Systems Inc.
+ * --------------------------------------------------------------------------------------
+ * This file is part of Hemajoo Systems Inc. projects which is licensed
+ * under the Apache license version 2 and use is subject to license terms.
+ * You should have received a copy of the license with the project's artifact
+ * binaries and/or sources.
+ *
+ * License can be consulted at http://www.apache.org/licenses/LICENSE-2.0
+ * --------------------------------------------------------------------------------------
+ */
+package com.hemajoo.commerce.cherry.persistence.content;
+
+import com.hemajoo.commerce.cherry.commons.exception.ContentStoreException;
+import com.hemajoo.commerce.cherry.model.entity.document.DocumentException;
+import com.hemajoo.commerce.cherry.persistence.model.entity.document.DocumentEntity;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Implementation of the asynchronous document persistence service.
+ * <p>
+ * The operations delegate to the {@link DocumentService} (and to its transactions) from the threads of the bulkheads.
+ * A save with a content is split in two steps: the content is staged on the content store bulkhead, then the document is
+ * saved on the database bulkhead, so a slow write never holds a database connection.
+ * @author <a href="mailto:christophe.resse@gmail.com">Christophe Resse</a>
+ * @version 1.0.0
+ */
+@Service
+public class DocumentServiceAsyncCore implements DocumentServiceAsync
+{
+    /**
+     * Document persistence service.
+     */
+    @Autowired
+    private DocumentService documentService;
+
+    /**
+     * Document content writer.
+     */
+    @Autowired
+    private DocumentContentWriter documentContentWriter;
+
+    /**
+     * Bulkhead running the database accesses.
+     */
+    @Autowired
+    @Qualifier("documentDatabaseBulkhead")
+    private ExecutorService documentDatabaseBulkhead;
+
+    /**
+     * Bulkhead running the content store accesses.
+     */
+    @Autowired
+    @Qualifier("documentStoreBulkhead")
+    private ExecutorService documentStoreBulkhead;
+
+    @Override
+    public CompletableFuture<DocumentEntity> findByIdAsync(UUID id)
+    {
+        return supply(documentDatabaseBulkhead, () -> documentService.findById(id));
+    }
+
+    @Override
+    public CompletableFuture<List<DocumentEntity>> findByOwnerIdAsync(UUID ownerId)
+    {
+        return supply(documentDatabaseBulkhead, () -> documentService.findByOwnerId(ownerId));
+    }
+
+    @Override
+    public CompletableFuture<DocumentEntity> saveAsync(DocumentEntity document)
+    {
+        if (document.getContent() == null)
+        {
+            return supply(documentDatabaseBulkhead, () -> documentService.save(document));
+        }
+
+        String previousContentId = document.getContentId();
+        CompletableFuture<Path> staged = supply(documentStoreBulkhead, () -> {
+            try
+            {
+                return documentContentWriter.stage(document, document.getContent());
+            }
+            catch (ContentStoreException e)
+            {
+                throw new DocumentException(e);
+            }
+        });
+
+        return staged.thenCompose(staging -> supply(documentDatabaseBulkhead, () -> documentService.saveStaged(document, staging, previousContentId))
+                .whenComplete((saved, failure) -> {
+                    if (failure != null)
+                    {
+                        // Transaction did not publish the staged content (rejected or failed before).
+                        documentContentWriter.discard(document, staging);
+                    }
+                }));
+    }
+
+    @Override
+    public CompletableFuture<DocumentEntity> saveAsync(DocumentEntity document, Path file)
+    {
+        return supply(documentStoreBulkhead, () -> documentService.save(document, file));
+    }
+
+    @Override
+    public CompletableFuture<Void> deleteByIdAsync(UUID id)
+    {
+        return supply(documentDatabaseBulkhead, () -> {
+            documentService.deleteById(id);
+            return null;
+        });
+    }
+
+    @Override
+    public CompletableFuture<DocumentEntity> loadContentAsync(DocumentEntity document)
+    {
+        return supply(documentStoreBulkhead, () -> {
+            documentService.loadContent(document);
+            return document;
+        });
+    }
+
+    @Override
+    public CompletableFuture<Void> loadContentAsync(Collection<DocumentEntity> documents)
+    {
+        return supply(documentStoreBulkhead, () -> {
+            documentService.loadContent(documents);
+            return null;
+        });
+    }
+
+    /**
+     * Runs an operation in a bulkhead.
+     * @param bulkhead Bulkhead.
+     * @param operation Operation.
+     * @param <T> Type of the operation result.
+     * @return Future completed with the operation result.
+     */
+    private <T> CompletableFuture<T> supply(final ExecutorService bulkhead, final Operation<T> operation)
+    {
+        CompletableFuture<T> future = new CompletableFuture<>();
+
+        try
+        {
+            // Task completes the future once run, failed or cancelled by the bulkhead (while shut down).
+            bulkhead.execute(new FutureTask<T>(operation::execute)
+            {
+                @Override
+                protected void done()
+                {
+                    try
+                    {
+                        future.complete(get());
+                    }
+                    catch (ExecutionException e)
+                    {
+                        future.completeExceptionally(e.getCause());
+                    }
+                    catch (CancellationException e)
+                    {
+                        future.completeExceptionally(e);
+                    }
+                    catch (InterruptedException e)
+                    {
+                        Thread.currentThread().interrupt();
+                        future.completeExceptionally(e);
+                    }
+                }
+            });
+        }
+        catch (RejectedExecutionException e)
+        {
+            future.completeExceptionally(new DocumentException("Too many pending document operations!", e, HttpStatus.SERVICE_UNAVAILABLE));
+        }
+
+        return future;
+    }
+
+    /**
+     * Document operation.
+     * @param <T> Type of the operation result.
+     */
+    @FunctionalInterface
+    private interface Operation<T>
+    {
+        /**
+         * Executes the operation.
+         * @return Operation result.
+         * @throws DocumentException Raised if the operation failed.
+         */
+        T execute() throws DocumentException;
+    }
+}
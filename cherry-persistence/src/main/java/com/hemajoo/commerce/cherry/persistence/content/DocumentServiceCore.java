@@ -11,13 +11,40 @@
  */
 package com.hemajoo.commerce.cherry.persistence.content;
 
+import com.hemajoo.commerce.cherry.commons.entity.EntityIdentity;
+import com.hemajoo.commerce.cherry.commons.exception.ContentStoreException;
+import com.hemajoo.commerce.cherry.commons.type.StatusType;
 import com.hemajoo.commerce.cherry.model.entity.document.DocumentException;
+import com.hemajoo.commerce.cherry.model.entity.document.DocumentType;
+import com.hemajoo.commerce.cherry.persistence.model.entity.base.BaseEntity;
 import com.hemajoo.commerce.cherry.persistence.model.entity.document.DocumentEntity;
+import com.hemajoo.commerce.cherry.persistence.model.entity.document.DocumentCursor;
+import com.hemajoo.commerce.cherry.persistence.model.entity.document.DocumentSummary;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
 
-import java.util.List;
-import java.util.UUID;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
 
 /**
  * Implementation of the document persistence service.
@@ -39,6 +66,49 @@ public class DocumentServiceCore implements DocumentService
     @Autowired
     private DocumentStore documentStore;
 
+    /**
+     * Document content writer.
+     */
+    @Autowired
+    private DocumentContentWriter documentContentWriter;
+
+    /**
+     * Document owner resolver.
+     */
+    @Autowired
+    private DocumentOwnerResolver documentOwnerResolver;
+
+    /**
+     * Document metadata cache.
+     */
+    @Autowired
+    private DocumentMetadataCache documentMetadataCache;
+
+    /**
+     * Document content loader.
+     */
+    @Autowired
+    private DocumentContentLoader documentContentLoader;
+
+    /**
+     * Document content reader.
+     */
+    @Autowired
+    private DocumentContentReader documentContentReader;
+
+    /**
+     * Content store executor.
+     */
+    @Autowired
+    @Qualifier("contentStoreExecutor")
+    private ExecutorService contentStoreExecutor;
+
+    /**
+     * Entity manager.
+     */
+    @PersistenceContext
+    private EntityManager entityManager;
+
     @Override
     public Long count()
     {
@@ -48,48 +118,346 @@ public class DocumentServiceCore implements DocumentService
     @Override
     public DocumentEntity findById(UUID id)
     {
-        return documentRepository.findById(id).orElse(null);
+        return documentMetadataCache.get(id, key -> documentRepository.findById(key).orElse(null));
+    }
+
+    @Override
+    public DocumentEntity findCurrentById(UUID id)
+    {
+        return documentRepository.findCurrentById(id).orElse(null);
+    }
+
+    @Override
+    public DocumentEntity findByIdWithOwner(UUID id)
+    {
+        return documentRepository.findWithOwnerById(id).orElse(null);
+    }
+
+    @Override
+    public List<DocumentEntity> findByOwnerId(UUID ownerId)
+    {
+        return documentRepository.findByOwnerId(ownerId);
+    }
+
+    @Override
+    public List<DocumentSummary> findSummariesByOwnerId(UUID ownerId)
+    {
+        return documentRepository.findSummariesByOwnerIdOrderByCreatedDateAscIdAsc(ownerId);
+    }
+
+    @Override
+    public Slice<DocumentSummary> findSummariesByOwnerId(UUID ownerId, DocumentType documentType, StatusType statusType, DocumentCursor after, int limit)
+    {
+        // One more row than requested tells whether a following slice exists without a count query.
+        Pageable pageable = PageRequest.of(0, limit + 1);
+        List<DocumentSummary> summaries = after == null
+                ? documentRepository.findFirstSummariesByOwnerId(ownerId, documentType, statusType, pageable)
+                : documentRepository.findNextSummariesByOwnerId(ownerId, after.getCreatedDate(), after.getId(), documentType, statusType, pageable);
+
+        boolean hasNext = summaries.size() > limit;
+
+        return new SliceImpl<>(hasNext ? summaries.subList(0, limit) : summaries, PageRequest.of(0, limit), hasNext);
+    }
+
+    @Override
+    public Slice<DocumentSummary> findSummaries(Pageable pageable)
+    {
+        return documentRepository.findSummariesBy(pageable);
+    }
+
+    @Transactional(rollbackFor = DocumentException.class)
+    @Override
+    public DocumentEntity save(DocumentEntity document) throws DocumentException
+    {
+        String previousContentId = document.getContentId();
+
+        try
+        {
+            // Also save the associated content file if one (before the document so its content identifier is persisted),
+            // the content is moved to its location once the transaction commits.
+            if (document.getContent() != null)
+            {
+                documentContentWriter.write(document, document.getContent());
+            }
+
+            document = update(document);
+            documentMetadataCache.invalidate(document.getId());
+
+            releasePreviousContent(document, previousContentId);
+        }
+        catch (ContentStoreException e)
+        {
+            throw new DocumentException(e);
+        }
+
+        return document;
     }
 
+    @Transactional(rollbackFor = DocumentException.class)
     @Override
-    public DocumentEntity save(DocumentEntity document)
+    public DocumentEntity save(DocumentEntity document, Path file) throws DocumentException
     {
-        document = documentRepository.save(document);
+        String previousContentId = document.getContentId();
+
+        try
+        {
+            documentContentWriter.move(document, file);
 
-        // Also save the associated content file if one.
-        if (document.getContent() != null)
+            document = update(document);
+            documentMetadataCache.invalidate(document.getId());
+
+            releasePreviousContent(document, previousContentId);
+        }
+        catch (ContentStoreException e)
         {
-            documentStore.setContent(document, document.getContent());
+            throw new DocumentException(e);
         }
 
         return document;
     }
 
+    @Transactional(rollbackFor = DocumentException.class)
     @Override
-    public void deleteById(UUID id)
+    public DocumentEntity saveStaged(DocumentEntity document, Path staging, String previousContentId) throws DocumentException
+    {
+        try
+        {
+            documentContentWriter.publish(document, staging);
+
+            document = update(document);
+            documentMetadataCache.invalidate(document.getId());
+
+            releasePreviousContent(document, previousContentId);
+        }
+        catch (ContentStoreException e)
+        {
+            throw new DocumentException(e);
+        }
+
+        return document;
+    }
+
+    @Transactional(rollbackFor = DocumentException.class)
+    @Override
+    public List<DocumentEntity> saveAll(Collection<DocumentEntity> documents) throws DocumentException
+    {
+        List<String> previousContentIds = new ArrayList<>(documents.size());
+        List<DocumentEntity> staged = new ArrayList<>();
+        List<Future<Path>> futures = new ArrayList<>();
+
+        // Stage the contents in parallel, before the documents so their content identifiers are part of the inserts.
+        for (DocumentEntity document : documents)
+        {
+            previousContentIds.add(document.getContentId());
+            if (document.getContent() != null)
+            {
+                staged.add(document);
+                futures.add(contentStoreExecutor.submit(() -> documentContentWriter.stage(document, document.getContent())));
+            }
+        }
+
+        // The staged contents are published by this thread, the one running the transaction, so they are moved when it
+        // commits and discarded if it rolls back.
+        Exception failure = null;
+        for (int i = 0; i < futures.size(); i++)
+        {
+            try
+            {
+                documentContentWriter.publish(staged.get(i), futures.get(i).get());
+            }
+            catch (ExecutionException e)
+            {
+                if (failure == null)
+                {
+                    failure = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                }
+            }
+            catch (InterruptedException e)
+            {
+                futures.forEach(future -> future.cancel(true));
+                Thread.currentThread().interrupt();
+                throw new DocumentException("Interrupted while writing the documents content!", e);
+            }
+        }
+
+        if (failure != null)
+        {
+            throw new DocumentException("Cannot write the documents content!", failure);
+        }
+
+        List<DocumentEntity> saved;
+        try
+        {
+            // Flushed so a concurrent update is detected here, as for a single document (see update()).
+            saved = documentRepository.saveAll(documents);
+            documentRepository.flush();
+        }
+        catch (OptimisticLockingFailureException e)
+        {
+            throw new DocumentException("Documents have been modified concurrently!", e, HttpStatus.CONFLICT);
+        }
+        saved.forEach(document -> documentMetadataCache.invalidate(document.getId()));
+
+        try
+        {
+            // Saved documents are returned in the same order.
+            for (int i = 0; i < saved.size(); i++)
+            {
+                releasePreviousContent(saved.get(i), previousContentIds.get(i));
+            }
+        }
+        catch (ContentStoreException e)
+        {
+            throw new DocumentException(e);
+        }
+
+        return saved;
+    }
+
+    /**
+     * Writes a document to the database, its version being checked (optimistic locking).
+     * <p>
+     * The document is flushed so a concurrent update is detected here, before its content is published (the new
+     * content being only moved to its location once the transaction commits, and discarded if it rolls back).
+     * @param document Document to write.
+     * @return Written document.
+     * @throws DocumentException Raised (with a {@code 409} status) if the document has been updated or deleted since it
+     * has been read.
+     */
+    private DocumentEntity update(final DocumentEntity document) throws DocumentException
     {
-        DocumentEntity document = findById(id);
+        try
+        {
+            return documentRepository.saveAndFlush(document);
+        }
+        catch (OptimisticLockingFailureException e)
+        {
+            throw new DocumentException(String.format("Document id: '%s' has been modified concurrently (version: %s)", document.getId(), document.getVersion()), e, HttpStatus.CONFLICT);
+        }
+    }
 
-        // If a content file is associated, then delete it!
-        if (document != null && document.getContentId() != null)
+    /**
+     * Releases the previous content of a document if it has been replaced.
+     * <p>
+     * A content is never overwritten (a new content identifier is given to each written content), the previous content
+     * is released once the transaction commits. In content addressed mode, it is only released if no more referenced.
+     * @param document Document.
+     * @param previousContentId Previous content identifier of the document.
+     * @throws ContentStoreException Raised if an error occurred while trying to release the previous content.
+     */
+    private void releasePreviousContent(final DocumentEntity document, final String previousContentId) throws ContentStoreException
+    {
+        if (previousContentId != null && !previousContentId.equals(document.getContentId()))
         {
-            documentStore.unsetContent(document);
+            documentContentWriter.release(document, previousContentId);
         }
+    }
 
-        documentRepository.deleteById(id);
+    @Override
+    public BaseEntity findOwnerById(UUID id)
+    {
+        return documentOwnerResolver.resolve(id, null);
+    }
+
+    @Override
+    public BaseEntity findOwner(EntityIdentity identity)
+    {
+        return documentOwnerResolver.resolve(identity);
+    }
+
+    @Override
+    public BaseEntity findOwner(DocumentEntity document)
+    {
+        EntityIdentity identity = document.getOwnerIdentity();
+
+        return identity != null ? documentOwnerResolver.resolve(identity) : null;
+    }
+
+    @Transactional(rollbackFor = DocumentException.class)
+    @Override
+    public void deleteById(UUID id) throws DocumentException
+    {
+        // The document is loaded once, managed, so it is removed without being looked up again by the repository.
+        DocumentEntity document = documentRepository.findById(id)
+                .orElseThrow(() -> new EmptyResultDataAccessException(String.format("No document with id: '%s' exists!", id), 1));
+
+        documentRepository.delete(document);
+        documentMetadataCache.invalidate(id);
+
+        // If a content file is associated, then delete it once the transaction commits (if no more referenced)!
+        if (document.getContentId() != null)
+        {
+            try
+            {
+                documentContentWriter.release(document, document.getContentId());
+            }
+            catch (ContentStoreException e)
+            {
+                throw new DocumentException(e);
+            }
+        }
     }
 
     @Override
     public List<DocumentEntity> findAll()
     {
-        // TODO We should for each document inject its content such as for the findById
+        // Contents are not loaded, use loadContent(Collection) to load them in one parallel pass.
         return documentRepository.findAll();
     }
 
+    @Override
+    public Page<DocumentEntity> findAll(Pageable pageable)
+    {
+        return documentRepository.findAll(pageable);
+    }
+
+    @Override
+    public Slice<DocumentEntity> findSlice(Pageable pageable)
+    {
+        return documentRepository.findAllBy(pageable);
+    }
+
+    @Override
+    public Slice<DocumentEntity> findSliceByOwnerId(UUID ownerId, Pageable pageable)
+    {
+        if (pageable.isPaged() && pageable.getSort().isUnsorted())
+        {
+            // Same order as the owner index, so the slice is read from the index instead of being sorted.
+            pageable = PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(), Sort.by("createdDate", "id"));
+        }
+
+        return documentRepository.findSliceByOwnerId(ownerId, pageable);
+    }
+
+    @Override
+    public List<DocumentEntity> findAll(UUID afterId, int limit)
+    {
+        Pageable pageable = PageRequest.of(0, limit);
+
+        return afterId == null
+                ? documentRepository.findFirstKeyset(pageable)
+                : documentRepository.findNextKeyset(afterId, pageable);
+    }
+
+    @Transactional(readOnly = true, propagation = Propagation.MANDATORY)
+    @Override
+    public Stream<DocumentEntity> streamAll()
+    {
+        // Detach the documents once read so the persistence context does not grow with the stream.
+        return documentRepository.streamAll().peek(entityManager::detach);
+    }
+
     @Override
     public void loadContent(DocumentEntity document) throws DocumentException
     {
-        document.setContent(documentStore.getContent(document));
+        if (document.getContentId() == null)
+        {
+            document.setContent(documentStore.getContent(document));
+            return;
+        }
+
+        // Small contents are served from the content cache, the larger ones are mapped or lazily opened.
+        documentContentLoader.load(document);
     }
 
     @Override
@@ -103,5 +471,45 @@ public class DocumentServiceCore implements DocumentService
 
         throw new DocumentException(String.format("Cannot find document id.: '%s'", documentId.toString()));
     }
-}
 
+    @Override
+    public void loadContent(Collection<DocumentEntity> documents) throws DocumentException
+    {
+        documentContentLoader.load(documents);
+    }
+
+    @Override
+    public List<DocumentEntity> loadContents(UUID ownerId) throws DocumentException
+    {
+        List<DocumentEntity> documents = findByOwnerId(ownerId);
+        loadContent(documents);
+
+        return documents;
+    }
+
+    @Override
+    public FileChannel openContentChannel(DocumentEntity document) throws DocumentException
+    {
+        try
+        {
+            return documentContentReader.openChannel(document);
+        }
+        catch (ContentStoreException e)
+        {
+            throw new DocumentException(e, e.getStatus());
+        }
+    }
+
+    @Override
+    public MappedByteBuffer mapContent(DocumentEntity document, long position, long size) throws DocumentException
+    {
+        try
+        {
+            return documentContentReader.map(document, position, size);
+        }
+        catch (ContentStoreException e)
+        {
+            throw new DocumentException(e, e.getStatus());
+        }
+    }
+}
@@ -11,26 +11,59 @@
  */
 package com.hemajoo.commerce.cherry.persistence.content;
 
+import com.hemajoo.commerce.cherry.model.entity.document.MimeTypeDetector;
+import com.hemajoo.commerce.cherry.persistence.base.concurrent.BulkheadExecutors;
 import com.hemajoo.commerce.cherry.persistence.model.entity.document.DocumentEntity;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
 import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.content.fs.config.FilesystemStoreConfigurer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.convert.converter.Converter;
+import org.springframework.context.event.EventListener;
 import org.springframework.core.convert.converter.ConverterRegistry;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 
-import java.io.File;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Configurer for the content store.
+ * <p>
+ * The {@code Mime} type detection latency is published as a metric ({@value #MIME_TYPE_DETECTION_METRICS}) in the
+ * meter registry of the application if any, in the global registry otherwise.
  * @author <a href="mailto:christophe.resse@gmail.com">Christophe Resse</a>
  * @version 1.0.0
  */
+@Slf4j
 @Configuration
 public class DocumentStoreConfigurer
 {
+    /**
+     * Name of the {@code Mime} type detection timer in the metrics.
+     */
+    public static final String MIME_TYPE_DETECTION_METRICS = "cherry.document.mime-type.detection";
+
+    /**
+     * Number of pending tasks per thread accepted by the content store executor.
+     */
+    private static final int QUEUE_SIZE_PER_THREAD = 16;
+
+    /**
+     * Returns the file system store configurer mapping the documents and the content identifiers to their location in
+     * the content store.
+     * @param layout Content store layout.
+     * @return File system store configurer.
+     */
     @Bean
-    public FilesystemStoreConfigurer configurer()
+    public FilesystemStoreConfigurer configurer(final DocumentStoreLayout layout)
     {
         return new FilesystemStoreConfigurer()
         {
@@ -43,10 +76,84 @@ public class DocumentStoreConfigurer
                     public String convert(final @NonNull DocumentEntity document)
                     {
 //                        return File.separator + document.getOwner().getId().toString() + File.separator + document.getContentId();
-                        return File.separator + document.getContentId();
+                        return layout.getLocation(document.getContentId());
+                    }
+                });
+
+                // Used when a resource is directly accessed through its content identifier.
+                registry.addConverter(new Converter<String, String>()
+                {
+                    @Override
+                    public String convert(final @NonNull String contentId)
+                    {
+                        return layout.getLocation(contentId);
                     }
                 });
             }
         };
     }
+
+    /**
+     * Returns the shared {@code Mime} type detector.
+     * @return {@code Mime} type detector.
+     */
+    @Bean
+    public MimeTypeDetector mimeTypeDetector()
+    {
+        return MimeTypeDetector.getInstance();
+    }
+
+    /**
+     * Publishes the {@code Mime} type detection latency as a metric once the application is ready.
+     * @param event Application ready event.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void bindMetrics(final ApplicationReadyEvent event)
+    {
+        MeterRegistry registry = event.getApplicationContext().getBeanProvider(MeterRegistry.class).getIfAvailable(() -> Metrics.globalRegistry);
+        bindTo(registry, event.getApplicationContext().getBean(MimeTypeDetector.class));
+    }
+
+    /**
+     * Publishes the {@code Mime} type detection latency (number of detections and cumulated detection time, excluding
+     * the time spent reading the header windows) as a metric in a meter registry.
+     * @param registry Meter registry.
+     * @param detector {@code Mime} type detector.
+     */
+    public static void bindTo(final @NonNull MeterRegistry registry, final @NonNull MimeTypeDetector detector)
+    {
+        FunctionTimer.builder(MIME_TYPE_DETECTION_METRICS, detector, MimeTypeDetector::getDetectionCount, MimeTypeDetector::getDetectionTime, TimeUnit.NANOSECONDS)
+                .description("Mime type detections of the media files")
+                .register(registry);
+        log.info("Mime type detection metrics published in meter registry: '{}'.", registry.getClass().getSimpleName());
+    }
+
+    /**
+     * Returns the bounded executor used to perform the content store I/O in parallel.
+     * <p>
+     * When the executor is saturated, the tasks are run by the submitting thread. In virtual threads mode (if supported
+     * by the {@code JVM}), each task runs on its own virtual thread, the number of tasks running concurrently being
+     * still bounded by the number of threads, and the waiting tasks do not hold any platform thread.
+     * @param threads Number of threads.
+     * @param virtualThreads Should the tasks run on virtual threads?
+     * @return Content store executor.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService contentStoreExecutor(
+            final @Value("${hemajoo.commerce.cherry.store.io.threads:4}") int threads,
+            final @Value("${hemajoo.commerce.cherry.store.io.virtual-threads:false}") boolean virtualThreads)
+    {
+        if (virtualThreads && BulkheadExecutors.isVirtualThreadSupported())
+        {
+            return BulkheadExecutors.newBulkhead("cherry-store-io-", threads, Integer.MAX_VALUE, true);
+        }
+
+        return new ThreadPoolExecutor(
+                threads,
+                threads,
+                60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(threads * QUEUE_SIZE_PER_THREAD),
+                new CustomizableThreadFactory("cherry-store-io-"),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
 }
@@ -0,0 +1,234 @@
+/*
+ * Copyright(c) 2021 Hemajoo Digital Systems Inc.
+ * --------------------------------------------------------------------------------------
+ * This file is part of Hemajoo Systems Inc. projects which is licensed
+ * under the Apache license version 2 and use is subject to license terms.
+ * You should have received a copy of the license with the project's artifact
+ * binaries and/or sources.
+ *
+ * License can be consulted at http://www.apache.org/licenses/LICENSE-2.0
+ * --------------------------------------------------------------------------------------
+ */
+package com.hemajoo.commerce.cherry.persistence.content;
+
+import lombok.Getter;
+import lombok.NonNull;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Defines the directory layout of the files in the content store.
+ * <p>
+ * To keep the directories of the content store small, the files can be spread in sub-directories (fan-out) named
+ * after the first hexadecimal characters of their content identifier. For example, with a depth of {@code 2} and a
+ * width of {@code 2}, the content {@code 3f2a9c61-...} is stored as {@code /3f/2a/3f2a9c61-...}. A depth of {@code 0}
+ * corresponds to the legacy flat layout.
+ * <p>
+ * While a flat content store is migrated (see {@link DocumentStoreLayoutMigrator}), the legacy fallback mode can be
+ * enabled so that the files not yet moved are still found at their flat location.
+ * <p>
+ * A content being written is first staged in the staging directory and only moved to its location once the
+ * transaction saving its document commits (see {@link DocumentContentWriter}). Until then, the content is located at
+ * its staging file so it can be read by the writing transaction.
+ * @author <a href="mailto:christophe.resse@gmail.com">Christophe Resse</a>
+ * @version 1.0.0
+ */
+@Component
+public class DocumentStoreLayout
+{
+    /**
+     * Name of the directory (relative to the content store location) used to stage the contents being written.
+     */
+    public static final String STAGING_DIRECTORY = ".staging";
+
+    /**
+     * Suffix of the staging files, named after the content identifier they are staging.
+     */
+    public static final String STAGING_SUFFIX = ".staged";
+
+    /**
+     * Content store location.
+     */
+    @Getter
+    private final Path root;
+
+    /**
+     * Number of directory levels.
+     */
+    @Getter
+    private final int depth;
+
+    /**
+     * Number of hexadecimal characters per directory level.
+     */
+    @Getter
+    private final int width;
+
+    /**
+     * Are the files also searched at their legacy (flat) location?
+     */
+    @Getter
+    private final boolean legacyFallback;
+
+    /**
+     * Staging files of the contents staged but not yet moved to their location.
+     */
+    private final Map<String, Path> staged = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a new content store layout.
+     * @param storeLocation Content store location.
+     * @param depth Number of directory levels.
+     * @param width Number of hexadecimal characters per directory level.
+     * @param legacyFallback Are the files also searched at their legacy (flat) location?
+     */
+    @Autowired
+    public DocumentStoreLayout(
+            final @Value("${hemajoo.commerce.cherry.store.location}") String storeLocation,
+            final @Value("${hemajoo.commerce.cherry.store.layout.depth:0}") int depth,
+            final @Value("${hemajoo.commerce.cherry.store.layout.width:2}") int width,
+            final @Value("${hemajoo.commerce.cherry.store.layout.legacy-fallback:false}") boolean legacyFallback)
+    {
+        if (depth < 0 || width < 1)
+        {
+            throw new IllegalArgumentException(String.format("Invalid content store layout, depth: '%s', width: '%s'!", depth, width));
+        }
+
+        this.root = Paths.get(storeLocation);
+        this.depth = depth;
+        this.width = width;
+        this.legacyFallback = legacyFallback;
+    }
+
+    /**
+     * Returns the location (relative to the content store root) of a content.
+     * @param contentId Content identifier.
+     * @return Content location.
+     */
+    public String getLocation(final @NonNull String contentId)
+    {
+        Path staging = staged.get(contentId);
+        if (staging != null)
+        {
+            return File.separator + root.relativize(staging);
+        }
+
+        String location = getShardedLocation(contentId);
+
+        if (legacyFallback && depth > 0 && !Files.exists(root.resolve(location.substring(1))) && Files.exists(root.resolve(contentId)))
+        {
+            return File.separator + contentId;
+        }
+
+        return location;
+    }
+
+    /**
+     * Returns the path of a content.
+     * @param contentId Content identifier.
+     * @return Content path.
+     */
+    public Path resolve(final @NonNull String contentId)
+    {
+        return root.resolve(getLocation(contentId).substring(1));
+    }
+
+    /**
+     * Returns the location (relative to the content store root) of a content in the sharded layout, without
+     * considering the legacy fallback.
+     * @param contentId Content identifier.
+     * @return Content location.
+     */
+    public String getShardedLocation(final @NonNull String contentId)
+    {
+        StringBuilder builder = new StringBuilder(contentId.length() + depth * (width + 1) + 1);
+        int index = 0;
+        for (int level = 0; level < depth; level++)
+        {
+            builder.append(File.separatorChar);
+            for (int i = 0; i < width; i++)
+            {
+                // Skip the UUID separators.
+                while (index < contentId.length() && contentId.charAt(index) == '-')
+                {
+                    index++;
+                }
+                builder.append(index < contentId.length() ? Character.toLowerCase(contentId.charAt(index++)) : '0');
+            }
+        }
+
+        return builder.append(File.separatorChar).append(contentId).toString();
+    }
+
+    /**
+     * Returns the path of a content in the sharded layout, without considering the legacy fallback nor the staging.
+     * @param contentId Content identifier.
+     * @return Content path.
+     */
+    public Path resolveSharded(final @NonNull String contentId)
+    {
+        return root.resolve(getShardedLocation(contentId).substring(1));
+    }
+
+    /**
+     * Returns the staging directory.
+     * @return Staging directory.
+     */
+    public Path getStagingDirectory()
+    {
+        return root.resolve(STAGING_DIRECTORY);
+    }
+
+    /**
+     * Returns the content identifier staged by a staging file.
+     * @param staging Staging file.
+     * @return Content identifier or null if the file is not a staging file.
+     */
+    public String getStagedContentId(final @NonNull Path staging)
+    {
+        String name = staging.getFileName().toString();
+        int index = name.indexOf('.');
+
+        return index > 0 && name.endsWith(STAGING_SUFFIX) ? name.substring(0, index) : null;
+    }
+
+    /**
+     * Registers the staging file of a content, so the content is located at its staging file until it is moved.
+     * <p>
+     * If the same content (in content addressed mode) is already staged, the first staging file remains registered.
+     * @param contentId Content identifier.
+     * @param staging Staging file.
+     */
+    public void stage(final @NonNull String contentId, final @NonNull Path staging)
+    {
+        staged.putIfAbsent(contentId, staging);
+    }
+
+    /**
+     * Unregisters the staging file of a content.
+     * @param contentId Content identifier.
+     * @param staging Staging file.
+     */
+    public void unstage(final @NonNull String contentId, final @NonNull Path staging)
+    {
+        staged.remove(contentId, staging);
+    }
+
+    /**
+     * Returns the staging file of a content.
+     * @param contentId Content identifier.
+     * @return Staging file or null if the content is not staged.
+     */
+    public Path getStaging(final @NonNull String contentId)
+    {
+        return staged.get(contentId);
+    }
+}
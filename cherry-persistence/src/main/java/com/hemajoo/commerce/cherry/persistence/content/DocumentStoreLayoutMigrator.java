@@ -0,0 +1,121 @@
+/*
+ * Copyright(c) 2021 Hemajoo Digital Systems Inc.
+ * --------------------------------------------------------------------------------------
+ * This file is part of Hemajoo Systems Inc. projects which is licensed
+ * under the Apache license version 2 and use is subject to license terms.
+ * You should have received a copy of the license with the project's artifact
+ * binaries and/or sources.
+ *
+ * License can be consulted at http://www.apache.org/licenses/LICENSE-2.0
+ * --------------------------------------------------------------------------------------
+ */
+package com.hemajoo.commerce.cherry.persistence.content;
+
+import com.hemajoo.commerce.cherry.commons.exception.ContentStoreException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.*;
+
+/**
+ * Migrates a content store from the legacy flat layout to the sharded layout defined by the {@link DocumentStoreLayout}.
+ * <p>
+ * The migration can run while the content store is in use: each file is moved atomically and the
+ * {@code hemajoo.commerce.cherry.store.layout.legacy-fallback} property should be enabled for the duration of the
+ * migration so the files not yet moved can still be read.
+ * @author <a href="mailto:christophe.resse@gmail.com">Christophe Resse</a>
+ * @version 1.0.0
+ */
+@Slf4j
+@Component
+public class DocumentStoreLayoutMigrator
+{
+    /**
+     * Content store layout.
+     */
+    private final DocumentStoreLayout layout;
+
+    /**
+     * Is the migration started when the application is ready?
+     */
+    private final boolean migrateOnStartup;
+
+    /**
+     * Creates a new content store layout migrator.
+     * @param layout Content store layout.
+     * @param migrateOnStartup Is the migration started when the application is ready?
+     */
+    @Autowired
+    public DocumentStoreLayoutMigrator(
+            final DocumentStoreLayout layout,
+            final @Value("${hemajoo.commerce.cherry.store.layout.migrate-on-startup:false}") boolean migrateOnStartup)
+    {
+        this.layout = layout;
+        this.migrateOnStartup = migrateOnStartup;
+    }
+
+    /**
+     * Moves the files stored at the root of the content store to their sharded location.
+     * @return Number of migrated files.
+     * @throws ContentStoreException Raised if an error occurred while trying to migrate the content store.
+     */
+    public long migrate() throws ContentStoreException
+    {
+        if (layout.getDepth() == 0 || !Files.isDirectory(layout.getRoot()))
+        {
+            return 0;
+        }
+
+        long count = 0;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(layout.getRoot()))
+        {
+            for (Path file : stream)
+            {
+                String name = file.getFileName().toString();
+                if (name.startsWith(".") || !Files.isRegularFile(file))
+                {
+                    continue; // Directories (shards, staging area) are not part of the flat layout!
+                }
+
+                Path target = layout.getRoot().resolve(layout.getShardedLocation(name).substring(1));
+                Files.createDirectories(target.getParent());
+                Files.move(file, target, StandardCopyOption.ATOMIC_MOVE);
+                count++;
+            }
+        }
+        catch (IOException e)
+        {
+            throw new ContentStoreException(String.format("Cannot migrate content store: '%s'", layout.getRoot()), e);
+        }
+
+        return count;
+    }
+
+    /**
+     * Starts the migration in background when the application is ready, if enabled.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady()
+    {
+        if (migrateOnStartup)
+        {
+            Thread thread = new Thread(() -> {
+                try
+                {
+                    log.info("Content store migrated, {} file(s) moved to the sharded layout.", migrate());
+                }
+                catch (ContentStoreException e)
+                {
+                    log.error(e.getMessage(), e);
+                }
+            }, "cherry-store-migrator");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+}
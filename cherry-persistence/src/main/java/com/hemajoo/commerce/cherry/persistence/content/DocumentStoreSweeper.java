@@ -0,0 +1,601 @@
+/*
+ * Copyright(c) 2021 Hemajoo Digital Systems Inc.
+ * --------------------------------------------------------------------------------------
+ * This file is part of Hemajoo Systems Inc. projects which is licensed
+ * under the Apache license version 2 and use is subject to license terms.
+ * You should have received a copy of the license with the project's artifact
+ * binaries and/or sources.
+ *
+ * License can be consulted at http://www.apache.org/licenses/LICENSE-2.0
+ * --------------------------------------------------------------------------------------
+ */
+package com.hemajoo.commerce.cherry.persistence.content;
+
+import com.hemajoo.commerce.cherry.commons.exception.ContentStoreException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reconciles the files of the content store against the content identifiers referenced by the documents.
+ * <p>
+ * The content store is scanned in pages of files, each page being checked against the database in a single query:
+ * <ul>
+ * <li>a content file no more referenced by any document (left behind by a crash or a failed deletion, or a shared
+ * content released by its last document in content addressed mode) is deleted,</li>
+ * <li>a staging file whose content is referenced (its transaction committed but the content has not been moved) is
+ * moved to its location, the other staging files are deleted,</li>
+ * <li>the partial files of the uploads neither committed nor aborted are deleted.</li>
+ * </ul>
+ * Only the files older than their grace period (one for the contents, one for the staging files and one for the
+ * uploads) are reclaimed, so the contents being written are never touched. The sweep is rate limited (files checked
+ * per second) to bound the load put on the file system and the database, and the directories are iterated, never
+ * listed at once.
+ * <p>
+ * In content addressed mode, a write of a content already stored does not stage it but touches the stored blob, which
+ * may be referenced by no committed document yet. A content file is therefore first set aside (atomically renamed to a
+ * hidden {@code .deleting} tombstone, so a concurrent write no more finds it and stages a fresh copy), then checked
+ * again against the database and its modification time: it is only deleted if still not referenced and not touched,
+ * restored otherwise. The tombstones left behind by a crash are restored by the next sweep.
+ * @author <a href="mailto:christophe.resse@gmail.com">Christophe Resse</a>
+ * @version 1.0.0
+ */
+@Slf4j
+@Component
+public class DocumentStoreSweeper
+{
+    /**
+     * Suffix of the tombstones, i.e. of the content files set aside to be deleted.
+     */
+    private static final String TOMBSTONE_SUFFIX = ".deleting";
+
+    /**
+     * Content store layout.
+     */
+    private final DocumentStoreLayout layout;
+
+    /**
+     * Document repository.
+     */
+    private final DocumentRepository documentRepository;
+
+    /**
+     * Document content cache.
+     */
+    private final DocumentContentCache documentContentCache;
+
+    /**
+     * Upload store.
+     */
+    private final DocumentUploadStore documentUploadStore;
+
+    /**
+     * Is the sweeper scheduled when the application is ready?
+     */
+    private final boolean enabled;
+
+    /**
+     * Is the content store in content addressed (deduplicating) mode?
+     */
+    private final boolean deduplication;
+
+    /**
+     * Interval (in seconds) between two sweeps.
+     */
+    private final long interval;
+
+    /**
+     * Number of files checked per database query.
+     */
+    private final int pageSize;
+
+    /**
+     * Minimum age (in seconds) of the content files to reclaim.
+     */
+    private final long gracePeriod;
+
+    /**
+     * Minimum age (in seconds) of the staging files to reclaim.
+     */
+    private final long stagingGracePeriod;
+
+    /**
+     * Minimum age (in seconds) of the partial files of the uploads to reclaim.
+     */
+    private final long uploadGracePeriod;
+
+    /**
+     * Maximum number of files checked per second (0 for no limit).
+     */
+    private final int rate;
+
+    /**
+     * Scheduler of the sweeps (null until started).
+     */
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * Creates a new content store sweeper.
+     * @param layout Content store layout.
+     * @param documentRepository Document repository.
+     * @param documentContentCache Document content cache.
+     * @param documentUploadStore Upload store.
+     * @param enabled Is the sweeper scheduled when the application is ready?
+     * @param deduplication Is the content store in content addressed (deduplicating) mode?
+     * @param interval Interval (in seconds) between two sweeps.
+     * @param pageSize Number of files checked per database query.
+     * @param gracePeriod Minimum age (in seconds) of the content files to reclaim.
+     * @param stagingGracePeriod Minimum age (in seconds) of the staging files to reclaim.
+     * @param uploadGracePeriod Minimum age (in seconds) of the partial files of the uploads to reclaim.
+     * @param rate Maximum number of files checked per second (0 for no limit).
+     */
+    @Autowired
+    public DocumentStoreSweeper(
+            final DocumentStoreLayout layout,
+            final DocumentRepository documentRepository,
+            final DocumentContentCache documentContentCache,
+            final DocumentUploadStore documentUploadStore,
+            final @Value("${hemajoo.commerce.cherry.store.sweeper.enabled:false}") boolean enabled,
+            final @Value("${hemajoo.commerce.cherry.store.deduplication:false}") boolean deduplication,
+            final @Value("${hemajoo.commerce.cherry.store.sweeper.interval:3600}") long interval,
+            final @Value("${hemajoo.commerce.cherry.store.sweeper.page-size:500}") int pageSize,
+            final @Value("${hemajoo.commerce.cherry.store.sweeper.grace-period:3600}") long gracePeriod,
+            final @Value("${hemajoo.commerce.cherry.store.sweeper.staging-grace-period:86400}") long stagingGracePeriod,
+            final @Value("${hemajoo.commerce.cherry.store.sweeper.upload-grace-period:86400}") long uploadGracePeriod,
+            final @Value("${hemajoo.commerce.cherry.store.sweeper.rate:1000}") int rate)
+    {
+        if (pageSize < 1 || interval < 1 || gracePeriod < 0 || stagingGracePeriod < 0 || uploadGracePeriod < 0 || rate < 0)
+        {
+            throw new IllegalArgumentException(String.format("Invalid content store sweeper, interval: '%s', page size: '%s', grace periods: '%s', '%s' (staging), '%s' (uploads), rate: '%s'!", interval, pageSize, gracePeriod, stagingGracePeriod, uploadGracePeriod, rate));
+        }
+
+        this.layout = layout;
+        this.documentRepository = documentRepository;
+        this.documentContentCache = documentContentCache;
+        this.documentUploadStore = documentUploadStore;
+        this.enabled = enabled;
+        this.deduplication = deduplication;
+        this.interval = interval;
+        this.pageSize = pageSize;
+        this.gracePeriod = gracePeriod;
+        this.stagingGracePeriod = stagingGracePeriod;
+        this.uploadGracePeriod = uploadGracePeriod;
+        this.rate = rate;
+    }
+
+    /**
+     * Sweeps the content store.
+     * @return Number of reclaimed (deleted) files.
+     * @throws ContentStoreException Raised if an error occurred while trying to sweep the content store.
+     */
+    public long sweep() throws ContentStoreException
+    {
+        if (!Files.isDirectory(layout.getRoot()))
+        {
+            return 0;
+        }
+
+        Instant now = Instant.now();
+        Sweep sweep = new Sweep(now.minusSeconds(gracePeriod));
+
+        try
+        {
+            // Contents: at most one directory level per shard level, the legacy flat files being at the root.
+            Files.walkFileTree(layout.getRoot(), EnumSet.noneOf(FileVisitOption.class), layout.getDepth() + 1, new SimpleFileVisitor<Path>()
+            {
+                @Override
+                public FileVisitResult preVisitDirectory(final Path directory, final BasicFileAttributes attributes)
+                {
+                    // Staging and upload areas are not part of the content store layout.
+                    return directory.equals(layout.getRoot()) || !directory.getFileName().toString().startsWith(".")
+                            ? FileVisitResult.CONTINUE
+                            : FileVisitResult.SKIP_SUBTREE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(final Path file, final BasicFileAttributes attributes) throws IOException
+                {
+                    String name = file.getFileName().toString();
+                    if (attributes.isRegularFile() && isTombstone(name))
+                    {
+                        sweep.restore(file, sweep.getOriginal(file));
+                    }
+                    else if (attributes.isRegularFile() && !name.startsWith("."))
+                    {
+                        sweep.add(name, file, attributes);
+                    }
+
+                    return sweep.isInterrupted() ? FileVisitResult.TERMINATE : FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(final Path file, final IOException e)
+                {
+                    log.warn(String.format("Cannot visit content store file: '%s'", file), e);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+            sweep.flush();
+
+            // Staging files.
+            Path staging = layout.getStagingDirectory();
+            if (Files.isDirectory(staging))
+            {
+                sweep.startStaging(now.minusSeconds(stagingGracePeriod));
+                try (DirectoryStream<Path> stream = Files.newDirectoryStream(staging))
+                {
+                    for (Path file : stream)
+                    {
+                        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                        if (attributes.isRegularFile())
+                        {
+                            sweep.add(layout.getStagedContentId(file), file, attributes);
+                        }
+
+                        if (sweep.isInterrupted())
+                        {
+                            break;
+                        }
+                    }
+                }
+                sweep.flush();
+            }
+        }
+        catch (IOException e)
+        {
+            throw new ContentStoreException(String.format("Cannot sweep content store: '%s'", layout.getRoot()), e);
+        }
+
+        // Uploads neither committed nor aborted.
+        sweep.reclaimed += documentUploadStore.purge(now.minusSeconds(uploadGracePeriod));
+
+        if (sweep.promoted > 0)
+        {
+            log.info("Content store sweeper moved {} committed staged content(s) to their location.", sweep.promoted);
+        }
+
+        return sweep.reclaimed;
+    }
+
+    /**
+     * Schedules the sweeps when the application is ready, if enabled.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady()
+    {
+        if (!enabled && deduplication)
+        {
+            log.warn("Content store is in content addressed mode but its sweeper is disabled, the contents no more referenced will never be reclaimed!");
+        }
+
+        if (enabled)
+        {
+            CustomizableThreadFactory factory = new CustomizableThreadFactory("cherry-store-sweeper-");
+            factory.setDaemon(true);
+
+            scheduler = Executors.newSingleThreadScheduledExecutor(factory);
+            scheduler.scheduleWithFixedDelay(() -> {
+                try
+                {
+                    log.info("Content store swept, {} orphan file(s) reclaimed.", sweep());
+                }
+                catch (ContentStoreException | RuntimeException e)
+                {
+                    log.error(e.getMessage(), e);
+                }
+            }, interval, interval, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Stops the scheduled sweeps.
+     */
+    @PreDestroy
+    public void shutdown()
+    {
+        if (scheduler != null)
+        {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * Checks if a file name is the name of a tombstone, i.e. of a content file set aside to be deleted.
+     * @param name File name.
+     * @return {@code True} if a tombstone, {@code false} otherwise.
+     */
+    private static boolean isTombstone(final String name)
+    {
+        return name.length() > TOMBSTONE_SUFFIX.length() + 1 && name.startsWith(".") && name.endsWith(TOMBSTONE_SUFFIX);
+    }
+
+    /**
+     * State of a sweep.
+     */
+    private final class Sweep
+    {
+        /**
+         * Files modified after this instant are not reclaimed.
+         */
+        private Instant deadline;
+
+        /**
+         * Files of the current page, keyed by content identifier.
+         */
+        private final Map<String, List<Path>> page = new HashMap<>();
+
+        /**
+         * Number of files in the current page.
+         */
+        private int count;
+
+        /**
+         * Start time (in nanoseconds) of the current page.
+         */
+        private long start = System.nanoTime();
+
+        /**
+         * Are staging files being swept?
+         */
+        private boolean staging;
+
+        /**
+         * Number of reclaimed files.
+         */
+        private long reclaimed;
+
+        /**
+         * Number of staged contents moved to their location.
+         */
+        private long promoted;
+
+        /**
+         * Creates a new sweep.
+         * @param deadline Files modified after this instant are not reclaimed.
+         */
+        private Sweep(final Instant deadline)
+        {
+            this.deadline = deadline;
+        }
+
+        /**
+         * Switches to the staging files.
+         * @param stagingDeadline Staging files modified after this instant are not reclaimed.
+         */
+        private void startStaging(final Instant stagingDeadline)
+        {
+            this.staging = true;
+            this.deadline = stagingDeadline;
+        }
+
+        /**
+         * Adds a file to the current page, checking the page once full.
+         * @param contentId Content identifier (null if the file is not a content).
+         * @param file File.
+         * @param attributes File attributes.
+         * @throws IOException Thrown in case an error occurred while reclaiming a file.
+         */
+        private void add(final String contentId, final Path file, final BasicFileAttributes attributes) throws IOException
+        {
+            if (attributes.lastModifiedTime().toInstant().isAfter(deadline) || (staging && contentId != null && file.equals(layout.getStaging(contentId))))
+            {
+                return; // Too recent or still staged by a running transaction.
+            }
+
+            if (contentId == null)
+            {
+                delete(file, null); // Unknown (temporary) staging file.
+                return;
+            }
+
+            page.computeIfAbsent(contentId, key -> new ArrayList<>(1)).add(file);
+            if (++count >= pageSize)
+            {
+                flush();
+            }
+        }
+
+        /**
+         * Checks the files of the current page against the database and reclaims the orphan ones.
+         * @throws IOException Thrown in case an error occurred while reclaiming a file.
+         */
+        private void flush() throws IOException
+        {
+            if (page.isEmpty())
+            {
+                return;
+            }
+
+            Set<String> referenced = new HashSet<>(documentRepository.findReferencedContentIds(page.keySet()));
+            Map<String, List<Path>> tombstones = new HashMap<>();
+            for (Map.Entry<String, List<Path>> entry : page.entrySet())
+            {
+                for (Path file : entry.getValue())
+                {
+                    if (referenced.contains(entry.getKey()))
+                    {
+                        if (staging)
+                        {
+                            promote(file, entry.getKey());
+                        }
+                    }
+                    else if (staging)
+                    {
+                        delete(file, null);
+                    }
+                    else
+                    {
+                        Path tombstone = setAside(file);
+                        if (tombstone != null)
+                        {
+                            tombstones.computeIfAbsent(entry.getKey(), key -> new ArrayList<>(1)).add(tombstone);
+                        }
+                    }
+                }
+            }
+
+            if (!tombstones.isEmpty())
+            {
+                // Contents referenced or touched (by a write of the same content) since checked are restored.
+                Set<String> rescued = new HashSet<>(documentRepository.findReferencedContentIds(tombstones.keySet()));
+                for (Map.Entry<String, List<Path>> entry : tombstones.entrySet())
+                {
+                    for (Path tombstone : entry.getValue())
+                    {
+                        if (rescued.contains(entry.getKey()) || Files.getLastModifiedTime(tombstone).toInstant().isAfter(deadline))
+                        {
+                            restore(tombstone, getOriginal(tombstone));
+                        }
+                        else
+                        {
+                            delete(tombstone, entry.getKey());
+                        }
+                    }
+                }
+            }
+
+            throttle(count);
+            page.clear();
+            count = 0;
+        }
+
+        /**
+         * Moves a committed staged content to its location (or discards it if already there).
+         * @param file Staging file.
+         * @param contentId Content identifier.
+         * @throws IOException Thrown in case an error occurred while moving the file.
+         */
+        private void promote(final Path file, final String contentId) throws IOException
+        {
+            Path target = layout.resolveSharded(contentId);
+            if (Files.exists(target))
+            {
+                delete(file, null);
+                return;
+            }
+
+            Files.createDirectories(target.getParent());
+            Files.move(file, target, StandardCopyOption.ATOMIC_MOVE);
+            promoted++;
+        }
+
+        /**
+         * Sets a content file aside to be deleted, renaming it to a tombstone.
+         * @param file Content file.
+         * @return Tombstone or null if the file no more exists.
+         * @throws IOException Thrown in case an error occurred while renaming the file.
+         */
+        private Path setAside(final Path file) throws IOException
+        {
+            Path tombstone = file.resolveSibling("." + file.getFileName() + TOMBSTONE_SUFFIX);
+            try
+            {
+                return Files.move(file, tombstone, StandardCopyOption.ATOMIC_MOVE);
+            }
+            catch (NoSuchFileException e)
+            {
+                return null;
+            }
+        }
+
+        /**
+         * Restores a tombstone to its content file (or deletes it if the content has been stored again meanwhile).
+         * @param tombstone Tombstone.
+         * @param file Content file.
+         * @throws IOException Thrown in case an error occurred while renaming the tombstone.
+         */
+        private void restore(final Path tombstone, final Path file) throws IOException
+        {
+            try
+            {
+                Files.move(tombstone, file, StandardCopyOption.ATOMIC_MOVE);
+            }
+            catch (FileAlreadyExistsException e)
+            {
+                Files.deleteIfExists(tombstone);
+            }
+            catch (NoSuchFileException e)
+            {
+                // Already restored.
+            }
+        }
+
+        /**
+         * Returns the content file of a tombstone.
+         * @param tombstone Tombstone.
+         * @return Content file.
+         */
+        private Path getOriginal(final Path tombstone)
+        {
+            String name = tombstone.getFileName().toString();
+
+            return tombstone.resolveSibling(name.substring(1, name.length() - TOMBSTONE_SUFFIX.length()));
+        }
+
+        /**
+         * Deletes an orphan file.
+         * @param file File.
+         * @param contentId Content identifier (null if the file is not a content).
+         * @throws IOException Thrown in case an error occurred while deleting the file.
+         */
+        private void delete(final Path file, final String contentId) throws IOException
+        {
+            if (Files.deleteIfExists(file))
+            {
+                reclaimed++;
+                if (contentId != null && !staging)
+                {
+                    documentContentCache.invalidate(contentId);
+                }
+            }
+        }
+
+        /**
+         * Waits, if needed, so the files are not checked faster than the rate.
+         * @param checked Number of files checked by the current page.
+         */
+        private void throttle(final int checked)
+        {
+            if (rate > 0)
+            {
+                long wait = TimeUnit.SECONDS.toNanos(checked) / rate - (System.nanoTime() - start);
+                if (wait > 0)
+                {
+                    try
+                    {
+                        TimeUnit.NANOSECONDS.sleep(wait);
+                    }
+                    catch (InterruptedException e)
+                    {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+
+            start = System.nanoTime();
+        }
+
+        /**
+         * Checks if the sweep has been interrupted (such as on shutdown).
+         * @return {@code True} if interrupted, {@code false} otherwise.
+         */
+        private boolean isInterrupted()
+        {
+            return Thread.currentThread().isInterrupted();
+        }
+    }
+}
@@ -0,0 +1,355 @@
+/*
+ * Copyright(c) 2021 Hemajoo Digital Systems Inc.
+ * --------------------------------------------------------------------------------------
+ * This file is part of Hemajoo Systems Inc. projects which is licensed
+ * under the Apache license version 2 and use is subject to license terms.
+ * You should have received a copy of the license with the project's artifact
+ * binaries and/or sources.
+ *
+ * License can be consulted at http://www.apache.org/licenses/LICENSE-2.0
+ * --------------------------------------------------------------------------------------
+ */
+package com.hemajoo.commerce.cherry.persistence.content;
+
+import com.hemajoo.commerce.cherry.commons.exception.ContentStoreException;
+import com.hemajoo.commerce.cherry.persistence.base.io.ContentDigests;
+import lombok.Getter;
+import lombok.NonNull;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Component storing the media files being uploaded by chunks.
+ * <p>
+ * An upload is initiated, then its chunks are appended (in order) to a partial file located in the content store
+ * itself, so the completed file can be moved (atomically) to its final location without being copied. As the chunks
+ * are streamed to the disk as they are received, the upload of large media files does not put any pressure on the
+ * heap and an upload interrupted by a dropped connection can be resumed from its current offset. The uploads neither
+ * committed nor aborted are purged by the {@link DocumentStoreSweeper}.
+ * <p>
+ * The digest of an upload is computed while its chunks are appended, so a completed upload is not read again to be
+ * committed (see {@link #takeDigest(Path)}). The digests are kept in memory: the digest of an upload resumed on another
+ * instance, or after a restart, is computed by reading its partial file.
+ * @author <a href="mailto:christophe.resse@gmail.com">Christophe Resse</a>
+ * @version 1.0.0
+ */
+@Component
+public class DocumentUploadStore
+{
+    /**
+     * Name of the directory (relative to the content store location) containing the uploads in progress.
+     */
+    public static final String UPLOAD_DIRECTORY = ".uploads";
+
+    /**
+     * Extension of the partial files.
+     */
+    private static final String PART_EXTENSION = ".part";
+
+    /**
+     * Maximum number of bytes transferred at once from a chunk to its partial file.
+     */
+    private static final long TRANSFER_SIZE = 1024 * 1024;
+
+    /**
+     * Directory containing the uploads in progress.
+     */
+    @Getter
+    private final Path directory;
+
+    /**
+     * Digests of the uploads in progress, keyed by partial file.
+     */
+    private final Map<Path, UploadDigest> digests = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a new upload store.
+     * @param storeLocation Content store location.
+     */
+    @Autowired
+    public DocumentUploadStore(final @Value("${hemajoo.commerce.cherry.store.location}") String storeLocation)
+    {
+        this.directory = Paths.get(storeLocation, UPLOAD_DIRECTORY);
+    }
+
+    /**
+     * Initiates a new upload.
+     * @return Upload identifier.
+     * @throws ContentStoreException Raised if an error occurred while trying to create the partial file.
+     */
+    public String init() throws ContentStoreException
+    {
+        String uploadId = UUID.randomUUID().toString();
+
+        try
+        {
+            Files.createDirectories(directory);
+            Path file = Files.createFile(directory.resolve(uploadId + PART_EXTENSION));
+            digests.put(key(file), new UploadDigest());
+        }
+        catch (IOException e)
+        {
+            throw new ContentStoreException(String.format("Cannot initiate upload id: '%s'", uploadId), e);
+        }
+
+        return uploadId;
+    }
+
+    /**
+     * Returns the current offset of an upload, i.e. the number of bytes already received.
+     * @param uploadId Upload identifier.
+     * @return Offset.
+     * @throws ContentStoreException Raised if the upload cannot be found.
+     */
+    public long getOffset(final @NonNull String uploadId) throws ContentStoreException
+    {
+        try
+        {
+            return Files.size(getFile(uploadId));
+        }
+        catch (IOException e)
+        {
+            throw new ContentStoreException(String.format("Cannot read upload id: '%s'", uploadId), e);
+        }
+    }
+
+    /**
+     * Appends a chunk to an upload.
+     * <p>
+     * The chunk is only accepted if its offset matches the current offset of the upload. If the chunk is interrupted,
+     * the bytes already received are kept and the upload can be resumed from its new offset.
+     * @param uploadId Upload identifier.
+     * @param offset Offset of the chunk.
+     * @param chunk Chunk content.
+     * @return New offset of the upload.
+     * @throws ContentStoreException Raised if the upload cannot be found, if the offset does not match the current
+     * offset of the upload or if the upload is being appended concurrently.
+     */
+    public long append(final @NonNull String uploadId, final long offset, final @NonNull InputStream chunk) throws ContentStoreException
+    {
+        Path file = getFile(uploadId);
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE))
+        {
+            FileLock lock = tryLock(channel);
+            if (lock == null)
+            {
+                throw new ContentStoreException(String.format("Upload id: '%s' is already being appended!", uploadId), HttpStatus.CONFLICT);
+            }
+
+            long position = channel.size();
+            if (offset != position)
+            {
+                throw new ContentStoreException(String.format("Invalid offset: '%s' for upload id: '%s', expected: '%s'", offset, uploadId, position), HttpStatus.CONFLICT);
+            }
+
+            // Digest taken while the chunk is appended, only given back if it covers the whole partial file.
+            UploadDigest digest = digests.remove(key(file));
+            if (digest != null && digest.length != position)
+            {
+                digest = null;
+            }
+
+            ReadableByteChannel source = Channels.newChannel(digest != null ? new DigestInputStream(chunk, digest.digest) : chunk);
+            long transferred;
+            while ((transferred = channel.transferFrom(source, position, TRANSFER_SIZE)) > 0)
+            {
+                position += transferred;
+            }
+
+            if (digest != null)
+            {
+                digest.length = position;
+                digests.put(key(file), digest);
+            }
+
+            return position;
+        }
+        catch (IOException e)
+        {
+            throw new ContentStoreException(String.format("Cannot append chunk at offset: '%s' to upload id: '%s'", offset, uploadId), e);
+        }
+    }
+
+    /**
+     * Returns the partial file of an upload.
+     * @param uploadId Upload identifier.
+     * @return Partial file.
+     * @throws ContentStoreException Raised if the upload cannot be found.
+     */
+    public Path getFile(final @NonNull String uploadId) throws ContentStoreException
+    {
+        Path file;
+        try
+        {
+            // Upload identifiers are UUIDs, this also prevents any path traversal.
+            file = directory.resolve(UUID.fromString(uploadId) + PART_EXTENSION);
+        }
+        catch (IllegalArgumentException e)
+        {
+            throw new ContentStoreException(String.format("Invalid upload id: '%s'", uploadId), HttpStatus.BAD_REQUEST);
+        }
+
+        if (!Files.isRegularFile(file))
+        {
+            throw new ContentStoreException(String.format("Cannot find upload id: '%s'", uploadId), HttpStatus.NOT_FOUND);
+        }
+
+        return file;
+    }
+
+    /**
+     * Aborts an upload, deleting its partial file.
+     * @param uploadId Upload identifier.
+     * @throws ContentStoreException Raised if an error occurred while trying to delete the partial file.
+     */
+    public void abort(final @NonNull String uploadId) throws ContentStoreException
+    {
+        try
+        {
+            Path file = getFile(uploadId);
+            digests.remove(key(file));
+            Files.deleteIfExists(file);
+        }
+        catch (IOException e)
+        {
+            throw new ContentStoreException(String.format("Cannot abort upload id: '%s'", uploadId), e);
+        }
+    }
+
+    /**
+     * Takes the digest of a completed upload, computed while its chunks were appended, releasing it.
+     * <p>
+     * If the digest is not known (upload resumed after a restart, chunk failed while appended, file not being an
+     * upload), it is computed by reading the file.
+     * @param file Partial file of the upload.
+     * @return Digest of the file content (see {@link ContentDigests}).
+     * @throws IOException Thrown in case an error occurred while reading the file.
+     */
+    public byte[] takeDigest(final @NonNull Path file) throws IOException
+    {
+        UploadDigest digest = digests.remove(key(file));
+        if (digest != null && digest.length == Files.size(file))
+        {
+            return digest.digest.digest();
+        }
+
+        MessageDigest full = ContentDigests.newDigest();
+        try (InputStream input = new DigestInputStream(Files.newInputStream(file), full))
+        {
+            input.transferTo(OutputStream.nullOutputStream());
+        }
+
+        return full.digest();
+    }
+
+    /**
+     * Purges the uploads neither committed nor aborted, deleting their partial files.
+     * @param deadline Partial files modified after this instant are kept.
+     * @return Number of purged uploads.
+     * @throws ContentStoreException Raised if an error occurred while trying to delete the partial files.
+     */
+    public long purge(final @NonNull Instant deadline) throws ContentStoreException
+    {
+        if (!Files.isDirectory(directory))
+        {
+            return 0;
+        }
+
+        long purged = 0;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + PART_EXTENSION))
+        {
+            for (Path file : stream)
+            {
+                try
+                {
+                    if (Files.getLastModifiedTime(file).toInstant().isBefore(deadline))
+                    {
+                        digests.remove(key(file));
+                        if (Files.deleteIfExists(file))
+                        {
+                            purged++;
+                        }
+                    }
+                }
+                catch (NoSuchFileException e)
+                {
+                    // Committed or aborted meanwhile.
+                }
+            }
+        }
+        catch (IOException e)
+        {
+            throw new ContentStoreException(String.format("Cannot purge uploads: '%s'", directory), e);
+        }
+
+        return purged;
+    }
+
+    /**
+     * Returns the key of a partial file in the digests.
+     * @param file Partial file.
+     * @return Key.
+     */
+    private static Path key(final Path file)
+    {
+        return file.toAbsolutePath().normalize();
+    }
+
+    /**
+     * Tries to lock a partial file.
+     * @param channel File channel.
+     * @return Lock or null if the file is already locked.
+     * @throws IOException Thrown in case an error occurred while trying to lock the file.
+     */
+    private static FileLock tryLock(final FileChannel channel) throws IOException
+    {
+        try
+        {
+            return channel.tryLock();
+        }
+        catch (OverlappingFileLockException e)
+        {
+            return null; // Already locked by this process.
+        }
+    }
+
+    /**
+     * Digest of an upload in progress.
+     */
+    private static final class UploadDigest
+    {
+        /**
+         * Message digest of the bytes appended.
+         */
+        private final MessageDigest digest = ContentDigests.newDigest();
+
+        /**
+         * Number of bytes digested.
+         */
+        private long length;
+    }
+}
@@ -15,7 +15,13 @@ import com.hemajoo.commerce.cherry.commons.entity.EntityIdentity;
 import com.hemajoo.commerce.cherry.commons.entity.IEntityIdentity;
 import com.hemajoo.commerce.cherry.commons.type.EntityType;
 import com.hemajoo.commerce.cherry.persistence.model.entity.document.DocumentEntity;
+import com.hemajoo.commerce.cherry.persistence.base.identifier.EntityIdentifierGenerator;
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.LazyCollection;
+import org.hibernate.annotations.LazyCollectionOption;
 import org.hibernate.annotations.Type;
 
 import javax.persistence.*;
@@ -23,6 +29,9 @@ import java.util.*;
 
 /**
  * Represents the base part of a persistence entity of the {@code Cherry} data model.
+ * <p>
+ * The entities (of all the types, as they form one hierarchy) are cached in the {@link #CACHE_REGION} region of the
+ * second level cache, when enabled.
  * @author <a href="mailto:christophe.resse@gmail.com">Christophe Resse</a>
  * @version 1.0.0
  */
@@ -31,6 +40,8 @@ import java.util.*;
 @EqualsAndHashCode(callSuper = true)
 @Entity
 @Table(name = "ENTITY")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = BaseEntity.CACHE_REGION)
 @Inheritance(strategy = InheritanceType.TABLE_PER_CLASS)
 public class BaseEntity extends StatusEntity implements IEntityIdentity
 {
@@ -39,6 +50,17 @@ public class BaseEntity extends StatusEntity implements IEntityIdentity
     public static final String FIELD_NAME           = "name";
     public static final String FIELD_DESCRIPTION    = "description";
     public static final String FIELD_REFERENCE      = "reference";
+    public static final String FIELD_VERSION        = "version";
+
+    /**
+     * Name of the second level cache region holding the entities.
+     */
+    public static final String CACHE_REGION = "cherry.entity";
+
+    /**
+     * Column definition of the identifiers (and of the columns referencing them).
+     */
+    public static final String UUID_COLUMN_DEFINITION = "BINARY(16)";
 
     /**
      * Entity identifier.
@@ -46,8 +68,10 @@ public class BaseEntity extends StatusEntity implements IEntityIdentity
     @Getter
     @Setter
     @Id
-    @Type(type = "uuid-char") // Allow to display in the DB the UUID as a string instead of a binary field!
-    @GeneratedValue
+    @Type(type = "uuid-binary") // Stored on 16 bytes instead of a 36 characters string, for smaller and faster indexes!
+    @Column(name = "ID", columnDefinition = UUID_COLUMN_DEFINITION)
+    @GeneratedValue(generator = EntityIdentifierGenerator.NAME)
+    @GenericGenerator(name = EntityIdentifierGenerator.NAME, strategy = "com.hemajoo.commerce.cherry.persistence.base.identifier.EntityIdentifierGenerator")
     private UUID id;
 
     /**
@@ -83,12 +107,31 @@ public class BaseEntity extends StatusEntity implements IEntityIdentity
     @Column(name = "REFERENCE", length = 100)
     private String reference;
 
+    /**
+     * Entity version (optimistic locking).
+     * <p>
+     * Incremented by each update, which only succeeds if the row still has the version the entity was read with: the
+     * loser of concurrent updates fails (with an {@code OptimisticLockException}) instead of silently overwriting the
+     * winner, and no lock is held meanwhile.
+     */
+    @Getter
+    @Setter
+    @Version
+    @Column(name = "VERSION")
+    private Long version;
+
     /**
      * Documents associated with this entity.
+     * <p>
+     * Inverse side of the document owner association, so adding a document queues it without loading the collection.
+     * The collection is extra lazy: its size and the presence of a document are queried without loading it, large
+     * collections should be browsed by slices (see {@code DocumentService#findSliceByOwnerId}).
      */
-//    @ToString.Exclude
-//    @EqualsAndHashCode.Exclude
-    @OneToMany(fetch = FetchType.LAZY, cascade = CascadeType.ALL)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude // Would initialize the collection!
+    @OneToMany(mappedBy = "owner", fetch = FetchType.LAZY, cascade = CascadeType.ALL)
+    @LazyCollection(LazyCollectionOption.EXTRA)
+    @OrderBy("createdDate, id")
     private final List<DocumentEntity> documents = new ArrayList<>();
 
     /**
@@ -107,7 +150,7 @@ public class BaseEntity extends StatusEntity implements IEntityIdentity
     }
 
     /**
-     * Adds a document to this entityDocumentEntity.
+     * Adds a document to this entity.
      * @param document Document.
      */
     public final void addDocument(final @NonNull DocumentEntity document)
@@ -123,10 +166,32 @@ public class BaseEntity extends StatusEntity implements IEntityIdentity
     {
         if (entityType == EntityType.MEDIA)
         {
-            return new ArrayList<>();
+            return Collections.emptyList();
         }
 
-        //return Collections.unmodifiableList(documents);
         return documents;
     }
+
+    /**
+     * Returns the number of documents associated to this entity.
+     * <p>
+     * Counted by the database if the documents are not loaded.
+     * @return Number of documents.
+     */
+    public final int getDocumentCount()
+    {
+        return getDocuments().size();
+    }
+
+    /**
+     * Checks if a document is associated to this entity.
+     * <p>
+     * Checked by the database if the documents are not loaded.
+     * @param document Document.
+     * @return {@code True} if the document is associated to this entity, {@code false} otherwise.
+     */
+    public final boolean hasDocument(final @NonNull DocumentEntity document)
+    {
+        return getDocuments().contains(document);
+    }
 }
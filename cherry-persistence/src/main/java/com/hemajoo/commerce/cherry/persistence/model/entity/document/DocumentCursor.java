@@ -0,0 +1,128 @@
+/*
+ * Copyright(c) 2021 Hemajoo Digital Systems Inc.
+ * --------------------------------------------------------------------------------------
+ * This file is part of Hemajoo Systems Inc. projects which is licensed
+ * under the Apache license version 2 and use is subject to license terms.
+ * You should have received a copy of the license with the project's artifact
+ * binaries and/or sources.
+ *
+ * License can be consulted at http://www.apache.org/licenses/LICENSE-2.0
+ * --------------------------------------------------------------------------------------
+ */
+package com.hemajoo.commerce.cherry.persistence.model.entity.document;
+
+import com.hemajoo.commerce.cherry.model.entity.document.DocumentException;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.ToString;
+import org.springframework.http.HttpStatus;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.sql.Timestamp;
+import java.util.Base64;
+import java.util.Date;
+import java.util.UUID;
+
+/**
+ * Position of a document in a listing ordered by creation date then identifier, used to get the following documents
+ * with a keyset pagination (a seek on the index instead of skipping the previous rows, so a page costs the same however
+ * deep it is).
+ * <p>
+ * A cursor is handed out to the clients as an opaque string (see {@link #encode()}).
+ * @author <a href="mailto:christophe.resse@gmail.com">Christophe Resse</a>
+ * @version 1.0.0
+ */
+@ToString
+@EqualsAndHashCode
+public final class DocumentCursor
+{
+    /**
+     * Length of an encoded cursor (in bytes, before the Base64 encoding).
+     */
+    private static final int ENCODED_LENGTH = Long.BYTES + Integer.BYTES + 2 * Long.BYTES;
+
+    /**
+     * Creation date of the document.
+     */
+    @Getter
+    private final Timestamp createdDate;
+
+    /**
+     * Document identifier.
+     */
+    @Getter
+    private final UUID id;
+
+    /**
+     * Creates a new document cursor.
+     * @param createdDate Creation date of the document.
+     * @param id Document identifier.
+     */
+    public DocumentCursor(final @NonNull Date createdDate, final @NonNull UUID id)
+    {
+        if (createdDate instanceof Timestamp)
+        {
+            this.createdDate = (Timestamp) createdDate;
+        }
+        else
+        {
+            this.createdDate = new Timestamp(createdDate.getTime());
+        }
+
+        this.id = id;
+    }
+
+    /**
+     * Creates the cursor positioned on a document.
+     * @param summary Document summary.
+     * @return Document cursor.
+     */
+    public static DocumentCursor of(final @NonNull DocumentSummary summary)
+    {
+        return new DocumentCursor(summary.getCreatedDate(), summary.getId());
+    }
+
+    /**
+     * Encodes the cursor as an opaque (url safe) string.
+     * @return Encoded cursor.
+     */
+    public String encode()
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(ENCODED_LENGTH)
+                .putLong(Math.floorDiv(createdDate.getTime(), 1000L))
+                .putInt(createdDate.getNanos())
+                .putLong(id.getMostSignificantBits())
+                .putLong(id.getLeastSignificantBits());
+
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(buffer.array());
+    }
+
+    /**
+     * Decodes a cursor.
+     * @param value Encoded cursor.
+     * @return Document cursor.
+     * @throws DocumentException Raised if the cursor is invalid.
+     */
+    public static DocumentCursor decode(final @NonNull String value) throws DocumentException
+    {
+        try
+        {
+            ByteBuffer buffer = ByteBuffer.wrap(Base64.getUrlDecoder().decode(value));
+            if (buffer.remaining() != ENCODED_LENGTH)
+            {
+                throw new IllegalArgumentException("Invalid length");
+            }
+
+            Timestamp createdDate = new Timestamp(buffer.getLong() * 1000L);
+            createdDate.setNanos(buffer.getInt());
+
+            return new DocumentCursor(createdDate, new UUID(buffer.getLong(), buffer.getLong()));
+        }
+        catch (IllegalArgumentException | BufferUnderflowException e)
+        {
+            throw new DocumentException(String.format("Invalid cursor: '%s'", value), HttpStatus.BAD_REQUEST);
+        }
+    }
+}
@@ -11,13 +11,16 @@
  */
 package com.hemajoo.commerce.cherry.persistence.model.entity.document;
 
+import com.hemajoo.commerce.cherry.commons.entity.EntityIdentity;
 import com.hemajoo.commerce.cherry.commons.type.EntityType;
 import com.hemajoo.commerce.cherry.model.entity.document.DocumentContentException;
 import com.hemajoo.commerce.cherry.model.entity.document.DocumentType;
+import com.hemajoo.commerce.cherry.model.entity.document.MimeTypeDetector;
 import com.hemajoo.commerce.cherry.persistence.model.entity.base.BaseEntity;
 import lombok.*;
 import org.apache.commons.io.FilenameUtils;
-import org.apache.tika.Tika;
+import org.hibernate.annotations.Type;
+import org.hibernate.proxy.HibernateProxy;
 import org.ressec.avocado.core.helper.FileHelper;
 import org.springframework.content.commons.annotations.ContentId;
 import org.springframework.content.commons.annotations.ContentLength;
@@ -29,6 +32,7 @@ import javax.persistence.*;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.InputStream;
+import java.util.UUID;
 
 /**
  * Represents a persistent document entity.
@@ -38,11 +42,30 @@ import java.io.InputStream;
 @EqualsAndHashCode(callSuper = true)
 @ToString
 //@NoArgsConstructor
-@Table(name = "DOCUMENT")
+@Table(name = "DOCUMENT", indexes = {
+        @Index(name = DocumentEntity.INDEX_OWNER, columnList = "OWNER_ID, CREATED_DATE, ID"),
+        @Index(name = DocumentEntity.INDEX_TYPE_STATUS, columnList = "DOCUMENT_TYPE, STATUS_TYPE")
+})
 @Entity
+@NamedEntityGraph(name = DocumentEntity.GRAPH_OWNER, attributeNodes = @NamedAttributeNode("owner"))
 @EntityListeners(AuditingEntityListener.class)
 public class DocumentEntity extends BaseEntity
 {
+    /**
+     * Name of the entity graph fetching the document owner.
+     */
+    public static final String GRAPH_OWNER = "DocumentEntity.owner";
+
+    /**
+     * Name of the index serving the lookups of the documents of an owner, ordered by creation date.
+     */
+    public static final String INDEX_OWNER = "IDX_DOCUMENT_OWNER";
+
+    /**
+     * Name of the index serving the filters on the document type and status.
+     */
+    public static final String INDEX_TYPE_STATUS = "IDX_DOCUMENT_TYPE_STATUS";
+
     /**
      * Document type.
      */
@@ -117,6 +140,14 @@ public class DocumentEntity extends BaseEntity
     @MimeType
     private String mimeType = "text/plain";
 
+    /**
+     * File content digest ({@code SHA-256}, hexadecimal representation), computed when the content is written.
+     */
+    @Getter
+    @Setter
+    @Column(name = "CONTENT_DIGEST", length = 64)
+    private String contentDigest;
+
     /**
      * File path (in the content store).
      */
@@ -126,13 +157,35 @@ public class DocumentEntity extends BaseEntity
 
     /**
      * Document owner.
+     * <p>
+     * Read-only association, the owner reference being persisted through the {@link #ownerId} and {@link #ownerType}
+     * columns. As the owners are spread in one table per entity type, the association is lazy: the owner should be
+     * resolved from its identity (see {@link #getOwnerIdentity()}) with a direct lookup in its table rather than with
+     * a polymorphic query over all the entity tables, or fetched on demand using the {@link #GRAPH_OWNER} entity graph.
      */
     @ToString.Exclude
+    @EqualsAndHashCode.Exclude // Would initialize the owner, the owner identifier is compared instead!
     @Getter
-    @Setter
-    @ManyToOne(targetEntity = BaseEntity.class, fetch = FetchType.EAGER)
+    @ManyToOne(targetEntity = BaseEntity.class, fetch = FetchType.LAZY)
+    @JoinColumn(name = "OWNER_ID", insertable = false, updatable = false, foreignKey = @ForeignKey(ConstraintMode.NO_CONSTRAINT))
     private BaseEntity owner;
 
+    /**
+     * Document owner identifier.
+     */
+    @Getter
+    @Type(type = "uuid-binary")
+    @Column(name = "OWNER_ID", columnDefinition = BaseEntity.UUID_COLUMN_DEFINITION)
+    private UUID ownerId;
+
+    /**
+     * Document owner entity type.
+     */
+    @Getter
+    @Enumerated(EnumType.STRING)
+    @Column(name = "OWNER_TYPE", length = 50)
+    private EntityType ownerType;
+
     @Transient
     @ToString.Exclude
     @Getter
@@ -157,54 +210,58 @@ public class DocumentEntity extends BaseEntity
 
         setActive();
         this.documentType = documentType;
-        this.owner = owner;
+        setOwner(owner);
         owner.addDocument(this);
     }
 
     /**
      * Creates a new document given its path name.
+     * <p>
+     * The {@code Mime} type is guessed from the file name, it is sniffed when the content is written into the content
+     * store.
      * @param owner Document owner.
      * @param documentType Document type.
      * @param filename File name.
-     * @throws DocumentContentException Thrown in case an error occurred while processing the document content.
      */
-    public DocumentEntity(final @NonNull BaseEntity owner, final @NonNull DocumentType documentType, final @NonNull String filename) throws DocumentContentException
+    public DocumentEntity(final @NonNull BaseEntity owner, final @NonNull DocumentType documentType, final @NonNull String filename)
     {
         this(owner, documentType);
 
         this.filename = filename;
         setName(FilenameUtils.getName(FilenameUtils.removeExtension(filename)));
         setExtension(FilenameUtils.getExtension(this.filename));
-
-        detectMimeType(filename);
+        detectMimeType();
     }
 
     /**
      * Creates a new document given an associated media file.
+     * <p>
+     * The {@code Mime} type is guessed from the file name, it is sniffed when the content is written into the content
+     * store.
      * @param owner Document owner.
      * @param documentType Document type.
      * @param file File.
-     * @throws DocumentContentException Thrown in case an error occurred while processing the document content.
      */
-    public DocumentEntity(final @NonNull BaseEntity owner, final @NonNull DocumentType documentType, final @NonNull File file) throws DocumentContentException
+    public DocumentEntity(final @NonNull BaseEntity owner, final @NonNull DocumentType documentType, final @NonNull File file)
     {
         this(owner, documentType);
 
         this.filename = file.getName();
         setName(FilenameUtils.getName(FilenameUtils.removeExtension(filename)));
         setExtension(FilenameUtils.getExtension(this.filename));
-
-        detectMimeType(file);
+        detectMimeType();
     }
 
     /**
      * Creates a new document given its path name.
+     * <p>
+     * The {@code Mime} type is guessed from the file name, it is sniffed when the content is written into the content
+     * store.
      * @param owner Document owner.
      * @param documentType Document type.
      * @param multiPartFile Multi part file.
-     * @throws DocumentContentException Thrown in case an error occurred while processing the document content.
      */
-    public DocumentEntity(final @NonNull BaseEntity owner, final @NonNull DocumentType documentType, final @NonNull MultipartFile multiPartFile) throws DocumentContentException
+    public DocumentEntity(final @NonNull BaseEntity owner, final @NonNull DocumentType documentType, final @NonNull MultipartFile multiPartFile)
     {
         this(owner, documentType);
 
@@ -212,7 +269,81 @@ public class DocumentEntity extends BaseEntity
         this.multiPartFile = multiPartFile;
         setName(FilenameUtils.getName(FilenameUtils.removeExtension(filename)));
         setExtension(FilenameUtils.getExtension(filename));
-        detectMimeType(multiPartFile);
+        detectMimeType();
+    }
+
+    /**
+     * Sets the document owner.
+     * @param owner Document owner.
+     */
+    public final void setOwner(final BaseEntity owner)
+    {
+        this.owner = owner;
+        this.ownerId = owner != null ? owner.getId() : null;
+        this.ownerType = owner != null ? owner.getEntityType() : null;
+    }
+
+    /**
+     * Returns the identity (identifier and entity type) of the document owner.
+     * @return Owner identity or null if the document has no owner.
+     */
+    public final EntityIdentity getOwnerIdentity()
+    {
+        return ownerId != null ? new EntityIdentity(ownerId, ownerType) : null;
+    }
+
+    /**
+     * Returns a copy of the document metadata, i.e. of its columns.
+     * <p>
+     * Neither the owner (only its identity is copied), nor the associated documents, nor the content are copied, so
+     * the copy can be made on a detached document without initializing any lazy association.
+     * @return Copy of the document metadata.
+     */
+    public final DocumentEntity copyMetadata()
+    {
+        DocumentEntity copy = new DocumentEntity();
+
+        copy.setId(getId());
+        copy.setEntityType(getEntityType());
+        copy.setName(getName());
+        copy.setDescription(getDescription());
+        copy.setReference(getReference());
+        copy.setVersion(getVersion()); // So an update of the copy is checked against the version it was read with.
+        copy.setStatusType(getStatusType());
+        copy.setSince(getSince());
+        copy.setCreatedDate(getCreatedDate());
+        copy.setCreatedBy(getCreatedBy());
+        copy.setModifiedDate(getModifiedDate());
+        copy.setModifiedBy(getModifiedBy());
+
+        copy.documentType = documentType;
+        copy.extension = extension;
+        copy.tags = tags;
+        copy.filename = filename;
+        copy.contentId = contentId;
+        copy.contentLength = contentLength;
+        copy.mimeType = mimeType;
+        copy.contentDigest = contentDigest;
+        copy.contentPath = contentPath;
+        copy.ownerId = ownerId;
+        copy.ownerType = ownerType;
+
+        return copy;
+    }
+
+    /**
+     * Synchronizes the owner reference before the document is written, the owner identifier being only known once the
+     * owner has been persisted.
+     */
+    @PrePersist
+    @PreUpdate
+    protected void synchronizeOwner()
+    {
+        if (owner != null && owner.getId() != null && !(owner instanceof HibernateProxy))
+        {
+            ownerId = owner.getId();
+            ownerType = owner.getEntityType();
+        }
     }
 
     /**
@@ -224,7 +355,7 @@ public class DocumentEntity extends BaseEntity
     {
         try
         {
-            detectMimeType(filename);
+            // The Mime type is sniffed when the content is written into the content store.
             this.filename = FilenameUtils.getName(filename);
             this.extension = FilenameUtils.getExtension(filename);
             content = new FileInputStream(FileHelper.getFile(filename));
@@ -244,7 +375,7 @@ public class DocumentEntity extends BaseEntity
     {
         try
         {
-            detectMimeType(file.getName());
+            // The Mime type is sniffed when the content is written into the content store.
             this.filename = FilenameUtils.getName(file.getName());
             this.extension = FilenameUtils.getExtension(file.getName());
             content = new FileInputStream(FileHelper.getFile(file.getName()));
@@ -265,70 +396,13 @@ public class DocumentEntity extends BaseEntity
     }
 
     /**
-     * Detects the media file {@code Mime} type.
-     * @param filename File name.
-     * @throws DocumentContentException Thrown in case an error occurred while processing the media file.
+     * Guesses the media file {@code Mime} type from its file name (if any), without reading its content.
      */
-    private void detectMimeType(final @NonNull String filename) throws DocumentContentException
+    private void detectMimeType()
     {
-        try
-        {
-            mimeType = new Tika().detect(FileHelper.getFile(filename));
-        }
-        catch (Exception e)
-        {
-            throw new DocumentContentException(e.getMessage());
-        }
-    }
-
-    /**
-     * Detects the media file {@code Mime} type.
-     * @param file File.
-     * @throws DocumentContentException Thrown in case an error occurred while processing the media file.
-     */
-    private void detectMimeType(final @NonNull File file) throws DocumentContentException
-    {
-        try
-        {
-            mimeType = new Tika().detect(file);
-        }
-        catch (Exception e)
-        {
-            throw new DocumentContentException(e.getMessage());
-        }
-    }
-
-    /**
-     * Detects the media file {@code Mime} type.
-     * @param inputStream Input Stream.
-     * @throws DocumentContentException Thrown in case an error occurred while processing the media file.
-     */
-    private void detectMimeType(final @NonNull InputStream inputStream) throws DocumentContentException
-    {
-        try
-        {
-            mimeType = new Tika().detect(inputStream);
-        }
-        catch (Exception e)
-        {
-            throw new DocumentContentException(e.getMessage());
-        }
-    }
-
-    /**
-     * Detects the media file {@code Mime} type.
-     * @param multiPartFile Multi part file.
-     * @throws DocumentContentException Thrown in case an error occurred while processing the media file.
-     */
-    private void detectMimeType(final @NonNull MultipartFile multiPartFile) throws DocumentContentException
-    {
-        try
-        {
-            mimeType = new Tika().detect(multiPartFile.getInputStream());
-        }
-        catch (Exception e)
+        if (filename != null)
         {
-            throw new DocumentContentException(e.getMessage());
+            mimeType = MimeTypeDetector.getInstance().detect(filename);
         }
     }
 
@@ -14,12 +14,17 @@
  */
 package com.hemajoo.commerce.cherry.persistence.model.entity.document;
 
+import com.hemajoo.commerce.cherry.model.entity.base.Base;
 import com.hemajoo.commerce.cherry.model.entity.document.Document;
 import com.hemajoo.commerce.cherry.model.entity.document.DocumentException;
 import com.hemajoo.commerce.cherry.persistence.base.mapper.CycleAvoidingMappingContext;
+import com.hemajoo.commerce.cherry.persistence.model.entity.base.BaseEntity;
+import org.hibernate.Hibernate;
+import org.mapstruct.BeanMapping;
 import org.mapstruct.Context;
 import org.mapstruct.Mapper;
 import org.mapstruct.Mapping;
+import org.mapstruct.Named;
 import org.mapstruct.ReportingPolicy;
 import org.mapstruct.factory.Mappers;
 
@@ -40,12 +45,41 @@ public interface DocumentMapper
 
     /**
      * Converts from a persistent entity to a client entity.
+     * <p>
+     * The documents owned by the entity are not converted: the collection is lazily loaded and converting it would
+     * initialize it (they are browsed by slices instead).
      * @param entity Persistent entity to convert.
      * @param context Context object.
      * @return Converted client entity.
      */
+    @Mapping(target = "owner", source = "owner", qualifiedByName = "fromPersistentOwner")
+    @Mapping(target = "documents", ignore = true)
     Document fromPersistent(DocumentEntity entity, @Context CycleAvoidingMappingContext context);
 
+    /**
+     * Converts the owner of a persistent document to a client entity, only if it has already been loaded (the owner
+     * being lazily loaded).
+     * @param owner Persistent owner entity to convert.
+     * @param context Context object.
+     * @return Converted client entity or null if the owner has not been loaded.
+     */
+    @Named("fromPersistentOwner")
+    default Base fromPersistentOwner(BaseEntity owner, @Context CycleAvoidingMappingContext context)
+    {
+        return owner != null && Hibernate.isInitialized(owner) ? fromPersistentBase(owner, context) : null;
+    }
+
+    /**
+     * Converts from a persistent base entity to a client base entity.
+     * <p>
+     * The documents owned by the entity are not converted (see {@link #fromPersistent}).
+     * @param entity Persistent entity to convert.
+     * @param context Context object.
+     * @return Converted client entity.
+     */
+    @Mapping(target = "documents", ignore = true)
+    Base fromPersistentBase(BaseEntity entity, @Context CycleAvoidingMappingContext context);
+
     /**
      * Converts a list of persistent entities to a list of client entities.
      * @param list List of persistent entities.
@@ -54,6 +88,30 @@ public interface DocumentMapper
      */
     List<Document> fromPersistentList(List<DocumentEntity> list, @Context CycleAvoidingMappingContext context);
 
+    /**
+     * Converts from a document summary to a client entity.
+     * <p>
+     * Only the fields of the summary are set.
+     * @param summary Document summary to convert.
+     * @return Converted client entity.
+     */
+    @BeanMapping(ignoreByDefault = true)
+    @Mapping(target = "id", source = "id")
+    @Mapping(target = "name", source = "name")
+    @Mapping(target = "filename", source = "filename")
+    @Mapping(target = "mimeType", source = "mimeType")
+    @Mapping(target = "contentLength", source = "contentLength")
+    @Mapping(target = "documentType", source = "documentType")
+    @Mapping(target = "createdDate", source = "createdDate")
+    Document fromSummary(DocumentSummary summary);
+
+    /**
+     * Converts a list of document summaries to a list of client entities.
+     * @param list List of document summaries.
+     * @return Converted list of client entities.
+     */
+    List<Document> fromSummaryList(List<DocumentSummary> list);
+
     /**
      * Converts from a client entity to a persistent entity.
      * @param entity Client entity to convert.
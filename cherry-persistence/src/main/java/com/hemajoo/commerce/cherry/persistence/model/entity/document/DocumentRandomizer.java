@@ -14,12 +14,12 @@ package com.hemajoo.commerce.cherry.persistence.model.entity.document;
 import com.hemajoo.commerce.cherry.model.entity.document.Document;
 import com.hemajoo.commerce.cherry.model.entity.document.DocumentContentException;
 import com.hemajoo.commerce.cherry.model.entity.document.DocumentType;
+import com.hemajoo.commerce.cherry.persistence.base.identifier.TimeOrderedUuid;
 import com.hemajoo.commerce.cherry.persistence.base.randomizer.BaseEntityRandomizer;
 import lombok.experimental.UtilityClass;
 import org.ressec.avocado.core.random.EnumRandomGenerator;
 
 import java.util.Random;
-import java.util.UUID;
 
 /**
  * Document generator.
@@ -47,7 +47,7 @@ public final class DocumentRandomizer extends BaseEntityRandomizer
 
         if (withRandomId)
         {
-            entity.setId(UUID.randomUUID());
+            entity.setId(TimeOrderedUuid.generate());
         }
 
         entity.setName(FAKER.name().title());
@@ -76,7 +76,7 @@ public final class DocumentRandomizer extends BaseEntityRandomizer
 
         if (withRandomId)
         {
-            entity.setId(UUID.randomUUID());
+            entity.setId(TimeOrderedUuid.generate());
         }
 
         entity.setName(FAKER.name().title());
@@ -0,0 +1,70 @@
+/*
+ * Copyright(c) 2021 Hemajoo Digital Systems Inc.
+ * --------------------------------------------------------------------------------------
+ * This file is part of Hemajoo Systems Inc. projects which is licensed
+ * under the Apache license version 2 and use is subject to license terms.
+ * You should have received a copy of the license with the project's artifact
+ * binaries and/or sources.
+ *
+ * License can be consulted at http://www.apache.org/licenses/LICENSE-2.0
+ * --------------------------------------------------------------------------------------
+ */
+package com.hemajoo.commerce.cherry.persistence.model.entity.document;
+
+import com.hemajoo.commerce.cherry.model.entity.document.DocumentType;
+
+import java.util.Date;
+import java.util.UUID;
+
+/**
+ * Read-only projection of a document used by the document listings.
+ * <p>
+ * Only the listed columns are selected and the results are not managed by the persistence context (no entity
+ * instance, no dirty checking snapshot).
+ * @author <a href="mailto:christophe.resse@gmail.com">Christophe Resse</a>
+ * @version 1.0.0
+ */
+public interface DocumentSummary
+{
+    /**
+     * Returns the document identifier.
+     * @return Document identifier.
+     */
+    UUID getId();
+
+    /**
+     * Returns the document name.
+     * @return Document name.
+     */
+    String getName();
+
+    /**
+     * Returns the document file name.
+     * @return File name.
+     */
+    String getFilename();
+
+    /**
+     * Returns the document {@code Mime} type.
+     * @return {@code Mime} type.
+     */
+    String getMimeType();
+
+    /**
+     * Returns the document content length.
+     * @return Content length.
+     */
+    long getContentLength();
+
+    /**
+     * Returns the document type.
+     * @return Document type.
+     */
+    DocumentType getDocumentType();
+
+    /**
+     * Returns the document creation date.
+     * @return Creation date.
+     */
+    Date getCreatedDate();
+}
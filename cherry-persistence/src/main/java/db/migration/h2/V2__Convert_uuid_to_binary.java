@@ -0,0 +1,261 @@
+/*
+ * Copyright(c) 2021 Hemajoo Digital Systems Inc.
+ * --------------------------------------------------------------------------------------
+ * This file is part of Hemajoo Systems Inc. projects which is licensed
+ * under the Apache license version 2 and use is subject to license terms.
+ * You should have received a copy of the license with the project's artifact
+ * binaries and/or sources.
+ *
+ * License can be consulted at http://www.apache.org/licenses/LICENSE-2.0
+ * --------------------------------------------------------------------------------------
+ */
+package db.migration.h2;
+
+import com.hemajoo.commerce.cherry.persistence.base.migration.BaseH2Migration;
+
+import java.nio.ByteBuffer;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.*;
+
+/**
+ * Converts the entity identifiers, and the columns referencing them, from 36 characters strings ({@code uuid-char}) to
+ * 16 bytes binaries ({@code uuid-binary}).
+ * <p>
+ * The foreign keys are dropped for the duration of the conversion then re-created. The values are not converted by a
+ * cast of the column (which would depend on the implicit string to binary conversion of the {@code H2} version) but
+ * explicitly: each {@code UUID} is parsed and written, as its 16 bytes, into a new binary column which then replaces
+ * the string column (its primary key and indexes being re-created).
+ * @author <a href="mailto:christophe.resse@gmail.com">Christophe Resse</a>
+ * @version 1.0.0
+ */
+public class V2__Convert_uuid_to_binary extends BaseH2Migration
+{
+    /**
+     * Number of converted values written per batch.
+     */
+    private static final int BATCH_SIZE = 500;
+
+    /**
+     * Tables and columns to convert.
+     */
+    private static final String[][] COLUMNS = {
+            { "ENTITY", "ID" },
+            { "DOCUMENT", "ID" },
+            { "DOCUMENT", "OWNER_ID" },
+            { "ENTITY_DOCUMENTS", "BASE_ENTITY_ID" },
+            { "ENTITY_DOCUMENTS", "DOCUMENTS_ID" }
+    };
+
+    @Override
+    protected void migrate(final Connection connection, final String schema) throws SQLException
+    {
+        List<String[]> columns = new ArrayList<>();
+        for (String[] column : COLUMNS)
+        {
+            String type = getColumnType(connection, schema, column[0], column[1]);
+            if (type != null && type.contains("CHAR"))
+            {
+                columns.add(column);
+            }
+        }
+
+        if (columns.isEmpty())
+        {
+            return; // Nothing to convert (tables not yet created or already converted)!
+        }
+
+        List<String[]> foreignKeys = getForeignKeys(connection, schema);
+        for (String[] foreignKey : foreignKeys)
+        {
+            execute(connection, String.format("ALTER TABLE %s.%s DROP CONSTRAINT %s", schema, foreignKey[0], foreignKey[4]));
+        }
+
+        for (String[] column : columns)
+        {
+            convert(connection, schema, column[0], column[1]);
+        }
+
+        for (String[] foreignKey : foreignKeys)
+        {
+            execute(connection, String.format("ALTER TABLE %s.%s ADD CONSTRAINT %s FOREIGN KEY (%s) REFERENCES %s.%s (%s)",
+                    schema, foreignKey[0], foreignKey[4], foreignKey[1], schema, foreignKey[2], foreignKey[3]));
+        }
+    }
+
+    /**
+     * Converts a column from {@code UUID} strings to {@code UUID} binaries.
+     * @param connection Database connection.
+     * @param schema Schema name.
+     * @param table Table name.
+     * @param column Column name.
+     * @throws SQLException Thrown in case an error occurred while converting the column.
+     */
+    private void convert(final Connection connection, final String schema, final String table, final String column) throws SQLException
+    {
+        String binary = column + "_BINARY";
+        List<String> primaryKey = getPrimaryKey(connection, schema, table);
+        Map<String, Index> indexes = getIndexes(connection, schema, table, column);
+
+        execute(connection, String.format("ALTER TABLE %s.%s ADD COLUMN %s BINARY(16)", schema, table, binary));
+
+        try (Statement select = connection.createStatement();
+             ResultSet values = select.executeQuery(String.format("SELECT DISTINCT %s FROM %s.%s WHERE %s IS NOT NULL", column, schema, table, column));
+             PreparedStatement update = connection.prepareStatement(String.format("UPDATE %s.%s SET %s = ? WHERE %s = ?", schema, table, binary, column)))
+        {
+            int count = 0;
+            while (values.next())
+            {
+                String value = values.getString(1);
+                update.setBytes(1, toBytes(UUID.fromString(value)));
+                update.setString(2, value);
+                update.addBatch();
+                if (++count % BATCH_SIZE == 0)
+                {
+                    update.executeBatch();
+                }
+            }
+            update.executeBatch();
+        }
+
+        boolean key = primaryKey.contains(column);
+        if (key)
+        {
+            execute(connection, String.format("ALTER TABLE %s.%s DROP PRIMARY KEY", schema, table));
+        }
+        for (String index : indexes.keySet())
+        {
+            execute(connection, String.format("DROP INDEX IF EXISTS %s.%s", schema, index));
+        }
+
+        execute(connection, String.format("ALTER TABLE %s.%s DROP COLUMN %s", schema, table, column));
+        execute(connection, String.format("ALTER TABLE %s.%s ALTER COLUMN %s RENAME TO %s", schema, table, binary, column));
+
+        if (key)
+        {
+            execute(connection, String.format("ALTER TABLE %s.%s ALTER COLUMN %s SET NOT NULL", schema, table, column));
+            execute(connection, String.format("ALTER TABLE %s.%s ADD PRIMARY KEY (%s)", schema, table, String.join(", ", primaryKey)));
+        }
+        for (Map.Entry<String, Index> index : indexes.entrySet())
+        {
+            execute(connection, String.format("CREATE %sINDEX %s.%s ON %s.%s (%s)",
+                    index.getValue().unique ? "UNIQUE " : "", schema, index.getKey(), schema, table, String.join(", ", index.getValue().columns)));
+        }
+    }
+
+    /**
+     * Returns the binary representation (16 bytes, most significant first) of a {@code UUID}.
+     * @param uuid {@code UUID}.
+     * @return Binary representation.
+     */
+    private static byte[] toBytes(final UUID uuid)
+    {
+        return ByteBuffer.allocate(16)
+                .putLong(uuid.getMostSignificantBits())
+                .putLong(uuid.getLeastSignificantBits())
+                .array();
+    }
+
+    /**
+     * Returns the columns of the primary key of a table.
+     * @param connection Database connection.
+     * @param schema Schema name.
+     * @param table Table name.
+     * @return Column names, in their order in the key (empty if the table has no primary key).
+     * @throws SQLException Thrown in case an error occurred while accessing the database.
+     */
+    private List<String> getPrimaryKey(final Connection connection, final String schema, final String table) throws SQLException
+    {
+        SortedMap<Short, String> columns = new TreeMap<>();
+
+        try (ResultSet result = connection.getMetaData().getPrimaryKeys(null, schema, table))
+        {
+            while (result.next())
+            {
+                columns.put(result.getShort("KEY_SEQ"), result.getString("COLUMN_NAME"));
+            }
+        }
+
+        return new ArrayList<>(columns.values());
+    }
+
+    /**
+     * Returns the indexes (other than the primary key) of a table involving a column.
+     * @param connection Database connection.
+     * @param schema Schema name.
+     * @param table Table name.
+     * @param column Column name.
+     * @return Indexes keyed by name.
+     * @throws SQLException Thrown in case an error occurred while accessing the database.
+     */
+    private Map<String, Index> getIndexes(final Connection connection, final String schema, final String table, final String column) throws SQLException
+    {
+        Map<String, Index> indexes = new LinkedHashMap<>();
+
+        try (ResultSet result = connection.getMetaData().getIndexInfo(null, schema, table, false, false))
+        {
+            while (result.next())
+            {
+                String name = result.getString("INDEX_NAME");
+                if (name != null && !name.startsWith("PRIMARY_KEY"))
+                {
+                    indexes.computeIfAbsent(name, key -> new Index()).unique = !result.getBoolean("NON_UNIQUE");
+                    indexes.get(name).columns.add(result.getString("COLUMN_NAME"));
+                }
+            }
+        }
+
+        indexes.values().removeIf(index -> !index.columns.contains(column));
+
+        return indexes;
+    }
+
+    /**
+     * Index of a table.
+     */
+    private static final class Index
+    {
+        /**
+         * Is the index unique?
+         */
+        private boolean unique;
+
+        /**
+         * Indexed columns, in their order in the index.
+         */
+        private final List<String> columns = new ArrayList<>();
+    }
+
+    /**
+     * Returns the foreign keys defined on the tables to convert.
+     * @param connection Database connection.
+     * @param schema Schema name.
+     * @return List of foreign keys as: table, column, referenced table, referenced column, constraint name.
+     * @throws SQLException Thrown in case an error occurred while accessing the database.
+     */
+    private List<String[]> getForeignKeys(final Connection connection, final String schema) throws SQLException
+    {
+        List<String[]> foreignKeys = new ArrayList<>();
+
+        for (String table : new String[] { "DOCUMENT", "ENTITY_DOCUMENTS" })
+        {
+            try (ResultSet result = connection.getMetaData().getImportedKeys(null, schema, table))
+            {
+                while (result.next())
+                {
+                    foreignKeys.add(new String[] {
+                            result.getString("FKTABLE_NAME"),
+                            result.getString("FKCOLUMN_NAME"),
+                            result.getString("PKTABLE_NAME"),
+                            result.getString("PKCOLUMN_NAME"),
+                            result.getString("FK_NAME") });
+                }
+            }
+        }
+
+        return foreignKeys;
+    }
+}
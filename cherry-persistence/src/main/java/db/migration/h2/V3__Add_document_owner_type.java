@@ -0,0 +1,71 @@
+/*
+ * Copyright(c) 2021 Hemajoo Digital Systems Inc.
+ * --------------------------------------------------------------------------------------
+ * This file is part of Hemajoo Systems Inc. projects which is licensed
+ * under the Apache license version 2 and use is subject to license terms.
+ * You should have received a copy of the license with the project's artifact
+ * binaries and/or sources.
+ *
+ * License can be consulted at http://www.apache.org/licenses/LICENSE-2.0
+ * --------------------------------------------------------------------------------------
+ */
+package db.migration.h2;
+
+import com.hemajoo.commerce.cherry.persistence.base.migration.BaseH2Migration;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Adds the entity type of the document owners ({@code OWNER_TYPE} column) so the owners can be resolved with a direct
+ * lookup in the table of their entity type.
+ * <p>
+ * The column is back-filled from the {@code ENTITY_TYPE} column of each entity table and the foreign key on the
+ * {@code OWNER_ID} column (which can only reference one table) is dropped. Owners not found keep a null entity type
+ * and are resolved with a polymorphic query.
+ * @author <a href="mailto:christophe.resse@gmail.com">Christophe Resse</a>
+ * @version 1.0.0
+ */
+public class V3__Add_document_owner_type extends BaseH2Migration
+{
+    @Override
+    protected void migrate(final Connection connection, final String schema) throws SQLException
+    {
+        if (!tableExists(connection, schema, "DOCUMENT"))
+        {
+            return; // Table will be created with the column by Hibernate!
+        }
+
+        if (getColumnType(connection, schema, "DOCUMENT", "OWNER_TYPE") == null)
+        {
+            execute(connection, String.format("ALTER TABLE %s.DOCUMENT ADD COLUMN OWNER_TYPE VARCHAR(50)", schema));
+        }
+
+        try (ResultSet result = connection.getMetaData().getImportedKeys(null, schema, "DOCUMENT"))
+        {
+            List<String> foreignKeys = new ArrayList<>();
+            while (result.next())
+            {
+                if ("OWNER_ID".equals(result.getString("FKCOLUMN_NAME")))
+                {
+                    foreignKeys.add(result.getString("FK_NAME"));
+                }
+            }
+
+            for (String foreignKey : foreignKeys)
+            {
+                execute(connection, String.format("ALTER TABLE %s.DOCUMENT DROP CONSTRAINT %s", schema, foreignKey));
+            }
+        }
+
+        for (String table : getEntityTableNames(connection, schema))
+        {
+            execute(connection, String.format(
+                    "UPDATE %1$s.DOCUMENT D SET OWNER_TYPE = (SELECT E.ENTITY_TYPE FROM %1$s.%2$s E WHERE E.ID = D.OWNER_ID) "
+                            + "WHERE D.OWNER_TYPE IS NULL AND D.OWNER_ID IN (SELECT ID FROM %1$s.%2$s)", schema, table));
+        }
+    }
+}
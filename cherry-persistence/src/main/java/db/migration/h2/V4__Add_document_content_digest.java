@@ -0,0 +1,42 @@
+/*
+ * Copyright(c) 2021 Hemajoo Digital Systems Inc.
+ * --------------------------------------------------------------------------------------
+ * This file is part of Hemajoo Systems Inc. projects which is licensed
+ * under the Apache license version 2 and use is subject to license terms.
+ * You should have received a copy of the license with the project's artifact
+ * binaries and/or sources.
+ *
+ * License can be consulted at http://www.apache.org/licenses/LICENSE-2.0
+ * --------------------------------------------------------------------------------------
+ */
+package db.migration.h2;
+
+import com.hemajoo.commerce.cherry.persistence.base.migration.BaseH2Migration;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Adds the digest of the document contents ({@code CONTENT_DIGEST} column), computed when the contents are written and
+ * used to verify their integrity when read.
+ * <p>
+ * The existing documents keep a null digest, their contents are not verified.
+ * @author <a href="mailto:christophe.resse@gmail.com">Christophe Resse</a>
+ * @version 1.0.0
+ */
+public class V4__Add_document_content_digest extends BaseH2Migration
+{
+    @Override
+    protected void migrate(final Connection connection, final String schema) throws SQLException
+    {
+        if (!tableExists(connection, schema, "DOCUMENT"))
+        {
+            return; // Table will be created with the column by Hibernate!
+        }
+
+        if (getColumnType(connection, schema, "DOCUMENT", "CONTENT_DIGEST") == null)
+        {
+            execute(connection, String.format("ALTER TABLE %s.DOCUMENT ADD COLUMN CONTENT_DIGEST VARCHAR(64)", schema));
+        }
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright(c) 2021 Hemajoo Digital Systems Inc.
+ * --------------------------------------------------------------------------------------
+ * This file is part of Hemajoo Systems Inc. projects which is licensed
+ * under the Apache license version 2 and use is subject to license terms.
+ * You should have received a copy of the license with the project's artifact
+ * binaries and/or sources.
+ *
+ * License can be consulted at http://www.apache.org/licenses/LICENSE-2.0
+ * --------------------------------------------------------------------------------------
+ */
+package db.migration.h2;
+
+import com.hemajoo.commerce.cherry.persistence.base.migration.BaseH2Migration;
+import com.hemajoo.commerce.cherry.persistence.model.entity.document.DocumentEntity;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Adds the indexes of the document table:
+ * <ul>
+ * <li>{@code (OWNER_ID, CREATED_DATE, ID)} serving the lookups of the documents of an owner, ordered by creation date
+ * (the identifier making the order total),</li>
+ * <li>{@code (DOCUMENT_TYPE, STATUS_TYPE)} serving the filters on the document type and status.</li>
+ * </ul>
+ * @author <a href="mailto:christophe.resse@gmail.com">Christophe Resse</a>
+ * @version 1.0.0
+ */
+public class V5__Add_document_indexes extends BaseH2Migration
+{
+    @Override
+    protected void migrate(final Connection connection, final String schema) throws SQLException
+    {
+        if (!tableExists(connection, schema, "DOCUMENT"))
+        {
+            return; // Table will be created with the indexes by Hibernate!
+        }
+
+        execute(connection, String.format("CREATE INDEX IF NOT EXISTS %1$s.%2$s ON %1$s.DOCUMENT (OWNER_ID, CREATED_DATE, ID)", schema, DocumentEntity.INDEX_OWNER));
+        execute(connection, String.format("CREATE INDEX IF NOT EXISTS %1$s.%2$s ON %1$s.DOCUMENT (DOCUMENT_TYPE, STATUS_TYPE)", schema, DocumentEntity.INDEX_TYPE_STATUS));
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright(c) 2021 Hemajoo Digital Systems Inc.
+ * --------------------------------------------------------------------------------------
+ * This file is part of Hemajoo Systems Inc. projects which is licensed
+ * under the Apache license version 2 and use is subject to license terms.
+ * You should have received a copy of the license with the project's artifact
+ * binaries and/or sources.
+ *
+ * License can be consulted at http://www.apache.org/licenses/LICENSE-2.0
+ * --------------------------------------------------------------------------------------
+ */
+package db.migration.h2;
+
+import com.hemajoo.commerce.cherry.persistence.base.migration.BaseH2Migration;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Drops the {@code ENTITY_DOCUMENTS} join table, the documents of an entity being now mapped by the owner of the
+ * documents ({@code OWNER_ID} column of the document table).
+ * <p>
+ * The documents only referenced by the join table get their owner identifier back-filled from it beforehand, their
+ * owner entity type is left null so their owner is resolved with a polymorphic query.
+ * @author <a href="mailto:christophe.resse@gmail.com">Christophe Resse</a>
+ * @version 1.0.0
+ */
+public class V6__Drop_entity_documents extends BaseH2Migration
+{
+    @Override
+    protected void migrate(final Connection connection, final String schema) throws SQLException
+    {
+        if (!tableExists(connection, schema, "ENTITY_DOCUMENTS"))
+        {
+            return;
+        }
+
+        if (tableExists(connection, schema, "DOCUMENT"))
+        {
+            execute(connection, String.format(
+                    "UPDATE %1$s.DOCUMENT D SET OWNER_ID = (SELECT MIN(J.BASE_ENTITY_ID) FROM %1$s.ENTITY_DOCUMENTS J WHERE J.DOCUMENTS_ID = D.ID) "
+                            + "WHERE D.OWNER_ID IS NULL AND D.ID IN (SELECT DOCUMENTS_ID FROM %1$s.ENTITY_DOCUMENTS)", schema));
+        }
+
+        execute(connection, String.format("DROP TABLE %s.ENTITY_DOCUMENTS", schema));
+    }
+}
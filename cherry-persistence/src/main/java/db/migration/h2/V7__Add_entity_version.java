@@ -0,0 +1,41 @@
+/*
+ * Copyright(c) 2021 Hemajoo Digital Systems Inc.
+ * --------------------------------------------------------------------------------------
+ * This file is part of Hemajoo Systems Inc. projects which is licensed
+ * under the Apache license version 2 and use is subject to license terms.
+ * You should have received a copy of the license with the project's artifact
+ * binaries and/or sources.
+ *
+ * License can be consulted at http://www.apache.org/licenses/LICENSE-2.0
+ * --------------------------------------------------------------------------------------
+ */
+package db.migration.h2;
+
+import com.hemajoo.commerce.cherry.persistence.base.migration.BaseH2Migration;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Adds the version of the entities ({@code VERSION} column of each entity table) used for the optimistic locking.
+ * <p>
+ * The existing rows start at version 0: a null version would make the entities look new (never saved) once read.
+ * @author <a href="mailto:christophe.resse@gmail.com">Christophe Resse</a>
+ * @version 1.0.0
+ */
+public class V7__Add_entity_version extends BaseH2Migration
+{
+    @Override
+    protected void migrate(final Connection connection, final String schema) throws SQLException
+    {
+        for (String table : getEntityTableNames(connection, schema))
+        {
+            if (getColumnType(connection, schema, table, "VERSION") == null)
+            {
+                execute(connection, String.format("ALTER TABLE %s.%s ADD COLUMN VERSION BIGINT", schema, table));
+            }
+
+            execute(connection, String.format("UPDATE %s.%s SET VERSION = 0 WHERE VERSION IS NULL", schema, table));
+        }
+    }
+}
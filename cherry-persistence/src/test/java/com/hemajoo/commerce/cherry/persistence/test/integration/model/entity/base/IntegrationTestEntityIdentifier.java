@@ -0,0 +1,138 @@
+/*
+ * Copyright(c) 2021 Hemajoo Digital Systems Inc.
+ * --------------------------------------------------------------------------------------
+ * This file is part of Hemajoo Systems Inc. projects which is licensed
+ * under the Apache license version 2 and use is subject to license terms.
+ * You should have received a copy of the license with the project's artifact
+ * binaries and/or sources.
+ *
+ * License can be consulted at http://www.apache.org/licenses/LICENSE-2.0
+ * --------------------------------------------------------------------------------------
+ */
+package com.hemajoo.commerce.cherry.persistence.test.integration.model.entity.base;
+
+import com.hemajoo.commerce.cherry.persistence.base.identifier.TimeOrderedUuid;
+import com.hemajoo.commerce.cherry.persistence.test.integration.SpringCherryForIntegrationTest;
+import com.hemajoo.commerce.cherry.persistence.test.integration.configuration.PersistenceConfigurationForIntegrationTest;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.ressec.avocado.core.junit.BaseUnitTest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class comparing the insert rate of the entity identifier generation strategies.
+ * <p>
+ * Excluded from the default test runs, run with the {@code benchmark} profile.
+ * @author <a href="mailto:christophe.resse@gmail.com">Christophe Resse</a>
+ * @version 1.0.0
+ */
+@Tag("benchmark")
+@SpringBootTest(classes = SpringCherryForIntegrationTest.class)
+@ActiveProfiles("test") // Will search for: application-test.properties
+@ExtendWith(SpringExtension.class)
+@Import(value = {PersistenceConfigurationForIntegrationTest.class})
+@DisplayName("Test entity identifier generation strategies")
+@Slf4j
+class IntegrationTestEntityIdentifier extends BaseUnitTest
+{
+    /**
+     * Number of rows inserted per strategy.
+     */
+    private static final int INSERT_COUNT = 50_000;
+
+    /**
+     * Number of rows inserted per batch.
+     */
+    private static final int BATCH_SIZE = 500;
+
+    /**
+     * JDBC template.
+     */
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * Database schema used for the tests.
+     */
+    @Value("${spring.jpa.properties.hibernate.default_schema}")
+    private String schema;
+
+    @Test
+    @DisplayName("Compare the insert rate of random and time-ordered identifiers")
+    final void testInsertRate()
+    {
+        long randomTime = insert("RANDOM", UUID::randomUUID);
+        long timeOrderedTime = insert("TIME_ORDERED", TimeOrderedUuid::generate);
+
+        log.info("Inserted {} rows with binary primary keys: random: {} rows/s, time-ordered: {} rows/s",
+                INSERT_COUNT, INSERT_COUNT * 1_000_000_000L / randomTime, INSERT_COUNT * 1_000_000_000L / timeOrderedTime);
+    }
+
+    /**
+     * Inserts rows in a scratch table using the given identifier generator.
+     * @param name Name of the generation strategy.
+     * @param generator Identifier generator.
+     * @return Insertion time in nanoseconds.
+     */
+    private long insert(final String name, final Supplier<UUID> generator)
+    {
+        String table = String.format("%s.IDENTIFIER_%s", schema, name);
+        jdbcTemplate.execute(String.format("DROP TABLE IF EXISTS %s", table));
+        jdbcTemplate.execute(String.format("CREATE TABLE %s (ID BINARY(16) PRIMARY KEY, NAME VARCHAR(50))", table));
+
+        try
+        {
+            long start = System.nanoTime();
+            for (int i = 0; i < INSERT_COUNT; i += BATCH_SIZE)
+            {
+                List<Object[]> rows = new ArrayList<>(BATCH_SIZE);
+                for (int j = 0; j < BATCH_SIZE; j++)
+                {
+                    rows.add(new Object[] { toBytes(generator.get()), name });
+                }
+                jdbcTemplate.batchUpdate(String.format("INSERT INTO %s (ID, NAME) VALUES (?, ?)", table), rows);
+            }
+            long time = System.nanoTime() - start;
+
+            assertThat(jdbcTemplate.queryForObject(String.format("SELECT COUNT(*) FROM %s", table), Long.class))
+                    .as(String.format("%s rows should have been inserted!", INSERT_COUNT))
+                    .isEqualTo(INSERT_COUNT);
+
+            return time;
+        }
+        finally
+        {
+            jdbcTemplate.execute(String.format("DROP TABLE IF EXISTS %s", table));
+        }
+    }
+
+    /**
+     * Converts a {@code UUID} to its binary representation (as stored by {@code Hibernate}).
+     * @param uuid {@code UUID}.
+     * @return Binary representation.
+     */
+    private static byte[] toBytes(final UUID uuid)
+    {
+        return ByteBuffer.allocate(16)
+                .putLong(uuid.getMostSignificantBits())
+                .putLong(uuid.getLeastSignificantBits())
+                .array();
+    }
+}
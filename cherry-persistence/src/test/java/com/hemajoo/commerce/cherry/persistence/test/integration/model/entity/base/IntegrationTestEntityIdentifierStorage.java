@@ -0,0 +1,210 @@
+/*
+ * Copyright(c) 2021 Hemajoo Digital Systems Inc.
+ * --------------------------------------------------------------------------------------
+ * This file is part of Hemajoo Systems Inc. projects which is licensed
+ * under the Apache license version 2 and use is subject to license terms.
+ * You should have received a copy of the license with the project's artifact
+ * binaries and/or sources.
+ *
+ * License can be consulted at http://www.apache.org/licenses/LICENSE-2.0
+ * --------------------------------------------------------------------------------------
+ */
+package com.hemajoo.commerce.cherry.persistence.test.integration.model.entity.base;
+
+import com.hemajoo.commerce.cherry.persistence.test.integration.SpringCherryForIntegrationTest;
+import com.hemajoo.commerce.cherry.persistence.test.integration.configuration.PersistenceConfigurationForIntegrationTest;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.ressec.avocado.core.junit.BaseUnitTest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Benchmark comparing the storage of the entity identifiers as strings ({@code uuid-char}, before) and as binaries
+ * ({@code uuid-binary}, after): disk space of the tables and their indexes, lookup by identifier ({@code findById})
+ * and lookup by owner ({@code findByOwnerId}).
+ * <p>
+ * Excluded from the default test runs, run with the {@code benchmark} profile.
+ * @author <a href="mailto:christophe.resse@gmail.com">Christophe Resse</a>
+ * @version 1.0.0
+ */
+@Tag("benchmark")
+@SpringBootTest(classes = SpringCherryForIntegrationTest.class)
+@ActiveProfiles("test") // Will search for: application-test.properties
+@ExtendWith(SpringExtension.class)
+@Import(value = {PersistenceConfigurationForIntegrationTest.class})
+@DisplayName("Benchmark the storage of the entity identifiers")
+@Slf4j
+class IntegrationTestEntityIdentifierStorage extends BaseUnitTest
+{
+    /**
+     * Number of rows inserted per storage mode.
+     */
+    private static final int ROW_COUNT = 50_000;
+
+    /**
+     * Number of owners the rows are spread over.
+     */
+    private static final int OWNER_COUNT = 500;
+
+    /**
+     * Number of lookups per storage mode.
+     */
+    private static final int LOOKUP_COUNT = 10_000;
+
+    /**
+     * Number of rows inserted per batch.
+     */
+    private static final int BATCH_SIZE = 500;
+
+    /**
+     * JDBC template.
+     */
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * Database schema used for the tests.
+     */
+    @Value("${spring.jpa.properties.hibernate.default_schema}")
+    private String schema;
+
+    @Test
+    @DisplayName("Compare the storage and lookups of string and binary identifiers")
+    final void testCompareStorage()
+    {
+        List<UUID> ids = new ArrayList<>(ROW_COUNT);
+        List<UUID> owners = new ArrayList<>(OWNER_COUNT);
+        for (int i = 0; i < OWNER_COUNT; i++)
+        {
+            owners.add(UUID.randomUUID());
+        }
+        for (int i = 0; i < ROW_COUNT; i++)
+        {
+            ids.add(UUID.randomUUID());
+        }
+
+        Result before = measure("CHAR", "VARCHAR(36)", UUID::toString, ids, owners);
+        Result after = measure("BINARY", "BINARY(16)", IntegrationTestEntityIdentifierStorage::toBytes, ids, owners);
+
+        log.info("{} rows, {} owners: disk space: {} KB (uuid-char) -> {} KB (uuid-binary), {}%",
+                ROW_COUNT, OWNER_COUNT, before.space / 1024, after.space / 1024, after.space * 100 / before.space);
+        log.info("{} lookups by identifier: {} us (uuid-char) -> {} us (uuid-binary) per lookup",
+                LOOKUP_COUNT, before.idTime / LOOKUP_COUNT / 1000.0, after.idTime / LOOKUP_COUNT / 1000.0);
+        log.info("{} lookups by owner: {} us (uuid-char) -> {} us (uuid-binary) per lookup",
+                LOOKUP_COUNT, before.ownerTime / LOOKUP_COUNT / 1000.0, after.ownerTime / LOOKUP_COUNT / 1000.0);
+
+        assertThat(after.space)
+                .as("Binary identifiers should use less disk space than string identifiers!")
+                .isLessThan(before.space);
+    }
+
+    /**
+     * Creates a scratch table (primary key and owner index) using the given identifier storage, fills it then measures
+     * its disk space and lookups.
+     * @param name Name of the storage mode.
+     * @param type Column type of the identifiers.
+     * @param converter Identifier converter to the column value.
+     * @param ids Row identifiers.
+     * @param owners Owner identifiers.
+     * @return Measures.
+     */
+    private Result measure(final String name, final String type, final Function<UUID, Object> converter, final List<UUID> ids, final List<UUID> owners)
+    {
+        String table = String.format("%s.IDENTIFIER_STORAGE_%s", schema, name);
+        jdbcTemplate.execute(String.format("DROP TABLE IF EXISTS %s", table));
+        jdbcTemplate.execute(String.format("CREATE TABLE %s (ID %s PRIMARY KEY, OWNER_ID %s, NAME VARCHAR(50))", table, type, type));
+        jdbcTemplate.execute(String.format("CREATE INDEX %s_OWNER ON %s (OWNER_ID)", table, table));
+
+        try
+        {
+            for (int i = 0; i < ROW_COUNT; i += BATCH_SIZE)
+            {
+                List<Object[]> rows = new ArrayList<>(BATCH_SIZE);
+                for (int j = i; j < Math.min(i + BATCH_SIZE, ROW_COUNT); j++)
+                {
+                    rows.add(new Object[] { converter.apply(ids.get(j)), converter.apply(owners.get(j % OWNER_COUNT)), name });
+                }
+                jdbcTemplate.batchUpdate(String.format("INSERT INTO %s (ID, OWNER_ID, NAME) VALUES (?, ?, ?)", table), rows);
+            }
+
+            Result result = new Result();
+            result.space = jdbcTemplate.queryForObject("SELECT DISK_SPACE_USED(?)", Long.class, table);
+
+            // Same pseudo random sequence of lookups for both storage modes.
+            Random random = new Random(ROW_COUNT);
+            long start = System.nanoTime();
+            for (int i = 0; i < LOOKUP_COUNT; i++)
+            {
+                jdbcTemplate.queryForObject(String.format("SELECT NAME FROM %s WHERE ID = ?", table), String.class, converter.apply(ids.get(random.nextInt(ROW_COUNT))));
+            }
+            result.idTime = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int i = 0; i < LOOKUP_COUNT; i++)
+            {
+                assertThat(jdbcTemplate.queryForList(String.format("SELECT ID FROM %s WHERE OWNER_ID = ?", table), converter.apply(owners.get(random.nextInt(OWNER_COUNT)))))
+                        .as("Rows of the owner should have been found!")
+                        .hasSize(ROW_COUNT / OWNER_COUNT);
+            }
+            result.ownerTime = System.nanoTime() - start;
+
+            return result;
+        }
+        finally
+        {
+            jdbcTemplate.execute(String.format("DROP TABLE IF EXISTS %s", table));
+        }
+    }
+
+    /**
+     * Converts a {@code UUID} to its binary representation (as stored by {@code Hibernate}).
+     * @param uuid {@code UUID}.
+     * @return Binary representation.
+     */
+    private static byte[] toBytes(final UUID uuid)
+    {
+        return ByteBuffer.allocate(16)
+                .putLong(uuid.getMostSignificantBits())
+                .putLong(uuid.getLeastSignificantBits())
+                .array();
+    }
+
+    /**
+     * Measures of a storage mode.
+     */
+    private static final class Result
+    {
+        /**
+         * Disk space (in bytes) used by the table and its indexes.
+         */
+        private long space;
+
+        /**
+         * Time (in nanoseconds) of the lookups by identifier.
+         */
+        private long idTime;
+
+        /**
+         * Time (in nanoseconds) of the lookups by owner.
+         */
+        private long ownerTime;
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright(c) 2021 Hemajoo Digital Systems Inc.
+ * --------------------------------------------------------------------------------------
+ * This file is part of Hemajoo Systems Inc. projects which is licensed
+ * under the Apache license version 2 and use is subject to license terms.
+ * You should have received a copy of the license with the project's artifact
+ * binaries and/or sources.
+ *
+ * License can be consulted at http://www.apache.org/licenses/LICENSE-2.0
+ * --------------------------------------------------------------------------------------
+ */
+package com.hemajoo.commerce.cherry.persistence.test.integration.model.entity.document;
+
+import com.hemajoo.commerce.cherry.model.entity.document.DocumentContentException;
+import com.hemajoo.commerce.cherry.model.entity.document.DocumentException;
+import com.hemajoo.commerce.cherry.persistence.content.DocumentRepository;
+import com.hemajoo.commerce.cherry.persistence.content.DocumentService;
+import com.hemajoo.commerce.cherry.persistence.model.entity.document.DocumentEntity;
+import com.hemajoo.commerce.cherry.persistence.model.entity.document.DocumentRandomizer;
+import com.hemajoo.commerce.cherry.persistence.test.integration.SpringCherryForIntegrationTest;
+import com.hemajoo.commerce.cherry.persistence.test.integration.configuration.PersistenceConfigurationForIntegrationTest;
+import org.hibernate.Hibernate;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.ressec.avocado.core.junit.BaseUnitTest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test of the {@code Hibernate} second level cache, only enabled for this test class.
+ * <p>
+ * Not transactional: each read runs in its own persistence context, as it would for separate requests.
+ * @author <a href="mailto:christophe.resse@gmail.com">Christophe Resse</a>
+ * @version 1.0.0
+ */
+@SpringBootTest(classes = SpringCherryForIntegrationTest.class)
+@ActiveProfiles("test") // Will search for: application-test.properties
+@ExtendWith(SpringExtension.class)
+@Import(value = {PersistenceConfigurationForIntegrationTest.class})
+@TestPropertySource(properties = "hemajoo.commerce.cherry.cache.second-level.enabled=true")
+@DisplayName("Test the second level cache of the documents")
+class IntegrationTestDocumentCache extends BaseUnitTest
+{
+    /**
+     * Document persistence service.
+     */
+    @Autowired
+    private DocumentService documentService;
+
+    /**
+     * Document repository.
+     */
+    @Autowired
+    private DocumentRepository documentRepository;
+
+    /**
+     * Entity manager factory.
+     */
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    @DisplayName("Read a document again without any SQL statement")
+    final void testReadDocumentFromCache() throws DocumentContentException, DocumentException
+    {
+        UUID id = documentService.save(DocumentRandomizer.generatePersistent(false)).getId();
+        find(id); // Puts the document in the cache if not already done by its insertion.
+
+        Statistics statistics = getStatistics();
+        statistics.clear();
+
+        assertThat(find(id))
+                .as("Document should be found!")
+                .isNotNull();
+        assertThat(statistics.getPrepareStatementCount())
+                .as("Document should have been read from the cache!")
+                .isZero();
+        assertThat(statistics.getSecondLevelCacheHitCount())
+                .as("Document should have been found in the cache!")
+                .isPositive();
+    }
+
+    @Test
+    @DisplayName("Resolve the owner of a document again without any SQL statement")
+    final void testReadOwnerFromCache() throws DocumentContentException, DocumentException
+    {
+        DocumentEntity owner = documentService.save(DocumentRandomizer.generatePersistent(false));
+        DocumentEntity document = DocumentRandomizer.generatePersistent(false);
+        document.setOwner(owner);
+        UUID id = documentService.save(document).getId();
+        findWithOwner(id); // Puts the document and its owner in the cache if not already done by their insertion.
+
+        Statistics statistics = getStatistics();
+        statistics.clear();
+
+        assertThat(findWithOwner(id).getOwner().getId())
+                .as("Owner of the document should be found!")
+                .isEqualTo(owner.getId());
+        assertThat(statistics.getPrepareStatementCount())
+                .as("Document and its owner should have been read from the cache!")
+                .isZero();
+        assertThat(statistics.getSecondLevelCacheHitCount())
+                .as("Document and its owner should have been found in the cache!")
+                .isGreaterThanOrEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Look up the documents of an owner again without any SQL statement")
+    final void testLookupDocumentsOfOwnerFromCache() throws DocumentContentException, DocumentException
+    {
+        DocumentEntity owner = documentService.save(DocumentRandomizer.generatePersistent(false));
+        for (int i = 0; i < 3; i++)
+        {
+            DocumentEntity document = DocumentRandomizer.generatePersistent(false);
+            document.setOwner(owner);
+            documentService.save(document);
+        }
+
+        documentRepository.findByOwnerId(owner.getId()); // Caches the result (and the documents).
+
+        Statistics statistics = getStatistics();
+        statistics.clear();
+
+        assertThat(documentRepository.findByOwnerId(owner.getId()))
+                .as("Owner should have 3 documents!")
+                .hasSize(3);
+        assertThat(statistics.getPrepareStatementCount())
+                .as("Documents of the owner should have been read from the cache!")
+                .isZero();
+        assertThat(statistics.getQueryCacheHitCount())
+                .as("Lookup should have been found in the query cache!")
+                .isEqualTo(1);
+    }
+
+    /**
+     * Finds a document in a new persistence context.
+     * @param id Document identifier.
+     * @return Document or null if not found.
+     */
+    private DocumentEntity find(final UUID id)
+    {
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        try
+        {
+            return entityManager.find(DocumentEntity.class, id);
+        }
+        finally
+        {
+            entityManager.close();
+        }
+    }
+
+    /**
+     * Finds a document and initializes its owner in a new persistence context.
+     * @param id Document identifier.
+     * @return Document.
+     */
+    private DocumentEntity findWithOwner(final UUID id)
+    {
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        try
+        {
+            DocumentEntity document = entityManager.find(DocumentEntity.class, id);
+            Hibernate.initialize(document.getOwner());
+
+            return document;
+        }
+        finally
+        {
+            entityManager.close();
+        }
+    }
+
+    /**
+     * Returns the {@code Hibernate} statistics.
+     * @return Statistics.
+     */
+    private Statistics getStatistics()
+    {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        assertThat(statistics.isStatisticsEnabled())
+                .as("Statistics should be enabled with the second level cache!")
+                .isTrue();
+
+        return statistics;
+    }
+}
@@ -0,0 +1,222 @@
+/*
+ * Copyright(c) 2021 Hemajoo Digital Systems Inc.
+ * --------------------------------------------------------------------------------------
+ * This file is part of Hemajoo Systems Inc. projects which is licensed
+ * under the Apache license version 2 and use is subject to license terms.
+ * You should have received a copy of the license with the project's artifact
+ * binaries and/or sources.
+ *
+ * License can be consulted at http://www.apache.org/licenses/LICENSE-2.0
+ * --------------------------------------------------------------------------------------
+ */
+package com.hemajoo.commerce.cherry.persistence.test.integration.model.entity.document;
+
+import com.hemajoo.commerce.cherry.commons.exception.ContentStoreException;
+import com.hemajoo.commerce.cherry.model.entity.document.DocumentContentException;
+import com.hemajoo.commerce.cherry.model.entity.document.DocumentException;
+import com.hemajoo.commerce.cherry.persistence.content.DocumentContentCache;
+import com.hemajoo.commerce.cherry.persistence.content.DocumentContentWriter;
+import com.hemajoo.commerce.cherry.persistence.content.DocumentRepository;
+import com.hemajoo.commerce.cherry.persistence.content.DocumentService;
+import com.hemajoo.commerce.cherry.persistence.content.DocumentStoreLayout;
+import com.hemajoo.commerce.cherry.persistence.content.DocumentStoreSweeper;
+import com.hemajoo.commerce.cherry.persistence.content.DocumentUploadStore;
+import com.hemajoo.commerce.cherry.persistence.model.entity.document.DocumentEntity;
+import com.hemajoo.commerce.cherry.persistence.model.entity.document.DocumentRandomizer;
+import com.hemajoo.commerce.cherry.persistence.test.integration.SpringCherryForIntegrationTest;
+import com.hemajoo.commerce.cherry.persistence.test.integration.configuration.PersistenceConfigurationForIntegrationTest;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.ressec.avocado.core.junit.BaseUnitTest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Collections;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test of the content addressed (deduplicating) mode of the content store.
+ * <p>
+ * Not transactional: each save and deletion runs in its own transaction, so the content store sweeper sees the
+ * committed state of the documents.
+ * @author <a href="mailto:christophe.resse@gmail.com">Christophe Resse</a>
+ * @version 1.0.0
+ */
+@SpringBootTest(classes = SpringCherryForIntegrationTest.class)
+@ActiveProfiles("test") // Will search for: application-test.properties
+@ExtendWith(SpringExtension.class)
+@Import(value = {PersistenceConfigurationForIntegrationTest.class})
+@TestPropertySource(properties = "hemajoo.commerce.cherry.store.deduplication=true")
+@DisplayName("Test the content addressed mode of the content store")
+class IntegrationTestDocumentDeduplication extends BaseUnitTest
+{
+    /**
+     * Document persistence service.
+     */
+    @Autowired
+    private DocumentService documentService;
+
+    /**
+     * Document repository.
+     */
+    @Autowired
+    private DocumentRepository documentRepository;
+
+    /**
+     * Content store layout.
+     */
+    @Autowired
+    private DocumentStoreLayout documentStoreLayout;
+
+    /**
+     * Document content cache.
+     */
+    @Autowired
+    private DocumentContentCache documentContentCache;
+
+    /**
+     * Upload store.
+     */
+    @Autowired
+    private DocumentUploadStore documentUploadStore;
+
+    /**
+     * Document content writer.
+     */
+    @Autowired
+    private DocumentContentWriter documentContentWriter;
+
+    @Test
+    @DisplayName("Keep a shared content until the last document referencing it is deleted")
+    final void testReleaseSharedContent() throws DocumentContentException, DocumentException, ContentStoreException
+    {
+        // Content unique to this test, so no other document shares its digest.
+        byte[] content = UUID.randomUUID().toString().getBytes(StandardCharsets.UTF_8);
+
+        DocumentEntity first = DocumentRandomizer.generatePersistent(false);
+        first.setContent(new ByteArrayInputStream(content));
+        first = documentService.save(first);
+
+        DocumentEntity second = DocumentRandomizer.generatePersistent(false);
+        second.setContent(new ByteArrayInputStream(content));
+        second = documentService.save(second);
+
+        String contentId = first.getContentId();
+        Path blob = documentStoreLayout.resolveSharded(contentId);
+        assertThat(second.getContentId())
+                .as("Documents having the same content should share the same content identifier!")
+                .isEqualTo(contentId);
+        assertThat(blob)
+                .as("Shared content should have been written once!")
+                .exists();
+
+        DocumentStoreSweeper sweeper = newSweeper(0);
+
+        // Releasing one of the documents.
+        documentService.deleteById(first.getId());
+        sweeper.sweep();
+        assertThat(documentRepository.findReferencedContentIds(Collections.singleton(contentId)))
+                .as("Content should still be referenced by the other document!")
+                .containsExactly(contentId);
+        assertThat(blob)
+                .as("Content still referenced should be kept!")
+                .exists();
+
+        // Releasing the last document: the content is left to the sweeper.
+        documentService.deleteById(second.getId());
+        assertThat(blob)
+                .as("Content should only be deleted by the sweeper!")
+                .exists();
+
+        sweeper.sweep();
+        assertThat(blob)
+                .as("Content no more referenced should have been reclaimed!")
+                .doesNotExist();
+    }
+
+    @Test
+    @DisplayName("Keep a content no more referenced while a write of the same content is running")
+    final void testRetainContentBeingWritten() throws DocumentContentException, DocumentException, ContentStoreException, IOException
+    {
+        byte[] content = UUID.randomUUID().toString().getBytes(StandardCharsets.UTF_8);
+
+        DocumentEntity first = DocumentRandomizer.generatePersistent(false);
+        first.setContent(new ByteArrayInputStream(content));
+        first = documentService.save(first);
+        Path blob = documentStoreLayout.resolveSharded(first.getContentId());
+
+        // Content no more referenced, older than the grace period.
+        documentService.deleteById(first.getId());
+        FileTime old = FileTime.from(Instant.now().minus(2, ChronoUnit.HOURS));
+        Files.setLastModifiedTime(blob, old);
+
+        // Write of the same content, whose document is not committed yet: the blob is touched, not staged again.
+        DocumentEntity second = DocumentRandomizer.generatePersistent(false);
+        assertThat(documentContentWriter.stage(second, new ByteArrayInputStream(content)))
+                .as("Content already stored should not have been staged!")
+                .isNull();
+
+        DocumentStoreSweeper sweeper = newSweeper(3600);
+        sweeper.sweep();
+        assertThat(blob)
+                .as("Content being written again should have been kept!")
+                .exists();
+        assertThat(Files.getLastModifiedTime(blob))
+                .as("Content being written again should have been touched!")
+                .isGreaterThan(old);
+
+        // Write abandoned: the content is reclaimed once its grace period is over.
+        Files.setLastModifiedTime(blob, old);
+        sweeper.sweep();
+        assertThat(blob)
+                .as("Content no more referenced should have been reclaimed!")
+                .doesNotExist();
+    }
+
+    @Test
+    @DisplayName("Restore a content set aside by an interrupted sweep")
+    final void testRestoreTombstone() throws DocumentContentException, DocumentException, ContentStoreException, IOException
+    {
+        DocumentEntity document = DocumentRandomizer.generatePersistent(false);
+        document.setContent(new ByteArrayInputStream(UUID.randomUUID().toString().getBytes(StandardCharsets.UTF_8)));
+        document = documentService.save(document);
+        Path blob = documentStoreLayout.resolveSharded(document.getContentId());
+
+        // Sweep interrupted (crash) after the content has been set aside.
+        Path tombstone = blob.resolveSibling("." + blob.getFileName() + ".deleting");
+        Files.move(blob, tombstone);
+
+        newSweeper(0).sweep();
+        assertThat(blob)
+                .as("Content set aside should have been restored!")
+                .exists();
+        assertThat(tombstone)
+                .as("Tombstone should have been removed!")
+                .doesNotExist();
+    }
+
+    /**
+     * Creates a content store sweeper (not scheduled).
+     * @param gracePeriod Minimum age (in seconds) of the content files to reclaim.
+     * @return Content store sweeper.
+     */
+    private DocumentStoreSweeper newSweeper(final long gracePeriod)
+    {
+        return new DocumentStoreSweeper(documentStoreLayout, documentRepository, documentContentCache, documentUploadStore, false, true, 1, 10, gracePeriod, 0, 86400, 0);
+    }
+}
@@ -11,25 +11,67 @@
  */
 package com.hemajoo.commerce.cherry.persistence.test.integration.model.entity.document;
 
+import com.hemajoo.commerce.cherry.commons.exception.ContentStoreException;
+import com.hemajoo.commerce.cherry.commons.type.EntityType;
+import com.hemajoo.commerce.cherry.model.entity.document.Document;
 import com.hemajoo.commerce.cherry.model.entity.document.DocumentContentException;
 import com.hemajoo.commerce.cherry.model.entity.document.DocumentException;
+import com.hemajoo.commerce.cherry.model.entity.document.DocumentType;
+import com.hemajoo.commerce.cherry.persistence.base.mapper.CycleAvoidingMappingContext;
 import com.hemajoo.commerce.cherry.persistence.base.test.BaseDatabaseUnitTest;
+import com.hemajoo.commerce.cherry.persistence.content.DocumentContentCache;
+import com.hemajoo.commerce.cherry.persistence.content.DocumentIndexVerifier;
+import com.hemajoo.commerce.cherry.persistence.content.DocumentStoreLayout;
+import com.hemajoo.commerce.cherry.persistence.content.DocumentStoreSweeper;
+import com.hemajoo.commerce.cherry.persistence.content.DocumentUploadStore;
+import com.hemajoo.commerce.cherry.persistence.model.entity.document.DocumentCursor;
 import com.hemajoo.commerce.cherry.persistence.model.entity.document.DocumentEntity;
+import com.hemajoo.commerce.cherry.persistence.model.entity.document.DocumentMapper;
 import com.hemajoo.commerce.cherry.persistence.model.entity.document.DocumentRandomizer;
+import com.hemajoo.commerce.cherry.persistence.model.entity.document.DocumentSummary;
 import com.hemajoo.commerce.cherry.persistence.test.integration.SpringCherryForIntegrationTest;
 import com.hemajoo.commerce.cherry.persistence.test.integration.configuration.PersistenceConfigurationForIntegrationTest;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Hibernate;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
 import org.springframework.test.annotation.Commit;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
 import javax.transaction.Transactional;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -46,8 +88,56 @@ import static org.assertj.core.api.Assertions.assertThat;
 @Transactional
 @Commit // Change default behavior for Spring Test which is normally to rollback transaction at the end of the test!
 @DisplayName("Test handle document entity in database")
+@Slf4j
 class IntegrationTestDocumentRepository extends BaseDatabaseUnitTest
 {
+    /**
+     * Number of documents saved by the batch tests.
+     */
+    private static final int BATCH_COUNT = 100;
+
+    /**
+     * Entity manager.
+     */
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * Content store layout.
+     */
+    @Autowired
+    private DocumentStoreLayout documentStoreLayout;
+
+    /**
+     * Document content cache.
+     */
+    @Autowired
+    private DocumentContentCache documentContentCache;
+
+    /**
+     * Upload store.
+     */
+    @Autowired
+    private DocumentUploadStore documentUploadStore;
+
+    /**
+     * Document index verifier.
+     */
+    @Autowired
+    private DocumentIndexVerifier documentIndexVerifier;
+
+    /**
+     * Transaction manager.
+     */
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    /**
+     * Number of statements per JDBC batch.
+     */
+    @Value("${hemajoo.commerce.cherry.database.batch-size}")
+    private int batchSize;
+
     @Test
     @DisplayName("Create a document (without content) in the database") final void testCreateDocumentWithoutContentInDatabase() throws DocumentContentException, DocumentException
     {
@@ -180,4 +270,584 @@ class IntegrationTestDocumentRepository extends BaseDatabaseUnitTest
                     .isFalse();
         }
     }
+
+    @Test
+    @DisplayName("Generate the document identifiers with the configured strategy")
+    final void testGenerateTimeOrderedIdentifiers() throws DocumentContentException, DocumentException
+    {
+        // Strategy set to time-ordered in the test properties.
+        UUID first = documentService.save(DocumentRandomizer.generatePersistent(false)).getId();
+        UUID second = documentService.save(DocumentRandomizer.generatePersistent(false)).getId();
+
+        assertThat(first.version())
+                .as("Document identifier should be a time-ordered UUID!")
+                .isEqualTo(7);
+        assertThat(second.getMostSignificantBits())
+                .as("Document identifiers should be generated in increasing order!")
+                .isGreaterThan(first.getMostSignificantBits());
+    }
+
+    @Test
+    @DisplayName("Browse the documents using a keyset pagination")
+    final void testBrowseDocumentsUsingKeysetPagination() throws DocumentContentException, DocumentException
+    {
+        List<UUID> ids = new ArrayList<>();
+        for (int i = 0; i < 10; i++)
+        {
+            ids.add(documentService.save(DocumentRandomizer.generatePersistent(false)).getId());
+        }
+
+        Set<UUID> browsed = new HashSet<>();
+        List<DocumentEntity> page = documentService.findAll(null, 3);
+        while (!page.isEmpty())
+        {
+            page.forEach(document -> assertThat(browsed.add(document.getId()))
+                    .as(String.format("Document id: '%s' should only be returned once!", document.getId()))
+                    .isTrue());
+            page = documentService.findAll(page.get(page.size() - 1).getId(), 3);
+        }
+
+        assertThat(browsed)
+                .as("All the documents should have been browsed!")
+                .containsAll(ids);
+    }
+
+    @Test
+    @DisplayName("Browse the documents using pages")
+    final void testBrowseDocumentsUsingPages() throws DocumentContentException, DocumentException
+    {
+        List<UUID> ids = saveDocuments(5);
+
+        Set<UUID> browsed = new HashSet<>();
+        Page<DocumentEntity> page = documentService.findAll(PageRequest.of(0, 2, Sort.by("id")));
+        long total = page.getTotalElements();
+        while (true)
+        {
+            assertThat(page.getNumberOfElements())
+                    .as("Page should not exceed its size!")
+                    .isLessThanOrEqualTo(2);
+            page.forEach(document -> browsed.add(document.getId()));
+            if (!page.hasNext())
+            {
+                break;
+            }
+            page = documentService.findAll(page.nextPageable());
+        }
+
+        assertThat(total)
+                .as("Total number of documents should have been counted!")
+                .isGreaterThanOrEqualTo(ids.size());
+        assertThat(browsed)
+                .as("All the documents should have been browsed!")
+                .hasSize((int) total)
+                .containsAll(ids);
+    }
+
+    @Test
+    @DisplayName("Browse the documents using slices (without counting them)")
+    final void testBrowseDocumentsUsingSlices() throws DocumentContentException, DocumentException
+    {
+        List<UUID> ids = saveDocuments(5);
+
+        Set<UUID> browsed = new HashSet<>();
+        Slice<DocumentEntity> slice = documentService.findSlice(PageRequest.of(0, 2, Sort.by("id")));
+        while (true)
+        {
+            assertThat(slice.getNumberOfElements())
+                    .as("Slice should not exceed its size!")
+                    .isLessThanOrEqualTo(2);
+            slice.forEach(document -> assertThat(browsed.add(document.getId()))
+                    .as(String.format("Document id: '%s' should only be returned once!", document.getId()))
+                    .isTrue());
+            if (!slice.hasNext())
+            {
+                break;
+            }
+            slice = documentService.findSlice(slice.nextPageable());
+        }
+
+        assertThat(browsed)
+                .as("All the documents should have been browsed!")
+                .containsAll(ids);
+        assertThat(documentService.findSummaries(PageRequest.of(0, 2)).getContent())
+                .as("Slice of document summaries should have been read!")
+                .hasSize(2);
+    }
+
+    @Test
+    @DisplayName("Stream the documents without keeping them in the persistence context")
+    final void testStreamDocuments() throws DocumentContentException, DocumentException
+    {
+        List<UUID> ids = saveDocuments(5);
+        entityManager.flush();
+
+        Set<UUID> streamed = new HashSet<>();
+        try (Stream<DocumentEntity> stream = documentService.streamAll())
+        {
+            stream.forEach(document -> {
+                assertThat(entityManager.contains(document))
+                        .as("Streamed document should have been detached!")
+                        .isFalse();
+                streamed.add(document.getId());
+            });
+        }
+
+        assertThat(streamed)
+                .as("All the documents should have been streamed!")
+                .containsAll(ids);
+    }
+
+    @Test
+    @DisplayName("Save a batch of documents with their content (compared to a loop of saves)")
+    final void testSaveBatchOfDocumentsWithContentInDatabase() throws DocumentContentException, DocumentException
+    {
+        List<DocumentEntity> documents = new ArrayList<>();
+        for (int i = 0; i < BATCH_COUNT; i++)
+        {
+            DocumentEntity entity = DocumentRandomizer.generatePersistent(false);
+            entity.setContent("./media/java-8-streams-cheat-sheet.pdf");
+            documents.add(entity);
+        }
+
+        Statistics statistics = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        long start = System.nanoTime();
+        for (DocumentEntity document : documents.subList(0, BATCH_COUNT / 2))
+        {
+            documentService.save(document);
+        }
+        long loopTime = System.nanoTime() - start;
+        long loopStatements = statistics.getPrepareStatementCount();
+
+        statistics.clear();
+        start = System.nanoTime();
+        documentService.saveAll(documents.subList(BATCH_COUNT / 2, BATCH_COUNT));
+        entityManager.flush();
+        long batchTime = System.nanoTime() - start;
+        long batchStatements = statistics.getPrepareStatementCount();
+
+        log.info("Saved {} documents: loop of saves: {} ms ({} statements), batch save: {} ms ({} statements)",
+                BATCH_COUNT / 2, loopTime / 1_000_000, loopStatements, batchTime / 1_000_000, batchStatements);
+
+        assertThat(statistics.getEntityInsertCount())
+                .as("Batch save should have inserted all its documents!")
+                .isEqualTo(BATCH_COUNT / 2);
+        assertThat(batchStatements)
+                .as("Inserts of the batch save should have been grouped into JDBC batches!")
+                .isLessThanOrEqualTo((BATCH_COUNT / 2 + batchSize - 1) / batchSize);
+        assertThat(loopStatements)
+                .as("Each save of the loop should have run its own insert!")
+                .isGreaterThanOrEqualTo(BATCH_COUNT / 2);
+
+        for (DocumentEntity document : documents)
+        {
+            assertThat(document.getContentId())
+                    .as(String.format("Document id: '%s' content should have been stored!", document.getId()))
+                    .isNotNull();
+            assertThat(documentService.findById(document.getId()))
+                    .as(String.format("Document id: '%s' should have been saved!", document.getId()))
+                    .isNotNull();
+        }
+    }
+
+    @Test
+    @DisplayName("Discard the staged contents of a rolled back batch save")
+    final void testDiscardContentsOfRolledBackBatch() throws IOException
+    {
+        List<DocumentEntity> documents = new ArrayList<>();
+        for (int i = 0; i < 5; i++)
+        {
+            DocumentEntity entity = DocumentRandomizer.generatePersistent(false);
+            entity.setContent("./media/java-8-streams-cheat-sheet.pdf");
+            documents.add(entity);
+        }
+
+        // Batch save running in its own transaction, rolled back once the contents have been written.
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        template.executeWithoutResult(status -> {
+            try
+            {
+                documentService.saveAll(documents);
+            }
+            catch (DocumentException e)
+            {
+                throw new IllegalStateException(e);
+            }
+            documents.forEach(document -> assertThat(documentStoreLayout.getStaging(document.getContentId()))
+                    .as("Content should have been staged by the transaction!")
+                    .isNotNull());
+            status.setRollbackOnly();
+        });
+
+        for (DocumentEntity document : documents)
+        {
+            String contentId = document.getContentId();
+            assertThat(documentStoreLayout.getStaging(contentId))
+                    .as("Staged content should have been released!")
+                    .isNull();
+            assertThat(documentStoreLayout.resolve(contentId))
+                    .as("Content of a rolled back document should not have been published!")
+                    .doesNotExist();
+            try (Stream<Path> staged = Files.list(documentStoreLayout.getStagingDirectory()))
+            {
+                assertThat(staged.noneMatch(path -> path.getFileName().toString().startsWith(contentId)))
+                        .as("Staged content should have been discarded!")
+                        .isTrue();
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Find documents by identifier and by owner (lookup timings)")
+    final void testFindDocumentsByIdAndByOwner() throws DocumentContentException, DocumentException
+    {
+        DocumentEntity owner = documentService.save(DocumentRandomizer.generatePersistent(false));
+        List<UUID> ids = new ArrayList<>();
+        for (int i = 0; i < BATCH_COUNT; i++)
+        {
+            DocumentEntity document = DocumentRandomizer.generatePersistent(false);
+            document.setOwner(owner);
+            ids.add(documentService.save(document).getId());
+        }
+
+        // Lookups must hit the database, not the persistence context.
+        entityManager.flush();
+        entityManager.clear();
+
+        long start = System.nanoTime();
+        for (UUID id : ids)
+        {
+            assertThat(documentRepository.findById(id))
+                    .as(String.format("Document id: '%s' should be found!", id))
+                    .isPresent();
+            entityManager.clear();
+        }
+        long byIdTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < BATCH_COUNT; i++)
+        {
+            assertThat(documentRepository.findByOwnerId(owner.getId()))
+                    .as(String.format("Owner id: '%s' should own %s documents!", owner.getId(), BATCH_COUNT))
+                    .hasSize(BATCH_COUNT);
+            entityManager.clear();
+        }
+        long byOwnerTime = System.nanoTime() - start;
+
+        log.info("Lookup of {} documents: findById: {} us per lookup, findByOwnerId: {} us per lookup",
+                BATCH_COUNT, byIdTime / BATCH_COUNT / 1_000, byOwnerTime / BATCH_COUNT / 1_000);
+    }
+
+    @Test
+    @DisplayName("Resolve the owner of a document from its identity")
+    final void testResolveDocumentOwner() throws DocumentContentException, DocumentException
+    {
+        DocumentEntity owner = documentService.save(DocumentRandomizer.generatePersistent(false));
+        DocumentEntity document = DocumentRandomizer.generatePersistent(false);
+        document.setOwner(owner);
+        document = documentService.save(document);
+
+        entityManager.flush();
+        entityManager.clear();
+
+        document = documentService.findById(document.getId());
+        assertThat(document.getOwnerIdentity())
+                .as("Document owner identity should have been persisted!")
+                .isNotNull();
+        assertThat(document.getOwnerIdentity().getEntityType())
+                .as("Document owner entity type should have been persisted!")
+                .isEqualTo(EntityType.DOCUMENT);
+        assertThat(documentService.findOwner(document))
+                .as("Document owner should be resolved in its own table!")
+                .isInstanceOf(DocumentEntity.class)
+                .extracting("id")
+                .isEqualTo(owner.getId());
+    }
+
+    @Test
+    @DisplayName("Fetch the owner of a document only when asked for")
+    final void testFetchDocumentOwnerOnDemand() throws DocumentContentException, DocumentException
+    {
+        DocumentEntity owner = documentService.save(DocumentRandomizer.generatePersistent(false));
+        DocumentEntity document = DocumentRandomizer.generatePersistent(false);
+        document.setOwner(owner);
+        document = documentService.save(document);
+
+        entityManager.flush();
+        entityManager.clear();
+
+        assertThat(Hibernate.isInitialized(documentService.findById(document.getId()).getOwner()))
+                .as("Document owner should not be loaded by default!")
+                .isFalse();
+
+        entityManager.clear();
+
+        DocumentEntity withOwner = documentService.findByIdWithOwner(document.getId());
+        assertThat(Hibernate.isInitialized(withOwner.getOwner()))
+                .as("Document owner should have been fetched!")
+                .isTrue();
+
+        Document client = DocumentMapper.INSTANCE.fromPersistent(withOwner, new CycleAvoidingMappingContext());
+        assertThat(client.getOwner())
+                .as("Fetched owner should have been converted!")
+                .isNotNull();
+        assertThat(Hibernate.isInitialized(withOwner.getOwner().getDocuments()))
+                .as("Documents of the owner should not have been loaded by the conversion!")
+                .isFalse();
+        assertThat(Hibernate.isInitialized(withOwner.getDocuments()))
+                .as("Documents of the document should not have been loaded by the conversion!")
+                .isFalse();
+    }
+
+    @Test
+    @DisplayName("Browse the summaries of the documents of an owner using cursors")
+    final void testBrowseDocumentSummariesOfOwnerUsingCursors() throws DocumentContentException, DocumentException
+    {
+        DocumentEntity owner = documentService.save(DocumentRandomizer.generatePersistent(false));
+        List<UUID> ids = new ArrayList<>();
+        List<UUID> photos = new ArrayList<>();
+        for (int i = 0; i < 7; i++)
+        {
+            DocumentEntity document = DocumentRandomizer.generatePersistent(false);
+            document.setOwner(owner);
+            document.setDocumentType(i % 2 == 0 ? DocumentType.DOCUMENT_PHOTO : DocumentType.DOCUMENT_INVOICE);
+            document = documentService.save(document);
+            ids.add(document.getId());
+            if (document.getDocumentType() == DocumentType.DOCUMENT_PHOTO)
+            {
+                photos.add(document.getId());
+            }
+        }
+
+        entityManager.flush();
+        entityManager.clear();
+
+        // Listing order (creation date then identifier) as given by a single slice.
+        List<DocumentSummary> all = documentService.findSummariesByOwnerId(owner.getId(), null, null, null, 10).getContent();
+        assertThat(all)
+                .as("All the documents of the owner should be listed!")
+                .extracting(DocumentSummary::getId)
+                .containsExactlyInAnyOrderElementsOf(ids);
+        assertThat(all)
+                .as("Documents of the owner should be listed by creation date!")
+                .isSortedAccordingTo(Comparator.comparing(DocumentSummary::getCreatedDate));
+        List<UUID> ordered = all.stream().map(DocumentSummary::getId).collect(Collectors.toList());
+
+        List<UUID> browsed = new ArrayList<>();
+        DocumentCursor cursor = null;
+        Slice<DocumentSummary> slice;
+        do
+        {
+            slice = documentService.findSummariesByOwnerId(owner.getId(), null, null, cursor, 3);
+            assertThat(slice.getContent())
+                    .as("A slice should hold at most 3 summaries!")
+                    .hasSizeLessThanOrEqualTo(3);
+            slice.forEach(summary -> browsed.add(summary.getId()));
+            if (slice.hasNext())
+            {
+                // The cursor goes through its external form as it would with a client.
+                cursor = DocumentCursor.decode(DocumentCursor.of(slice.getContent().get(slice.getNumberOfElements() - 1)).encode());
+            }
+        }
+        while (slice.hasNext());
+
+        assertThat(browsed)
+                .as("All the documents of the owner should have been browsed once, in order!")
+                .containsExactlyElementsOf(ordered);
+
+        slice = documentService.findSummariesByOwnerId(owner.getId(), DocumentType.DOCUMENT_PHOTO, null, null, 10);
+        assertThat(slice.getContent())
+                .as("Only the photos of the owner should be returned, in order!")
+                .extracting(DocumentSummary::getId)
+                .containsExactlyElementsOf(ordered.stream().filter(photos::contains).collect(Collectors.toList()));
+        assertThat(slice.hasNext())
+                .as("There should be no more photos!")
+                .isFalse();
+    }
+
+    @Test
+    @DisplayName("Access the documents of an owner without loading them")
+    final void testAccessDocumentsOfOwnerWithoutLoadingThem() throws DocumentContentException, DocumentException
+    {
+        DocumentEntity owner = documentService.save(DocumentRandomizer.generatePersistent(false));
+        List<DocumentEntity> documents = new ArrayList<>();
+        for (int i = 0; i < 5; i++)
+        {
+            DocumentEntity document = DocumentRandomizer.generatePersistent(false);
+            document.setOwner(owner);
+            documents.add(documentService.save(document));
+        }
+
+        entityManager.flush();
+        entityManager.clear();
+
+        owner = entityManager.find(DocumentEntity.class, owner.getId());
+        assertThat(owner.getDocumentCount())
+                .as("Owner should have 5 documents!")
+                .isEqualTo(5);
+        assertThat(owner.hasDocument(entityManager.find(DocumentEntity.class, documents.get(2).getId())))
+                .as("Document should belong to the owner!")
+                .isTrue();
+
+        DocumentEntity document = DocumentRandomizer.generatePersistent(false);
+        document.setOwner(owner);
+        owner.addDocument(document);
+        assertThat(Hibernate.isInitialized(owner.getDocuments()))
+                .as("Documents of the owner should not have been loaded!")
+                .isFalse();
+
+        entityManager.flush();
+        entityManager.clear();
+
+        Slice<DocumentEntity> slice = documentService.findSliceByOwnerId(owner.getId(), PageRequest.of(0, 4));
+        assertThat(slice.getContent())
+                .as("Slice should hold 4 documents!")
+                .hasSize(4);
+        assertThat(slice.hasNext())
+                .as("Owner should have more documents!")
+                .isTrue();
+        assertThat(documentService.findSliceByOwnerId(owner.getId(), slice.nextPageable()).getContent())
+                .as("Last slice should hold the added document!")
+                .hasSize(2)
+                .extracting(DocumentEntity::getId)
+                .contains(document.getId());
+    }
+
+    @Test
+    @DisplayName("List the summaries of the documents of an owner")
+    final void testListDocumentSummaries() throws DocumentContentException, DocumentException
+    {
+        DocumentEntity owner = documentService.save(DocumentRandomizer.generatePersistent(false));
+        for (int i = 0; i < 5; i++)
+        {
+            DocumentEntity document = DocumentRandomizer.generatePersistent(false);
+            document.setOwner(owner);
+            documentService.save(document);
+        }
+
+        entityManager.flush();
+        entityManager.clear();
+
+        List<DocumentSummary> summaries = documentService.findSummariesByOwnerId(owner.getId());
+        assertThat(summaries)
+                .as("Owner should have 5 documents!")
+                .hasSize(5);
+        assertThat(summaries)
+                .as("Summaries should hold the document file names!")
+                .allMatch(summary -> summary.getFilename() != null);
+        assertThat(entityManager.getEntityManagerFactory().getPersistenceUnitUtil().isLoaded(summaries.get(0)))
+                .as("Summaries should not be managed entities!")
+                .isFalse();
+    }
+
+    @Test
+    @DisplayName("Load the contents of the documents of an owner in one pass")
+    final void testLoadContentsOfOwner() throws DocumentContentException, DocumentException, IOException
+    {
+        DocumentEntity owner = documentService.save(DocumentRandomizer.generatePersistent(false));
+        for (int i = 0; i < 5; i++)
+        {
+            DocumentEntity document = DocumentRandomizer.generatePersistent(false);
+            document.setOwner(owner);
+            documentService.save(document);
+        }
+
+        List<DocumentEntity> documents = documentService.loadContents(owner.getId());
+        assertThat(documents)
+                .as("Owner should have 5 documents!")
+                .hasSize(5);
+
+        for (DocumentEntity document : documents)
+        {
+            assertThat(document.getContent())
+                    .as("Document content should have been loaded!")
+                    .isNotNull();
+
+            try (InputStream content = document.getContent())
+            {
+                assertThat(content.readAllBytes())
+                        .as("Document content should be complete!")
+                        .hasSize((int) document.getContentLength());
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Reclaim the orphan files of the content store")
+    final void testSweepOrphanContents() throws DocumentContentException, DocumentException, ContentStoreException, IOException
+    {
+        // Content of a document being saved is staged until the transaction commits.
+        DocumentEntity entity = DocumentRandomizer.generatePersistent(false);
+        entity.setContent("./media/android-10.jpg");
+        documentService.save(entity);
+        Path staged = documentStoreLayout.getStaging(entity.getContentId());
+        assertThat(documentStore.getResource(entity.getContentId()).exists())
+                .as("Staged content should be readable by its transaction!")
+                .isTrue();
+
+        // Content file and staging file referenced by no document.
+        FileTime old = FileTime.from(Instant.now().minus(1, ChronoUnit.HOURS));
+        Path orphan = documentStoreLayout.resolveSharded(UUID.randomUUID().toString());
+        Files.createDirectories(orphan.getParent());
+        Files.write(orphan, new byte[] { 1, 2, 3 });
+        Files.setLastModifiedTime(orphan, old);
+        Path orphanStaging = documentStoreLayout.getStagingDirectory().resolve(UUID.randomUUID() + ".0" + DocumentStoreLayout.STAGING_SUFFIX);
+        Files.write(orphanStaging, new byte[] { 1, 2, 3 });
+        Files.setLastModifiedTime(orphanStaging, old);
+
+        // Upload neither committed nor aborted, older than its grace period, and a recent one.
+        Path abandoned = documentUploadStore.getFile(documentUploadStore.init());
+        Files.setLastModifiedTime(abandoned, FileTime.from(Instant.now().minus(2, ChronoUnit.DAYS)));
+        Path running = documentUploadStore.getFile(documentUploadStore.init());
+
+        DocumentStoreSweeper sweeper = new DocumentStoreSweeper(documentStoreLayout, documentRepository, documentContentCache, documentUploadStore, false, false, 1, 10, 0, 0, 86400, 0);
+        assertThat(sweeper.sweep())
+                .as("Orphan files should have been reclaimed!")
+                .isGreaterThanOrEqualTo(3);
+
+        assertThat(orphan)
+                .as("Orphan content file should have been deleted!")
+                .doesNotExist();
+        assertThat(orphanStaging)
+                .as("Orphan staging file should have been deleted!")
+                .doesNotExist();
+        assertThat(staged)
+                .as("Content staged by a running transaction should be kept!")
+                .exists();
+        assertThat(abandoned)
+                .as("Abandoned upload should have been purged!")
+                .doesNotExist();
+        assertThat(running)
+                .as("Running upload should be kept!")
+                .exists();
+    }
+
+    @Test
+    @DisplayName("Verify the indexes of the document table")
+    final void testVerifyDocumentIndexes() throws SQLException
+    {
+        assertThat(documentIndexVerifier.findMissingIndexes())
+                .as("Indexes of the document table should exist!")
+                .isEmpty();
+    }
+
+    /**
+     * Saves documents (without content).
+     * @param count Number of documents.
+     * @return Identifiers of the saved documents.
+     * @throws DocumentContentException Thrown in case an error occurred while processing a document content.
+     * @throws DocumentException Thrown in case an error occurred while saving a document.
+     */
+    private List<UUID> saveDocuments(final int count) throws DocumentContentException, DocumentException
+    {
+        List<UUID> ids = new ArrayList<>(count);
+        for (int i = 0; i < count; i++)
+        {
+            ids.add(documentService.save(DocumentRandomizer.generatePersistent(false)).getId());
+        }
+
+        return ids;
+    }
 }
@@ -0,0 +1,280 @@
+/*
+ * Copyright(c) 2021 Hemajoo Digital Systems Inc.
+ * --------------------------------------------------------------------------------------
+ * This file is part of Hemajoo Systems Inc. projects which is licensed
+ * under the Apache license version 2 and use is subject to license terms.
+ * You should have received a copy of the license with the project's artifact
+ * binaries and/or sources.
+ *
+ * License can be consulted at http://www.apache.org/licenses/LICENSE-2.0
+ * --------------------------------------------------------------------------------------
+ */
+package com.hemajoo.commerce.cherry.persistence.test.integration.model.entity.document;
+
+import com.hemajoo.commerce.cherry.model.entity.document.DocumentContentException;
+import com.hemajoo.commerce.cherry.model.entity.document.DocumentException;
+import com.hemajoo.commerce.cherry.persistence.base.concurrent.BulkheadExecutors;
+import com.hemajoo.commerce.cherry.persistence.content.DocumentService;
+import com.hemajoo.commerce.cherry.persistence.content.DocumentServiceAsync;
+import com.hemajoo.commerce.cherry.persistence.model.entity.document.DocumentEntity;
+import com.hemajoo.commerce.cherry.persistence.model.entity.document.DocumentRandomizer;
+import com.hemajoo.commerce.cherry.persistence.test.integration.SpringCherryForIntegrationTest;
+import com.hemajoo.commerce.cherry.persistence.test.integration.configuration.PersistenceConfigurationForIntegrationTest;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.ressec.avocado.core.junit.BaseUnitTest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Load test of the asynchronous document service.
+ * <p>
+ * A single caller thread keeps many more operations in flight than a servlet container has request threads (200 by
+ * default for {@code Tomcat}), the operations waiting in the bulkheads instead of holding a thread each.
+ * @author <a href="mailto:christophe.resse@gmail.com">Christophe Resse</a>
+ * @version 1.0.0
+ */
+@SpringBootTest(classes = SpringCherryForIntegrationTest.class)
+@ActiveProfiles("test") // Will search for: application-test.properties
+@ExtendWith(SpringExtension.class)
+@Import(value = {PersistenceConfigurationForIntegrationTest.class})
+@DisplayName("Test the asynchronous document service")
+@Slf4j
+class IntegrationTestDocumentServiceAsync extends BaseUnitTest
+{
+    /**
+     * Number of operations in flight (5 times the default number of request threads of {@code Tomcat}).
+     */
+    private static final int OPERATION_COUNT = 1000;
+
+    /**
+     * Document persistence service.
+     */
+    @Autowired
+    private DocumentService documentService;
+
+    /**
+     * Asynchronous document persistence service.
+     */
+    @Autowired
+    private DocumentServiceAsync documentServiceAsync;
+
+    /**
+     * Bulkhead running the database accesses.
+     */
+    @Autowired
+    @Qualifier("documentDatabaseBulkhead")
+    private ExecutorService documentDatabaseBulkhead;
+
+    /**
+     * Bulkhead running the content store accesses.
+     */
+    @Autowired
+    @Qualifier("documentStoreBulkhead")
+    private ExecutorService documentStoreBulkhead;
+
+    /**
+     * Maximum number of database accesses running concurrently.
+     */
+    @Value("${hemajoo.commerce.cherry.async.database.concurrency}")
+    private int databaseConcurrency;
+
+    /**
+     * Maximum number of database accesses waiting to run.
+     */
+    @Value("${hemajoo.commerce.cherry.async.database.queue}")
+    private int databaseQueueSize;
+
+    /**
+     * Maximum number of content store accesses running concurrently.
+     */
+    @Value("${hemajoo.commerce.cherry.async.store.concurrency}")
+    private int storeConcurrency;
+
+    @Test
+    @DisplayName("Keep more operations in flight than the servlet pool size")
+    final void testConcurrencyBeyondServletPool() throws DocumentContentException, DocumentException
+    {
+        DocumentEntity owner = documentService.save(DocumentRandomizer.generatePersistent(false));
+        DocumentEntity document = DocumentRandomizer.generatePersistent(false);
+        document.setOwner(owner);
+        documentService.save(document);
+
+        long start = System.nanoTime();
+        List<CompletableFuture<List<DocumentEntity>>> futures = new ArrayList<>(OPERATION_COUNT);
+        for (int i = 0; i < OPERATION_COUNT; i++)
+        {
+            futures.add(documentServiceAsync.findByOwnerIdAsync(owner.getId()));
+        }
+        long issued = System.nanoTime() - start;
+        long pending = futures.stream().filter(future -> !future.isDone()).count();
+
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        long elapsed = System.nanoTime() - start;
+
+        log.info("{} operations ({} still pending once issued, virtual threads: {}) issued in {} ms by a single thread and completed in {} ms ({} ops/s)",
+                OPERATION_COUNT, pending, BulkheadExecutors.isVirtualThreadSupported(), issued / 1_000_000, elapsed / 1_000_000, OPERATION_COUNT * 1_000_000_000L / Math.max(elapsed, 1));
+
+        assertThat(futures)
+                .as("All the operations should have found the document!")
+                .allMatch(future -> future.join().size() == 1);
+    }
+
+    @Test
+    @DisplayName("Save then load the content of a document asynchronously")
+    final void testSaveAndLoadContentAsync() throws DocumentContentException
+    {
+        DocumentEntity document = DocumentRandomizer.generatePersistent(false);
+
+        DocumentEntity loaded = documentServiceAsync.saveAsync(document)
+                .thenCompose(saved -> documentServiceAsync.findByIdAsync(saved.getId()))
+                .thenCompose(found -> documentServiceAsync.loadContentAsync(found))
+                .join();
+
+        assertThat(loaded.getContent())
+                .as("Document content should have been loaded!")
+                .isNotNull();
+    }
+
+    @Test
+    @DisplayName("Never run more operations concurrently than the bulkhead bounds")
+    final void testConcurrencyBoundedByBulkheads() throws DocumentContentException, DocumentException
+    {
+        DocumentEntity document = documentService.save(DocumentRandomizer.generatePersistent(false));
+
+        assertThat(measureConcurrency(documentDatabaseBulkhead, () -> documentService.findById(document.getId())))
+                .as("Database accesses running concurrently should not exceed the database bulkhead concurrency!")
+                .isBetween(1, databaseConcurrency);
+        assertThat(measureConcurrency(documentStoreBulkhead, () -> documentService.loadContent(documentService.findById(document.getId()))))
+                .as("Content store accesses running concurrently should not exceed the content store bulkhead concurrency!")
+                .isBetween(1, storeConcurrency);
+    }
+
+    @Test
+    @DisplayName("Reject the operations once the bulkhead queue is full")
+    final void testRejectWhenBulkheadFull() throws DocumentContentException, DocumentException, InterruptedException
+    {
+        DocumentEntity document = documentService.save(DocumentRandomizer.generatePersistent(false));
+
+        CountDownLatch release = new CountDownLatch(1);
+        List<Future<?>> blockers = new ArrayList<>();
+        try
+        {
+            // Fill the running slots then the queue of the database bulkhead.
+            for (int i = 0; i < databaseConcurrency + databaseQueueSize; i++)
+            {
+                blockers.add(documentDatabaseBulkhead.submit(() -> {
+                    release.await();
+                    return null;
+                }));
+            }
+
+            CompletableFuture<DocumentEntity> rejected = documentServiceAsync.findByIdAsync(document.getId());
+            assertThatThrownBy(rejected::join)
+                    .as("Operation submitted to a full bulkhead should have been rejected!")
+                    .isInstanceOf(CompletionException.class)
+                    .getCause()
+                    .isInstanceOf(DocumentException.class)
+                    .extracting("status")
+                    .isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+        }
+        finally
+        {
+            release.countDown();
+        }
+
+        for (Future<?> blocker : blockers)
+        {
+            try
+            {
+                blocker.get(30, TimeUnit.SECONDS);
+            }
+            catch (Exception e)
+            {
+                throw new IllegalStateException("Blocking task did not complete!", e);
+            }
+        }
+
+        assertThat(documentServiceAsync.findByIdAsync(document.getId()).join().getId())
+                .as("Bulkhead should accept the operations once drained!")
+                .isEqualTo(document.getId());
+    }
+
+    /**
+     * Runs many operations in a bulkhead and returns the maximum number of them observed running concurrently.
+     * @param bulkhead Bulkhead.
+     * @param operation Operation to run.
+     * @return Maximum number of operations running concurrently.
+     */
+    private int measureConcurrency(final ExecutorService bulkhead, final Operation operation)
+    {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maximum = new AtomicInteger();
+
+        List<Future<?>> futures = new ArrayList<>(OPERATION_COUNT);
+        for (int i = 0; i < OPERATION_COUNT; i++)
+        {
+            futures.add(bulkhead.submit(() -> {
+                maximum.accumulateAndGet(running.incrementAndGet(), Math::max);
+                try
+                {
+                    operation.execute();
+                    Thread.sleep(1); // Widens the window in which the operations overlap.
+                }
+                finally
+                {
+                    running.decrementAndGet();
+                }
+                return null;
+            }));
+        }
+
+        for (Future<?> future : futures)
+        {
+            try
+            {
+                future.get();
+            }
+            catch (Exception e)
+            {
+                throw new IllegalStateException("Operation failed!", e);
+            }
+        }
+
+        return maximum.get();
+    }
+
+    /**
+     * Operation run in a bulkhead.
+     */
+    @FunctionalInterface
+    private interface Operation
+    {
+        /**
+         * Executes the operation.
+         * @throws Exception Thrown in case the operation failed.
+         */
+        void execute() throws Exception;
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright(c) 2021 Hemajoo Digital Systems Inc.
+ * --------------------------------------------------------------------------------------
+ * This file is part of Hemajoo Systems Inc. projects which is licensed
+ * under the Apache license version 2 and use is subject to license terms.
+ * You should have received a copy of the license with the project's artifact
+ * binaries and/or sources.
+ *
+ * License can be consulted at http://www.apache.org/licenses/LICENSE-2.0
+ * --------------------------------------------------------------------------------------
+ */
+package com.hemajoo.commerce.cherry.persistence.test.integration.model.entity.document;
+
+import com.hemajoo.commerce.cherry.model.entity.document.DocumentContentException;
+import com.hemajoo.commerce.cherry.model.entity.document.DocumentException;
+import com.hemajoo.commerce.cherry.persistence.content.DocumentService;
+import com.hemajoo.commerce.cherry.persistence.content.DocumentStoreLayout;
+import com.hemajoo.commerce.cherry.persistence.model.entity.document.DocumentEntity;
+import com.hemajoo.commerce.cherry.persistence.model.entity.document.DocumentRandomizer;
+import com.hemajoo.commerce.cherry.persistence.test.integration.SpringCherryForIntegrationTest;
+import com.hemajoo.commerce.cherry.persistence.test.integration.configuration.PersistenceConfigurationForIntegrationTest;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.ressec.avocado.core.junit.BaseUnitTest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Test of the optimistic locking of the documents.
+ * <p>
+ * Not transactional: each save runs in its own transaction, as it would for concurrent requests.
+ * @author <a href="mailto:christophe.resse@gmail.com">Christophe Resse</a>
+ * @version 1.0.0
+ */
+@SpringBootTest(classes = SpringCherryForIntegrationTest.class)
+@ActiveProfiles("test") // Will search for: application-test.properties
+@ExtendWith(SpringExtension.class)
+@Import(value = {PersistenceConfigurationForIntegrationTest.class})
+@DisplayName("Test the optimistic locking of the documents")
+class IntegrationTestDocumentVersion extends BaseUnitTest
+{
+    /**
+     * Document persistence service.
+     */
+    @Autowired
+    private DocumentService documentService;
+
+    /**
+     * Content store layout.
+     */
+    @Autowired
+    private DocumentStoreLayout documentStoreLayout;
+
+    @Test
+    @DisplayName("Reject the loser of concurrent updates of a document")
+    final void testRejectConcurrentUpdate() throws DocumentContentException, DocumentException, IOException
+    {
+        DocumentEntity document = documentService.save(DocumentRandomizer.generatePersistent(false));
+        Long version = document.getVersion();
+
+        // Both writers read the same version of the document.
+        DocumentEntity winner = documentService.findById(document.getId());
+        DocumentEntity loser = documentService.findById(document.getId());
+
+        winner.setContent(new ByteArrayInputStream("winner".getBytes(StandardCharsets.UTF_8)));
+        winner = documentService.save(winner);
+        assertThat(winner.getVersion())
+                .as("Document version should have been incremented!")
+                .isGreaterThan(version);
+
+        loser.setContent(new ByteArrayInputStream("loser".getBytes(StandardCharsets.UTF_8)));
+        assertThatThrownBy(() -> documentService.save(loser))
+                .as("Saving a stale document should fail!")
+                .isInstanceOf(DocumentException.class)
+                .matches(e -> ((DocumentException) e).getStatus() == HttpStatus.CONFLICT, "has a 409 status");
+
+        DocumentEntity stored = documentService.findById(document.getId());
+        assertThat(stored.getContentId())
+                .as("Content of the winner should be kept!")
+                .isEqualTo(winner.getContentId());
+        assertThat(Files.readAllBytes(documentStoreLayout.resolve(stored.getContentId())))
+                .as("Content of the winner should not have been overwritten!")
+                .isEqualTo("winner".getBytes(StandardCharsets.UTF_8));
+
+        String loserContentId = loser.getContentId();
+        assertThat(Files.exists(documentStoreLayout.resolve(loserContentId)))
+                .as("Content of the loser should not have been published!")
+                .isFalse();
+        try (Stream<Path> staged = Files.list(documentStoreLayout.getStagingDirectory()))
+        {
+            assertThat(staged.noneMatch(path -> path.getFileName().toString().startsWith(loserContentId)))
+                    .as("Content of the loser should have been discarded!")
+                    .isTrue();
+        }
+    }
+
+    @Test
+    @DisplayName("Reject the loser of concurrent updates of a batch of documents")
+    final void testRejectConcurrentBatchUpdate() throws DocumentContentException, DocumentException
+    {
+        DocumentEntity document = documentService.save(DocumentRandomizer.generatePersistent(false));
+
+        // Both writers read the last committed version of the document.
+        DocumentEntity winner = documentService.findCurrentById(document.getId());
+        DocumentEntity loser = documentService.findCurrentById(document.getId());
+
+        winner.setContent(new ByteArrayInputStream("winner".getBytes(StandardCharsets.UTF_8)));
+        winner = documentService.save(winner);
+
+        loser.setContent(new ByteArrayInputStream("loser".getBytes(StandardCharsets.UTF_8)));
+        assertThatThrownBy(() -> documentService.saveAll(Collections.singletonList(loser)))
+                .as("Saving a batch holding a stale document should fail!")
+                .isInstanceOf(DocumentException.class)
+                .matches(e -> ((DocumentException) e).getStatus() == HttpStatus.CONFLICT, "has a 409 status");
+
+        assertThat(documentService.findCurrentById(document.getId()).getContentId())
+                .as("Content of the winner should be kept!")
+                .isEqualTo(winner.getContentId());
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright(c) 2021 Hemajoo Digital Systems Inc.
+ * --------------------------------------------------------------------------------------
+ * This file is part of Hemajoo Systems Inc. projects which is licensed
+ * under the Apache license version 2 and use is subject to license terms.
+ * You should have received a copy of the license with the project's artifact
+ * binaries and/or sources.
+ *
+ * License can be consulted at http://www.apache.org/licenses/LICENSE-2.0
+ * --------------------------------------------------------------------------------------
+ */
+package com.hemajoo.commerce.cherry.persistence.test.unit.base.concurrent;
+
+import com.hemajoo.commerce.cherry.persistence.base.concurrent.PinningGuardDataSource;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.ressec.avocado.core.junit.BaseUnitTest;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test the {@link PinningGuardDataSource} class.
+ * @author <a href="mailto:christophe.resse@gmail.com">Christophe Resse</a>
+ * @version 1.0.0
+ */
+class UnitTestPinningGuardDataSource extends BaseUnitTest
+{
+    @Test
+    @DisplayName("Bound the number of connections held at the same time")
+    final void testBoundConnections() throws SQLException
+    {
+        DataSource target = mock(DataSource.class);
+        when(target.getConnection()).thenAnswer(invocation -> mock(Connection.class));
+        PinningGuardDataSource dataSource = new PinningGuardDataSource(target, 2, 100);
+
+        Connection first = dataSource.getConnection();
+        Connection second = dataSource.getConnection();
+
+        assertThatThrownBy(dataSource::getConnection)
+                .as("Connection beyond the bound should not be given!")
+                .isInstanceOf(SQLTransientConnectionException.class);
+
+        // Closing a connection twice only releases its permit once.
+        first.close();
+        first.close();
+        Connection third = dataSource.getConnection();
+
+        assertThatThrownBy(dataSource::getConnection)
+                .as("Connection closed twice should have released a single permit!")
+                .isInstanceOf(SQLTransientConnectionException.class);
+
+        second.close();
+        third.close();
+        dataSource.getConnection().close();
+    }
+
+    @Test
+    @DisplayName("Release the permit of a connection not given by the target data source")
+    final void testReleaseOnFailure() throws SQLException
+    {
+        DataSource target = mock(DataSource.class);
+        when(target.getConnection())
+                .thenThrow(new SQLException("Database is down!"))
+                .thenAnswer(invocation -> mock(Connection.class));
+        PinningGuardDataSource dataSource = new PinningGuardDataSource(target, 1, 100);
+
+        assertThatThrownBy(dataSource::getConnection)
+                .as("Failure of the target data source should be raised!")
+                .isInstanceOf(SQLException.class)
+                .hasMessage("Database is down!");
+
+        assertThat(dataSource.getConnection())
+                .as("Permit of the failed connection should have been released!")
+                .isNotNull();
+    }
+
+    @Test
+    @DisplayName("Default the bound below the number of carrier threads")
+    final void testDefaultConcurrency()
+    {
+        int carriers = Math.max(Runtime.getRuntime().availableProcessors() - 1, 1);
+        try (HikariDataSource pool = new HikariDataSource())
+        {
+            pool.setMaximumPoolSize(carriers + 10);
+
+            assertThat(PinningGuardDataSource.getDefaultConcurrency(pool))
+                    .as("Default bound should leave a carrier thread for the other work with a large pool!")
+                    .isEqualTo(carriers);
+
+            pool.setMaximumPoolSize(1);
+
+            assertThat(PinningGuardDataSource.getDefaultConcurrency(pool))
+                    .as("Default bound should not exceed the maximum size of the connection pool!")
+                    .isEqualTo(1);
+        }
+
+        assertThat(PinningGuardDataSource.getDefaultConcurrency(mock(DataSource.class)))
+                .as("Default bound should leave a carrier thread for other data sources!")
+                .isEqualTo(carriers);
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright(c) 2021 Hemajoo Digital Systems Inc.
+ * --------------------------------------------------------------------------------------
+ * This file is part of Hemajoo Systems Inc. projects which is licensed
+ * under the Apache license version 2 and use is subject to license terms.
+ * You should have received a copy of the license with the project's artifact
+ * binaries and/or sources.
+ *
+ * License can be consulted at http://www.apache.org/licenses/LICENSE-2.0
+ * --------------------------------------------------------------------------------------
+ */
+package com.hemajoo.commerce.cherry.persistence.test.unit.base.identifier;
+
+import com.hemajoo.commerce.cherry.persistence.base.identifier.EntityIdentifierGenerator;
+import org.hibernate.MappingException;
+import org.hibernate.boot.registry.StandardServiceRegistry;
+import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.ressec.avocado.core.junit.BaseUnitTest;
+
+import java.util.Properties;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Test the {@link EntityIdentifierGenerator} class.
+ * @author <a href="mailto:christophe.resse@gmail.com">Christophe Resse</a>
+ * @version 1.0.0
+ */
+class UnitTestEntityIdentifierGenerator extends BaseUnitTest
+{
+    @Test
+    @DisplayName("Generate time-ordered identifiers by default")
+    final void testDefaultStrategy()
+    {
+        assertThat(generate(null, null).version())
+                .as("Identifiers should be time-ordered by default!")
+                .isEqualTo(7);
+    }
+
+    @Test
+    @DisplayName("Switch the generation strategy through the Hibernate property")
+    final void testStrategyProperty()
+    {
+        assertThat(generate(EntityIdentifierGenerator.STRATEGY_RANDOM, null).version())
+                .as("Identifiers should be random!")
+                .isEqualTo(4);
+        assertThat(generate(EntityIdentifierGenerator.STRATEGY_TIME_ORDERED, null).version())
+                .as("Identifiers should be time-ordered!")
+                .isEqualTo(7);
+    }
+
+    @Test
+    @DisplayName("Override the Hibernate property by the generator parameter")
+    final void testStrategyParameter()
+    {
+        assertThat(generate(EntityIdentifierGenerator.STRATEGY_TIME_ORDERED, EntityIdentifierGenerator.STRATEGY_RANDOM).version())
+                .as("Generator parameter should take precedence over the Hibernate property!")
+                .isEqualTo(4);
+    }
+
+    @Test
+    @DisplayName("Reject an unknown generation strategy")
+    final void testInvalidStrategy()
+    {
+        assertThatThrownBy(() -> generate("sequential", null))
+                .as("Unknown strategy should be rejected!")
+                .isInstanceOf(MappingException.class);
+    }
+
+    /**
+     * Configures a generator then generates an identifier.
+     * @param property Value of the {@code Hibernate} property (null if not set).
+     * @param parameter Value of the generator parameter (null if not set).
+     * @return Generated identifier.
+     */
+    private UUID generate(final String property, final String parameter)
+    {
+        StandardServiceRegistryBuilder builder = new StandardServiceRegistryBuilder();
+        if (property != null)
+        {
+            builder.applySetting(EntityIdentifierGenerator.STRATEGY_PROPERTY, property);
+        }
+
+        StandardServiceRegistry registry = builder.build();
+        try
+        {
+            Properties parameters = new Properties();
+            if (parameter != null)
+            {
+                parameters.setProperty(EntityIdentifierGenerator.STRATEGY_PARAMETER, parameter);
+            }
+
+            EntityIdentifierGenerator generator = new EntityIdentifierGenerator();
+            generator.configure(null, parameters, registry);
+
+            return (UUID) generator.generate(null, null);
+        }
+        finally
+        {
+            StandardServiceRegistryBuilder.destroy(registry);
+        }
+    }
+}
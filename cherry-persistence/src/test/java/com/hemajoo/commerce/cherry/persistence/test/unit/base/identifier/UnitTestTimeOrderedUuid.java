@@ -0,0 +1,68 @@
+/*
+ * Copyright(c) 2021 Hemajoo Digital Systems Inc.
+ * --------------------------------------------------------------------------------------
+ * This file is part of Hemajoo Systems Inc. projects which is licensed
+ * under the Apache license version 2 and use is subject to license terms.
+ * You should have received a copy of the license with the project's artifact
+ * binaries and/or sources.
+ *
+ * License can be consulted at http://www.apache.org/licenses/LICENSE-2.0
+ * --------------------------------------------------------------------------------------
+ */
+package com.hemajoo.commerce.cherry.persistence.test.unit.base.identifier;
+
+import com.hemajoo.commerce.cherry.persistence.base.identifier.TimeOrderedUuid;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.ressec.avocado.core.junit.BaseUnitTest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test the {@link TimeOrderedUuid} class.
+ * @author <a href="mailto:christophe.resse@gmail.com">Christophe Resse</a>
+ * @version 1.0.0
+ */
+class UnitTestTimeOrderedUuid extends BaseUnitTest
+{
+    @Test
+    @DisplayName("Generate a time-ordered UUID")
+    final void testGenerate()
+    {
+        long start = System.currentTimeMillis();
+        UUID uuid = TimeOrderedUuid.generate();
+
+        assertThat(uuid.version())
+                .as("UUID version should be 7!")
+                .isEqualTo(7);
+        assertThat(uuid.variant())
+                .as("UUID variant should be the IETF one!")
+                .isEqualTo(2);
+        assertThat(TimeOrderedUuid.getTimestamp(uuid))
+                .as("UUID timestamp should be the generation time!")
+                .isGreaterThanOrEqualTo(start);
+    }
+
+    @Test
+    @DisplayName("Generate monotonic time-ordered UUIDs")
+    final void testGenerateMonotonic()
+    {
+        List<UUID> uuids = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++)
+        {
+            uuids.add(TimeOrderedUuid.generate());
+        }
+
+        // Most significant bits (timestamp and counter) are strictly increasing, even within the same millisecond.
+        for (int i = 1; i < uuids.size(); i++)
+        {
+            assertThat(uuids.get(i).getMostSignificantBits())
+                    .as("UUIDs should be generated in increasing order!")
+                    .isGreaterThan(uuids.get(i - 1).getMostSignificantBits());
+        }
+    }
+}
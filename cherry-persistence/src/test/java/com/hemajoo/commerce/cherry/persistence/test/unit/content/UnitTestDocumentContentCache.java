@@ -0,0 +1,171 @@
+/*
+ * Copyright(c) 2021 Hemajoo Digital Systems Inc.
+ * --------------------------------------------------------------------------------------
+ * This file is part of Hemajoo Systems Inc. projects which is licensed
+ * under the Apache license version 2 and use is subject to license terms.
+ * You should have received a copy of the license with the project's artifact
+ * binaries and/or sources.
+ *
+ * License can be consulted at http://www.apache.org/licenses/LICENSE-2.0
+ * --------------------------------------------------------------------------------------
+ */
+package com.hemajoo.commerce.cherry.persistence.test.unit.content;
+
+import com.hemajoo.commerce.cherry.persistence.content.DocumentContentCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.ressec.avocado.core.junit.BaseUnitTest;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test the {@link DocumentContentCache} class.
+ * @author <a href="mailto:christophe.resse@gmail.com">Christophe Resse</a>
+ * @version 1.0.0
+ */
+class UnitTestDocumentContentCache extends BaseUnitTest
+{
+    @Test
+    @DisplayName("Serve a small content from the cache")
+    final void testServeSmallContentFromCache() throws IOException
+    {
+        DocumentContentCache cache = new DocumentContentCache(true, 1024, 4096);
+        byte[] content = "Hello World!".getBytes();
+        AtomicInteger loads = new AtomicInteger();
+
+        for (int i = 0; i < 3; i++)
+        {
+            try (InputStream input = cache.getContent("icon", content.length, () -> {
+                loads.incrementAndGet();
+                return new ByteArrayInputStream(content);
+            }))
+            {
+                assertThat(input.readAllBytes())
+                        .as("Content should be served unchanged!")
+                        .isEqualTo(content);
+            }
+        }
+
+        assertThat(loads.get())
+                .as("Content should have been loaded once!")
+                .isEqualTo(1);
+        assertThat(cache.getHitCount())
+                .as("Cache should have recorded the hits!")
+                .isEqualTo(2);
+        assertThat(cache.size())
+                .as("Cache should account for the cached bytes!")
+                .isEqualTo(content.length);
+    }
+
+    @Test
+    @DisplayName("Do not cache a content longer than expected")
+    final void testDoNotCacheLongerContent() throws IOException
+    {
+        DocumentContentCache cache = new DocumentContentCache(true, 1024, 4096);
+        byte[] content = "Hello World!".getBytes();
+
+        try (InputStream input = cache.getContent("stale", 5, () -> new ByteArrayInputStream(content)))
+        {
+            assertThat(input.readAllBytes())
+                    .as("Whole content should be served!")
+                    .isEqualTo(content);
+        }
+
+        assertThat(cache.size())
+                .as("Content longer than expected should not be cached!")
+                .isZero();
+    }
+
+    @Test
+    @DisplayName("Evict the least recently used contents")
+    final void testEvictLeastRecentlyUsedContents() throws IOException
+    {
+        DocumentContentCache cache = new DocumentContentCache(true, 1024, 2048);
+        byte[] content = new byte[1000];
+
+        cache.getContent("first", content.length, () -> new ByteArrayInputStream(content)).close();
+        cache.getContent("second", content.length, () -> new ByteArrayInputStream(content)).close();
+        cache.getContent("first", content.length, () -> new ByteArrayInputStream(content)).close();
+        cache.getContent("third", content.length, () -> new ByteArrayInputStream(content)).close();
+
+        assertThat(cache.getEvictionCount())
+                .as("One content should have been evicted!")
+                .isEqualTo(1);
+        assertThat(cache.size())
+                .as("Cache should stay within its byte budget!")
+                .isLessThanOrEqualTo(2048);
+
+        AtomicInteger loads = new AtomicInteger();
+        cache.getContent("first", content.length, () -> {
+            loads.incrementAndGet();
+            return new ByteArrayInputStream(content);
+        }).close();
+
+        assertThat(loads.get())
+                .as("Most recently used content should still be cached!")
+                .isZero();
+    }
+
+    @Test
+    @DisplayName("Do not cache a content invalidated while it is loaded")
+    final void testDoNotCacheContentInvalidatedWhileLoaded() throws IOException
+    {
+        DocumentContentCache cache = new DocumentContentCache(true, 1024, 4096);
+        byte[] content = "Hello World!".getBytes();
+
+        // Content is deleted (and invalidated) while a concurrent lookup is loading it.
+        try (InputStream input = cache.getContent("deleted", content.length, () -> {
+            cache.invalidate("deleted");
+            return new ByteArrayInputStream(content);
+        }))
+        {
+            assertThat(input.readAllBytes())
+                    .as("Loaded content should be served!")
+                    .isEqualTo(content);
+        }
+
+        assertThat(cache.size())
+                .as("Content invalidated while loaded should not be cached!")
+                .isZero();
+
+        cache.getContent("deleted", content.length, () -> new ByteArrayInputStream(content)).close();
+        assertThat(cache.size())
+                .as("Content loaded after the invalidation should be cached!")
+                .isEqualTo(content.length);
+    }
+
+    @Test
+    @DisplayName("Publish the cache statistics as metrics")
+    final void testPublishMetrics() throws IOException
+    {
+        DocumentContentCache cache = new DocumentContentCache(true, 1024, 2048);
+        MeterRegistry registry = new SimpleMeterRegistry();
+        cache.bindTo(registry);
+
+        byte[] content = new byte[1000];
+        cache.getContent("first", content.length, () -> new ByteArrayInputStream(content)).close();
+        cache.getContent("first", content.length, () -> new ByteArrayInputStream(content)).close();
+        cache.getContent("second", content.length, () -> new ByteArrayInputStream(content)).close();
+        cache.getContent("third", content.length, () -> new ByteArrayInputStream(content)).close();
+
+        assertThat(registry.get("cache.gets").tag("cache", DocumentContentCache.METRICS_NAME).tag("result", "hit").functionCounter().count())
+                .as("Hits should have been published!")
+                .isEqualTo(1);
+        assertThat(registry.get("cache.gets").tag("cache", DocumentContentCache.METRICS_NAME).tag("result", "miss").functionCounter().count())
+                .as("Misses should have been published!")
+                .isEqualTo(3);
+        assertThat(registry.get("cache.evictions").tag("cache", DocumentContentCache.METRICS_NAME).functionCounter().count())
+                .as("Evictions should have been published!")
+                .isEqualTo(1);
+        assertThat(registry.get("cache.size").tag("cache", DocumentContentCache.METRICS_NAME).gauge().value())
+                .as("Cached bytes should have been published!")
+                .isEqualTo(2000);
+    }
+}
@@ -0,0 +1,222 @@
+/*
+ * Copyright(c) 2021 Hemajoo Digital Systems Inc.
+ * --------------------------------------------------------------------------------------
+ * This file is part of Hemajoo Systems Inc. projects which is licensed
+ * under the Apache license version 2 and use is subject to license terms.
+ * You should have received a copy of the license with the project's artifact
+ * binaries and/or sources.
+ *
+ * License can be consulted at http://www.apache.org/licenses/LICENSE-2.0
+ * --------------------------------------------------------------------------------------
+ */
+package com.hemajoo.commerce.cherry.persistence.test.unit.content;
+
+import com.hemajoo.commerce.cherry.commons.exception.ContentStoreException;
+import com.hemajoo.commerce.cherry.persistence.base.io.ByteBufferInputStream;
+import com.hemajoo.commerce.cherry.persistence.base.io.ContentDigests;
+import com.hemajoo.commerce.cherry.persistence.base.io.LazyInputStream;
+import com.hemajoo.commerce.cherry.persistence.content.DocumentContentReader;
+import com.hemajoo.commerce.cherry.persistence.content.DocumentStoreLayout;
+import com.hemajoo.commerce.cherry.persistence.model.entity.document.DocumentEntity;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.ressec.avocado.core.junit.BaseUnitTest;
+import org.springframework.http.HttpStatus;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Test the {@link DocumentContentReader} class.
+ * @author <a href="mailto:christophe.resse@gmail.com">Christophe Resse</a>
+ * @version 1.0.0
+ */
+class UnitTestDocumentContentReader extends BaseUnitTest
+{
+    @Test
+    @DisplayName("Read a content through a mapped buffer")
+    final void testReadMappedContent(final @TempDir Path root) throws ContentStoreException, IOException
+    {
+        DocumentContentReader reader = new DocumentContentReader(new DocumentStoreLayout(root.toString(), 0, 2, false), 4, false);
+        DocumentEntity document = createDocument(root, "Hello World!");
+
+        ByteBuffer region = reader.map(document, 6, 5);
+        byte[] bytes = new byte[region.remaining()];
+        region.get(bytes);
+
+        assertThat(new String(bytes))
+                .as("Mapped region should hold the requested bytes!")
+                .isEqualTo("World");
+
+        try (InputStream input = reader.getContent(document))
+        {
+            assertThat(new String(input.readAllBytes()))
+                    .as("Content should be read whole!")
+                    .isEqualTo("Hello World!");
+        }
+
+        try (FileChannel channel = reader.openChannel(document))
+        {
+            assertThat(channel.size())
+                    .as("Channel should give access to the whole content!")
+                    .isEqualTo(12);
+        }
+    }
+
+    @Test
+    @DisplayName("Map the contents from the mapping threshold")
+    final void testMappingThreshold(final @TempDir Path root) throws ContentStoreException, IOException
+    {
+        DocumentContentReader reader = new DocumentContentReader(new DocumentStoreLayout(root.toString(), 0, 2, false), 12, false);
+
+        assertThat(reader.isMappable(11))
+                .as("Content below the threshold should not be mapped!")
+                .isFalse();
+        assertThat(reader.isMappable(12))
+                .as("Content at the threshold should be mapped!")
+                .isTrue();
+        assertThat(reader.isMappable(DocumentContentReader.MAX_MAPPING_SIZE + 1))
+                .as("Content larger than a mapped region should not be mapped!")
+                .isFalse();
+        assertThat(new DocumentContentReader(new DocumentStoreLayout(root.toString(), 0, 2, false), 0, false).isMappable(12))
+                .as("Threshold 0 should disable the mapping!")
+                .isFalse();
+
+        try (InputStream input = reader.getContent(createDocument(root, "Hello World!")))
+        {
+            assertThat(input)
+                    .as("Content at the threshold should be read from a mapped buffer!")
+                    .isInstanceOf(ByteBufferInputStream.class);
+            assertThat(new String(input.readAllBytes()))
+                    .as("Mapped content should be read whole!")
+                    .isEqualTo("Hello World!");
+        }
+
+        try (InputStream input = reader.getContent(createDocument(root, "Hello!")))
+        {
+            assertThat(input)
+                    .as("Content below the threshold should be read from a stream!")
+                    .isInstanceOf(LazyInputStream.class);
+        }
+    }
+
+    @Test
+    @DisplayName("Open the content below the mapping threshold on first read")
+    final void testOpenContentLazily(final @TempDir Path root) throws ContentStoreException, IOException
+    {
+        DocumentContentReader reader = new DocumentContentReader(new DocumentStoreLayout(root.toString(), 0, 2, false), 1024, false);
+        DocumentEntity document = createDocument(root, "Hello World!");
+
+        try (LazyInputStream input = (LazyInputStream) reader.getContent(document))
+        {
+            assertThat(input.isOpened())
+                    .as("Content file should not be opened until read!")
+                    .isFalse();
+            assertThat((char) input.read())
+                    .as("First byte of the content should be read!")
+                    .isEqualTo('H');
+            assertThat(input.isOpened())
+                    .as("Content file should be opened once read!")
+                    .isTrue();
+            assertThat(new String(input.readAllBytes()))
+                    .as("Remaining content should be read!")
+                    .isEqualTo("ello World!");
+        }
+
+        // Content deleted before being read: the failure is only raised when read.
+        InputStream input = reader.getContent(document);
+        Files.delete(root.resolve(document.getContentId()));
+        assertThatThrownBy(input::read)
+                .as("Deleted content should fail when first read!")
+                .isInstanceOf(IOException.class);
+        input.close();
+    }
+
+    @Test
+    @DisplayName("Reject a region outside of the content")
+    final void testRejectInvalidRegion(final @TempDir Path root) throws IOException
+    {
+        DocumentContentReader reader = new DocumentContentReader(new DocumentStoreLayout(root.toString(), 0, 2, false), 4, false);
+        DocumentEntity document = createDocument(root, "Hello World!");
+
+        assertThatThrownBy(() -> reader.map(document, 6, 10))
+                .as("Region outside of the content should be rejected!")
+                .isInstanceOf(ContentStoreException.class)
+                .extracting("status")
+                .isEqualTo(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE);
+    }
+
+    @Test
+    @DisplayName("Verify a content against its digest")
+    final void testVerifyContent(final @TempDir Path root) throws ContentStoreException, IOException
+    {
+        DocumentContentReader reader = new DocumentContentReader(new DocumentStoreLayout(root.toString(), 0, 2, false), 0, true);
+        DocumentEntity document = createDocument(root, "Hello World!");
+        document.setContentDigest(ContentDigests.toHex(ContentDigests.newDigest().digest("Hello World!".getBytes())));
+
+        try (InputStream input = reader.getContent(document))
+        {
+            assertThat(new String(input.readAllBytes()))
+                    .as("Intact content should be read whole!")
+                    .isEqualTo("Hello World!");
+        }
+
+        Files.write(root.resolve(document.getContentId()), "Hello World?".getBytes());
+        try (InputStream input = reader.getContent(document))
+        {
+            assertThatThrownBy(input::readAllBytes)
+                    .as("Corrupted content should be detected!")
+                    .isInstanceOf(IOException.class)
+                    .hasMessageContaining("corrupted");
+        }
+    }
+
+    @Test
+    @DisplayName("Verify a content read from another source, such as the content cache")
+    final void testVerifyContentFromOtherSource(final @TempDir Path root) throws IOException
+    {
+        DocumentEntity document = new DocumentEntity();
+        document.setContentDigest(ContentDigests.toHex(ContentDigests.newDigest().digest("Hello World!".getBytes())));
+        InputStream cached = new ByteArrayInputStream("Hello World?".getBytes());
+
+        DocumentContentReader reader = new DocumentContentReader(new DocumentStoreLayout(root.toString(), 0, 2, false), 0, false);
+        assertThat(reader.verifying(document, cached))
+                .as("Content should not be verified when verification on read is disabled!")
+                .isSameAs(cached);
+
+        reader = new DocumentContentReader(new DocumentStoreLayout(root.toString(), 0, 2, false), 0, true);
+        try (InputStream input = reader.verifying(document, cached))
+        {
+            assertThatThrownBy(input::readAllBytes)
+                    .as("Corrupted content should be detected!")
+                    .isInstanceOf(IOException.class)
+                    .hasMessageContaining("corrupted");
+        }
+    }
+
+    /**
+     * Creates a document and its content file in the content store.
+     * @param root Content store location.
+     * @param content Content.
+     * @return Document.
+     * @throws IOException Thrown in case an error occurred while writing the content file.
+     */
+    private DocumentEntity createDocument(final Path root, final String content) throws IOException
+    {
+        DocumentEntity document = new DocumentEntity();
+        document.setContentId(UUID.randomUUID().toString());
+        Files.write(root.resolve(document.getContentId()), content.getBytes());
+
+        return document;
+    }
+}
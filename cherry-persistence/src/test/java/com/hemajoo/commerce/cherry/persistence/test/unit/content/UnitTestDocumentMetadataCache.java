@@ -0,0 +1,175 @@
+/*
+ * Copyright(c) 2021 Hemajoo Digital Systems Inc.
+ * --------------------------------------------------------------------------------------
+ * This file is part of Hemajoo Systems Inc. projects which is licensed
+ * under the Apache license version 2 and use is subject to license terms.
+ * You should have received a copy of the license with the project's artifact
+ * binaries and/or sources.
+ *
+ * License can be consulted at http://www.apache.org/licenses/LICENSE-2.0
+ * --------------------------------------------------------------------------------------
+ */
+package com.hemajoo.commerce.cherry.persistence.test.unit.content;
+
+import com.hemajoo.commerce.cherry.model.entity.document.DocumentContentException;
+import com.hemajoo.commerce.cherry.persistence.base.identifier.TimeOrderedUuid;
+import com.hemajoo.commerce.cherry.persistence.content.DocumentMetadataCache;
+import com.hemajoo.commerce.cherry.persistence.model.entity.document.DocumentEntity;
+import com.hemajoo.commerce.cherry.persistence.model.entity.document.DocumentRandomizer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.ressec.avocado.core.junit.BaseUnitTest;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test the {@link DocumentMetadataCache} class.
+ * @author <a href="mailto:christophe.resse@gmail.com">Christophe Resse</a>
+ * @version 1.0.0
+ */
+class UnitTestDocumentMetadataCache extends BaseUnitTest
+{
+    @Test
+    @DisplayName("Return copies of the cached documents")
+    final void testReturnCachedCopies() throws DocumentContentException
+    {
+        DocumentMetadataCache cache = new DocumentMetadataCache(true, 100, 60);
+        DocumentEntity document = DocumentRandomizer.generatePersistent(true);
+        AtomicInteger loads = new AtomicInteger();
+        Function<UUID, DocumentEntity> loader = id -> {
+            loads.incrementAndGet();
+            return document;
+        };
+
+        DocumentEntity first = cache.get(document.getId(), loader);
+        DocumentEntity second = cache.get(document.getId(), loader);
+        second.setName("changed");
+
+        assertThat(loads.get())
+                .as("Document should have been loaded once!")
+                .isEqualTo(1);
+        assertThat(first)
+                .as("First lookup should return the loaded document!")
+                .isSameAs(document);
+        assertThat(cache.get(document.getId(), loader).getName())
+                .as("Cached document should not be altered by the callers!")
+                .isEqualTo(document.getName());
+        assertThat(second.getContentId())
+                .as("Cached copy should hold the document metadata!")
+                .isEqualTo(document.getContentId());
+        assertThat(cache.getStatistics().hitCount())
+                .as("Cache should have recorded the hits!")
+                .isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Reload an invalidated document")
+    final void testInvalidateDocument() throws DocumentContentException
+    {
+        DocumentMetadataCache cache = new DocumentMetadataCache(true, 100, 60);
+        DocumentEntity document = DocumentRandomizer.generatePersistent(true);
+        AtomicInteger loads = new AtomicInteger();
+        Function<UUID, DocumentEntity> loader = id -> {
+            loads.incrementAndGet();
+            return document;
+        };
+
+        cache.get(document.getId(), loader);
+        cache.invalidate(document.getId());
+        cache.get(document.getId(), loader);
+
+        assertThat(loads.get())
+                .as("Invalidated document should have been reloaded!")
+                .isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Do not cache a document loaded during a concurrent invalidation")
+    final void testInvalidateWhileLoading() throws DocumentContentException
+    {
+        DocumentMetadataCache cache = new DocumentMetadataCache(true, 100, 60);
+        DocumentEntity document = DocumentRandomizer.generatePersistent(true);
+        document.setVersion(1L);
+
+        // The document is updated (and invalidated) by another thread once the old version has been read.
+        DocumentEntity stale = cache.get(document.getId(), id -> {
+            DocumentEntity loaded = document.copyMetadata();
+            Thread writer = new Thread(() -> {
+                document.setVersion(2L);
+                cache.invalidate(document.getId());
+            });
+            writer.start();
+            try
+            {
+                writer.join();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+            return loaded;
+        });
+
+        assertThat(stale.getVersion())
+                .as("Loader should have read the old version!")
+                .isEqualTo(1L);
+        assertThat(cache.get(document.getId(), id -> document).getVersion())
+                .as("Old version should not have been cached!")
+                .isEqualTo(2L);
+    }
+
+    @Test
+    @DisplayName("Bypass a disabled cache")
+    final void testDisabledCache()
+    {
+        DocumentMetadataCache cache = new DocumentMetadataCache(false, 100, 60);
+        UUID id = TimeOrderedUuid.generate();
+        AtomicInteger loads = new AtomicInteger();
+
+        cache.get(id, key -> {
+            loads.incrementAndGet();
+            return null;
+        });
+        cache.get(id, key -> {
+            loads.incrementAndGet();
+            return null;
+        });
+
+        assertThat(loads.get())
+                .as("Disabled cache should always load the document!")
+                .isEqualTo(2);
+        assertThat(cache.size())
+                .as("Disabled cache should be empty!")
+                .isZero();
+    }
+
+    @Test
+    @DisplayName("Publish the cache statistics as metrics")
+    final void testPublishMetrics() throws DocumentContentException
+    {
+        DocumentMetadataCache cache = new DocumentMetadataCache(true, 100, 60);
+        MeterRegistry registry = new SimpleMeterRegistry();
+        cache.bindTo(registry);
+
+        DocumentEntity document = DocumentRandomizer.generatePersistent(true);
+        cache.get(document.getId(), id -> document);
+        cache.get(document.getId(), id -> document);
+        cache.get(document.getId(), id -> document);
+
+        assertThat(registry.get("cache.gets").tag("cache", DocumentMetadataCache.METRICS_NAME).tag("result", "hit").functionCounter().count())
+                .as("Hits should have been published!")
+                .isEqualTo(2);
+        assertThat(registry.get("cache.gets").tag("cache", DocumentMetadataCache.METRICS_NAME).tag("result", "miss").functionCounter().count())
+                .as("Misses should have been published!")
+                .isEqualTo(1);
+        assertThat(registry.get("cache.size").tag("cache", DocumentMetadataCache.METRICS_NAME).gauge().value())
+                .as("Size should have been published!")
+                .isEqualTo(1);
+    }
+}
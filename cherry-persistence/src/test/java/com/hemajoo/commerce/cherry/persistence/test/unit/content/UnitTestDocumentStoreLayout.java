@@ -0,0 +1,95 @@
+/*
+ * Copyright(c) 2021 Hemajoo Digital Systems Inc.
+ * --------------------------------------------------------------------------------------
+ * This file is part of Hemajoo Systems Inc. projects which is licensed
+ * under the Apache license version 2 and use is subject to license terms.
+ * You should have received a copy of the license with the project's artifact
+ * binaries and/or sources.
+ *
+ * License can be consulted at http://www.apache.org/licenses/LICENSE-2.0
+ * --------------------------------------------------------------------------------------
+ */
+package com.hemajoo.commerce.cherry.persistence.test.unit.content;
+
+import com.hemajoo.commerce.cherry.commons.exception.ContentStoreException;
+import com.hemajoo.commerce.cherry.persistence.content.DocumentStoreLayout;
+import com.hemajoo.commerce.cherry.persistence.content.DocumentStoreLayoutMigrator;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.ressec.avocado.core.junit.BaseUnitTest;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test the {@link DocumentStoreLayout} class.
+ * @author <a href="mailto:christophe.resse@gmail.com">Christophe Resse</a>
+ * @version 1.0.0
+ */
+class UnitTestDocumentStoreLayout extends BaseUnitTest
+{
+    /**
+     * Content identifier used by the tests.
+     */
+    private static final String CONTENT_ID = "3F2a9c61-0d4e-4b7a-9f1e-5c2d8a6b7e90";
+
+    @Test
+    @DisplayName("Locate a content in a flat layout")
+    final void testFlatLocation()
+    {
+        DocumentStoreLayout layout = new DocumentStoreLayout("store", 0, 2, false);
+
+        assertThat(layout.getLocation(CONTENT_ID))
+                .as("Content should be located at the root of the content store!")
+                .isEqualTo(File.separator + CONTENT_ID);
+    }
+
+    @Test
+    @DisplayName("Locate a content in a sharded layout")
+    final void testShardedLocation()
+    {
+        DocumentStoreLayout layout = new DocumentStoreLayout("store", 3, 3, false);
+
+        // UUID separators are skipped and directory names are lower case.
+        assertThat(layout.getLocation(CONTENT_ID))
+                .as("Content should be located in its shard directories!")
+                .isEqualTo(File.separator + "3f2" + File.separator + "a9c" + File.separator + "610" + File.separator + CONTENT_ID);
+    }
+
+    @Test
+    @DisplayName("Locate a content not yet migrated with the legacy fallback")
+    final void testLegacyFallbackLocation(final @TempDir Path root) throws IOException
+    {
+        DocumentStoreLayout layout = new DocumentStoreLayout(root.toString(), 2, 2, true);
+        Files.createFile(root.resolve(CONTENT_ID));
+
+        assertThat(layout.resolve(CONTENT_ID))
+                .as("Content not yet migrated should be found at its flat location!")
+                .isEqualTo(root.resolve(CONTENT_ID));
+    }
+
+    @Test
+    @DisplayName("Migrate a flat content store to a sharded layout")
+    final void testMigrateFlatLayout(final @TempDir Path root) throws IOException, ContentStoreException
+    {
+        DocumentStoreLayout layout = new DocumentStoreLayout(root.toString(), 2, 2, true);
+        Files.createFile(root.resolve(CONTENT_ID));
+
+        assertThat(new DocumentStoreLayoutMigrator(layout, false).migrate())
+                .as("One file should have been migrated!")
+                .isEqualTo(1);
+
+        Path target = root.resolve(layout.getShardedLocation(CONTENT_ID).substring(1));
+        assertThat(target)
+                .as("Migrated content should exist at its sharded location!")
+                .exists();
+        assertThat(layout.resolve(CONTENT_ID))
+                .as("Migrated content should be found at its sharded location!")
+                .isEqualTo(target);
+    }
+}
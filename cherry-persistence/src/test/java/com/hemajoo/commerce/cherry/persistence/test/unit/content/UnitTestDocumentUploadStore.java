@@ -0,0 +1,141 @@
+/*
+ * Copyright(c) 2021 Hemajoo Digital Systems Inc.
+ * --------------------------------------------------------------------------------------
+ * This file is part of Hemajoo Systems Inc. projects which is licensed
+ * under the Apache license version 2 and use is subject to license terms.
+ * You should have received a copy of the license with the project's artifact
+ * binaries and/or sources.
+ *
+ * License can be consulted at http://www.apache.org/licenses/LICENSE-2.0
+ * --------------------------------------------------------------------------------------
+ */
+package com.hemajoo.commerce.cherry.persistence.test.unit.content;
+
+import com.hemajoo.commerce.cherry.commons.exception.ContentStoreException;
+import com.hemajoo.commerce.cherry.persistence.base.io.ContentDigests;
+import com.hemajoo.commerce.cherry.persistence.content.DocumentUploadStore;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.ressec.avocado.core.junit.BaseUnitTest;
+import org.springframework.http.HttpStatus;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Test the {@link DocumentUploadStore} class.
+ * @author <a href="mailto:christophe.resse@gmail.com">Christophe Resse</a>
+ * @version 1.0.0
+ */
+class UnitTestDocumentUploadStore extends BaseUnitTest
+{
+    @Test
+    @DisplayName("Upload a media file by chunks")
+    final void testUploadByChunks(final @TempDir Path root) throws ContentStoreException, IOException
+    {
+        DocumentUploadStore store = new DocumentUploadStore(root.toString());
+        String uploadId = store.init();
+
+        assertThat(store.getOffset(uploadId))
+                .as("New upload should be empty!")
+                .isZero();
+
+        long offset = store.append(uploadId, 0, new ByteArrayInputStream("Hello ".getBytes()));
+        offset = store.append(uploadId, offset, new ByteArrayInputStream("World!".getBytes()));
+
+        assertThat(offset)
+                .as("Offset should be the number of bytes received!")
+                .isEqualTo(12);
+        assertThat(new String(Files.readAllBytes(store.getFile(uploadId))))
+                .as("Chunks should have been appended in order!")
+                .isEqualTo("Hello World!");
+    }
+
+    @Test
+    @DisplayName("Reject a chunk not appended at the current offset")
+    final void testRejectChunkAtInvalidOffset(final @TempDir Path root) throws ContentStoreException
+    {
+        DocumentUploadStore store = new DocumentUploadStore(root.toString());
+        String uploadId = store.init();
+        store.append(uploadId, 0, new ByteArrayInputStream("Hello ".getBytes()));
+
+        assertThatThrownBy(() -> store.append(uploadId, 0, new ByteArrayInputStream("World!".getBytes())))
+                .as("Chunk at an invalid offset should be rejected!")
+                .isInstanceOf(ContentStoreException.class)
+                .extracting("status")
+                .isEqualTo(HttpStatus.CONFLICT);
+    }
+
+    @Test
+    @DisplayName("Abort an upload")
+    final void testAbortUpload(final @TempDir Path root) throws ContentStoreException
+    {
+        DocumentUploadStore store = new DocumentUploadStore(root.toString());
+        String uploadId = store.init();
+        store.abort(uploadId);
+
+        assertThatThrownBy(() -> store.getOffset(uploadId))
+                .as("Aborted upload should not be found!")
+                .isInstanceOf(ContentStoreException.class);
+    }
+
+    @Test
+    @DisplayName("Purge the uploads neither committed nor aborted")
+    final void testPurgeUploads(final @TempDir Path root) throws ContentStoreException, IOException
+    {
+        DocumentUploadStore store = new DocumentUploadStore(root.toString());
+        String abandoned = store.init();
+        Files.setLastModifiedTime(store.getFile(abandoned), FileTime.from(Instant.now().minus(2, ChronoUnit.DAYS)));
+        String running = store.init();
+
+        assertThat(store.purge(Instant.now().minus(1, ChronoUnit.DAYS)))
+                .as("Abandoned upload should have been purged!")
+                .isEqualTo(1);
+        assertThatThrownBy(() -> store.getOffset(abandoned))
+                .as("Purged upload should not be found!")
+                .isInstanceOf(ContentStoreException.class);
+        assertThat(store.getOffset(running))
+                .as("Running upload should be kept!")
+                .isZero();
+    }
+
+    @Test
+    @DisplayName("Compute the digest of an upload while its chunks are appended")
+    final void testTakeDigest(final @TempDir Path root) throws ContentStoreException, IOException
+    {
+        byte[] expected = ContentDigests.newDigest().digest("Hello World!".getBytes());
+        DocumentUploadStore store = new DocumentUploadStore(root.toString());
+        String uploadId = store.init();
+        long offset = store.append(uploadId, 0, new ByteArrayInputStream("Hello ".getBytes()));
+        store.append(uploadId, offset, new ByteArrayInputStream("World!".getBytes()));
+
+        // Partial file altered behind the store: only the digest computed while appending can still give the original.
+        Path file = store.getFile(uploadId);
+        Files.write(file, "Hello World?".getBytes());
+        assertThat(store.takeDigest(file))
+                .as("Digest should have been computed while the chunks were appended!")
+                .isEqualTo(expected);
+
+        // Digest taken: the partial file is read.
+        assertThat(store.takeDigest(file))
+                .as("Digest should have been computed by reading the file!")
+                .isEqualTo(ContentDigests.newDigest().digest("Hello World?".getBytes()));
+
+        // Upload resumed by another instance (or after a restart).
+        String resumedId = store.init();
+        new DocumentUploadStore(root.toString()).append(resumedId, 0, new ByteArrayInputStream("Hello ".getBytes()));
+        store.append(resumedId, 6, new ByteArrayInputStream("World!".getBytes()));
+        assertThat(store.takeDigest(store.getFile(resumedId)))
+                .as("Digest of an upload appended elsewhere should be computed by reading the file!")
+                .isEqualTo(expected);
+    }
+}
@@ -14,18 +14,22 @@ package com.hemajoo.commerce.cherry.persistence.test.unit.model.entity.document;
 import com.hemajoo.commerce.cherry.model.entity.document.Document;
 import com.hemajoo.commerce.cherry.model.entity.document.DocumentContentException;
 import com.hemajoo.commerce.cherry.model.entity.document.DocumentException;
+import com.hemajoo.commerce.cherry.model.entity.document.DocumentType;
 import com.hemajoo.commerce.cherry.persistence.base.mapper.CycleAvoidingMappingContext;
 import com.hemajoo.commerce.cherry.persistence.model.entity.document.DocumentEntity;
 import com.hemajoo.commerce.cherry.persistence.model.entity.document.DocumentMapper;
 import com.hemajoo.commerce.cherry.persistence.model.entity.document.DocumentRandomizer;
+import com.hemajoo.commerce.cherry.persistence.model.entity.document.DocumentSummary;
 import com.hemajoo.commerce.cherry.persistence.test.unit.base.BaseMapperTest;
 import lombok.NonNull;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
 import java.util.Optional;
+import java.util.UUID;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -49,6 +53,38 @@ class UnitTestDocumentMapper extends BaseMapperTest
         checkFields(persistent, client);
     }
 
+    @Test
+    @DisplayName("Map a persistent document owning documents to a client document")
+    final void testMapPersistentDocumentOwningDocuments() throws DocumentContentException
+    {
+        DocumentEntity owner = DocumentRandomizer.generatePersistent(true);
+        for (int i = 0; i < 3; i++)
+        {
+            new DocumentEntity(owner, DocumentType.DOCUMENT_PHOTO);
+        }
+
+        Document client = DocumentMapper.INSTANCE.fromPersistent(owner, new CycleAvoidingMappingContext());
+        checkFields(owner, client);
+        assertThat(client.getDocuments())
+                .as("Owned documents should not be converted!")
+                .isEmpty();
+        assertThat(owner.getDocuments())
+                .as("Owned documents should be left untouched!")
+                .hasSize(3);
+
+        // An owned document converts its (loaded) owner, still without the owned documents.
+        Document document = DocumentMapper.INSTANCE.fromPersistent(owner.getDocuments().get(0), new CycleAvoidingMappingContext());
+        assertThat(document.getOwner())
+                .as("Loaded owner should have been converted!")
+                .isNotNull();
+        assertThat(document.getOwner().getId())
+                .as("Owner id should be equal!")
+                .isEqualTo(owner.getId());
+        assertThat(document.getOwner().getDocuments())
+                .as("Documents of the owner should not be converted!")
+                .isEmpty();
+    }
+
     @Test
     @DisplayName("Map a list of persistent documents to a list of client documents")
     final void testMapListPersistentDocumentToListClientDocument() throws DocumentContentException, DocumentException
@@ -104,6 +140,78 @@ class UnitTestDocumentMapper extends BaseMapperTest
         checkFields(persistent, copy);
     }
 
+    @Test
+    @DisplayName("Map a document summary to a client document")
+    final void testMapDocumentSummaryToClientDocument() throws DocumentContentException
+    {
+        DocumentEntity persistent = DocumentRandomizer.generatePersistent(true);
+        DocumentSummary summary = new DocumentSummary()
+        {
+            @Override
+            public UUID getId()
+            {
+                return persistent.getId();
+            }
+
+            @Override
+            public String getName()
+            {
+                return persistent.getName();
+            }
+
+            @Override
+            public String getFilename()
+            {
+                return persistent.getFilename();
+            }
+
+            @Override
+            public String getMimeType()
+            {
+                return persistent.getMimeType();
+            }
+
+            @Override
+            public long getContentLength()
+            {
+                return persistent.getContentLength();
+            }
+
+            @Override
+            public DocumentType getDocumentType()
+            {
+                return persistent.getDocumentType();
+            }
+
+            @Override
+            public Date getCreatedDate()
+            {
+                return persistent.getCreatedDate();
+            }
+        };
+
+        Document client = DocumentMapper.INSTANCE.fromSummary(summary);
+
+        assertThat(client.getId())
+                .as("Id should be equal!")
+                .isEqualTo(persistent.getId());
+        assertThat(client.getName())
+                .as("Name should be equal!")
+                .isEqualTo(persistent.getName());
+        assertThat(client.getFilename())
+                .as("Filename should be equal!")
+                .isEqualTo(persistent.getFilename());
+        assertThat(client.getMimeType())
+                .as("Mime type should be equal!")
+                .isEqualTo(persistent.getMimeType());
+        assertThat(client.getDocumentType())
+                .as("Document type should be equal!")
+                .isEqualTo(persistent.getDocumentType());
+        assertThat(client.getTags())
+                .as("Tags are not part of a summary!")
+                .isNull();
+    }
+
     /**
      * Checks equality of fields between a persistent and a client entities.
      * @param persistent Persistent entity.
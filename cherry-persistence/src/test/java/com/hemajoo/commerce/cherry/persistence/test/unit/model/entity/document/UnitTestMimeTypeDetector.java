@@ -0,0 +1,171 @@
+/*
+ * Copyright(c) 2021 Hemajoo Digital Systems Inc.
+ * --------------------------------------------------------------------------------------
+ * This file is part of Hemajoo Systems Inc. projects which is licensed
+ * under the Apache license version 2 and use is subject to license terms.
+ * You should have received a copy of the license with the project's artifact
+ * binaries and/or sources.
+ *
+ * License can be consulted at http://www.apache.org/licenses/LICENSE-2.0
+ * --------------------------------------------------------------------------------------
+ */
+package com.hemajoo.commerce.cherry.persistence.test.unit.model.entity.document;
+
+import com.hemajoo.commerce.cherry.model.entity.document.MimeTypeDetector;
+import com.hemajoo.commerce.cherry.persistence.content.DocumentStoreConfigurer;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.ressec.avocado.core.junit.BaseUnitTest;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test the {@link MimeTypeDetector} class.
+ * @author <a href="mailto:christophe.resse@gmail.com">Christophe Resse</a>
+ * @version 1.0.0
+ */
+class UnitTestMimeTypeDetector extends BaseUnitTest
+{
+    /**
+     * Header of a {@code PNG} image.
+     */
+    private static final byte[] PNG = { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n', 0, 0, 0, 0x0D, 'I', 'H', 'D', 'R' };
+
+    /**
+     * Header of a {@code PDF} document.
+     */
+    private static final byte[] PDF = "%PDF-1.4\n".getBytes(StandardCharsets.US_ASCII);
+
+    @Test
+    @DisplayName("Detect the Mime type of a media file given its header")
+    final void testDetectFromHeader()
+    {
+        MimeTypeDetector detector = MimeTypeDetector.getInstance();
+
+        assertThat(detector.detect(PNG, PNG.length, null))
+                .as("PNG image should have been detected from its magic bytes!")
+                .isEqualTo("image/png");
+        assertThat(detector.detect(PDF, PDF.length, "document.bin"))
+                .as("PDF document should have been detected from its magic bytes!")
+                .isEqualTo("application/pdf");
+        assertThat(detector.detect(new byte[0], 0, "document.pdf"))
+                .as("Mime type should have been detected from the file name hint!")
+                .isEqualTo("application/pdf");
+    }
+
+    @Test
+    @DisplayName("Detect the Mime type of a media file given its name only")
+    final void testDetectFromName()
+    {
+        MimeTypeDetector detector = MimeTypeDetector.getInstance();
+
+        assertThat(detector.detect("android-10.jpg"))
+                .as("JPEG image should have been detected from its file name!")
+                .isEqualTo("image/jpeg");
+        assertThat(detector.detect("android-10"))
+                .as("Unknown file name should be detected as binary!")
+                .isEqualTo("application/octet-stream");
+    }
+
+    @Test
+    @DisplayName("Detect the Mime type of a media file and reset its content")
+    final void testDetectFromStream() throws IOException
+    {
+        try (InputStream input = new BufferedInputStream(getClass().getResourceAsStream("/media/android-10.jpg")))
+        {
+            assertThat(MimeTypeDetector.getInstance().detect(input, null))
+                    .as("JPEG image should have been detected!")
+                    .isEqualTo("image/jpeg");
+            assertThat(input.read())
+                    .as("Content should have been reset to its first byte!")
+                    .isEqualTo(0xFF);
+        }
+    }
+
+    @Test
+    @DisplayName("Detect the Mime types of media files from concurrent threads")
+    final void testDetectConcurrently() throws InterruptedException, ExecutionException
+    {
+        MimeTypeDetector detector = MimeTypeDetector.getInstance();
+        long count = detector.getDetectionCount();
+        int threads = 8;
+        int detections = 250;
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try
+        {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Integer>> results = new ArrayList<>(threads);
+            for (int i = 0; i < threads; i++)
+            {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    int failures = 0;
+                    for (int j = 0; j < detections; j++)
+                    {
+                        boolean png = j % 2 == 0;
+                        String mimeType = png
+                                ? detector.detect(new ByteArrayInputStream(PNG), null)
+                                : detector.detect(PDF, PDF.length, null);
+                        if (!mimeType.equals(png ? "image/png" : "application/pdf"))
+                        {
+                            failures++;
+                        }
+                    }
+                    return failures;
+                }));
+            }
+            start.countDown();
+
+            for (Future<Integer> result : results)
+            {
+                assertThat(result.get())
+                        .as("Concurrent detections should all be correct!")
+                        .isZero();
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+
+        assertThat(detector.getDetectionCount() - count)
+                .as("All the detections should have been counted!")
+                .isGreaterThanOrEqualTo((long) threads * detections);
+        assertThat(detector.getAverageDetectionTime())
+                .as("Average detection time should have been measured!")
+                .isPositive();
+    }
+
+    @Test
+    @DisplayName("Publish the detection latency as a metric")
+    final void testMetrics()
+    {
+        MimeTypeDetector detector = MimeTypeDetector.getInstance();
+        MeterRegistry registry = new SimpleMeterRegistry();
+        DocumentStoreConfigurer.bindTo(registry, detector);
+
+        FunctionTimer timer = registry.get(DocumentStoreConfigurer.MIME_TYPE_DETECTION_METRICS).functionTimer();
+        double count = timer.count();
+        detector.detect(PNG, PNG.length, null);
+
+        assertThat(timer.count() - count)
+                .as("Detection should have been counted!")
+                .isGreaterThanOrEqualTo(1);
+        assertThat(timer.totalTime(TimeUnit.NANOSECONDS))
+                .as("Detection time should have been published!")
+                .isPositive();
+    }
+}